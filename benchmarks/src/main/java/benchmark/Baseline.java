@@ -0,0 +1,41 @@
+package benchmark;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Runs the benchmarks as a regression baseline, with the GC profiler so the
+ * allocation rate is reported next to the throughput, and writes the results
+ * as JSON so runs can be compared. Any JMH command line options can be given
+ * and override the defaults, for example a benchmark name pattern to run only
+ * some of them.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public final class Baseline{
+
+  /** The file the results are written to when none is given.*/
+  public static final String DEFAULT_RESULT_FILE = "baseline.json";
+
+  private Baseline(){
+  }
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException{
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    ChainedOptionsBuilder builder = new OptionsBuilder()
+      .parent(commandLine)
+      .addProfiler(GCProfiler.class)
+      .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+      .result(commandLine.getResult().orElse(DEFAULT_RESULT_FILE));
+    if(commandLine.getIncludes().isEmpty()){
+      builder.include("benchmark\\..*");
+    }
+    new Runner(builder.build()).run();
+  }
+}
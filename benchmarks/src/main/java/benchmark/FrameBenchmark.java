@@ -0,0 +1,69 @@
+package benchmark;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import render.*;
+
+/** Measures rendering whole frames without a display, the same work
+ * SceneRenderer does for every frame it paints, over synthetic scenes of 1k
+ * to 1M shapes. The camera turns a little every frame, as it would while being
+ * used, so nothing that depends on it stays cached.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Djava.awt.headless=true", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class FrameBenchmark{
+
+  /** The number of shapes in the scene.*/
+  @Param({"1000", "10000", "100000", "1000000"})
+  public int shapes;
+
+  /** How the shapes are drawn.*/
+  @Param({"WIREFRAME", "FILLED", "PAINTER"})
+  public RenderMode mode;
+
+  /** The number of threads projecting shapes, 0 for the number of processors.*/
+  @Param({"0"})
+  public int parallelism;
+
+  /** Whether the scene keeps its shapes in a bounding volume hierarchy.*/
+  @Param({"false"})
+  public boolean spatialIndex;
+
+  /** The size on screen in pixels below which shapes are drawn as points, 0 to project them all.*/
+  @Param({"0"})
+  public double detailThreshold;
+
+  private Scene scene;
+  private OffscreenRenderer renderer;
+  private BufferedImage image;
+  private int frame;
+
+  @Setup(Level.Trial)
+  public void setup(){
+    scene = SyntheticScenes.build(shapes);
+    scene.setSpatialIndexEnabled(spatialIndex);
+    renderer = new OffscreenRenderer();
+    renderer.setRenderMode(mode);
+    renderer.setDetailThreshold(detailThreshold);
+    if(parallelism > 0){
+      renderer.setParallelism(parallelism);
+    }
+    image = new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB);
+  }
+
+  @Benchmark
+  public BufferedImage renderFrame(){
+    // sway back and forth so the view stays on the scene
+    scene.getCamera().changeAngleRelative(0, (frame++ & 64) == 0 ? 0.002 : -0.002);
+    renderer.render(scene, scene.getCamera(), image);
+    return image;
+  }
+}
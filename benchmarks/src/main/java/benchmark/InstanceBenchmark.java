@@ -0,0 +1,56 @@
+package benchmark;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import render.*;
+
+/** Measures rendering frames of many instances of one sphere mesh, with and
+ * without levels of detail, to show how far away instances are drawn with
+ * fewer vertexes. The vertexes projected per frame are in the statistics of
+ * the renderer.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Djava.awt.headless=true", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class InstanceBenchmark{
+
+  /** The number of spheres in the scene.*/
+  @Param({"1000", "10000"})
+  public int instances;
+
+  /** Whether the spheres are drawn with levels of detail.*/
+  @Param({"false", "true"})
+  public boolean levelOfDetail;
+
+  /** How the spheres are drawn.*/
+  @Param({"WIREFRAME", "FILLED"})
+  public RenderMode mode;
+
+  private Scene scene;
+  private OffscreenRenderer renderer;
+  private BufferedImage image;
+  private int frame;
+
+  @Setup(Level.Trial)
+  public void setup(){
+    scene = SyntheticScenes.buildInstanced(instances, levelOfDetail);
+    renderer = new OffscreenRenderer();
+    renderer.setRenderMode(mode);
+    image = new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB);
+  }
+
+  @Benchmark
+  public BufferedImage renderFrame(){
+    // sway back and forth so the view stays on the scene
+    scene.getCamera().changeAngleRelative(0, (frame++ & 64) == 0 ? 0.002 : -0.002);
+    renderer.render(scene, scene.getCamera(), image);
+    return image;
+  }
+}
@@ -0,0 +1,84 @@
+package benchmark;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import render.*;
+
+/** Measures drawing short lines like the edges of a wireframe, some of them
+ * running off screen, with Graphics2D.drawLine against a LineRasterizer
+ * drawing them with Bresenham's algorithm or antialiased with Xiaolin Wu's.
+ * Each call draws every line once, so lines per second is the score times
+ * the number of lines.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Djava.awt.headless=true", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class LineBenchmark{
+
+  /** The number of lines drawn per call.*/
+  @Param({"100000"})
+  public int lines;
+
+  private int[] ends;
+  private BufferedImage image;
+  private Graphics2D g2d;
+  private LineRasterizer rasterizer;
+
+  @Setup(Level.Trial)
+  public void setup(){
+    SplittableRandom random = new SplittableRandom(SyntheticScenes.DEFAULT_SEED);
+    ends = new int[lines*4];
+    for(int i=0; i<lines; i++){
+      // start a little off screen so some lines are clipped
+      int x = random.nextInt(-20, 1300), y = random.nextInt(-20, 740);
+      double length = random.nextDouble(2, 40), angle = random.nextDouble(2*Math.PI);
+      ends[i*4] = x;
+      ends[i*4+1] = y;
+      ends[i*4+2] = x+(int)(length*Math.cos(angle));
+      ends[i*4+3] = y+(int)(length*Math.sin(angle));
+    }
+    image = new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB);
+    g2d = image.createGraphics();
+    g2d.setColor(Color.WHITE);
+    rasterizer = new LineRasterizer(OffscreenRenderer.getFramebuffer(image), 1280, 720);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown(){
+    g2d.dispose();
+  }
+
+  @Benchmark
+  public BufferedImage graphics2D(){
+    for(int i=0; i<ends.length; i+=4){
+      g2d.drawLine(ends[i], ends[i+1], ends[i+2], ends[i+3]);
+    }
+    return image;
+  }
+
+  @Benchmark
+  public int[] bresenham(){
+    for(int i=0; i<ends.length; i+=4){
+      rasterizer.drawLine(ends[i], ends[i+1], ends[i+2], ends[i+3], 0xFFFFFF);
+    }
+    return rasterizer.getColorBuffer();
+  }
+
+  @Benchmark
+  public int[] wu(){
+    for(int i=0; i<ends.length; i+=4){
+      rasterizer.drawLineAntialiased(ends[i], ends[i+1], ends[i+2], ends[i+3], 0xFFFFFF);
+    }
+    return rasterizer.getColorBuffer();
+  }
+}
@@ -0,0 +1,91 @@
+package benchmark;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import matrix.*;
+import org.openjdk.jmh.annotations.*;
+
+/** Measures the general Matrix operations at the size used for points and
+ * transformations and at larger sizes where the cost of the arithmetic
+ * dominates, both making a new Matrix and writing into an existing one.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatrixBenchmark{
+
+  /** The number of rows and columns of the matrices.*/
+  @Param({"4", "64", "512"})
+  public int size;
+
+  private Matrix x;
+  private Matrix y;
+  private Matrix point;
+  private Matrix dest;
+
+  @Setup
+  public void setup(){
+    SplittableRandom random = new SplittableRandom(SyntheticScenes.DEFAULT_SEED);
+    x = random(size, size, random);
+    y = random(size, size, random);
+    point = random(size, 1, random);
+    dest = new Matrix(size, size);
+  }
+
+  private static Matrix random(int n, int m, SplittableRandom random){
+    Matrix matrix = new Matrix(n, m);
+    for(int i=0; i<n; i++){
+      for(int j=0; j<m; j++){
+        matrix.set(i, j, random.nextDouble(-1, 1));
+      }
+    }
+    return matrix;
+  }
+
+  @Benchmark
+  public Matrix mult() throws MatrixException{
+    return Matrix.mult(x, y);
+  }
+
+  @Benchmark
+  public Matrix multVector() throws MatrixException{
+    return Matrix.mult(x, point);
+  }
+
+  @Benchmark
+  public Matrix sub() throws MatrixException{
+    return Matrix.sub(x, y);
+  }
+
+  @Benchmark
+  public Matrix multInto() throws MatrixException{
+    return Matrix.mult(x, y, dest);
+  }
+
+  @Benchmark
+  public Matrix subInto() throws MatrixException{
+    return Matrix.sub(x, y, dest);
+  }
+
+  @Benchmark
+  public Matrix scalarMult(){
+    return Matrix.scalarMult(x, 0.5);
+  }
+
+  @Benchmark
+  public Matrix scalarMultInPlace(){
+    // by -1 so the elements neither grow nor shrink however often it runs
+    return dest.scalarMult(-1);
+  }
+
+  @Benchmark
+  public Matrix addScaled() throws MatrixException{
+    return dest.addScaled(y, 1e-9);
+  }
+}
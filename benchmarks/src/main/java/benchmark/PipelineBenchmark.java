@@ -0,0 +1,108 @@
+package benchmark;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import render.*;
+
+/** Measures frames drawn per second with projecting and drawing done one
+ * after the other on one thread, against projecting on a thread of its own
+ * that hands frames to the drawing thread through a FrameHandoff, as
+ * SceneRenderer does. Pipelined, the throughput should come close to that of
+ * the slower of the two stages rather than that of both added together.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Djava.awt.headless=true", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class PipelineBenchmark{
+
+  /** The number of shapes in the scene.*/
+  @Param({"10000", "100000"})
+  public int shapes;
+
+  /** How the shapes are drawn.*/
+  @Param({"WIREFRAME", "FILLED"})
+  public RenderMode mode;
+
+  /** The most frames in flight, 0 to project and draw on the benchmark thread.*/
+  @Param({"0", "2"})
+  public int framesInFlight;
+
+  private Scene scene;
+  private OffscreenRenderer renderer;
+  private BufferedImage image;
+  private Graphics2D g2d;
+  private FrameHandoff handoff;
+  private Thread geometryThread;
+  private int frame;
+
+  @Setup(Level.Trial)
+  public void setup(){
+    scene = SyntheticScenes.build(shapes);
+    renderer = new OffscreenRenderer();
+    renderer.setRenderMode(mode);
+    image = new BufferedImage(1280, 720, BufferedImage.TYPE_INT_RGB);
+    g2d = image.createGraphics();
+    if(framesInFlight > 0){
+      FrameHandoff frames = new FrameHandoff(framesInFlight);
+      handoff = frames;
+      geometryThread = new Thread(() -> project(frames), "PipelineBenchmark-geometry");
+      geometryThread.setDaemon(true);
+      geometryThread.start();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException{
+    if(handoff != null){
+      handoff.close();
+      geometryThread.join();
+    }
+    g2d.dispose();
+  }
+
+  /**
+ * Projects frames into the handoff until it is closed.
+ * @since 1.1
+ */
+  private void project(FrameHandoff frames){
+    try{
+      ProjectedFrame projected;
+      while((projected = frames.acquire()) != null){
+        turnCamera();
+        renderer.project(scene, scene.getCamera(), image.getWidth(), image.getHeight(), projected);
+        frames.publish(projected);
+      }
+    }catch(InterruptedException e){
+      // closed
+    }
+  }
+
+  private void turnCamera(){
+    // sway back and forth so the view stays on the scene
+    scene.getCamera().changeAngleRelative(0, (frame++ & 64) == 0 ? 0.002 : -0.002);
+  }
+
+  @Benchmark
+  public BufferedImage renderFrame() throws InterruptedException{
+    if(handoff == null){
+      turnCamera();
+      renderer.render(scene, scene.getCamera(), g2d, image.getWidth(), image.getHeight());
+      return image;
+    }
+    ProjectedFrame projected = handoff.take();
+    try{
+      renderer.draw(projected, g2d);
+    }finally{
+      handoff.release(projected);
+    }
+    return image;
+  }
+}
@@ -0,0 +1,65 @@
+package benchmark;
+import java.util.concurrent.TimeUnit;
+import matrix.*;
+import org.openjdk.jmh.annotations.*;
+import render.*;
+
+/** Measures making, copying and transforming a single Point, transforming
+ * through a general Matrix and through a Matrix4.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PointBenchmark{
+
+  private Point point;
+  private Point other;
+  private Matrix matrix;
+  private Matrix4 matrix4;
+
+  @Setup
+  public void setup(){
+    point = new Point(1.5, -2, 7);
+    other = new Point(-0.5, 3, 2);
+    Camera camera = new Camera(new Point(0.5, 1, -3), 0.2, 0.3);
+    matrix4 = camera.getViewMatrix();
+    matrix = matrix4.toMatrix();
+  }
+
+  @Benchmark
+  public Point newPoint(){
+    return new Point(1.5, -2, 7);
+  }
+
+  @Benchmark
+  public Point clonePoint(){
+    return point.clone();
+  }
+
+  @Benchmark
+  public Point getRelativePoint(){
+    return point.getRelativePoint(other);
+  }
+
+  @Benchmark
+  public double getDistanceToPoint(){
+    return point.getDistanceToPoint(other);
+  }
+
+  @Benchmark
+  public Point getTransformedPoint(){
+    return point.getTransformedPoint(matrix);
+  }
+
+  @Benchmark
+  public Point getTransformedPointMatrix4(){
+    return point.getTransformedPoint(matrix4);
+  }
+}
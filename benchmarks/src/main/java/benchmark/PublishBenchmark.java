@@ -0,0 +1,55 @@
+package benchmark;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import matrix.Matrix4;
+import org.openjdk.jmh.annotations.*;
+import render.*;
+
+/** Measures a tick of a simulation that moves some of the shapes of a Scene
+ * then publishes it, to show that publishing costs about what changed rather
+ * than the size of the Scene.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Djava.awt.headless=true", "--add-modules=jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class PublishBenchmark{
+
+  /** The number of shapes in the scene.*/
+  @Param({"10000", "100000"})
+  public int shapes;
+
+  /** The number of shapes moved each tick.*/
+  @Param({"100", "1000"})
+  public int changed;
+
+  private Scene scene;
+  private ArrayList<Shape2D> shapeList;
+  private Matrix4 step;
+  private SplittableRandom random;
+
+  @Setup(Level.Trial)
+  public void setup(){
+    scene = SyntheticScenes.build(shapes);
+    shapeList = scene.getShapes2D();
+    step = new Matrix4().setTranslation(0.01, 0, 0);
+    random = new SplittableRandom(7);
+    scene.publish();
+  }
+
+  @Benchmark
+  public Scene tick(){
+    for(int i=0; i<changed; i++){
+      shapeList.get(random.nextInt(shapes)).transform(step);
+    }
+    scene.publish();
+    return scene;
+  }
+}
@@ -0,0 +1,61 @@
+package benchmark;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import matrix.*;
+import org.openjdk.jmh.annotations.*;
+import render.*;
+
+/** Measures transforming a whole Shape2D, the way the renderer did it for
+ * every shape before it projected straight from the vertex arrays.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Shape2DBenchmark{
+
+  /** The number of vertexes of the shape.*/
+  @Param({"3", "4"})
+  public int vertexes;
+
+  private Shape2D shape;
+  private Point offset;
+  private Matrix matrix;
+  private Matrix4 matrix4;
+
+  @Setup
+  public void setup(){
+    shape = SyntheticScenes.randomShape(new SplittableRandom(SyntheticScenes.DEFAULT_SEED), vertexes);
+    offset = new Point(0.5, 1, -3);
+    Camera camera = new Camera(offset, 0.2, 0.3);
+    matrix4 = camera.getViewMatrix();
+    matrix = matrix4.toMatrix();
+  }
+
+  @Benchmark
+  public Shape2D getTransformedShape(){
+    return shape.getTransformedShape(offset, 0.2, -0.3);
+  }
+
+  @Benchmark
+  public Shape2D getTransformedShapeMatrix4(){
+    return shape.getTransformedShape(matrix4);
+  }
+
+  @Benchmark
+  public ArrayList<Point> getTransformedVertexes(){
+    return shape.getTransformedVertexes(matrix);
+  }
+
+  @Benchmark
+  public ArrayList<Point> getTransformedVertexesMatrix4(){
+    return shape.getTransformedVertexes(matrix4);
+  }
+}
@@ -0,0 +1,55 @@
+package benchmark;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import render.*;
+
+/** Measures starting a synthetic Scene from a SceneSnapshot against building
+ * it from scratch, with and without the spatial index.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SnapshotBenchmark{
+
+  @Param({"10000", "1000000"})
+  private int shapes;
+
+  @Param({"false", "true"})
+  private boolean spatialIndex;
+
+  private Path snapshot;
+
+  @Setup
+  public void setup() throws IOException{
+    Scene scene = build();
+    snapshot = Files.createTempFile("scene", ".snapshot");
+    SceneSnapshot.write(scene, snapshot);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException{
+    Files.deleteIfExists(snapshot);
+  }
+
+  @Benchmark
+  public Scene build(){
+    Scene scene = SyntheticScenes.build(shapes);
+    scene.setSpatialIndexEnabled(spatialIndex);
+    return scene;
+  }
+
+  @Benchmark
+  public Scene read() throws IOException{
+    return SceneSnapshot.read(snapshot);
+  }
+}
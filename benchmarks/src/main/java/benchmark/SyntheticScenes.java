@@ -0,0 +1,133 @@
+package benchmark;
+import java.util.SplittableRandom;
+import render.*;
+
+/** SyntheticScenes builds repeatable scenes of many small shapes for the
+ * benchmarks. The shapes are scattered through a box in front of the camera,
+ * some of it past the default render distance, so a frame has shapes to cull
+ * as well as shapes to draw.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public final class SyntheticScenes{
+
+  /** The seed used when none is given, so every run sees the same scene.*/
+  public static final long DEFAULT_SEED = 42;
+
+  private SyntheticScenes(){
+  }
+
+  /**
+ * Builds a scene of triangles and squares with the default seed.
+ * @param  shapes The number of shapes in the scene.
+ * @return A new Scene with the camera at (0, 0, -2) looking along z.
+ * @since 1.1
+ */
+  public static Scene build(int shapes){
+    return build(shapes, DEFAULT_SEED);
+  }
+
+  /**
+ * Builds a scene of triangles and squares. One shape in four is a square.
+ * @param  shapes The number of shapes in the scene.
+ * @param  seed The seed of the random placement.
+ * @return A new Scene with the camera at (0, 0, -2) looking along z.
+ * @since 1.1
+ */
+  public static Scene build(int shapes, long seed){
+    SplittableRandom random = new SplittableRandom(seed);
+    Scene scene = new Scene(new Point(0, 0, -2), 0, 0);
+    for(int i=0; i<shapes; i++){
+      scene.add(randomShape(random, i%4 == 3 ? 4 : 3));
+    }
+    return scene;
+  }
+
+  /**
+ * Makes a shape with its vertexes around a random centre.
+ * @param  random The source of randomness.
+ * @param  vertexes The number of vertexes, 3 or 4.
+ * @return A new Shape2D with a random color.
+ * @since 1.1
+ */
+  public static Shape2D randomShape(SplittableRandom random, int vertexes){
+    double cx = random.nextDouble(-15, 15);
+    double cy = random.nextDouble(-10, 10);
+    double cz = random.nextDouble(0, 30);
+    double size = random.nextDouble(0.1, 1);
+    Point[] points = new Point[vertexes];
+    for(int i=0; i<vertexes; i++){
+      // go round the centre so squares stay convex
+      double angle = 2*Math.PI*i/vertexes;
+      points[i] = new Point(cx+size*Math.cos(angle),
+                            cy+size*Math.sin(angle),
+                            cz+random.nextDouble(-size, size));
+    }
+    return new Shape2D(points, new java.awt.Color(random.nextInt(0x1000000)));
+  }
+
+  /**
+ * Builds a scene of spheres, all instances of one Geometry, scattered
+ * through the same box as the shapes of build.
+ * @param  instances The number of spheres in the scene.
+ * @param  levelOfDetail Whether the spheres are drawn with four levels of detail.
+ * @return A new Scene with the camera at (0, 0, -2) looking along z.
+ * @since 1.1
+ */
+  public static Scene buildInstanced(int instances, boolean levelOfDetail){
+    SplittableRandom random = new SplittableRandom(DEFAULT_SEED);
+    Scene scene = new Scene(new Point(0, 0, -2), 0, 0);
+    Geometry sphere = new Geometry(sphere(0.5, 32, 64, java.awt.Color.LIGHT_GRAY));
+    LevelOfDetail levels = LevelOfDetail.simplify(sphere, 4, 200);
+    matrix.Matrix4 transform = new matrix.Matrix4();
+    for(int i=0; i<instances; i++){
+      transform.setTranslation(random.nextDouble(-15, 15), random.nextDouble(-10, 10), random.nextDouble(0, 30));
+      if(levelOfDetail){
+        scene.add(levels, transform);
+      }else{
+        scene.add(sphere, transform);
+      }
+    }
+    return scene;
+  }
+
+  /**
+ * Makes a sphere of quads between rings of latitude, with triangles at the poles.
+ * @param  radius The radius of the sphere.
+ * @param  rings The number of bands from pole to pole, at least 2.
+ * @param  segments The number of faces around each band.
+ * @param  color The color of every face.
+ * @return A new IndexedMesh around the origin.
+ * @since 1.1
+ */
+  public static IndexedMesh sphere(double radius, int rings, int segments, java.awt.Color color){
+    Point[] vertexes = new Point[(rings-1)*segments+2];
+    int top = vertexes.length-2, bottom = vertexes.length-1;
+    for(int r=1; r<rings; r++){
+      double latitude = Math.PI*r/rings;
+      for(int s=0; s<segments; s++){
+        double longitude = 2*Math.PI*s/segments;
+        vertexes[(r-1)*segments+s] = new Point(radius*Math.sin(latitude)*Math.cos(longitude),
+                                               radius*Math.cos(latitude),
+                                               radius*Math.sin(latitude)*Math.sin(longitude));
+      }
+    }
+    vertexes[top] = new Point(0, radius, 0);
+    vertexes[bottom] = new Point(0, -radius, 0);
+    int[][] faces = new int[rings*segments][];
+    int f = 0;
+    for(int s=0; s<segments; s++){
+      int next = (s+1)%segments;
+      faces[f++] = new int[]{top, next, s};
+      for(int r=1; r<rings-1; r++){
+        int a = (r-1)*segments;
+        int b = r*segments;
+        faces[f++] = new int[]{a+s, a+next, b+next, b+s};
+      }
+      faces[f++] = new int[]{bottom, (rings-2)*segments+s, (rings-2)*segments+next};
+    }
+    return new IndexedMesh(vertexes, faces, color);
+  }
+}
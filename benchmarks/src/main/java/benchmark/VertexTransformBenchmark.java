@@ -0,0 +1,89 @@
+package benchmark;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import matrix.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import render.*;
+
+/** Measures projecting arrays of vertexes with the batch methods of Matrix4,
+ * with the Vector API kernel and with the scalar one, against projecting them
+ * one at a time.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class VertexTransformBenchmark{
+
+  /** The number of vertexes.*/
+  @Param({"1024", "65536"})
+  public int vertexes;
+
+  private double[] xs, ys, zs;
+  private double[] outX, outY, outZ, outW;
+  private Matrix4 viewProjection;
+  private Vec4 coord;
+
+  @Setup
+  public void setup(){
+    SplittableRandom random = new SplittableRandom(SyntheticScenes.DEFAULT_SEED);
+    xs = new double[vertexes];
+    ys = new double[vertexes];
+    zs = new double[vertexes];
+    for(int i=0; i<vertexes; i++){
+      xs[i] = random.nextDouble(-15, 15);
+      ys[i] = random.nextDouble(-10, 10);
+      zs[i] = random.nextDouble(0, 30);
+    }
+    outX = new double[vertexes];
+    outY = new double[vertexes];
+    outZ = new double[vertexes];
+    outW = new double[vertexes];
+    Camera camera = new Camera(new Point(0.5, 1, -3), 0.2, 0.3);
+    viewProjection = camera.getViewProjectionMatrix(720/1280.0, Math.PI/2, 1, 20);
+    coord = new Vec4();
+  }
+
+  @Benchmark
+  public double[] projectBatch(){
+    viewProjection.project(xs, ys, zs, 0, vertexes, outX, outY, outZ, outW, 0);
+    return outX;
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Dmatrix.vector=false"})
+  public double[] projectBatchScalar(){
+    viewProjection.project(xs, ys, zs, 0, vertexes, outX, outY, outZ, outW, 0);
+    return outX;
+  }
+
+  @Benchmark
+  public double[] projectEach(){
+    for(int i=0; i<vertexes; i++){
+      viewProjection.transform(xs[i], ys[i], zs[i], coord);
+      outX[i] = coord.getX()/coord.getW();
+      outY[i] = coord.getY()/coord.getW();
+      outZ[i] = coord.getZ()/coord.getW();
+      outW[i] = coord.getW();
+    }
+    return outX;
+  }
+
+  @Benchmark
+  public void projectPoints(Blackhole blackhole){
+    Point point = new Point();
+    for(int i=0; i<vertexes; i++){
+      point.setX(xs[i]);
+      point.setY(ys[i]);
+      point.setZ(zs[i]);
+      blackhole.consume(point.getTransformedPoint(viewProjection));
+    }
+  }
+}
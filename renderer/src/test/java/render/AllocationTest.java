@@ -0,0 +1,149 @@
+package render;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/** Checks that rendering a frame allocates nothing once the renderer has
+ * warmed up. Each kind of scene is rendered in each mode into the same image
+ * for a number of warm up frames, turning the camera a little each frame so
+ * the shapes in view change, then the bytes allocated by the rendering thread
+ * and by the worker threads of its pool are measured over more frames with
+ * ThreadMXBean.getThreadAllocatedBytes. A frame that allocates more than the
+ * threshold fails the build.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+class AllocationTest{
+
+  /** The most bytes a frame may allocate.*/
+  private static final long THRESHOLD = 1024;
+  /** The number of frames rendered before measuring.*/
+  private static final int WARMUP_FRAMES = 1500;
+  /** The number of frames measured.*/
+  private static final int MEASURED_FRAMES = 100;
+
+  /**
+ * Gets every kind of scene in every mode at 1 and 4 threads.
+ * @since 1.1
+ */
+  static Stream<Arguments> cases(){
+    List<Arguments> cases = new ArrayList<Arguments>();
+    for(int parallelism : new int[]{1, 4}){
+      for(RenderMode mode : RenderMode.values()){
+        for(String scene : new String[]{"shapes", "spatial index", "published", "instanced", "levels of detail"}){
+          cases.add(Arguments.of(scene, mode, parallelism));
+        }
+      }
+    }
+    return cases.stream();
+  }
+
+  @ParameterizedTest(name = "{0} {1} {2} threads")
+  @MethodSource("cases")
+  void frameAllocatesNothing(String name, RenderMode mode, int parallelism){
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported(), "Thread allocated memory is not supported by this JVM");
+    threads.setThreadAllocatedMemoryEnabled(true);
+    Scene scene = build(name);
+    OffscreenRenderer renderer = new OffscreenRenderer();
+    renderer.setRenderMode(mode);
+    renderer.setParallelism(parallelism);
+    BufferedImage image = new BufferedImage(320, 180, BufferedImage.TYPE_INT_RGB);
+    Camera camera = scene.getCamera();
+    try{
+      for(int i=0; i<WARMUP_FRAMES; i++){
+        renderFrame(renderer, scene, camera, image, i);
+      }
+      // the pool keeps its workers while it is busy, so those alive now do the measured frames
+      long[] ids = renderingThreads();
+      long most = 0;
+      for(int i=0; i<MEASURED_FRAMES; i++){
+        long before = allocatedBytes(threads, ids);
+        // carries on the sway of the warm up so the camera only sees what it has seen
+        renderFrame(renderer, scene, camera, image, WARMUP_FRAMES+i);
+        most = Math.max(most, allocatedBytes(threads, ids)-before);
+      }
+      assertTrue(most <= THRESHOLD, "a frame allocated "+most+" bytes");
+    }finally{
+      // lets the pool go so the workers of the next case are not counted with those of this one
+      renderer.setParallelism(parallelism == 1 ? 2 : 1);
+    }
+  }
+
+  /**
+ * Builds a Scene by the name of its case.
+ * @since 1.1
+ */
+  private static Scene build(String name){
+    switch(name){
+      case "spatial index":
+        Scene indexed = TestScenes.build(1000);
+        indexed.setSpatialIndexEnabled(true);
+        return indexed;
+      case "published":
+        Scene published = TestScenes.build(1000);
+        published.publish();
+        return published;
+      case "instanced":
+        return TestScenes.buildInstanced(100, false);
+      case "levels of detail":
+        return TestScenes.buildInstanced(100, true);
+      default:
+        return TestScenes.build(1000);
+    }
+  }
+
+  /**
+ * Gets the ids of the calling thread and of every worker thread of a pool
+ * other than the common pool, which are those of the renderer.
+ * @since 1.1
+ */
+  private static long[] renderingThreads(){
+    List<Long> ids = new ArrayList<Long>();
+    ids.add(Thread.currentThread().getId());
+    for(Thread thread : Thread.getAllStackTraces().keySet()){
+      if(thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread)thread).getPool() != ForkJoinPool.commonPool()){
+        ids.add(thread.getId());
+      }
+    }
+    long[] result = new long[ids.size()];
+    for(int i=0; i<result.length; i++){
+      result[i] = ids.get(i);
+    }
+    return result;
+  }
+
+  /**
+ * Adds up the bytes allocated by some threads, one at a time so that adding
+ * them up allocates nothing.
+ * @since 1.1
+ */
+  private static long allocatedBytes(com.sun.management.ThreadMXBean threads, long[] ids){
+    long total = 0;
+    for(long id : ids){
+      total += Math.max(threads.getThreadAllocatedBytes(id), 0);
+    }
+    return total;
+  }
+
+  /**
+ * Turns the camera a little then renders a frame.
+ * @since 1.1
+ */
+  private static void renderFrame(OffscreenRenderer renderer, Scene scene, Camera camera, BufferedImage image, int frame){
+    // sway back and forth so the view stays on the scene
+    camera.changeAngleRelative(0, (frame & 64) == 0 ? 0.002 : -0.002);
+    renderer.render(scene, camera, image);
+  }
+}
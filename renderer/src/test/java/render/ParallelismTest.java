@@ -0,0 +1,78 @@
+package render;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/** Checks that a frame drawn in tiles across a pool of threads has the same
+ * pixels as one drawn on one thread. Each kind of scene is rendered in each
+ * mode from a number of camera angles by a renderer with 1 thread and by one
+ * with 4, and the pixels of every frame are compared.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+class ParallelismTest{
+
+  /** The width of the frames, several tiles across.*/
+  private static final int WIDTH = 640;
+  /** The height of the frames, several tiles down.*/
+  private static final int HEIGHT = 360;
+  /** The number of camera angles compared.*/
+  private static final int FRAMES = 12;
+
+  /**
+ * Gets every kind of scene in every mode, wireframes with and without
+ * antialiasing.
+ * @since 1.1
+ */
+  static Stream<Arguments> cases(){
+    List<Arguments> cases = new ArrayList<Arguments>();
+    for(RenderMode mode : RenderMode.values()){
+      for(String scene : new String[]{"shapes", "levels of detail"}){
+        cases.add(Arguments.of(scene, mode, false));
+        if(mode == RenderMode.WIREFRAME){
+          cases.add(Arguments.of(scene, mode, true));
+        }
+      }
+    }
+    return cases.stream();
+  }
+
+  @ParameterizedTest(name = "{0} {1} antialiased {2}")
+  @MethodSource("cases")
+  void sameWithFourThreads(String name, RenderMode mode, boolean antialiasing){
+    Scene scene = name.equals("shapes") ? TestScenes.build(2000) : TestScenes.buildInstanced(200, true);
+    OffscreenRenderer serial = renderer(mode, antialiasing, 1);
+    OffscreenRenderer parallel = renderer(mode, antialiasing, 4);
+    Camera camera = scene.getCamera();
+    try{
+      for(int i=0; i<FRAMES; i++){
+        // turn far enough each frame that shapes cross the edges of the tiles
+        camera.changeAngleRelative(0.01, 0.05);
+        int[] expected = serial.renderToArray(scene, camera, WIDTH, HEIGHT);
+        int[] actual = parallel.renderToArray(scene, camera, WIDTH, HEIGHT);
+        assertArrayEquals(expected, actual, "frame "+i);
+      }
+    }finally{
+      // shuts the pool down
+      parallel.setParallelism(1);
+    }
+  }
+
+  /**
+ * Makes a renderer that draws in a mode on a number of threads.
+ * @since 1.1
+ */
+  private static OffscreenRenderer renderer(RenderMode mode, boolean antialiasing, int parallelism){
+    OffscreenRenderer renderer = new OffscreenRenderer();
+    renderer.setRenderMode(mode);
+    renderer.setAntialiasing(antialiasing);
+    renderer.setParallelism(parallelism);
+    return renderer;
+  }
+}
@@ -0,0 +1,105 @@
+package render;
+import java.awt.Color;
+import java.util.SplittableRandom;
+import matrix.Matrix4;
+
+/** TestScenes builds small repeatable scenes for the tests, scattered through
+ * a box in front of the camera the way the scenes of the benchmarks are, with
+ * some of it past the render distance so a frame has shapes to cull as well
+ * as shapes to draw.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+final class TestScenes{
+
+  /** The seed of every scene, so every run sees the same one.*/
+  private static final long SEED = 42;
+
+  private TestScenes(){
+  }
+
+  /**
+ * Builds a scene of triangles and squares, one shape in four a square.
+ * @param  shapes The number of shapes in the scene.
+ * @return A new Scene with the camera at (0, 0, -2) looking along z.
+ * @since 1.1
+ */
+  static Scene build(int shapes){
+    SplittableRandom random = new SplittableRandom(SEED);
+    Scene scene = new Scene(new Point(0, 0, -2), 0, 0);
+    for(int i=0; i<shapes; i++){
+      int vertexes = i%4 == 3 ? 4 : 3;
+      double cx = random.nextDouble(-15, 15);
+      double cy = random.nextDouble(-10, 10);
+      double cz = random.nextDouble(0, 30);
+      double size = random.nextDouble(0.1, 1);
+      Point[] points = new Point[vertexes];
+      for(int v=0; v<vertexes; v++){
+        // go round the centre so squares stay convex
+        double angle = 2*Math.PI*v/vertexes;
+        points[v] = new Point(cx+size*Math.cos(angle), cy+size*Math.sin(angle), cz+random.nextDouble(-size, size));
+      }
+      scene.add(new Shape2D(points, new Color(random.nextInt(0x1000000))));
+    }
+    return scene;
+  }
+
+  /**
+ * Builds a scene of spheres, all instances of one Geometry.
+ * @param  instances The number of spheres in the scene.
+ * @param  levelOfDetail Whether the spheres are drawn with four levels of detail.
+ * @return A new Scene with the camera at (0, 0, -2) looking along z.
+ * @since 1.1
+ */
+  static Scene buildInstanced(int instances, boolean levelOfDetail){
+    SplittableRandom random = new SplittableRandom(SEED);
+    Scene scene = new Scene(new Point(0, 0, -2), 0, 0);
+    Geometry sphere = new Geometry(sphere(0.5, 16, 32));
+    LevelOfDetail levels = LevelOfDetail.simplify(sphere, 4, 200);
+    Matrix4 transform = new Matrix4();
+    for(int i=0; i<instances; i++){
+      transform.setTranslation(random.nextDouble(-15, 15), random.nextDouble(-10, 10), random.nextDouble(0, 30));
+      if(levelOfDetail){
+        scene.add(levels, transform);
+      }else{
+        scene.add(sphere, transform);
+      }
+    }
+    return scene;
+  }
+
+  /**
+ * Makes a sphere of quads between rings of latitude, with triangles at the poles.
+ * @since 1.1
+ */
+  private static IndexedMesh sphere(double radius, int rings, int segments){
+    Point[] vertexes = new Point[(rings-1)*segments+2];
+    int top = vertexes.length-2, bottom = vertexes.length-1;
+    for(int r=1; r<rings; r++){
+      double latitude = Math.PI*r/rings;
+      for(int s=0; s<segments; s++){
+        double longitude = 2*Math.PI*s/segments;
+        vertexes[(r-1)*segments+s] = new Point(radius*Math.sin(latitude)*Math.cos(longitude),
+                                               radius*Math.cos(latitude),
+                                               radius*Math.sin(latitude)*Math.sin(longitude));
+      }
+    }
+    vertexes[top] = new Point(0, radius, 0);
+    vertexes[bottom] = new Point(0, -radius, 0);
+    int[][] faces = new int[rings*segments][];
+    int f = 0;
+    for(int s=0; s<segments; s++){
+      int next = (s+1)%segments;
+      faces[f++] = new int[]{top, next, s};
+      for(int r=1; r<rings-1; r++){
+        int a = (r-1)*segments;
+        int b = r*segments;
+        faces[f++] = new int[]{a+s, a+next, b+next, b+s};
+      }
+      faces[f++] = new int[]{bottom, (rings-2)*segments+s, (rings-2)*segments+next};
+    }
+    return new IndexedMesh(vertexes, faces, Color.LIGHT_GRAY);
+  }
+}
@@ -4,7 +4,10 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import render.*;
+import render.io.MeshLoader;
 import matrix.*;
 
 public class RenderDriver{
@@ -14,39 +17,15 @@ public class RenderDriver{
     // make the Scene
     Scene scene = new Scene();
 
-    // make a triangles
-    Shape2D triangle1 = new Shape2D(new Point[] {new Point(0, 0, 0),
-                                                new Point(0, 2, 0),
-                                                new Point(0, 0, 2)});
-
-    Shape2D triangle2 = new Shape2D(new Point[] {new Point(0, 0, 0),
-                                                new Point(0, 2, 0),
-                                                new Point(2, 0, 0)});
-
-    Shape2D triangle3 = new Shape2D(new Point[] {new Point(0, 0, 0),
-                                                new Point(2, 0, 0),
-                                                new Point(0, 0, 2)});
-
-    Shape2D triangle4 = new Shape2D(new Point[] {new Point(2, 0, 0),
-                                                new Point(0, 2, 0),
-                                                new Point(0, 0, 2)});
-
-    // make a triangles
-    Shape2D triangle5 = new Shape2D(new Point[] {new Point(0, 0, 5),
-                                                new Point(0, 2, 5),
-                                                new Point(0, 0, 7)});
-
-    Shape2D triangle6 = new Shape2D(new Point[] {new Point(0, 0, 5),
-                                                new Point(0, 2, 5),
-                                                new Point(2, 0, 5)});
-
-    Shape2D triangle7 = new Shape2D(new Point[] {new Point(0, 0, 5),
-                                                new Point(2, 0, 5),
-                                                new Point(0, 0, 7)});
-
-    Shape2D triangle8 = new Shape2D(new Point[] {new Point(2, 0, 5),
-                                                new Point(0, 2, 5),
-                                                new Point(0, 0, 7)});
+    // make a tetrahedron, the faces share their vertexes and edges
+    Geometry tetrahedron = new Geometry(new IndexedMesh(new Point[] {new Point(0, 0, 0),
+                                                                     new Point(0, 2, 0),
+                                                                     new Point(0, 0, 2),
+                                                                     new Point(2, 0, 0)},
+                                                        new int[][] {{0, 1, 2},
+                                                                     {0, 1, 3},
+                                                                     {0, 3, 2},
+                                                                     {3, 1, 2}}));
 
     // make a cube
     Shape2D square1 = new Shape2D(new Point[] {new Point(4, 0, 0),
@@ -79,15 +58,9 @@ public class RenderDriver{
                                              new Point(0, 20, 0)});
 
 
-    scene.add(triangle1);
-    scene.add(triangle2);
-    scene.add(triangle3);
-    scene.add(triangle4);
-
-    scene.add(triangle5);
-    scene.add(triangle6);
-    scene.add(triangle7);
-    scene.add(triangle8);
+    // draw the tetrahedron twice, the second time further along the z axis
+    scene.add(tetrahedron, new Matrix4());
+    scene.add(tetrahedron, new Matrix4().setTranslation(0, 0, 5));
 
     scene.add(square1);
     scene.add(square2);
@@ -98,39 +71,46 @@ public class RenderDriver{
     scene.add(line2);
     scene.add(line3);
 
+    // load any OBJ or PLY files given on the command line
+    for(String file : args){
+      Path path = Paths.get(file);
+      MeshLoader.forFile(path).load(path, scene);
+    }
+
     // top-level window with a title and a border which redners the scene
     SceneRenderer sceneRenderer = new SceneRenderer(scene);
+    // input only collects movement, it is applied to the camera once per frame
+    CameraInput input = sceneRenderer.getInput();
     sceneRenderer.addKeyListener(new KeyListener(){
       public void keyPressed(KeyEvent e){;}
       public void keyReleased(KeyEvent e){;}
       public void keyTyped(KeyEvent e){
         switch(e.getKeyChar()){
-          case 'w': scene.getCamera().moveFawardByDisplacment(0.5);
-                    sceneRenderer.repaint();
+          case 'w': input.addMovement(0.5, 0);
+                    break;
+          case 's': input.addMovement(-0.5, 0);
+                    break;
+          case 'a': input.addMovement(0, -0.5);
+                    break;
+          case 'd': input.addMovement(0, 0.5);
                     break;
-          case 's': scene.getCamera().moveFawardByDisplacment(-0.5);
-                    sceneRenderer.repaint();
+          case 'j': input.addRotation(0, 0.25);
                     break;
-          case 'a': scene.getCamera().moveRightByDisplacment(-0.5);
-                    sceneRenderer.repaint();
+          case 'l': input.addRotation(0, -0.25);
                     break;
-          case 'd': scene.getCamera().moveRightByDisplacment(0.5);
-                    sceneRenderer.repaint();
+          case 'i': input.addRotation(0.25, 0);
                     break;
-          case 'j': scene.getCamera().changeAngleRelative(0, 0.25);
-                    sceneRenderer.repaint();
+          case 'k': input.addRotation(-0.25, 0);
                     break;
-          case 'l': scene.getCamera().changeAngleRelative(0, -0.25);
-                    sceneRenderer.repaint();
+          case 'o': sceneRenderer.setOverlayVisible(!sceneRenderer.isOverlayVisible());
                     break;
-          case 'i': scene.getCamera().changeAngleRelative(0.25, 0);
-                    sceneRenderer.repaint();
+          case 'p': sceneRenderer.getRenderer().setAntialiasing(!sceneRenderer.getRenderer().isAntialiasing());
                     break;
-          case 'k': scene.getCamera().changeAngleRelative(-0.25, 0);
-                    sceneRenderer.repaint();
+          case 'm': RenderMode[] modes = RenderMode.values();
+                    RenderMode mode = sceneRenderer.getRenderer().getRenderMode();
+                    sceneRenderer.getRenderer().setRenderMode(modes[(mode.ordinal()+1)%modes.length]);
                     break;
         }
-        System.out.println("X: "+scene.getCamera().getLocation().getX()+" Y: "+scene.getCamera().getLocation().getY()+" Z: "+scene.getCamera().getLocation().getZ());
       }
 
     });
@@ -142,9 +122,7 @@ public class RenderDriver{
         e.translatePoint(-mouseLocation[0], -mouseLocation[1]);
         mouseLocation[0] = tempLoc[0];
         mouseLocation[1] = tempLoc[1];
-        System.out.println("pitch: "+scene.getCamera().getPitch()+"Yaw: "+scene.getCamera().getYaw());
-        scene.getCamera().changeAngleRelative(-e.getPoint().getY()/500.0, +e.getPoint().getX()/500.0);
-        sceneRenderer.repaint();
+        input.addRotation(-e.getPoint().getY()/500.0, +e.getPoint().getX()/500.0);
       }
       public void mouseMoved(MouseEvent e){
         ;
@@ -170,8 +148,10 @@ public class RenderDriver{
     sceneRenderer.setSize(1280,720);
     sceneRenderer.setRenderDistance(20);
     sceneRenderer.setScreenDistance(0.1);
+    sceneRenderer.setTargetFrameRate(60);
     sceneRenderer.setVisible(true);
     sceneRenderer.setFocusableWindowState(true);
+    sceneRenderer.start();
   }
 
 }
@@ -1,16 +1,31 @@
 package matrix;
 import java.util.Arrays;
+import java.util.Objects;
 import java.util.Random;
+import java.util.concurrent.RecursiveAction;
 import java.lang.Math;
 
-/** This is a class to represent and perform operations on Matrices.
+/** This is a class to represent and perform operations on Matrices. The
+ * elements are stored row by row in one double[]. Large products are worked out
+ * a tile at a time so the tiles stay in cache, and are spread over the cores
+ * of the common ForkJoinPool.
  * @author      Nathan Jones <nathanjones.ec@gmail.com>
- * @version     1.0
+ * @version     1.1
  * @since       1.0
  */
 
 public class Matrix{
-  private double matrix[][];
+  /** The side of the square tiles mult works on, 64x64 doubles is 32KB.*/
+  private static final int BLOCK = 64;
+  /** The number of multiply-adds above which mult is spread over several threads.*/
+  private static final long PARALLEL_THRESHOLD = 1L << 21;
+  /** The number of multiply-adds below which mult does not bother with tiles.*/
+  private static final long BLOCKED_THRESHOLD = 1L << 15;
+
+  private final int rows;
+  private final int columns;
+  /** The elements row by row, element (n, m) is at n*columns+m.*/
+  private final double[] data;
 
   /**
  * Constructs matrix of doubles with values 0.0 or random values between 1 and -1
@@ -21,13 +36,11 @@ public class Matrix{
  * @since 1.0
  */
   public Matrix(int n, int m, Boolean random){
-    matrix = new double[n][m];
+    this(n, m);
     if(random){
       Random r = new Random();
-      for(int i=0; i<n; i++){
-        for(int j=0; j<m; j++){
-          matrix[i][j] = 2*r.nextDouble()-1;
-        }
+      for(int i=0; i<data.length; i++){
+        data[i] = 2*r.nextDouble()-1;
       }
     }
   }
@@ -40,34 +53,50 @@ public class Matrix{
  * @since 1.0
  */
   public Matrix(int n, int m){
-    matrix = new double[n][m];
+    rows = n;
+    columns = m;
+    data = new double[n*m];
   }
 
   /**
- * Constructs matrix with structure of double array.
+ * Constructs matrix with structure of double array. The elements are copied.
  * @param  matrix A double array representaion of the Matrix.
  * @throws MatrixException Throws MatrixException is the input array is not rectangular
  * @since 1.0
  */
   public Matrix(double[][] matrix){
-    float length = matrix[0].length;
-    for(int i=1; i<matrix.length; i++){
-      if(matrix[i].length != length){
+    this(matrix.length, matrix[0].length);
+    for(int i=0; i<rows; i++){
+      if(matrix[i].length != columns){
         throw new MatrixException("Matrix has to be rectangular.");
       }
+      System.arraycopy(matrix[i], 0, data, i*columns, columns);
     }
-    this.matrix = matrix;
   }
 
   /**
- * Returns the Matrix as a double array.
+ * Returns a copy of the Matrix as a double array.
  * @return Matrix as a double array.
  * @since 1.0
  */
   public double[][] getMatrixAsArray(){
+    double[][] matrix = new double[rows][];
+    for(int i=0; i<rows; i++){
+      matrix[i] = Arrays.copyOfRange(data, i*columns, (i+1)*columns);
+    }
     return matrix;
   }
 
+  /**
+ * Gets the array the elements are stored in, row by row. Element (n, m) is at
+ * n*getColumns()+m. Changes to the array change the Matrix.
+ * @return The elements of the Matrix.
+ * @since 1.1
+ */
+  public double[] getData(){
+    return data;
+  }
+
   /**
  * Gets any element of the Matrix
  * @param  n The row in which the element is.
@@ -76,7 +105,7 @@ public class Matrix{
  * @since 1.0
  */
   public double get(int n, int m){
-    return matrix[n][m];
+    return data[n*columns+Objects.checkIndex(m, columns)];
   }
 
   /**
@@ -86,7 +115,7 @@ public class Matrix{
  * @since 1.0
  */
   public void set(int n, int m, double x){
-    matrix[n][m] = x;
+    data[n*columns+Objects.checkIndex(m, columns)] = x;
   }
 
   /**
@@ -95,18 +124,42 @@ public class Matrix{
  * @since 1.0
  */
   public int[] getSize(){
-    int[] size = {matrix.length, matrix[0].length};
+    int[] size = {rows, columns};
     return size;
   }
 
+  /**
+ * Gets the number of rows of the Matrix.
+ * @return The number of rows.
+ * @since 1.1
+ */
+  public int getRows(){
+    return rows;
+  }
+
+  /**
+ * Gets the number of columns of the Matrix.
+ * @return The number of columns.
+ * @since 1.1
+ */
+  public int getColumns(){
+    return columns;
+  }
+
    /**
   * Converts the Matrix into String form.
   * @return The Matrix in String from.
   * @since 1.0
   */
   public String toString(){
-    String matrixString = Arrays.deepToString(matrix).replaceAll("\\Q], [\\E", "]\n[");
-    return matrixString.substring(1, matrixString.length()-1);
+    StringBuilder matrixString = new StringBuilder();
+    for(int i=0; i<rows; i++){
+      if(i > 0){
+        matrixString.append('\n');
+      }
+      matrixString.append(Arrays.toString(Arrays.copyOfRange(data, i*columns, (i+1)*columns)));
+    }
+    return matrixString.toString();
   }
 
   /**
@@ -119,16 +172,58 @@ public class Matrix{
   * @since 1.0
   */
   public static Matrix add(Matrix x, Matrix y) throws MatrixException{
-    if(x.getSize()[0] != y.getSize()[0] || x.getSize()[1] != y.getSize()[1]) {throw new MatrixException("Dimentions for add do not match");}
-    else{
-      Matrix newMatrix = new Matrix(x.getSize()[0], x.getSize()[1]);
-      for(int i=0; i<x.getSize()[0]; i++){
-        for(int j=0; j<x.getSize()[1]; j++){
-          newMatrix.set(i,j,(x.get(i,j)+y.get(i,j)));
-        }
-      }
-      return newMatrix;
+    return add(x, y, new Matrix(x.rows, x.columns));
+  }
+
+  /**
+  * Performs matrix addition on two matricies and writes the sum into dest.
+  * dest may be the same object as x or y.
+  * @param  x Matrix you want to add.
+  * @param  y Matrix you want to add.
+  * @param  dest The Matrix the sum x+y is written to.
+  * @return dest.
+  * @throws MatrixException Throws MatrixException if the dimentions of the
+  * three matricies dont match.
+  * @since 1.1
+  */
+  public static Matrix add(Matrix x, Matrix y, Matrix dest) throws MatrixException{
+    checkSameSize(x, y, "add");
+    checkSameSize(x, dest, "add");
+    double[] a = x.data, b = y.data, c = dest.data;
+    for(int i=0; i<c.length; i++){
+      c[i] = a[i]+b[i];
     }
+    return dest;
+  }
+
+  /**
+  * Adds a Matrix to this Matrix.
+  * @param  y Matrix you want to add.
+  * @return This Matrix.
+  * @throws MatrixException Throws MatrixException if the dimentions of the two
+  * matricies dont match.
+  * @since 1.1
+  */
+  public Matrix add(Matrix y) throws MatrixException{
+    return add(this, y, this);
+  }
+
+  /**
+  * Adds a Matrix multiplied by a scalar value to this Matrix.
+  * @param  y Matrix you want to add.
+  * @param  s The scalar value y is multiplied by.
+  * @return This Matrix.
+  * @throws MatrixException Throws MatrixException if the dimentions of the two
+  * matricies dont match.
+  * @since 1.1
+  */
+  public Matrix addScaled(Matrix y, double s) throws MatrixException{
+    checkSameSize(this, y, "addScaled");
+    double[] b = y.data;
+    for(int i=0; i<data.length; i++){
+      data[i] += s*b[i];
+    }
+    return this;
   }
 
   /**
@@ -141,16 +236,40 @@ public class Matrix{
   * @since 1.0
   */
   public static Matrix sub(Matrix x, Matrix y) throws MatrixException{
-    if(x.getSize()[0] != y.getSize()[0] || x.getSize()[1] != y.getSize()[1]) {throw new MatrixException("Dimentions for add do not match");}
-    else{
-      Matrix newMatrix = new Matrix(x.getSize()[0], x.getSize()[1]);
-      for(int i=0; i<x.getSize()[0]; i++){
-        for(int j=0; j<x.getSize()[1]; j++){
-          newMatrix.set(i,j,(x.get(i,j)-y.get(i,j)));
-        }
-      }
-      return newMatrix;
+    return sub(x, y, new Matrix(x.rows, x.columns));
+  }
+
+  /**
+  * Performs matrix subtraction on two matricies and writes the differnce into
+  * dest. dest may be the same object as x or y.
+  * @param  x Matrix you want to subtract from.
+  * @param  y Matrix you want to subtract.
+  * @param  dest The Matrix the differnce x-y is written to.
+  * @return dest.
+  * @throws MatrixException Throws MatrixException if the dimentions of the
+  * three matricies dont match.
+  * @since 1.1
+  */
+  public static Matrix sub(Matrix x, Matrix y, Matrix dest) throws MatrixException{
+    checkSameSize(x, y, "sub");
+    checkSameSize(x, dest, "sub");
+    double[] a = x.data, b = y.data, c = dest.data;
+    for(int i=0; i<c.length; i++){
+      c[i] = a[i]-b[i];
     }
+    return dest;
+  }
+
+  /**
+  * Subtracts a Matrix from this Matrix.
+  * @param  y Matrix you want to subtract.
+  * @return This Matrix.
+  * @throws MatrixException Throws MatrixException if the dimentions of the two
+  * matricies dont match.
+  * @since 1.1
+  */
+  public Matrix sub(Matrix y) throws MatrixException{
+    return sub(this, y, this);
   }
 
   /**
@@ -163,19 +282,135 @@ public class Matrix{
   * @since 1.0
   */
   public static Matrix mult(Matrix x, Matrix y) throws MatrixException{
-    if(x.getSize()[1] != y.getSize()[0]) {throw new MatrixException("Dimentions for mult do not match: ("+x.getSize()[0]+", "+x.getSize()[1]+"), ("+y.getSize()[0]+", "+y.getSize()[1]+")");}
-    else{
-      Matrix newMatrix = new Matrix(x.getSize()[0], y.getSize()[1]);
-      for(int i=0; i<x.getSize()[0]; i++){
-        for(int j=0; j<y.getSize()[1]; j++){
-          double cell = 0;
-          for(int k=0; k<x.getSize()[1]; k++){
-            cell += x.get(i, k)*y.get(k, j);
+    checkMultSize(x, y);
+    Matrix newMatrix = new Matrix(x.rows, y.columns);
+    multiply(x, y, newMatrix);
+    return newMatrix;
+  }
+
+  /**
+  * Performs matrix multiplication on two matricies and writes the product into
+  * dest. dest can not be the same object as x or y.
+  * @param  x Matrix you want to multiply.
+  * @param  y Matrix you want to multiply.
+  * @param  dest The Matrix the product x*y is written to.
+  * @return dest.
+  * @throws MatrixException Throws MatrixException if the dimentions of the
+  * matricies dont allow matrix multiplication or dest is x or y.
+  * @since 1.1
+  */
+  public static Matrix mult(Matrix x, Matrix y, Matrix dest) throws MatrixException{
+    checkMultSize(x, y);
+    if(dest.rows != x.rows || dest.columns != y.columns) {throw new MatrixException("Dimentions for mult destination do not match: ("+dest.rows+", "+dest.columns+")");}
+    if(dest == x || dest == y) {throw new MatrixException("Destination for mult can not be one of the matricies multiplied");}
+    Arrays.fill(dest.data, 0);
+    multiply(x, y, dest);
+    return dest;
+  }
+
+  /**
+  * Multiplies x by y into dest, which must hold zeros. Every element is summed
+  * in the same order whichever way the work is split, so the product is the
+  * same however many threads work it out.
+  * @since 1.1
+  */
+  private static void multiply(Matrix x, Matrix y, Matrix dest){
+    long work = (long)x.rows*x.columns*y.columns;
+    if(work < BLOCKED_THRESHOLD){
+      multiplyRows(x, y, dest, 0, x.rows);
+    }else if(work < PARALLEL_THRESHOLD || x.rows <= BLOCK){
+      multiplyBlocked(x, y, dest, 0, x.rows);
+    }else{
+      new MultTask(x, y, dest, 0, x.rows).invoke();
+    }
+  }
+
+  /**
+  * Multiplies a range of rows of x by y into dest, one element at a time.
+  * @since 1.1
+  */
+  private static void multiplyRows(Matrix x, Matrix y, Matrix dest, int from, int to){
+    double[] a = x.data, b = y.data, c = dest.data;
+    int inner = x.columns;
+    int columns = y.columns;
+    for(int i=from; i<to; i++){
+      for(int j=0; j<columns; j++){
+        double cell = 0;
+        for(int k=0; k<inner; k++){
+          cell += a[i*inner+k]*b[k*columns+j];
+        }
+        c[i*columns+j] = cell;
+      }
+    }
+  }
+
+  /**
+  * Multiplies a range of rows of x by y into dest, a tile at a time. Within a
+  * tile rows of y are added to a row of dest for each element of x, so the
+  * innermost loop goes along the arrays in order.
+  * @since 1.1
+  */
+  private static void multiplyBlocked(Matrix x, Matrix y, Matrix dest, int from, int to){
+    double[] a = x.data, b = y.data, c = dest.data;
+    int inner = x.columns;
+    int columns = y.columns;
+    for(int ii=from; ii<to; ii+=BLOCK){
+      int iEnd = Math.min(ii+BLOCK, to);
+      for(int kk=0; kk<inner; kk+=BLOCK){
+        int kEnd = Math.min(kk+BLOCK, inner);
+        for(int jj=0; jj<columns; jj+=BLOCK){
+          int jEnd = Math.min(jj+BLOCK, columns);
+          for(int i=ii; i<iEnd; i++){
+            int row = i*columns;
+            int k = kk;
+            // four rows of y at a time, adding left to right keeps the order
+            // of the sum the same as one at a time
+            for(; k+3<kEnd; k+=4){
+              double e0 = a[i*inner+k], e1 = a[i*inner+k+1], e2 = a[i*inner+k+2], e3 = a[i*inner+k+3];
+              int y0 = k*columns, y1 = y0+columns, y2 = y1+columns, y3 = y2+columns;
+              for(int j=jj; j<jEnd; j++){
+                c[row+j] = c[row+j]+e0*b[y0+j]+e1*b[y1+j]+e2*b[y2+j]+e3*b[y3+j];
+              }
+            }
+            for(; k<kEnd; k++){
+              double element = a[i*inner+k];
+              int yRow = k*columns;
+              for(int j=jj; j<jEnd; j++){
+                c[row+j] += element*b[yRow+j];
+              }
+            }
           }
-          newMatrix.set(i ,j ,cell);
         }
       }
-      return newMatrix;
+    }
+  }
+
+  /** A MultTask works out a range of rows of a product, splitting it in half
+   * on a tile boundary until it is one tile high.*/
+  private static class MultTask extends RecursiveAction{
+    private static final long serialVersionUID = 1L;
+    private final Matrix x, y, dest;
+    private final int from, to;
+
+    MultTask(Matrix x, Matrix y, Matrix dest, int from, int to){
+      this.x = x;
+      this.y = y;
+      this.dest = dest;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute(){
+      if(to-from <= BLOCK){
+        multiplyBlocked(x, y, dest, from, to);
+        return;
+      }
+      int middle = from+((to-from)/BLOCK/2)*BLOCK;
+      if(middle == from){
+        middle += BLOCK;
+      }
+      invokeAll(new MultTask(x, y, dest, from, middle), new MultTask(x, y, dest, middle, to));
     }
   }
 
@@ -187,13 +422,45 @@ public class Matrix{
   * @since 1.0
   */
   public static Matrix scalarMult(Matrix x, double y){
-    Matrix newMatrix = new Matrix(x.getSize()[0], x.getSize()[1]);
-    for(int i=0; i<x.getSize()[0]; i++){
-      for(int j=0; j<x.getSize()[1]; j++){
-        newMatrix.set(i, j, x.get(i, j)*y);
-      }
+    return scalarMult(x, y, new Matrix(x.rows, x.columns));
+  }
+
+  /**
+  * Multiplies a matrix by a scalar value and writes the result into dest. dest
+  * may be the same object as x.
+  * @param  x Matrix you want to multiply.
+  * @param  y The scarlar value you want to multiply the matrix by.
+  * @param  dest The Matrix the product is written to.
+  * @return dest.
+  * @throws MatrixException Throws MatrixException if the dimentions of x and
+  * dest dont match.
+  * @since 1.1
+  */
+  public static Matrix scalarMult(Matrix x, double y, Matrix dest) throws MatrixException{
+    checkSameSize(x, dest, "scalarMult");
+    double[] a = x.data, c = dest.data;
+    for(int i=0; i<c.length; i++){
+      c[i] = a[i]*y;
     }
-    return newMatrix;
+    return dest;
+  }
+
+  /**
+  * Multiplies this Matrix by a scalar value.
+  * @param  y The scarlar value you want to multiply the matrix by.
+  * @return This Matrix.
+  * @since 1.1
+  */
+  public Matrix scalarMult(double y){
+    return scalarMult(this, y, this);
+  }
+
+  private static void checkSameSize(Matrix x, Matrix y, String operation) throws MatrixException{
+    if(x.rows != y.rows || x.columns != y.columns) {throw new MatrixException("Dimentions for "+operation+" do not match: ("+x.rows+", "+x.columns+"), ("+y.rows+", "+y.columns+")");}
+  }
+
+  private static void checkMultSize(Matrix x, Matrix y) throws MatrixException{
+    if(x.columns != y.rows) {throw new MatrixException("Dimentions for mult do not match: ("+x.rows+", "+x.columns+"), ("+y.rows+", "+y.columns+")");}
   }
 
   /**
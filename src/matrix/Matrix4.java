@@ -0,0 +1,333 @@
+package matrix;
+import java.util.Objects;
+
+/** This is a class to represent a 4x4 matrix, such as an affine or projective
+ * transformation in homogeneous coordinates. Unlike Matrix the elements are
+ * held in fields and every operation writes its result into a destination
+ * given by the caller, so no operation allocates. Whole arrays of points can be
+ * transformed in one call, several at a time where the CPU supports it.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class Matrix4{
+  // package-private so the vertex kernels can read them
+  double m00, m01, m02, m03;
+  double m10, m11, m12, m13;
+  double m20, m21, m22, m23;
+  double m30, m31, m32, m33;
+
+  /**
+ * Constructs an identity Matrix4.
+ * @since 1.1
+ */
+  public Matrix4(){
+    setIdentity();
+  }
+
+  /**
+ * Constructs a Matrix4 with the same elements as a 4x4 Matrix.
+ * @param  m A 4x4 Matrix.
+ * @throws MatrixException Throws MatrixException if m is not 4x4.
+ * @since 1.1
+ */
+  public Matrix4(Matrix m){
+    set(m);
+  }
+
+  /**
+ * Sets every element of the Matrix4, given row by row.
+ * @return This Matrix4.
+ * @since 1.1
+ */
+  public Matrix4 set(double m00, double m01, double m02, double m03,
+                     double m10, double m11, double m12, double m13,
+                     double m20, double m21, double m22, double m23,
+                     double m30, double m31, double m32, double m33){
+    this.m00 = m00; this.m01 = m01; this.m02 = m02; this.m03 = m03;
+    this.m10 = m10; this.m11 = m11; this.m12 = m12; this.m13 = m13;
+    this.m20 = m20; this.m21 = m21; this.m22 = m22; this.m23 = m23;
+    this.m30 = m30; this.m31 = m31; this.m32 = m32; this.m33 = m33;
+    return this;
+  }
+
+  /**
+ * Sets the elements to be the same as another Matrix4.
+ * @param  m The Matrix4 to copy.
+ * @return This Matrix4.
+ * @since 1.1
+ */
+  public Matrix4 set(Matrix4 m){
+    return set(m.m00, m.m01, m.m02, m.m03,
+               m.m10, m.m11, m.m12, m.m13,
+               m.m20, m.m21, m.m22, m.m23,
+               m.m30, m.m31, m.m32, m.m33);
+  }
+
+  /**
+ * Sets the elements to be the same as a 4x4 Matrix.
+ * @param  m A 4x4 Matrix.
+ * @return This Matrix4.
+ * @throws MatrixException Throws MatrixException if m is not 4x4.
+ * @since 1.1
+ */
+  public Matrix4 set(Matrix m) throws MatrixException{
+    int[] size = m.getSize();
+    if(size[0] != 4 || size[1] != 4) {throw new MatrixException("Matrix4 needs a 4x4 Matrix: ("+size[0]+", "+size[1]+")");}
+    return set(m.get(0, 0), m.get(0, 1), m.get(0, 2), m.get(0, 3),
+               m.get(1, 0), m.get(1, 1), m.get(1, 2), m.get(1, 3),
+               m.get(2, 0), m.get(2, 1), m.get(2, 2), m.get(2, 3),
+               m.get(3, 0), m.get(3, 1), m.get(3, 2), m.get(3, 3));
+  }
+
+  /**
+ * Sets the Matrix4 to the identity.
+ * @return This Matrix4.
+ * @since 1.1
+ */
+  public Matrix4 setIdentity(){
+    return set(1, 0, 0, 0,
+               0, 1, 0, 0,
+               0, 0, 1, 0,
+               0, 0, 0, 1);
+  }
+
+  /**
+ * Sets the Matrix4 to a translation.
+ * @param  x How far to move along the x axis.
+ * @param  y How far to move along the y axis.
+ * @param  z How far to move along the z axis.
+ * @return This Matrix4.
+ * @since 1.1
+ */
+  public Matrix4 setTranslation(double x, double y, double z){
+    return set(1, 0, 0, x,
+               0, 1, 0, y,
+               0, 0, 1, z,
+               0, 0, 0, 1);
+  }
+
+  /**
+ * Gets any element of the Matrix4.
+ * @param  n The row in which the element is.
+ * @param  m The column in which the element is.
+ * @return The element at location (n, m).
+ * @throws MatrixException Throws MatrixException if (n, m) is outside the Matrix4.
+ * @since 1.1
+ */
+  public double get(int n, int m) throws MatrixException{
+    switch(n*4+m){
+      case 0: return m00;
+      case 1: return m01;
+      case 2: return m02;
+      case 3: return m03;
+      case 4: return m10;
+      case 5: return m11;
+      case 6: return m12;
+      case 7: return m13;
+      case 8: return m20;
+      case 9: return m21;
+      case 10: return m22;
+      case 11: return m23;
+      case 12: return m30;
+      case 13: return m31;
+      case 14: return m32;
+      case 15: return m33;
+      default: throw new MatrixException("No element ("+n+", "+m+") in a Matrix4");
+    }
+  }
+
+  /**
+  * Multiplies two Matrix4s and writes the product into dest. dest may be the
+  * same object as x or y.
+  * @param  x Matrix4 you want to multiply.
+  * @param  y Matrix4 you want to multiply.
+  * @param  dest The Matrix4 the product x*y is written to.
+  * @return dest.
+  * @since 1.1
+  */
+  public static Matrix4 mult(Matrix4 x, Matrix4 y, Matrix4 dest){
+    return dest.set(
+      x.m00*y.m00 + x.m01*y.m10 + x.m02*y.m20 + x.m03*y.m30,
+      x.m00*y.m01 + x.m01*y.m11 + x.m02*y.m21 + x.m03*y.m31,
+      x.m00*y.m02 + x.m01*y.m12 + x.m02*y.m22 + x.m03*y.m32,
+      x.m00*y.m03 + x.m01*y.m13 + x.m02*y.m23 + x.m03*y.m33,
+      x.m10*y.m00 + x.m11*y.m10 + x.m12*y.m20 + x.m13*y.m30,
+      x.m10*y.m01 + x.m11*y.m11 + x.m12*y.m21 + x.m13*y.m31,
+      x.m10*y.m02 + x.m11*y.m12 + x.m12*y.m22 + x.m13*y.m32,
+      x.m10*y.m03 + x.m11*y.m13 + x.m12*y.m23 + x.m13*y.m33,
+      x.m20*y.m00 + x.m21*y.m10 + x.m22*y.m20 + x.m23*y.m30,
+      x.m20*y.m01 + x.m21*y.m11 + x.m22*y.m21 + x.m23*y.m31,
+      x.m20*y.m02 + x.m21*y.m12 + x.m22*y.m22 + x.m23*y.m32,
+      x.m20*y.m03 + x.m21*y.m13 + x.m22*y.m23 + x.m23*y.m33,
+      x.m30*y.m00 + x.m31*y.m10 + x.m32*y.m20 + x.m33*y.m30,
+      x.m30*y.m01 + x.m31*y.m11 + x.m32*y.m21 + x.m33*y.m31,
+      x.m30*y.m02 + x.m31*y.m12 + x.m32*y.m22 + x.m33*y.m32,
+      x.m30*y.m03 + x.m31*y.m13 + x.m32*y.m23 + x.m33*y.m33);
+  }
+
+  /**
+  * Multiplies a Vec4 by this Matrix4 and writes the result into dest. dest may
+  * be the same object as v.
+  * @param  v The Vec4 to transform.
+  * @param  dest The Vec4 the product this*v is written to.
+  * @return dest.
+  * @since 1.1
+  */
+  public Vec4 transform(Vec4 v, Vec4 dest){
+    double x = v.getX();
+    double y = v.getY();
+    double z = v.getZ();
+    double w = v.getW();
+    return dest.set(m00*x + m01*y + m02*z + m03*w,
+                    m10*x + m11*y + m12*z + m13*w,
+                    m20*x + m21*y + m22*z + m23*w,
+                    m30*x + m31*y + m32*z + m33*w);
+  }
+
+  /**
+  * Multiplies the point (x, y, z, 1) by this Matrix4 and writes the result
+  * into dest.
+  * @param  x The x coordinate of the point.
+  * @param  y The y coordinate of the point.
+  * @param  z The z coordinate of the point.
+  * @param  dest The Vec4 the transformed point is written to.
+  * @return dest.
+  * @since 1.1
+  */
+  public Vec4 transform(double x, double y, double z, Vec4 dest){
+    return dest.set(m00*x + m01*y + m02*z + m03,
+                    m10*x + m11*y + m12*z + m13,
+                    m20*x + m21*y + m22*z + m23,
+                    m30*x + m31*y + m32*z + m33);
+  }
+
+  /**
+  * Works out the x coordinate of the point (x, y, z, 1) multiplied by this
+  * Matrix4, the first row of the product, for transforming single points
+  * without a Vec4.
+  * @param  x The x coordinate of the point.
+  * @param  y The y coordinate of the point.
+  * @param  z The z coordinate of the point.
+  * @return The x coordinate of the transformed point.
+  * @since 1.1
+  */
+  public double transformX(double x, double y, double z){
+    return m00*x + m01*y + m02*z + m03;
+  }
+
+  /**
+  * Works out the y coordinate of the point (x, y, z, 1) multiplied by this
+  * Matrix4, the second row of the product.
+  * @param  x The x coordinate of the point.
+  * @param  y The y coordinate of the point.
+  * @param  z The z coordinate of the point.
+  * @return The y coordinate of the transformed point.
+  * @since 1.1
+  */
+  public double transformY(double x, double y, double z){
+    return m10*x + m11*y + m12*z + m13;
+  }
+
+  /**
+  * Works out the z coordinate of the point (x, y, z, 1) multiplied by this
+  * Matrix4, the third row of the product.
+  * @param  x The x coordinate of the point.
+  * @param  y The y coordinate of the point.
+  * @param  z The z coordinate of the point.
+  * @return The z coordinate of the transformed point.
+  * @since 1.1
+  */
+  public double transformZ(double x, double y, double z){
+    return m20*x + m21*y + m22*z + m23;
+  }
+
+  /**
+  * Multiplies the points (x, y, z, 1) held in arrays of coordinates by this
+  * Matrix4. The output arrays may be the input arrays at the same offset, to
+  * transform the points in place.
+  * @param  xs The x coordinates of the points.
+  * @param  ys The y coordinates of the points.
+  * @param  zs The z coordinates of the points.
+  * @param  offset The index of the first point in the input arrays.
+  * @param  count The number of points.
+  * @param  outX The array the transformed x coordinates are written to.
+  * @param  outY The array the transformed y coordinates are written to.
+  * @param  outZ The array the transformed z coordinates are written to.
+  * @param  outW The array the w coordinates are written to, null if they are not wanted.
+  * @param  outOffset The index in the output arrays of the first point.
+  * @throws IndexOutOfBoundsException Throws IndexOutOfBoundsException if a range is outside an array.
+  * @since 1.1
+  */
+  public void transform(double[] xs, double[] ys, double[] zs, int offset, int count,
+                        double[] outX, double[] outY, double[] outZ, double[] outW, int outOffset){
+    checkRanges(xs, ys, zs, offset, count, outX, outY, outZ, outW, outOffset);
+    VertexKernel.INSTANCE.transform(this, xs, ys, zs, offset, count, outX, outY, outZ, outW, outOffset, false);
+  }
+
+  /**
+  * Multiplies the points (x, y, z, 1) held in arrays of coordinates by this
+  * Matrix4 then divides x, y and z by w, as a perspective projection does. w
+  * itself is written undivided. The output arrays may be the input arrays at
+  * the same offset.
+  * @param  xs The x coordinates of the points.
+  * @param  ys The y coordinates of the points.
+  * @param  zs The z coordinates of the points.
+  * @param  offset The index of the first point in the input arrays.
+  * @param  count The number of points.
+  * @param  outX The array the projected x coordinates are written to.
+  * @param  outY The array the projected y coordinates are written to.
+  * @param  outZ The array the projected z coordinates are written to.
+  * @param  outW The array the w coordinates are written to, null if they are not wanted.
+  * @param  outOffset The index in the output arrays of the first point.
+  * @throws IndexOutOfBoundsException Throws IndexOutOfBoundsException if a range is outside an array.
+  * @since 1.1
+  */
+  public void project(double[] xs, double[] ys, double[] zs, int offset, int count,
+                      double[] outX, double[] outY, double[] outZ, double[] outW, int outOffset){
+    checkRanges(xs, ys, zs, offset, count, outX, outY, outZ, outW, outOffset);
+    VertexKernel.INSTANCE.transform(this, xs, ys, zs, offset, count, outX, outY, outZ, outW, outOffset, true);
+  }
+
+  private static void checkRanges(double[] xs, double[] ys, double[] zs, int offset, int count,
+                                  double[] outX, double[] outY, double[] outZ, double[] outW, int outOffset){
+    Objects.checkFromIndexSize(offset, count, Math.min(xs.length, Math.min(ys.length, zs.length)));
+    Objects.checkFromIndexSize(outOffset, count, Math.min(outX.length, Math.min(outY.length, outZ.length)));
+    if(outW != null){
+      Objects.checkFromIndexSize(outOffset, count, outW.length);
+    }
+  }
+
+  /**
+  * Gets whether the array methods transform several points at once with SIMD
+  * instructions. They do when the JVM is started with
+  * --add-modules jdk.incubator.vector.
+  * @return True if the array methods are vectorized.
+  * @since 1.1
+  */
+  public static boolean isBatchVectorized(){
+    return VertexKernel.INSTANCE.isVectorized();
+  }
+
+  /**
+  * Converts the Matrix4 into a general 4x4 Matrix.
+  * @return A new 4x4 Matrix with the same elements.
+  * @since 1.1
+  */
+  public Matrix toMatrix(){
+    return new Matrix(new double[][]{{m00, m01, m02, m03},
+                                     {m10, m11, m12, m13},
+                                     {m20, m21, m22, m23},
+                                     {m30, m31, m32, m33}});
+  }
+
+  /**
+  * Converts the Matrix4 into String form.
+  * @return The Matrix4 in String from.
+  * @since 1.1
+  */
+  public String toString(){
+    return toMatrix().toString();
+  }
+}
@@ -0,0 +1,57 @@
+package matrix;
+
+/** A ScalarVertexKernel transforms one point at a time, adding up each
+ * coordinate in the same order as Matrix4.transform.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+final class ScalarVertexKernel extends VertexKernel{
+
+  @Override
+  void transform(Matrix4 m, double[] xs, double[] ys, double[] zs, int offset, int count,
+                 double[] outX, double[] outY, double[] outZ, double[] outW, int outOffset, boolean divide){
+    transformRange(m, xs, ys, zs, offset, outX, outY, outZ, outW, outOffset, divide, 0, count);
+  }
+
+  /**
+  * Transforms the points from index from up to index to, counted from offset
+  * and outOffset. Used by the vector kernel for the points left over after the
+  * last full vector.
+  * @since 1.1
+  */
+  static void transformRange(Matrix4 m, double[] xs, double[] ys, double[] zs, int offset,
+                             double[] outX, double[] outY, double[] outZ, double[] outW, int outOffset,
+                             boolean divide, int from, int to){
+    double m00 = m.m00, m01 = m.m01, m02 = m.m02, m03 = m.m03;
+    double m10 = m.m10, m11 = m.m11, m12 = m.m12, m13 = m.m13;
+    double m20 = m.m20, m21 = m.m21, m22 = m.m22, m23 = m.m23;
+    double m30 = m.m30, m31 = m.m31, m32 = m.m32, m33 = m.m33;
+    for(int i=from; i<to; i++){
+      double x = xs[offset+i];
+      double y = ys[offset+i];
+      double z = zs[offset+i];
+      double tx = m00*x + m01*y + m02*z + m03;
+      double ty = m10*x + m11*y + m12*z + m13;
+      double tz = m20*x + m21*y + m22*z + m23;
+      double tw = m30*x + m31*y + m32*z + m33;
+      if(divide){
+        tx = tx/tw;
+        ty = ty/tw;
+        tz = tz/tw;
+      }
+      outX[outOffset+i] = tx;
+      outY[outOffset+i] = ty;
+      outZ[outOffset+i] = tz;
+      if(outW != null){
+        outW[outOffset+i] = tw;
+      }
+    }
+  }
+
+  @Override
+  boolean isVectorized(){
+    return false;
+  }
+}
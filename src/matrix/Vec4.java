@@ -0,0 +1,124 @@
+package matrix;
+
+/** This is a class to represent a 4 element column vector, such as a point in
+ * homogeneous coordinates. It is mutable so that one Vec4 can be reused as the
+ * destination of many operations without allocating.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class Vec4{
+  private double x;
+  private double y;
+  private double z;
+  private double w;
+
+  /**
+ * Constructs a Vec4 with all elements 0.0.
+ * @since 1.1
+ */
+  public Vec4(){
+  }
+
+  /**
+ * Constructs a Vec4 with specific elements.
+ * @param  x The first element.
+ * @param  y The second element.
+ * @param  z The third element.
+ * @param  w The fourth element.
+ * @since 1.1
+ */
+  public Vec4(double x, double y, double z, double w){
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    this.w = w;
+  }
+
+  /**
+ * Sets every element of the Vec4.
+ * @param  x The first element.
+ * @param  y The second element.
+ * @param  z The third element.
+ * @param  w The fourth element.
+ * @return This Vec4.
+ * @since 1.1
+ */
+  public Vec4 set(double x, double y, double z, double w){
+    this.x = x;
+    this.y = y;
+    this.z = z;
+    this.w = w;
+    return this;
+  }
+
+  /**
+ * Gets the first element.
+ * @return The first element.
+ * @since 1.1
+ */
+  public double getX(){
+    return x;
+  }
+
+  /**
+ * Gets the second element.
+ * @return The second element.
+ * @since 1.1
+ */
+  public double getY(){
+    return y;
+  }
+
+  /**
+ * Gets the third element.
+ * @return The third element.
+ * @since 1.1
+ */
+  public double getZ(){
+    return z;
+  }
+
+  /**
+ * Gets the fourth element.
+ * @return The fourth element.
+ * @since 1.1
+ */
+  public double getW(){
+    return w;
+  }
+
+  /**
+ * Divides every element by the fourth element so that it becomes 1. This is
+ * the perspective divide of a projected point.
+ * @return This Vec4.
+ * @since 1.1
+ */
+  public Vec4 divideByW(){
+    double inverse = 1/w;
+    x *= inverse;
+    y *= inverse;
+    z *= inverse;
+    w = 1;
+    return this;
+  }
+
+  /**
+ * Converts the Vec4 into a 4x1 Matrix.
+ * @return A new 4x1 Matrix with the same elements.
+ * @since 1.1
+ */
+  public Matrix toMatrix(){
+    return new Matrix(new double[][]{{x}, {y}, {z}, {w}});
+  }
+
+  /**
+  * Converts the Vec4 into String form.
+  * @return The Vec4 in String from.
+  * @since 1.1
+  */
+  public String toString(){
+    return "("+x+", "+y+", "+z+", "+w+")";
+  }
+}
@@ -0,0 +1,62 @@
+package matrix;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/** A VectorVertexKernel transforms as many points at once as fit in the
+ * widest vector the CPU has, using the incubating Vector API. Each lane adds
+ * up its coordinates in the same order as the scalar kernel, without fused
+ * multiply-adds, so the results are exactly the same. It needs the
+ * jdk.incubator.vector module, and is only loaded by VertexKernel when that
+ * is present.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+final class VectorVertexKernel extends VertexKernel{
+
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  VectorVertexKernel(){
+    if(SPECIES.length() < 2){
+      throw new UnsupportedOperationException("No SIMD support for doubles");
+    }
+  }
+
+  @Override
+  void transform(Matrix4 m, double[] xs, double[] ys, double[] zs, int offset, int count,
+                 double[] outX, double[] outY, double[] outZ, double[] outW, int outOffset, boolean divide){
+    double m00 = m.m00, m01 = m.m01, m02 = m.m02, m03 = m.m03;
+    double m10 = m.m10, m11 = m.m11, m12 = m.m12, m13 = m.m13;
+    double m20 = m.m20, m21 = m.m21, m22 = m.m22, m23 = m.m23;
+    double m30 = m.m30, m31 = m.m31, m32 = m.m32, m33 = m.m33;
+    int bound = SPECIES.loopBound(count);
+    int i = 0;
+    for(; i<bound; i+=SPECIES.length()){
+      DoubleVector x = DoubleVector.fromArray(SPECIES, xs, offset+i);
+      DoubleVector y = DoubleVector.fromArray(SPECIES, ys, offset+i);
+      DoubleVector z = DoubleVector.fromArray(SPECIES, zs, offset+i);
+      DoubleVector tx = x.mul(m00).add(y.mul(m01)).add(z.mul(m02)).add(m03);
+      DoubleVector ty = x.mul(m10).add(y.mul(m11)).add(z.mul(m12)).add(m13);
+      DoubleVector tz = x.mul(m20).add(y.mul(m21)).add(z.mul(m22)).add(m23);
+      DoubleVector tw = x.mul(m30).add(y.mul(m31)).add(z.mul(m32)).add(m33);
+      if(divide){
+        tx = tx.div(tw);
+        ty = ty.div(tw);
+        tz = tz.div(tw);
+      }
+      tx.intoArray(outX, outOffset+i);
+      ty.intoArray(outY, outOffset+i);
+      tz.intoArray(outZ, outOffset+i);
+      if(outW != null){
+        tw.intoArray(outW, outOffset+i);
+      }
+    }
+    ScalarVertexKernel.transformRange(m, xs, ys, zs, offset, outX, outY, outZ, outW, outOffset, divide, i, count);
+  }
+
+  @Override
+  boolean isVectorized(){
+    return true;
+  }
+}
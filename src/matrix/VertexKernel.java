@@ -0,0 +1,56 @@
+package matrix;
+
+/** A VertexKernel applies a Matrix4 to arrays of coordinates for the batch
+ * methods of Matrix4. The kernel used is picked once: the one built on the
+ * incubating Vector API if the jdk.incubator.vector module has been added to
+ * the JVM, otherwise a plain scalar loop. Setting the system property
+ * matrix.vector to false always picks the scalar loop.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+abstract class VertexKernel{
+
+  /** The kernel the batch methods of Matrix4 use.*/
+  static final VertexKernel INSTANCE = load();
+
+  /**
+  * Multiplies the points (x, y, z, 1) by a Matrix4. The output arrays may be
+  * the input arrays at the same offset.
+  * @param  m The Matrix4 to apply.
+  * @param  xs The x coordinates of the points.
+  * @param  ys The y coordinates of the points.
+  * @param  zs The z coordinates of the points.
+  * @param  offset The index of the first point in the input arrays.
+  * @param  count The number of points.
+  * @param  outX The array the transformed x coordinates are written to.
+  * @param  outY The array the transformed y coordinates are written to.
+  * @param  outZ The array the transformed z coordinates are written to.
+  * @param  outW The array the w coordinates are written to, null if they are not wanted.
+  * @param  outOffset The index in the output arrays of the first point.
+  * @param  divide Whether to divide x, y and z by w.
+  * @since 1.1
+  */
+  abstract void transform(Matrix4 m, double[] xs, double[] ys, double[] zs, int offset, int count,
+                          double[] outX, double[] outY, double[] outZ, double[] outW, int outOffset, boolean divide);
+
+  /**
+  * Gets whether this kernel works on several points at once.
+  * @return True if it uses SIMD instructions.
+  * @since 1.1
+  */
+  abstract boolean isVectorized();
+
+  private static VertexKernel load(){
+    if(Boolean.parseBoolean(System.getProperty("matrix.vector", "true"))){
+      try{
+        // loaded by name so this class still links when the module is missing
+        return (VertexKernel) Class.forName("matrix.VectorVertexKernel").getDeclaredConstructor().newInstance();
+      }catch(ReflectiveOperationException | LinkageError e){
+        // the Vector API is not available, use the scalar loop
+      }
+    }
+    return new ScalarVertexKernel();
+  }
+}
@@ -0,0 +1,194 @@
+package render;
+
+/** A BoundingBox is a box lined up with the x, y and z axis that contains some
+ * geometry. It is mutable so that it can be worked out again when the geometry
+ * changes without allocating. A BoundingBox that contains nothing is empty.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class BoundingBox{
+
+  /** The smallest x coordinate inside the box.*/
+  private double minX;
+  /** The smallest y coordinate inside the box.*/
+  private double minY;
+  /** The smallest z coordinate inside the box.*/
+  private double minZ;
+  /** The largest x coordinate inside the box.*/
+  private double maxX;
+  /** The largest y coordinate inside the box.*/
+  private double maxY;
+  /** The largest z coordinate inside the box.*/
+  private double maxZ;
+
+  /**
+ * Creates an empty BoundingBox.
+ * @since 1.1
+ */
+  public BoundingBox(){
+    setEmpty();
+  }
+
+  /**
+ * Creates a BoundingBox with specific corners.
+ * @param  minX The smallest x coordinate inside the box.
+ * @param  minY The smallest y coordinate inside the box.
+ * @param  minZ The smallest z coordinate inside the box.
+ * @param  maxX The largest x coordinate inside the box.
+ * @param  maxY The largest y coordinate inside the box.
+ * @param  maxZ The largest z coordinate inside the box.
+ * @since 1.1
+ */
+  public BoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+    set(minX, minY, minZ, maxX, maxY, maxZ);
+  }
+
+  /**
+ * Sets the corners of the BoundingBox.
+ * @param  minX The smallest x coordinate inside the box.
+ * @param  minY The smallest y coordinate inside the box.
+ * @param  minZ The smallest z coordinate inside the box.
+ * @param  maxX The largest x coordinate inside the box.
+ * @param  maxY The largest y coordinate inside the box.
+ * @param  maxZ The largest z coordinate inside the box.
+ * @return This BoundingBox.
+ * @since 1.1
+ */
+  public BoundingBox set(double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+    this.minX = minX;
+    this.minY = minY;
+    this.minZ = minZ;
+    this.maxX = maxX;
+    this.maxY = maxY;
+    this.maxZ = maxZ;
+    return this;
+  }
+
+  /**
+ * Makes the BoundingBox the same as another BoundingBox.
+ * @param  box The BoundingBox to copy.
+ * @return This BoundingBox.
+ * @since 1.1
+ */
+  public BoundingBox set(BoundingBox box){
+    return set(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+  }
+
+  /**
+ * Makes the BoundingBox empty.
+ * @return This BoundingBox.
+ * @since 1.1
+ */
+  public BoundingBox setEmpty(){
+    return set(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+               Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+  }
+
+  /**
+ * Grows the BoundingBox so that it contains a point.
+ * @param  x The x coordinate of the point.
+ * @param  y The y coordinate of the point.
+ * @param  z The z coordinate of the point.
+ * @return This BoundingBox.
+ * @since 1.1
+ */
+  public BoundingBox include(double x, double y, double z){
+    if(x < minX) minX = x;
+    if(y < minY) minY = y;
+    if(z < minZ) minZ = z;
+    if(x > maxX) maxX = x;
+    if(y > maxY) maxY = y;
+    if(z > maxZ) maxZ = z;
+    return this;
+  }
+
+  /**
+ * Grows the BoundingBox so that it contains another BoundingBox.
+ * @param  box The BoundingBox to contain.
+ * @return This BoundingBox.
+ * @since 1.1
+ */
+  public BoundingBox include(BoundingBox box){
+    if(box.minX < minX) minX = box.minX;
+    if(box.minY < minY) minY = box.minY;
+    if(box.minZ < minZ) minZ = box.minZ;
+    if(box.maxX > maxX) maxX = box.maxX;
+    if(box.maxY > maxY) maxY = box.maxY;
+    if(box.maxZ > maxZ) maxZ = box.maxZ;
+    return this;
+  }
+
+  /**
+ * Gets whether the BoundingBox contains nothing.
+ * @return True if the BoundingBox is empty.
+ * @since 1.1
+ */
+  public boolean isEmpty(){
+    return minX > maxX || minY > maxY || minZ > maxZ;
+  }
+
+  /**
+ * Gets the smallest x coordinate inside the box.
+ * @return The smallest x coordinate inside the box.
+ * @since 1.1
+ */
+  public double getMinX(){
+    return minX;
+  }
+
+  /**
+ * Gets the smallest y coordinate inside the box.
+ * @return The smallest y coordinate inside the box.
+ * @since 1.1
+ */
+  public double getMinY(){
+    return minY;
+  }
+
+  /**
+ * Gets the smallest z coordinate inside the box.
+ * @return The smallest z coordinate inside the box.
+ * @since 1.1
+ */
+  public double getMinZ(){
+    return minZ;
+  }
+
+  /**
+ * Gets the largest x coordinate inside the box.
+ * @return The largest x coordinate inside the box.
+ * @since 1.1
+ */
+  public double getMaxX(){
+    return maxX;
+  }
+
+  /**
+ * Gets the largest y coordinate inside the box.
+ * @return The largest y coordinate inside the box.
+ * @since 1.1
+ */
+  public double getMaxY(){
+    return maxY;
+  }
+
+  /**
+ * Gets the largest z coordinate inside the box.
+ * @return The largest z coordinate inside the box.
+ * @since 1.1
+ */
+  public double getMaxZ(){
+    return maxZ;
+  }
+
+  /**
+  * Returns a string representaion of the box in form "[(minX, minY, minZ), (maxX, maxY, maxZ)]".
+  * @return A string representaion of the box.
+  * @since 1.1
+  */
+  public String toString(){
+    return "[("+minX+", "+minY+", "+minZ+"), ("+maxX+", "+maxY+", "+maxZ+")]";
+  }
+}
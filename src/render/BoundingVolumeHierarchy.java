@@ -0,0 +1,709 @@
+package render;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A BoundingVolumeHierarchy is a binary tree of BoundingBoxes over a set of
+ * items, used to find the items in a Frustum, near a point or along a ray
+ * without testing every item. Items are inserted one at a time, each going
+ * next to the node whose box grows the least, so the tree stays useful as a
+ * Scene is built up. The nodes are kept in flat arrays rather than as objects.
+ * @param <T> The type of the items.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class BoundingVolumeHierarchy<T>{
+
+  /** Marks a missing node or item.*/
+  private static final int NONE = -1;
+  /** The number of nodes in a page, as a power of two, changes are copied to copies in.*/
+  private static final int PAGE_SHIFT = 6;
+
+  /** The items in the order they were inserted.*/
+  private final ArrayList<T> items = new ArrayList<T>();
+  /** The leaf node of each item.*/
+  private int[] itemNodes = new int[16];
+
+  /** The corners of the box of each node.*/
+  private double[] minX, minY, minZ, maxX, maxY, maxZ;
+  /** The children of each node, NONE for leaves.*/
+  private int[] left, right;
+  /** The parent of each node, NONE for the root.*/
+  private int[] parent;
+  /** The item of each leaf node, NONE for inner nodes.*/
+  private int[] item;
+  /** The number of node slots in use, including free ones.*/
+  private int nodeCount;
+  /** The first free node slot, the rest are chained through parent.*/
+  private int freeNode = NONE;
+  /** The root of the tree.*/
+  private int root = NONE;
+  /** Holds the nodes still to be visited by the query running on each thread,
+   * so queries on a tree shared between renderers do not get in each other's way.*/
+  private static final ThreadLocal<Traversal> traversals = ThreadLocal.withInitial(Traversal::new);
+  /** The number of times an item has been inserted or moved, so copies can tell they are out of date.*/
+  private int modifications;
+  /** The modification each page of nodes last changed in.*/
+  private int[] pageModifications;
+  /** The tree this one is a copy of, null if it is not one.*/
+  private BoundingVolumeHierarchy<?> copiedFrom;
+  /** The items marked as moved since the tree was last brought up to date, each only once.*/
+  private int[] moved = new int[16];
+  /** The number of items in moved.*/
+  private int movedCount;
+  /** Whether each item is in moved.*/
+  private boolean[] isMoved = new boolean[16];
+
+  /**
+ * Creates an empty BoundingVolumeHierarchy.
+ * @since 1.1
+ */
+  public BoundingVolumeHierarchy(){
+    allocateNodes(32);
+  }
+
+  /**
+ * Reads a BoundingVolumeHierarchy written by write, over items in the same
+ * order as when it was written.
+ * @param  in The snapshot being read.
+ * @param  items The items of the tree, in the order they were inserted.
+ * @throws IOException Throws IOException if the snapshot can not be read,
+ *         does not have the same number of items or links to a node or item
+ *         it does not have.
+ * @since 1.1
+ */
+  BoundingVolumeHierarchy(SnapshotInput in, List<? extends T> items) throws IOException{
+    int itemCount = in.readInt();
+    if(itemCount != items.size()){
+      throw new IOException("Spatial index has "+itemCount+" items, not "+items.size());
+    }
+    this.items.addAll(items);
+    itemNodes = Arrays.copyOf(in.readInts(itemCount), Math.max(itemCount, 16));
+    nodeCount = in.readInt();
+    if(nodeCount < 0){
+      throw new IOException("Spatial index has "+nodeCount+" nodes");
+    }
+    freeNode = in.readInt();
+    root = in.readInt();
+    int capacity = Math.max(nodeCount, 32);
+    minX = in.readDoubles(nodeCount, capacity);
+    minY = in.readDoubles(nodeCount, capacity);
+    minZ = in.readDoubles(nodeCount, capacity);
+    maxX = in.readDoubles(nodeCount, capacity);
+    maxY = in.readDoubles(nodeCount, capacity);
+    maxZ = in.readDoubles(nodeCount, capacity);
+    left = Arrays.copyOf(in.readInts(nodeCount), capacity);
+    right = Arrays.copyOf(in.readInts(nodeCount), capacity);
+    parent = Arrays.copyOf(in.readInts(nodeCount), capacity);
+    item = Arrays.copyOf(in.readInts(nodeCount), capacity);
+    pageModifications = new int[pageOf(capacity-1)+1];
+    if(root < NONE || root >= nodeCount || freeNode < NONE || freeNode >= nodeCount){
+      throw new IOException("Spatial index root or free list is outside its "+nodeCount+" nodes");
+    }
+    for(int i=0; i<itemCount; i++){
+      if(itemNodes[i] < 0 || itemNodes[i] >= nodeCount){
+        throw new IOException("Spatial index item "+i+" has node "+itemNodes[i]+" outside its "+nodeCount+" nodes");
+      }
+    }
+    for(int i=0; i<nodeCount; i++){
+      if(!isNode(left[i]) || !isNode(right[i]) || !isNode(parent[i])){
+        throw new IOException("Spatial index node "+i+" links to a node outside its "+nodeCount+" nodes");
+      }
+      if(item[i] < NONE || item[i] >= itemCount){
+        throw new IOException("Spatial index node "+i+" has item "+item[i]+" outside its "+itemCount+" items");
+      }
+    }
+  }
+
+  /**
+ * Checks whether a node read from a snapshot is one of its nodes or NONE.
+ * @param  node The node.
+ * @return Whether the node is NONE or below nodeCount.
+ * @since 1.1
+ */
+  private boolean isNode(int node){
+    return node >= NONE && node < nodeCount;
+  }
+
+  /**
+ * Writes the nodes of the tree to a snapshot, so it can be read back without
+ * inserting every item again. The items themselves are not written.
+ * @param  out The snapshot being written.
+ * @throws IOException Throws IOException if the snapshot can not be written.
+ * @since 1.1
+ */
+  void write(SnapshotOutput out) throws IOException{
+    out.writeInt(items.size());
+    out.writeInts(itemNodes, items.size());
+    out.writeInt(nodeCount);
+    out.writeInt(freeNode);
+    out.writeInt(root);
+    out.writeDoubles(minX, nodeCount);
+    out.writeDoubles(minY, nodeCount);
+    out.writeDoubles(minZ, nodeCount);
+    out.writeDoubles(maxX, nodeCount);
+    out.writeDoubles(maxY, nodeCount);
+    out.writeDoubles(maxZ, nodeCount);
+    out.writeInts(left, nodeCount);
+    out.writeInts(right, nodeCount);
+    out.writeInts(parent, nodeCount);
+    out.writeInts(item, nodeCount);
+  }
+
+  /**
+ * Inserts an item into the tree.
+ * @param  t The item to insert.
+ * @param  box The box that contains the item.
+ * @return The index of the item, used to update it later.
+ * @since 1.1
+ */
+  public int insert(T t, BoundingBox box){
+    int index = items.size();
+    items.add(t);
+    if(index == itemNodes.length){
+      itemNodes = Arrays.copyOf(itemNodes, index*2);
+    }
+    int leaf = newNode();
+    setBox(leaf, box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+    item[leaf] = index;
+    itemNodes[index] = leaf;
+    insertLeaf(leaf);
+    modifications++;
+    return index;
+  }
+
+  /**
+ * Moves an item to where its box now is in the tree. This must be called when
+ * the geometry of an item changes.
+ * @param  index The index of the item.
+ * @param  box The box that now contains the item.
+ * @since 1.1
+ */
+  public void update(int index, BoundingBox box){
+    int leaf = itemNodes[index];
+    if(minX[leaf] == box.getMinX() && minY[leaf] == box.getMinY() && minZ[leaf] == box.getMinZ()
+       && maxX[leaf] == box.getMaxX() && maxY[leaf] == box.getMaxY() && maxZ[leaf] == box.getMaxZ()){
+      return;
+    }
+    removeLeaf(leaf);
+    setBox(leaf, box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+    insertLeaf(leaf);
+    modifications++;
+  }
+
+  /**
+ * Marks an item as moved, so the owner of the tree knows to update it before
+ * the tree is next searched. Marking it more than once before then does
+ * nothing more.
+ * @param  index The index of the item.
+ * @since 1.1
+ */
+  void markMoved(int index){
+    if(index >= isMoved.length){
+      isMoved = Arrays.copyOf(isMoved, Math.max(index+1, isMoved.length*2));
+    }
+    if(isMoved[index]){
+      return;
+    }
+    isMoved[index] = true;
+    if(movedCount == moved.length){
+      moved = Arrays.copyOf(moved, movedCount*2);
+    }
+    moved[movedCount++] = index;
+  }
+
+  /**
+ * Gets the number of items marked as moved since the marks were last cleared.
+ * @return The number of moved items.
+ * @since 1.1
+ */
+  int getMovedCount(){
+    return movedCount;
+  }
+
+  /**
+ * Gets an item marked as moved.
+ * @param  i Which of the moved items to get, in the order they were marked.
+ * @return The index of the item.
+ * @since 1.1
+ */
+  int getMoved(int i){
+    return moved[i];
+  }
+
+  /**
+ * Clears the marks of the moved items once they have been updated.
+ * @since 1.1
+ */
+  void clearMoved(){
+    for(int i=0; i<movedCount; i++){
+      isMoved[moved[i]] = false;
+    }
+    movedCount = 0;
+  }
+
+  /**
+ * Gets the number of times an item has been inserted or moved.
+ * @return The number of changes made to the tree.
+ * @since 1.1
+ */
+  int getModifications(){
+    return modifications;
+  }
+
+  /**
+ * Makes another tree the same shape as this one over different items, reusing
+ * its arrays where they are big enough. If it was last made a copy of this
+ * tree, only the items inserted and the pages of nodes changed since are
+ * copied.
+ * @param  dest The tree to overwrite.
+ * @param  destItems The items of dest, one for each item of this tree in the same order.
+ * @param <U> The type of the items of dest.
+ * @since 1.1
+ */
+  <U> void copyTo(BoundingVolumeHierarchy<U> dest, List<? extends U> destItems){
+    // items are only ever added, so an earlier copy's are still right
+    boolean changesOnly = dest.copiedFrom == this && dest.items.size() <= items.size()
+                          && dest.modifications <= modifications;
+    int from = changesOnly ? dest.items.size() : 0;
+    if(!changesOnly){
+      dest.items.clear();
+    }
+    for(int i=from; i<items.size(); i++){
+      dest.items.add(destItems.get(i));
+    }
+    if(dest.itemNodes.length < items.size()){
+      dest.itemNodes = Arrays.copyOf(dest.itemNodes, itemNodes.length);
+    }
+    System.arraycopy(itemNodes, from, dest.itemNodes, from, items.size()-from);
+    if(dest.left.length < nodeCount){
+      dest.allocateNodes(left.length);
+    }
+    if(changesOnly){
+      int pages = nodeCount == 0 ? 0 : pageOf(nodeCount-1)+1;
+      for(int page=0; page<pages; page++){
+        if(pageModifications[page] > dest.modifications){
+          int start = page << PAGE_SHIFT;
+          copyNodes(dest, start, Math.min(1 << PAGE_SHIFT, nodeCount-start));
+        }
+      }
+    }else{
+      copyNodes(dest, 0, nodeCount);
+    }
+    dest.nodeCount = nodeCount;
+    dest.freeNode = freeNode;
+    dest.root = root;
+    dest.modifications = modifications;
+    dest.copiedFrom = this;
+  }
+
+  /**
+ * Copies a run of nodes to another tree with room for them.
+ * @param  dest The tree to copy to.
+ * @param  start The first node to copy.
+ * @param  length The number of nodes to copy.
+ * @since 1.1
+ */
+  private void copyNodes(BoundingVolumeHierarchy<?> dest, int start, int length){
+    System.arraycopy(minX, start, dest.minX, start, length);
+    System.arraycopy(minY, start, dest.minY, start, length);
+    System.arraycopy(minZ, start, dest.minZ, start, length);
+    System.arraycopy(maxX, start, dest.maxX, start, length);
+    System.arraycopy(maxY, start, dest.maxY, start, length);
+    System.arraycopy(maxZ, start, dest.maxZ, start, length);
+    System.arraycopy(left, start, dest.left, start, length);
+    System.arraycopy(right, start, dest.right, start, length);
+    System.arraycopy(parent, start, dest.parent, start, length);
+    System.arraycopy(item, start, dest.item, start, length);
+  }
+
+  /**
+ * Gets an item by index.
+ * @param  index The index of the item.
+ * @return The item.
+ * @since 1.1
+ */
+  public T get(int index){
+    return items.get(index);
+  }
+
+  /**
+ * Gets the number of items in the tree.
+ * @return The number of items in the tree.
+ * @since 1.1
+ */
+  public int size(){
+    return items.size();
+  }
+
+  /**
+ * Adds every item whose box could be partly inside a Frustum to a List.
+ * @param  frustum The Frustum to search.
+ * @param  out The List the items are added to.
+ * @since 1.1
+ */
+  public void queryFrustum(Frustum frustum, List<? super T> out){
+    Traversal traversal = traversals.get();
+    traversal.start(root);
+    while(traversal.top > 0){
+      int node = traversal.pop();
+      if(frustum.intersects(minX[node], minY[node], minZ[node], maxX[node], maxY[node], maxZ[node])){
+        visit(node, traversal, out);
+      }
+    }
+  }
+
+  /**
+ * Adds every item whose box comes within a distance of a point to a List.
+ * @param  x The x coordinate of the point.
+ * @param  y The y coordinate of the point.
+ * @param  z The z coordinate of the point.
+ * @param  radius The distance from the point to search.
+ * @param  out The List the items are added to.
+ * @since 1.1
+ */
+  public void queryRadius(double x, double y, double z, double radius, List<? super T> out){
+    double radiusSquared = radius*radius;
+    Traversal traversal = traversals.get();
+    traversal.start(root);
+    while(traversal.top > 0){
+      int node = traversal.pop();
+      double dx = Math.max(Math.max(minX[node]-x, 0), x-maxX[node]);
+      double dy = Math.max(Math.max(minY[node]-y, 0), y-maxY[node]);
+      double dz = Math.max(Math.max(minZ[node]-z, 0), z-maxZ[node]);
+      if(dx*dx+dy*dy+dz*dz <= radiusSquared){
+        visit(node, traversal, out);
+      }
+    }
+  }
+
+  /**
+ * Adds every item whose box is hit by a ray to a List.
+ * @param  x The x coordinate the ray starts at.
+ * @param  y The y coordinate the ray starts at.
+ * @param  z The z coordinate the ray starts at.
+ * @param  dx The x part of the direction of the ray.
+ * @param  dy The y part of the direction of the ray.
+ * @param  dz The z part of the direction of the ray.
+ * @param  length How far along the ray to search, in multiples of the direction.
+ * @param  out The List the items are added to.
+ * @since 1.1
+ */
+  public void queryRay(double x, double y, double z, double dx, double dy, double dz, double length, List<? super T> out){
+    double inverseX = 1/dx;
+    double inverseY = 1/dy;
+    double inverseZ = 1/dz;
+    Traversal traversal = traversals.get();
+    traversal.start(root);
+    while(traversal.top > 0){
+      int node = traversal.pop();
+      // the ray is inside the box between tNear and tFar, along an axis the ray
+      // does not move on it is either always or never inside
+      double tNear = Double.NEGATIVE_INFINITY, tFar = Double.POSITIVE_INFINITY;
+      if(dx != 0){
+        double t1 = (minX[node]-x)*inverseX, t2 = (maxX[node]-x)*inverseX;
+        tNear = Math.min(t1, t2);
+        tFar = Math.max(t1, t2);
+      }else if(x < minX[node] || x > maxX[node]){
+        continue;
+      }
+      if(dy != 0){
+        double t1 = (minY[node]-y)*inverseY, t2 = (maxY[node]-y)*inverseY;
+        tNear = Math.max(tNear, Math.min(t1, t2));
+        tFar = Math.min(tFar, Math.max(t1, t2));
+      }else if(y < minY[node] || y > maxY[node]){
+        continue;
+      }
+      if(dz != 0){
+        double t1 = (minZ[node]-z)*inverseZ, t2 = (maxZ[node]-z)*inverseZ;
+        tNear = Math.max(tNear, Math.min(t1, t2));
+        tFar = Math.min(tFar, Math.max(t1, t2));
+      }else if(z < minZ[node] || z > maxZ[node]){
+        continue;
+      }
+      if(tNear <= tFar && tFar >= 0 && tNear <= length){
+        visit(node, traversal, out);
+      }
+    }
+  }
+
+  /**
+ * Adds the item of a leaf to a List, or pushes the children of an inner node
+ * onto the stack.
+ * @param  node The node being visited.
+ * @param  traversal The nodes still to be visited.
+ * @param  out The List the items are added to.
+ * @since 1.1
+ */
+  private void visit(int node, Traversal traversal, List<? super T> out){
+    if(item[node] != NONE){
+      out.add(items.get(item[node]));
+      return;
+    }
+    traversal.push(left[node]);
+    traversal.push(right[node]);
+  }
+
+  /**
+ * Inserts a leaf next to the node whose box grows the least by containing it.
+ * @param  leaf The leaf to insert.
+ * @since 1.1
+ */
+  private void insertLeaf(int leaf){
+    if(root == NONE){
+      root = leaf;
+      parent[leaf] = NONE;
+      touch(leaf);
+      return;
+    }
+
+    // walk down to the best sibling, comparing the cost of pairing with the
+    // current node against the cost of going into either child
+    int sibling = root;
+    while(item[sibling] == NONE){
+      double area = area(sibling);
+      double combinedArea = combinedArea(sibling, leaf);
+      double cost = 2*combinedArea;
+      double inheritanceCost = 2*(combinedArea-area);
+      double costLeft = descendCost(left[sibling], leaf)+inheritanceCost;
+      double costRight = descendCost(right[sibling], leaf)+inheritanceCost;
+      if(cost < costLeft && cost < costRight){
+        break;
+      }
+      sibling = costLeft < costRight ? left[sibling] : right[sibling];
+    }
+
+    // put a new parent above the sibling and the leaf
+    int oldParent = parent[sibling];
+    int newParent = newNode();
+    touch(sibling);
+    touch(leaf);
+    if(oldParent != NONE){
+      touch(oldParent);
+    }
+    parent[newParent] = oldParent;
+    left[newParent] = sibling;
+    right[newParent] = leaf;
+    parent[sibling] = newParent;
+    parent[leaf] = newParent;
+    if(oldParent == NONE){
+      root = newParent;
+    }else if(left[oldParent] == sibling){
+      left[oldParent] = newParent;
+    }else{
+      right[oldParent] = newParent;
+    }
+    refit(newParent);
+  }
+
+  /**
+ * Works out the cost of putting a leaf somewhere under a node.
+ * @param  node The node to put the leaf under.
+ * @param  leaf The leaf being inserted.
+ * @return The surface area added by putting the leaf under the node.
+ * @since 1.1
+ */
+  private double descendCost(int node, int leaf){
+    if(item[node] != NONE){
+      return combinedArea(node, leaf);
+    }
+    return combinedArea(node, leaf)-area(node);
+  }
+
+  /**
+ * Takes a leaf out of the tree, leaving its node slot in use.
+ * @param  leaf The leaf to remove.
+ * @since 1.1
+ */
+  private void removeLeaf(int leaf){
+    if(leaf == root){
+      root = NONE;
+      return;
+    }
+    int oldParent = parent[leaf];
+    int grandParent = parent[oldParent];
+    int sibling = left[oldParent] == leaf ? right[oldParent] : left[oldParent];
+    touch(sibling);
+    if(grandParent == NONE){
+      root = sibling;
+      parent[sibling] = NONE;
+    }else{
+      if(left[grandParent] == oldParent){
+        left[grandParent] = sibling;
+      }else{
+        right[grandParent] = sibling;
+      }
+      parent[sibling] = grandParent;
+      touch(grandParent);
+      refit(grandParent);
+    }
+    freeNode(oldParent);
+  }
+
+  /**
+ * Works out the boxes of a node and every node above it from their children.
+ * @param  node The lowest node to work out.
+ * @since 1.1
+ */
+  private void refit(int node){
+    while(node != NONE){
+      int l = left[node];
+      int r = right[node];
+      setBox(node, Math.min(minX[l], minX[r]), Math.min(minY[l], minY[r]), Math.min(minZ[l], minZ[r]),
+                   Math.max(maxX[l], maxX[r]), Math.max(maxY[l], maxY[r]), Math.max(maxZ[l], maxZ[r]));
+      node = parent[node];
+    }
+  }
+
+  /**
+ * Works out half the surface area of the box of a node.
+ * @param  node The node.
+ * @return Half the surface area of the box.
+ * @since 1.1
+ */
+  private double area(int node){
+    double x = maxX[node]-minX[node];
+    double y = maxY[node]-minY[node];
+    double z = maxZ[node]-minZ[node];
+    return x*y+y*z+z*x;
+  }
+
+  /**
+ * Works out half the surface area of the box that contains two nodes.
+ * @param  a The first node.
+ * @param  b The second node.
+ * @return Half the surface area of the combined box.
+ * @since 1.1
+ */
+  private double combinedArea(int a, int b){
+    double x = Math.max(maxX[a], maxX[b])-Math.min(minX[a], minX[b]);
+    double y = Math.max(maxY[a], maxY[b])-Math.min(minY[a], minY[b]);
+    double z = Math.max(maxZ[a], maxZ[b])-Math.min(minZ[a], minZ[b]);
+    return x*y+y*z+z*x;
+  }
+
+  /**
+ * Sets the box of a node.
+ * @since 1.1
+ */
+  private void setBox(int node, double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+    touch(node);
+    this.minX[node] = minX;
+    this.minY[node] = minY;
+    this.minZ[node] = minZ;
+    this.maxX[node] = maxX;
+    this.maxY[node] = maxY;
+    this.maxZ[node] = maxZ;
+  }
+
+  /**
+ * Gets an unused node slot, growing the arrays when there is none.
+ * @return The new node, with no parent, children or item.
+ * @since 1.1
+ */
+  private int newNode(){
+    int node;
+    if(freeNode != NONE){
+      node = freeNode;
+      freeNode = parent[node];
+    }else{
+      if(nodeCount == left.length){
+        allocateNodes(nodeCount*2);
+      }
+      node = nodeCount++;
+    }
+    parent[node] = NONE;
+    left[node] = NONE;
+    right[node] = NONE;
+    item[node] = NONE;
+    touch(node);
+    return node;
+  }
+
+  /**
+ * Puts a node slot back on the free list.
+ * @param  node The node to free.
+ * @since 1.1
+ */
+  private void freeNode(int node){
+    parent[node] = freeNode;
+    item[node] = NONE;
+    freeNode = node;
+    touch(node);
+  }
+
+  /**
+ * Marks the page of a node as changed by the modification being made, so
+ * copies know to copy it.
+ * @param  node The node being changed.
+ * @since 1.1
+ */
+  private void touch(int node){
+    pageModifications[pageOf(node)] = modifications+1;
+  }
+
+  /**
+ * Gets the page a node is in.
+ * @param  node The node.
+ * @return The page of the node.
+ * @since 1.1
+ */
+  private static int pageOf(int node){
+    return node >>> PAGE_SHIFT;
+  }
+
+  /**
+ * Grows the node arrays.
+ * @param  capacity The number of nodes to make room for.
+ * @since 1.1
+ */
+  private void allocateNodes(int capacity){
+    if(left == null){
+      minX = new double[capacity]; minY = new double[capacity]; minZ = new double[capacity];
+      maxX = new double[capacity]; maxY = new double[capacity]; maxZ = new double[capacity];
+      left = new int[capacity]; right = new int[capacity]; parent = new int[capacity]; item = new int[capacity];
+      pageModifications = new int[pageOf(capacity-1)+1];
+      return;
+    }
+    minX = Arrays.copyOf(minX, capacity); minY = Arrays.copyOf(minY, capacity); minZ = Arrays.copyOf(minZ, capacity);
+    maxX = Arrays.copyOf(maxX, capacity); maxY = Arrays.copyOf(maxY, capacity); maxZ = Arrays.copyOf(maxZ, capacity);
+    left = Arrays.copyOf(left, capacity); right = Arrays.copyOf(right, capacity);
+    parent = Arrays.copyOf(parent, capacity); item = Arrays.copyOf(item, capacity);
+    pageModifications = Arrays.copyOf(pageModifications, pageOf(capacity-1)+1);
+  }
+
+  /** A Traversal is the stack of nodes still to be visited by a query, kept
+   * by each thread and reused by every query it runs.*/
+  private static final class Traversal{
+    /** The nodes still to be visited.*/
+    int[] stack = new int[64];
+    /** The number of nodes on the stack.*/
+    int top;
+
+    /** Empties the stack, left over from a query that did not finish, then
+     * pushes the node a query starts from.*/
+    void start(int node){
+      top = 0;
+      push(node);
+    }
+
+    /** Pushes a node onto the stack if it exists.*/
+    void push(int node){
+      if(node == NONE){
+        return;
+      }
+      if(top == stack.length){
+        stack = Arrays.copyOf(stack, top*2);
+      }
+      stack[top++] = node;
+    }
+
+    /** Takes the last node pushed off the stack.*/
+    int pop(){
+      return stack[--top];
+    }
+  }
+}
@@ -1,7 +1,10 @@
 package render;
 import java.lang.Math;
+import matrix.*;
 
-/** The Camera is the view point of the user in the scene
+/** The Camera is the view point of the user in the scene. It keeps a version
+ * number that goes up every time it is moved or turned, and caches its view
+ * and view-projection matrices so they are only rebuilt after a change.
  * @author      Nathan Jones <nathanjones.ec@gmail.com>
  * @version     1.0
  * @since       1.0
@@ -15,6 +18,22 @@ public class Camera{
   private double pitch;
   /** Represents direction the Camera is looking as a rotation around y axis.*/
   private double yaw;
+  /** Goes up by one every time the Camera is moved or turned.*/
+  private long version;
+  /** The location the Camera was at when the version last changed.*/
+  private double versionX, versionY, versionZ;
+  /** The transformation from the Scene into the coordinates of the Camera.*/
+  private final Matrix4 viewMatrix = new Matrix4();
+  /** The version the view matrix was built for.*/
+  private long viewVersion = -1;
+  /** The view matrix followed by the projection onto the screen.*/
+  private final Matrix4 viewProjectionMatrix = new Matrix4();
+  /** Holds the projection onto the screen while building viewProjectionMatrix.*/
+  private final Matrix4 projectionMatrix = new Matrix4();
+  /** The version the view-projection matrix was built for.*/
+  private long viewProjectionVersion = -1;
+  /** The viewport the view-projection matrix was built for.*/
+  private double viewportAspectRatio, viewportFov, viewportScreenDistance, viewportRenderDistance;
 
   /**
  * Creates a Camera with location (0, 0, 0) facing along the z axis
@@ -61,6 +80,7 @@ public class Camera{
     location.setX(location.getX()+x);
     location.setY(location.getY()+y);
     location.setZ(location.getZ()+z);
+    changed();
   }
 
   /**
@@ -74,6 +94,7 @@ public class Camera{
     location.setX(x);
     location.setY(y);
     location.setZ(z);
+    changed();
   }
 
   /**
@@ -83,6 +104,7 @@ public class Camera{
  */
   public void setLocation(Point location){
     this.location = location;
+    changed();
   }
 
   /**
@@ -94,6 +116,7 @@ public class Camera{
     location.setX(location.getX()+x*Math.cos(pitch)*Math.sin(yaw));
     location.setY(location.getY()+x*Math.sin(pitch));
     location.setZ(location.getZ()+x*Math.cos(pitch)*Math.cos(yaw));
+    changed();
   }
 
   /**
@@ -106,6 +129,7 @@ public class Camera{
     location.setX(location.getX()+x*Math.cos(pitch)*Math.sin(yaw+piOver2));
 
     location.setZ(location.getZ()+x*Math.cos(pitch)*Math.cos(yaw+piOver2));
+    changed();
   }
 
   /**
@@ -126,6 +150,7 @@ public class Camera{
   public void changeAngleRelative(double x, double y){
     pitch += x;
     yaw += y;
+    changed();
   }
 
   /**
@@ -135,6 +160,7 @@ public class Camera{
   */
   public void setPitch(double x){
     pitch = x;
+    changed();
   }
 
   /**
@@ -144,6 +170,7 @@ public class Camera{
   */
   public void setYaw(double x){
     yaw = x;
+    changed();
   }
 
   /**
@@ -164,4 +191,80 @@ public class Camera{
     return yaw;
   }
 
+  /**
+ * Gets the version of the Camera. It goes up every time the Camera is moved or
+ * turned, including when the Point returned by getLocation() is changed
+ * directly.
+ * @return The version of the Camera.
+ * @since 1.1
+ */
+  public long getVersion(){
+    if(location.getX() != versionX || location.getY() != versionY || location.getZ() != versionZ){
+      changed();
+    }
+    return version;
+  }
+
+  /**
+ * Gets the transformation from the Scene into the coordinates of the Camera,
+ * where the Camera is at the origin looking along the z axis. The Matrix4 is
+ * owned by the Camera and is only rebuilt when the Camera changes so it must
+ * not be modified.
+ * @return The view matrix of the Camera.
+ * @since 1.1
+ */
+  public Matrix4 getViewMatrix(){
+    long currentVersion = getVersion();
+    if(viewVersion != currentVersion){
+      Shape2D.makeViewMatrix(location, pitch, -yaw, viewMatrix);
+      viewVersion = currentVersion;
+    }
+    return viewMatrix;
+  }
+
+  /**
+ * Gets the view matrix followed by the perspective projection onto a screen.
+ * The fourth element of a transformed point is its z coordinate relative to
+ * the Camera, dividing by it gives coordinates where the visible part of the
+ * screen is from -0.5 to 0.5. The Matrix4 is owned by the Camera and is only
+ * rebuilt when the Camera or the viewport changes so it must not be modified.
+ * @param  aspectRatio The height of the screen divided by its width.
+ * @param  fov The feild of view in radians.
+ * @param  screenDistance The distance from the camera/eye to the screen.
+ * @param  renderDistance The furthest object that is to be rendered.
+ * @return The view-projection matrix of the Camera.
+ * @since 1.1
+ */
+  public Matrix4 getViewProjectionMatrix(double aspectRatio, double fov, double screenDistance, double renderDistance){
+    long currentVersion = getVersion();
+    if(viewProjectionVersion != currentVersion || aspectRatio != viewportAspectRatio || fov != viewportFov
+       || screenDistance != viewportScreenDistance || renderDistance != viewportRenderDistance){
+      double fovNormaliser = 1/Math.tan(fov/2);
+      double zNormaliser = (renderDistance/(renderDistance/screenDistance));
+      projectionMatrix.set(
+        aspectRatio*fovNormaliser, 0.0, 0.0, 0.0,
+        0.0, aspectRatio*fovNormaliser, 0.0, 0.0,
+        0.0, 0.0, zNormaliser, -zNormaliser*screenDistance,
+        0.0, 0.0, 1.0, 0.0);
+      Matrix4.mult(projectionMatrix, getViewMatrix(), viewProjectionMatrix);
+      viewProjectionVersion = currentVersion;
+      viewportAspectRatio = aspectRatio;
+      viewportFov = fov;
+      viewportScreenDistance = screenDistance;
+      viewportRenderDistance = renderDistance;
+    }
+    return viewProjectionMatrix;
+  }
+
+  /**
+ * Records that the Camera has moved or turned.
+ * @since 1.1
+ */
+  private void changed(){
+    version++;
+    versionX = location.getX();
+    versionY = location.getY();
+    versionZ = location.getZ();
+  }
+
 }
@@ -0,0 +1,74 @@
+package render;
+
+/** A CameraInput collects the movement asked for by input events so that it
+ * can be applied to a Camera once per frame. Events can be added from any
+ * thread, and however many arrive during a frame the Camera only changes once.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class CameraInput{
+
+  /** The distance to move in the direction the camera is facing.*/
+  private double forward;
+  /** The distance to move to the right of the direction the camera is facing.*/
+  private double right;
+  /** The angle to turn around the x axis.*/
+  private double pitch;
+  /** The angle to turn around the y axis.*/
+  private double yaw;
+
+  /**
+ * Adds movement relative to the direction the camera is facing.
+ * @param  forward The displacment forward.
+ * @param  right The displacment to the right.
+ * @since 1.1
+ */
+  public synchronized void addMovement(double forward, double right){
+    this.forward += forward;
+    this.right += right;
+  }
+
+  /**
+ * Adds a change to the direction the camera is facing.
+ * @param  pitch The anlge to turn around the x axis.
+ * @param  yaw The anlge to turn around the y axis.
+ * @since 1.1
+ */
+  public synchronized void addRotation(double pitch, double yaw){
+    this.pitch += pitch;
+    this.yaw += yaw;
+  }
+
+  /**
+ * Applies everything added since the last call to a Camera, turning it before
+ * moving it, then starts collecting again.
+ * @param  camera The Camera to move.
+ * @return True if the Camera was changed.
+ * @since 1.1
+ */
+  public boolean applyTo(Camera camera){
+    double forward, right, pitch, yaw;
+    synchronized(this){
+      forward = this.forward;
+      right = this.right;
+      pitch = this.pitch;
+      yaw = this.yaw;
+      this.forward = 0;
+      this.right = 0;
+      this.pitch = 0;
+      this.yaw = 0;
+    }
+    if(pitch != 0 || yaw != 0){
+      camera.changeAngleRelative(pitch, yaw);
+    }
+    if(forward != 0){
+      camera.moveFawardByDisplacment(forward);
+    }
+    if(right != 0){
+      camera.moveRightByDisplacment(right);
+    }
+    return forward != 0 || right != 0 || pitch != 0 || yaw != 0;
+  }
+}
@@ -0,0 +1,152 @@
+package render;
+import java.util.Arrays;
+
+/** A DepthOrder is the order the primitives of a ProjectedFrame are painted
+ * in for RenderMode.PAINTER, furthest first. Each primitive gets a long key,
+ * the mean depth of its vertexes in the high half and the order it was
+ * projected in in the low half, and the keys are put in order with a radix
+ * sort of the high halves a byte at a time. The sort is stable so primitives
+ * at the same depth keep the order they were projected in, and it neither
+ * compares nor boxes anything, so it stays linear in the number of
+ * primitives. The arrays are kept from frame to frame so that it only
+ * allocates while they grow.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+final class DepthOrder{
+
+  /** The number of bits sorted in each pass.*/
+  private static final int RADIX_BITS = 8;
+  /** The number of buckets of each pass.*/
+  private static final int RADIX = 1 << RADIX_BITS;
+  /** The number of passes, enough to sort the 32 bits of depth.*/
+  private static final int PASSES = 32/RADIX_BITS;
+
+  /** The key of each primitive, in order once sorted.*/
+  private long[] keys = new long[64];
+  /** Where the keys are put by each pass of the sort.*/
+  private long[] sorted = new long[64];
+  /** The chunk of each primitive, in the order they were projected.*/
+  private int[] chunks = new int[64];
+  /** The index in its batch of each primitive in the order they were
+   * projected, negated less one for lines.*/
+  private int[] primitives = new int[64];
+  /** How many keys have each value of each byte sorted on.*/
+  private final int[] counts = new int[PASSES*RADIX];
+  /** The number of primitives.*/
+  private int size;
+
+  /**
+ * Puts the polygons and lines of every batch of a frame in order, furthest first.
+ * @param  frame The projected frame.
+ * @since 1.1
+ */
+  void sort(ProjectedFrame frame){
+    size = 0;
+    for(int chunk=0; chunk<=frame.getChunks(); chunk++){
+      DrawBatch batch = frame.getBatch(chunk);
+      float[] vertexes = batch.getPolygonVertexes();
+      int[] starts = batch.getPolygonStarts();
+      int[] sizes = batch.getPolygonSizes();
+      for(int i=0; i<batch.getPolygonCount(); i++){
+        float sum = 0;
+        for(int v=starts[i]+2, end=starts[i]+sizes[i]*3; v<end; v+=3){
+          sum += vertexes[v];
+        }
+        add(chunk, i, sum/sizes[i]);
+      }
+      float[] depths = batch.getLineDepths();
+      for(int i=0; i<batch.getLineCount(); i++){
+        add(chunk, -i-1, (depths[i*2]+depths[i*2+1])*0.5f);
+      }
+    }
+    radixSort();
+  }
+
+  /**
+ * Adds a primitive with its key, growing the arrays if they are full.
+ * @since 1.1
+ */
+  private void add(int chunk, int primitive, float depth){
+    if(size == keys.length){
+      keys = Arrays.copyOf(keys, size*2);
+      sorted = new long[size*2];
+      chunks = Arrays.copyOf(chunks, size*2);
+      primitives = Arrays.copyOf(primitives, size*2);
+    }
+    // the bits of a float ordered as ints, then flipped so the furthest comes first
+    int bits = Float.floatToIntBits(depth);
+    bits ^= (bits >> 31) & 0x7FFFFFFF;
+    long high = (bits ^ Integer.MAX_VALUE) & 0xFFFFFFFFL;
+    keys[size] = high << 32 | size;
+    chunks[size] = chunk;
+    primitives[size] = primitive;
+    size++;
+  }
+
+  /**
+ * Sorts the keys on their high halves with a least significant digit radix
+ * sort, counting every byte in one pass over the keys and skipping the bytes
+ * that are the same for every key.
+ * @since 1.1
+ */
+  private void radixSort(){
+    Arrays.fill(counts, 0);
+    for(int i=0; i<size; i++){
+      long key = keys[i];
+      for(int pass=0; pass<PASSES; pass++){
+        counts[pass*RADIX+(int)(key >>> (32+pass*RADIX_BITS) & (RADIX-1))]++;
+      }
+    }
+    for(int pass=0; pass<PASSES; pass++){
+      int base = pass*RADIX;
+      int shift = 32+pass*RADIX_BITS;
+      if(counts[base+(int)(keys[0] >>> shift & (RADIX-1))] == size){
+        continue;
+      }
+      // turn the counts into where each bucket starts
+      int total = 0;
+      for(int b=base; b<base+RADIX; b++){
+        int count = counts[b];
+        counts[b] = total;
+        total += count;
+      }
+      for(int i=0; i<size; i++){
+        long key = keys[i];
+        sorted[counts[base+(int)(key >>> shift & (RADIX-1))]++] = key;
+      }
+      long[] t = keys; keys = sorted; sorted = t;
+    }
+  }
+
+  /**
+ * Gets the number of primitives in order.
+ * @return The number of polygons and lines.
+ * @since 1.1
+ */
+  int size(){
+    return size;
+  }
+
+  /**
+ * Gets the chunk of a primitive.
+ * @param  i Where the primitive is in the order, 0 for the furthest.
+ * @return The chunk whose batch holds the primitive.
+ * @since 1.1
+ */
+  int getChunk(int i){
+    return chunks[(int)keys[i]];
+  }
+
+  /**
+ * Gets the index of a primitive in its batch.
+ * @param  i Where the primitive is in the order, 0 for the furthest.
+ * @return The index of the polygon, or of the line negated less one.
+ * @since 1.1
+ */
+  int getPrimitive(int i){
+    return primitives[(int)keys[i]];
+  }
+}
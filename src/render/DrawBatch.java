@@ -0,0 +1,194 @@
+package render;
+import java.util.Arrays;
+
+/** A DrawBatch holds the primitives worked out by projecting some shapes onto
+ * the screen, ready to be drawn. Lines are packed into one float[] as screen
+ * coordinates (x0, y0, x1, y1), left unrounded so the rasterizers can clip
+ * them before working out their pixels, and polygons into one float[] as screen
+ * coordinates and depths (x, y, depth) with tables of where each polygon
+ * starts, how many vertexes it has and its color. A DrawBatch is cleared and
+ * reused from frame to frame so that it only allocates while it grows.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class DrawBatch{
+
+  /** The end points of each line packed as x0, y0, x1, y1.*/
+  private float[] lines = new float[64];
+  /** The depth of each end of each line packed as depth0, depth1.*/
+  private float[] lineDepths = new float[32];
+  /** The packed RGB color of each line.*/
+  private int[] lineColors = new int[16];
+  /** The number of lines in the batch.*/
+  private int lineCount;
+  /** The vertexes of every polygon packed as x, y, depth.*/
+  private float[] polygonVertexes = new float[96];
+  /** The number of floats of polygonVertexes in use.*/
+  private int polygonVertexesUsed;
+  /** The index in polygonVertexes of the first vertex of each polygon.*/
+  private int[] polygonStarts = new int[8];
+  /** The number of vertexes of each polygon.*/
+  private int[] polygonSizes = new int[8];
+  /** The packed RGB color of each polygon.*/
+  private int[] polygonColors = new int[8];
+  /** The number of polygons in the batch.*/
+  private int polygonCount;
+
+  /**
+ * Removes every primitive from the batch.
+ * @since 1.1
+ */
+  public void clear(){
+    lineCount = 0;
+    polygonCount = 0;
+    polygonVertexesUsed = 0;
+  }
+
+  /**
+ * Adds a line to the batch.
+ * @param  x0 The x coordinate on screen of the start of the line.
+ * @param  y0 The y coordinate on screen of the start of the line.
+ * @param  x1 The x coordinate on screen of the end of the line.
+ * @param  y1 The y coordinate on screen of the end of the line.
+ * @since 1.1
+ */
+  public void addLine(float x0, float y0, float x1, float y1){
+    addLine(x0, y0, 0, x1, y1, 0, 0xFFFFFF);
+  }
+
+  /**
+ * Adds a line with a depth at each end and a color to the batch.
+ * @param  x0 The x coordinate on screen of the start of the line.
+ * @param  y0 The y coordinate on screen of the start of the line.
+ * @param  depth0 The depth of the start of the line.
+ * @param  x1 The x coordinate on screen of the end of the line.
+ * @param  y1 The y coordinate on screen of the end of the line.
+ * @param  depth1 The depth of the end of the line.
+ * @param  color The packed RGB color of the line.
+ * @since 1.1
+ */
+  public void addLine(float x0, float y0, float depth0, float x1, float y1, float depth1, int color){
+    if(lineCount == lineColors.length){
+      lines = Arrays.copyOf(lines, lineCount*8);
+      lineDepths = Arrays.copyOf(lineDepths, lineCount*4);
+      lineColors = Arrays.copyOf(lineColors, lineCount*2);
+    }
+    int i = lineCount*4;
+    lines[i] = x0;
+    lines[i+1] = y0;
+    lines[i+2] = x1;
+    lines[i+3] = y1;
+    lineDepths[lineCount*2] = depth0;
+    lineDepths[lineCount*2+1] = depth1;
+    lineColors[lineCount] = color;
+    lineCount++;
+  }
+
+  /**
+ * Adds a convex polygon to the batch.
+ * @param  vertexes The vertexes of the polygon packed as x, y, depth.
+ * @param  count The number of vertexes.
+ * @param  color The packed RGB color of the polygon.
+ * @since 1.1
+ */
+  public void addPolygon(float[] vertexes, int count, int color){
+    if(polygonCount == polygonColors.length){
+      polygonStarts = Arrays.copyOf(polygonStarts, polygonCount*2);
+      polygonSizes = Arrays.copyOf(polygonSizes, polygonCount*2);
+      polygonColors = Arrays.copyOf(polygonColors, polygonCount*2);
+    }
+    if(polygonVertexesUsed+count*3 > polygonVertexes.length){
+      polygonVertexes = Arrays.copyOf(polygonVertexes, Math.max(polygonVertexes.length*2, polygonVertexesUsed+count*3));
+    }
+    System.arraycopy(vertexes, 0, polygonVertexes, polygonVertexesUsed, count*3);
+    polygonStarts[polygonCount] = polygonVertexesUsed;
+    polygonSizes[polygonCount] = count;
+    polygonColors[polygonCount] = color;
+    polygonVertexesUsed += count*3;
+    polygonCount++;
+  }
+
+  /**
+ * Gets the number of lines in the batch.
+ * @return The number of lines in the batch.
+ * @since 1.1
+ */
+  public int getLineCount(){
+    return lineCount;
+  }
+
+  /**
+ * Gets the array the lines are packed into as x0, y0, x1, y1. Only the first
+ * getLineCount()*4 elements are in use.
+ * @return The packed end points of the lines.
+ * @since 1.1
+ */
+  public float[] getLines(){
+    return lines;
+  }
+
+  /**
+ * Gets the depth of each end of each line packed as depth0, depth1.
+ * @return The packed depths of the lines.
+ * @since 1.1
+ */
+  public float[] getLineDepths(){
+    return lineDepths;
+  }
+
+  /**
+ * Gets the packed RGB color of each line.
+ * @return The colors of the lines.
+ * @since 1.1
+ */
+  public int[] getLineColors(){
+    return lineColors;
+  }
+
+  /**
+ * Gets the number of polygons in the batch.
+ * @return The number of polygons in the batch.
+ * @since 1.1
+ */
+  public int getPolygonCount(){
+    return polygonCount;
+  }
+
+  /**
+ * Gets the array the vertexes of every polygon are packed into as x, y, depth.
+ * @return The packed vertexes of the polygons.
+ * @since 1.1
+ */
+  public float[] getPolygonVertexes(){
+    return polygonVertexes;
+  }
+
+  /**
+ * Gets the index in getPolygonVertexes() of the first vertex of each polygon.
+ * @return Where each polygon starts.
+ * @since 1.1
+ */
+  public int[] getPolygonStarts(){
+    return polygonStarts;
+  }
+
+  /**
+ * Gets the number of vertexes of each polygon.
+ * @return The size of each polygon.
+ * @since 1.1
+ */
+  public int[] getPolygonSizes(){
+    return polygonSizes;
+  }
+
+  /**
+ * Gets the packed RGB color of each polygon.
+ * @return The colors of the polygons.
+ * @since 1.1
+ */
+  public int[] getPolygonColors(){
+    return polygonColors;
+  }
+}
@@ -0,0 +1,61 @@
+package render;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** A FrameEvent is recorded by Java Flight Recorder for every frame an
+ * OffscreenRenderer renders while the event is enabled, with the time taken
+ * by each RenderStage and what was drawn. Its duration is the whole frame.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+@Name("render.Frame")
+@Label("Frame")
+@Category("Rendering")
+@Description("A frame rendered by an OffscreenRenderer")
+public class FrameEvent extends Event{
+
+  @Label("Cull Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long cullTime;
+
+  @Label("Project Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long projectTime;
+
+  @Label("Draw Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long drawTime;
+
+  @Label("Allocated")
+  @Description("Bytes allocated by the rendering thread, -1 if unknown")
+  @DataAmount
+  long allocated;
+
+  @Label("Shapes Drawn")
+  int shapesDrawn;
+
+  @Label("Shapes Culled")
+  int shapesCulled;
+
+  @Label("Vertexes Projected")
+  int vertexesProjected;
+
+  @Label("Edges Drawn")
+  int edgesDrawn;
+
+  @Label("Edges Culled")
+  int edgesCulled;
+
+  @Label("Polygons Drawn")
+  int polygonsDrawn;
+
+  @Label("Polygons Culled")
+  int polygonsCulled;
+}
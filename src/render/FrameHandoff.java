@@ -0,0 +1,138 @@
+package render;
+import java.util.ArrayDeque;
+
+/** A FrameHandoff passes ProjectedFrames from the thread that projects them
+ * to the thread that draws them through a single slot. A frame published
+ * while the one before is still waiting in the slot takes its place, so the
+ * drawing thread always gets the latest frame and never falls behind. At most
+ * a set number of frames are in flight, being projected, waiting or being
+ * drawn, and the projecting thread waits for one to be released once they
+ * all are. With 2 the projecting thread works on the next frame while the
+ * last is drawn.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public final class FrameHandoff{
+
+  /** The most frames that can be in flight at once.*/
+  private final int maxFramesInFlight;
+  /** The frames that have been released, to be projected into again.*/
+  private final ArrayDeque<ProjectedFrame> free = new ArrayDeque<ProjectedFrame>();
+  /** The number of frames made so far, at most maxFramesInFlight.*/
+  private int created;
+  /** The latest frame published and not yet taken, null if there is none.*/
+  private ProjectedFrame latest;
+  /** The number of frames replaced in the slot before they were taken.*/
+  private long droppedFrames;
+  /** Whether the handoff has been closed.*/
+  private boolean closed;
+
+  /**
+ * Creates a FrameHandoff.
+ * @param  maxFramesInFlight The most frames that can be in flight at once, at least 1.
+ * @throws IllegalArgumentException Throws IllegalArgumentException if
+ *         maxFramesInFlight is less than 1.
+ * @since 1.1
+ */
+  public FrameHandoff(int maxFramesInFlight){
+    if(maxFramesInFlight < 1){
+      throw new IllegalArgumentException("Max frames in flight must be at least 1: "+maxFramesInFlight);
+    }
+    this.maxFramesInFlight = maxFramesInFlight;
+  }
+
+  /**
+ * Gets a frame to project into, waiting until one is released if the most
+ * frames are already in flight.
+ * @return The frame, or null if the handoff has been closed.
+ * @throws InterruptedException Throws InterruptedException if the thread is interrupted while waiting.
+ * @since 1.1
+ */
+  public synchronized ProjectedFrame acquire() throws InterruptedException{
+    while(!closed && free.isEmpty() && created == maxFramesInFlight){
+      wait();
+    }
+    if(closed){
+      return null;
+    }
+    if(!free.isEmpty()){
+      return free.poll();
+    }
+    created++;
+    return new ProjectedFrame();
+  }
+
+  /**
+ * Puts a projected frame in the slot for the drawing thread, releasing the
+ * frame that was waiting there if it has not been taken.
+ * @param  frame A frame got from acquire that has been projected into.
+ * @since 1.1
+ */
+  public synchronized void publish(ProjectedFrame frame){
+    if(latest != null){
+      free.add(latest);
+      droppedFrames++;
+    }
+    latest = frame;
+    notifyAll();
+  }
+
+  /**
+ * Takes the latest frame from the slot, waiting until one is published.
+ * @return The frame, to be released once it has been drawn, or null if the
+ *         handoff has been closed.
+ * @throws InterruptedException Throws InterruptedException if the thread is interrupted while waiting.
+ * @since 1.1
+ */
+  public synchronized ProjectedFrame take() throws InterruptedException{
+    while(!closed && latest == null){
+      wait();
+    }
+    if(closed){
+      return null;
+    }
+    ProjectedFrame frame = latest;
+    latest = null;
+    return frame;
+  }
+
+  /**
+ * Releases a frame once it has been drawn so it can be projected into again.
+ * @param  frame A frame got from take.
+ * @since 1.1
+ */
+  public synchronized void release(ProjectedFrame frame){
+    free.add(frame);
+    notifyAll();
+  }
+
+  /**
+ * Closes the handoff, waking any thread waiting in acquire or take.
+ * @since 1.1
+ */
+  public synchronized void close(){
+    closed = true;
+    notifyAll();
+  }
+
+  /**
+ * Gets the most frames that can be in flight at once.
+ * @return The most frames in flight.
+ * @since 1.1
+ */
+  public int getMaxFramesInFlight(){
+    return maxFramesInFlight;
+  }
+
+  /**
+ * Gets the number of frames that were replaced by a later frame before the
+ * drawing thread took them.
+ * @return The number of frames dropped.
+ * @since 1.1
+ */
+  public synchronized long getDroppedFrames(){
+    return droppedFrames;
+  }
+}
@@ -0,0 +1,384 @@
+package render;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A FrameRasterizer draws the DrawBatches of a ProjectedFrame into a
+ * framebuffer of packed RGB pixels, filled with a Rasterizer or as wireframe
+ * with a LineRasterizer. In RenderMode.PAINTER the primitives are painted in
+ * the DepthOrder of the frame without a depth buffer, and a depth buffer is
+ * only made once a frame needs one. Given a ForkJoinPool it splits the screen
+ * into square tiles, puts each primitive in the bin of every tile its bounds
+ * touch, keeping the order they are drawn in, then rasterizes the tiles
+ * on the calling thread and the threads of the pool, handing the tasks to the
+ * pool from outside it so that no worker ever blocks waiting for another. Each
+ * tile is clipped to itself so no two threads write the same pixel. The
+ * rasterizers draw the same pixels inside a clip as without one, so the frame
+ * is the same however many threads draw it.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+class FrameRasterizer{
+
+  /** The width and height of a tile in pixels.*/
+  static final int TILE_SIZE = 64;
+
+  /** The pixels being drawn into.*/
+  private int[] pixels;
+  /** The width of the framebuffer in pixels.*/
+  private int width;
+  /** The height of the framebuffer in pixels.*/
+  private int height;
+  /** The depth of each pixel, shared by every tile, null until a frame is filled with it.*/
+  private float[] depthBuffer;
+  /** Holds the rasterizers used when drawing on one thread.*/
+  private TileTask serial;
+  /** One task for each thread of the pool, null until drawing in tiles.*/
+  private TileTask[] tileTasks;
+  /** The next tile for a TileTask to take.*/
+  private final AtomicInteger nextTile = new AtomicInteger();
+  /** The number of tiles across the screen.*/
+  private int tilesX;
+  /** The number of tiles down the screen.*/
+  private int tilesY;
+  /** Where the bin of each tile starts in binChunks and binPrimitives, and where the last ends.*/
+  private int[] binStarts = new int[1];
+  /** Where the next primitive goes in the bin of each tile while binning.*/
+  private int[] binEnds = new int[0];
+  /** The chunk of each primitive in the bins.*/
+  private int[] binChunks = new int[64];
+  /** The index in its batch of each primitive in the bins, negated less one for lines.*/
+  private int[] binPrimitives = new int[64];
+  /** The frame the tasks are drawing.*/
+  private ProjectedFrame drawing;
+  /** Whether the tasks draw antialiased lines.*/
+  private boolean drawingAntialiased;
+
+  /**
+ * Sets the framebuffer to draw into, making new rasterizers if it has changed.
+ * @param  pixels The packed RGB pixels, row by row.
+ * @param  width The width of the framebuffer in pixels.
+ * @param  height The height of the framebuffer in pixels.
+ * @since 1.1
+ */
+  void setTarget(int[] pixels, int width, int height){
+    if(pixels == this.pixels && width == this.width && height == this.height){
+      return;
+    }
+    this.pixels = pixels;
+    this.width = width;
+    this.height = height;
+    if(depthBuffer != null && depthBuffer.length < width*height){
+      depthBuffer = null;
+    }
+    serial = new TileTask();
+    tileTasks = null;
+    tilesX = (width+TILE_SIZE-1)/TILE_SIZE;
+    tilesY = (height+TILE_SIZE-1)/TILE_SIZE;
+    binStarts = new int[tilesX*tilesY+1];
+    binEnds = new int[tilesX*tilesY];
+  }
+
+  /**
+ * Clears the framebuffer to black then draws a frame into it.
+ * @param  frame The frame to draw, projected for the size of the framebuffer.
+ * @param  antialiasing Whether wireframe lines are antialiased.
+ * @param  pool The pool to draw the tiles on, or null to draw on this thread.
+ * @since 1.1
+ */
+  void draw(ProjectedFrame frame, boolean antialiasing, ForkJoinPool pool){
+    if(frame.getRenderMode() == RenderMode.FILLED && depthBuffer == null){
+      depthBuffer = new float[width*height];
+    }
+    if(pool == null || tilesX*tilesY == 1){
+      drawPrimitives(frame, antialiasing, serial);
+      return;
+    }
+    if(tileTasks == null || tileTasks.length != pool.getParallelism()){
+      tileTasks = new TileTask[pool.getParallelism()];
+      for(int i=0; i<tileTasks.length; i++){
+        tileTasks[i] = new TileTask();
+      }
+    }
+    bin(frame);
+    drawing = frame;
+    drawingAntialiased = antialiasing;
+    nextTile.set(0);
+    try{
+      for(int i=1; i<tileTasks.length; i++){
+        tileTasks[i].reinitialize();
+        pool.execute(tileTasks[i]);
+      }
+      tileTasks[0].reinitialize();
+      try{
+        tileTasks[0].invoke();
+      }finally{
+        // the others still draw the frame until they have taken every tile
+        for(int i=1; i<tileTasks.length; i++){
+          tileTasks[i].quietlyJoin();
+        }
+      }
+      for(int i=1; i<tileTasks.length; i++){
+        tileTasks[i].join();
+      }
+    }finally{
+      drawing = null;
+    }
+  }
+
+  /**
+ * Clears the whole framebuffer then draws every primitive of a frame in the
+ * order it was projected, or in its DepthOrder when painting.
+ * @since 1.1
+ */
+  private static void drawPrimitives(ProjectedFrame frame, boolean antialiasing, TileTask task){
+    RenderMode mode = frame.getRenderMode();
+    boolean filled = mode != RenderMode.WIREFRAME;
+    Rasterizer rasterizer = task.getRasterizer(mode);
+    LineRasterizer lineRasterizer = task.lineRasterizer;
+    if(filled){
+      rasterizer.clear(0x000000);
+    }else{
+      lineRasterizer.clear(0x000000);
+    }
+    if(mode == RenderMode.PAINTER){
+      DepthOrder order = frame.getDepthOrder();
+      for(int i=0; i<order.size(); i++){
+        DrawBatch batch = frame.getBatch(order.getChunk(i));
+        int primitive = order.getPrimitive(i);
+        if(primitive >= 0){
+          fillPolygon(rasterizer, batch, primitive);
+        }else{
+          drawLine(true, false, rasterizer, lineRasterizer, batch, -primitive-1);
+        }
+      }
+      return;
+    }
+    for(int chunk=0; chunk<=frame.getChunks(); chunk++){
+      DrawBatch batch = frame.getBatch(chunk);
+      if(filled){
+        for(int i=0; i<batch.getPolygonCount(); i++){
+          fillPolygon(rasterizer, batch, i);
+        }
+      }
+      for(int i=0; i<batch.getLineCount(); i++){
+        drawLine(filled, antialiasing, rasterizer, lineRasterizer, batch, i);
+      }
+    }
+  }
+
+  /**
+ * Fills a polygon of a batch.
+ * @since 1.1
+ */
+  private static void fillPolygon(Rasterizer rasterizer, DrawBatch batch, int i){
+    rasterizer.fillPolygon(batch.getPolygonVertexes(), batch.getPolygonStarts()[i], batch.getPolygonSizes()[i], batch.getPolygonColors()[i]);
+  }
+
+  /**
+ * Draws a line of a batch, with its depth and color when filled, otherwise
+ * in white.
+ * @since 1.1
+ */
+  private static void drawLine(boolean filled, boolean antialiasing, Rasterizer rasterizer, LineRasterizer lineRasterizer, DrawBatch batch, int i){
+    float[] lines = batch.getLines();
+    int j = i*4;
+    if(filled){
+      float[] depths = batch.getLineDepths();
+      rasterizer.drawLine(lines[j], lines[j+1], depths[i*2], lines[j+2], lines[j+3], depths[i*2+1], batch.getLineColors()[i]);
+    }else if(antialiasing){
+      // its pixel centers are at whole coordinates rather than halfway across
+      lineRasterizer.drawLineAntialiased(lines[j]-0.5, lines[j+1]-0.5, lines[j+2]-0.5, lines[j+3]-0.5, 0xFFFFFF);
+    }else{
+      lineRasterizer.drawLine(lines[j], lines[j+1], lines[j+2], lines[j+3], 0xFFFFFF);
+    }
+  }
+
+  /**
+ * Puts every primitive of a frame into the bins of the tiles its bounds
+ * touch, counting how many go in each bin first so they can be packed into
+ * one array in order.
+ * @since 1.1
+ */
+  private void bin(ProjectedFrame frame){
+    int tiles = tilesX*tilesY;
+    Arrays.fill(binEnds, 0);
+    binPrimitives(frame, false);
+    int total = 0;
+    for(int tile=0; tile<tiles; tile++){
+      binStarts[tile] = total;
+      total += binEnds[tile];
+      binEnds[tile] = binStarts[tile];
+    }
+    binStarts[tiles] = total;
+    if(binChunks.length < total){
+      binChunks = new int[Math.max(total, binChunks.length*2)];
+      binPrimitives = new int[binChunks.length];
+    }
+    binPrimitives(frame, true);
+  }
+
+  /**
+ * Goes through the primitives of a frame in the order they are drawn,
+ * either counting them into binEnds or putting them into the bins.
+ * @param  fill False to count, true to put them into the bins.
+ * @since 1.1
+ */
+  private void binPrimitives(ProjectedFrame frame, boolean fill){
+    RenderMode mode = frame.getRenderMode();
+    if(mode == RenderMode.PAINTER){
+      DepthOrder order = frame.getDepthOrder();
+      for(int i=0; i<order.size(); i++){
+        int chunk = order.getChunk(i);
+        int primitive = order.getPrimitive(i);
+        if(primitive >= 0){
+          binPolygon(fill, chunk, frame.getBatch(chunk), primitive);
+        }else{
+          binLine(fill, chunk, frame.getBatch(chunk), -primitive-1);
+        }
+      }
+      return;
+    }
+    for(int chunk=0; chunk<=frame.getChunks(); chunk++){
+      DrawBatch batch = frame.getBatch(chunk);
+      if(mode == RenderMode.FILLED){
+        for(int i=0; i<batch.getPolygonCount(); i++){
+          binPolygon(fill, chunk, batch, i);
+        }
+      }
+      for(int i=0; i<batch.getLineCount(); i++){
+        binLine(fill, chunk, batch, i);
+      }
+    }
+  }
+
+  /**
+ * Counts a polygon of a batch into, or puts it in, the bins its bounds touch.
+ * @since 1.1
+ */
+  private void binPolygon(boolean fill, int chunk, DrawBatch batch, int i){
+    float[] vertexes = batch.getPolygonVertexes();
+    int start = batch.getPolygonStarts()[i];
+    float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+    float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+    // comparisons pass over NaN vertexes, which the Rasterizer does not fill
+    for(int v=start, end=start+batch.getPolygonSizes()[i]*3; v<end; v+=3){
+      float x = vertexes[v], y = vertexes[v+1];
+      if(x < minX){
+        minX = x;
+      }
+      if(x > maxX){
+        maxX = x;
+      }
+      if(y < minY){
+        minY = y;
+      }
+      if(y > maxY){
+        maxY = y;
+      }
+    }
+    if(minX <= maxX && minY <= maxY){
+      addToBins(fill, chunk, i, (int)Math.max(-2, Math.min(width, minX)), (int)Math.max(-2, Math.min(height, minY)),
+                (int)Math.ceil(Math.max(-2, Math.min(width, maxX))), (int)Math.ceil(Math.max(-2, Math.min(height, maxY))));
+    }
+  }
+
+  /**
+ * Counts a line of a batch into, or puts it in, the bins its bounds touch.
+ * @since 1.1
+ */
+  private void binLine(boolean fill, int chunk, DrawBatch batch, int i){
+    float[] lines = batch.getLines();
+    int j = i*4;
+    float minX = Math.min(lines[j], lines[j+2]), minY = Math.min(lines[j+1], lines[j+3]);
+    float maxX = Math.max(lines[j], lines[j+2]), maxY = Math.max(lines[j+1], lines[j+3]);
+    addToBins(fill, chunk, -i-1, (int)Math.max(-2, Math.min(width, minX)), (int)Math.max(-2, Math.min(height, minY)),
+              (int)Math.ceil(Math.max(-2, Math.min(width, maxX))), (int)Math.ceil(Math.max(-2, Math.min(height, maxY))));
+  }
+
+  /**
+ * Counts a primitive into, or puts it in, the bins of the tiles its bounds
+ * touch, with a pixel to spare on every side.
+ * @since 1.1
+ */
+  private void addToBins(boolean fill, int chunk, int primitive, int minX, int minY, int maxX, int maxY){
+    if(maxX < -1 || maxY < -1 || minX > width || minY > height){
+      return;
+    }
+    int fromX = Math.max(0, minX-1)/TILE_SIZE;
+    int toX = Math.min(width-1, maxX+1)/TILE_SIZE;
+    int fromY = Math.max(0, minY-1)/TILE_SIZE;
+    int toY = Math.min(height-1, maxY+1)/TILE_SIZE;
+    for(int ty=fromY; ty<=toY; ty++){
+      for(int tx=fromX; tx<=toX; tx++){
+        int tile = ty*tilesX+tx;
+        if(fill){
+          int at = binEnds[tile]++;
+          binChunks[at] = chunk;
+          binPrimitives[at] = primitive;
+        }else{
+          binEnds[tile]++;
+        }
+      }
+    }
+  }
+
+  /** A TileTask draws tiles of the frame being drawn, taking the next tile no
+   * task has taken until there are none left. Each has its own rasterizers
+   * drawing into the shared buffers, clipped to the tile being drawn.*/
+  private class TileTask extends RecursiveAction{
+    private static final long serialVersionUID = 1L;
+    /** Draws wireframes.*/
+    private final LineRasterizer lineRasterizer = new LineRasterizer(pixels, width, height);
+    /** Fills with the depth buffer, null until a frame is filled.*/
+    private Rasterizer rasterizer;
+    /** Fills without the depth buffer, null until a frame is painted.*/
+    private Rasterizer painter;
+
+    /** Gets the Rasterizer that fills in a RenderMode, making it the first
+     * time, after the depth buffer for a filled frame.*/
+    Rasterizer getRasterizer(RenderMode mode){
+      if(mode == RenderMode.FILLED){
+        if(rasterizer == null){
+          rasterizer = new Rasterizer(pixels, depthBuffer, width, height);
+        }
+        return rasterizer;
+      }
+      if(painter == null){
+        painter = new Rasterizer(pixels, null, width, height);
+      }
+      return painter;
+    }
+
+    @Override
+    protected void compute(){
+      ProjectedFrame frame = drawing;
+      boolean filled = frame.getRenderMode() != RenderMode.WIREFRAME;
+      Rasterizer rasterizer = getRasterizer(frame.getRenderMode());
+      int tiles = tilesX*tilesY;
+      int tile;
+      while((tile = nextTile.getAndIncrement()) < tiles){
+        int x = tile%tilesX*TILE_SIZE, y = tile/tilesX*TILE_SIZE;
+        rasterizer.setClip(x, y, TILE_SIZE, TILE_SIZE);
+        lineRasterizer.setClip(x, y, TILE_SIZE, TILE_SIZE);
+        if(filled){
+          rasterizer.clear(0x000000);
+        }else{
+          lineRasterizer.clear(0x000000);
+        }
+        for(int i=binStarts[tile]; i<binStarts[tile+1]; i++){
+          DrawBatch batch = frame.getBatch(binChunks[i]);
+          int primitive = binPrimitives[i];
+          if(primitive >= 0){
+            fillPolygon(rasterizer, batch, primitive);
+          }else{
+            drawLine(filled, drawingAntialiased, rasterizer, lineRasterizer, batch, -primitive-1);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,239 @@
+package render;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** FrameStatistics collects the time an OffscreenRenderer takes over each
+ * RenderStage of every frame, how much the rendering thread allocates in a
+ * frame, and counts of what was drawn and culled in the last frame. Times are
+ * kept in Histograms of nanoseconds. It can be registered as an MXBean to
+ * watch the statistics over JMX, and can be read from any thread while frames
+ * are being rendered.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class FrameStatistics implements FrameStatisticsMXBean{
+
+  /** Measures the bytes allocated by a thread, null if the JVM can not.*/
+  private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+  /** The stages of a frame, kept as values() makes a new array each call.*/
+  private static final RenderStage[] STAGES = RenderStage.values();
+
+  /** The time taken to render each frame.*/
+  private final Histogram frameTimes = new Histogram();
+  /** The time taken by each stage of each frame.*/
+  private final EnumMap<RenderStage, Histogram> stageTimes = new EnumMap<RenderStage, Histogram>(RenderStage.class);
+  /** The bytes allocated by the rendering thread in each frame.*/
+  private final Histogram allocations = new Histogram();
+
+  private int shapesDrawn;
+  private int shapesCulled;
+  private int vertexesProjected;
+  private int edgesDrawn;
+  private int edgesCulled;
+  private int polygonsDrawn;
+  private int polygonsCulled;
+
+  /**
+ * Creates FrameStatistics with nothing recorded.
+ * @since 1.1
+ */
+  public FrameStatistics(){
+    for(RenderStage stage : RenderStage.values()){
+      stageTimes.put(stage, new Histogram());
+    }
+  }
+
+  /**
+ * Records a frame that has been rendered.
+ * @param  stageNanos The time taken by each RenderStage, indexed by ordinal.
+ * @param  frameNanos The time taken by the whole frame.
+ * @param  allocatedBytes The bytes allocated by the rendering thread, -1 if unknown.
+ * @param  shapesDrawn The number of shapes, meshes and instances projected.
+ * @param  shapesCulled The number of shapes, meshes and instances culled as out of view.
+ * @param  vertexesProjected The number of vertexes projected.
+ * @param  edgesDrawn The number of edges drawn as lines.
+ * @param  edgesCulled The number of edges behind the near plane.
+ * @param  polygonsDrawn The number of polygons filled.
+ * @param  polygonsCulled The number of polygons behind the near plane.
+ * @since 1.1
+ */
+  synchronized void recordFrame(long[] stageNanos, long frameNanos, long allocatedBytes,
+                                int shapesDrawn, int shapesCulled, int vertexesProjected,
+                                int edgesDrawn, int edgesCulled, int polygonsDrawn, int polygonsCulled){
+    for(RenderStage stage : STAGES){
+      stageTimes.get(stage).record(stageNanos[stage.ordinal()]);
+    }
+    frameTimes.record(frameNanos);
+    if(allocatedBytes >= 0){
+      allocations.record(allocatedBytes);
+    }
+    this.shapesDrawn = shapesDrawn;
+    this.shapesCulled = shapesCulled;
+    this.vertexesProjected = vertexesProjected;
+    this.edgesDrawn = edgesDrawn;
+    this.edgesCulled = edgesCulled;
+    this.polygonsDrawn = polygonsDrawn;
+    this.polygonsCulled = polygonsCulled;
+  }
+
+  /**
+ * Gets the number of bytes the current thread has allocated so far.
+ * @return The number of bytes, -1 if the JVM can not measure it.
+ * @since 1.1
+ */
+  static long currentThreadAllocatedBytes(){
+    return ALLOCATION_BEAN == null ? -1 : ALLOCATION_BEAN.getCurrentThreadAllocatedBytes();
+  }
+
+  private static com.sun.management.ThreadMXBean allocationBean(){
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if(bean instanceof com.sun.management.ThreadMXBean){
+      com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+      if(allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()){
+        return allocationBean;
+      }
+    }
+    return null;
+  }
+
+  /**
+ * Gets the Histogram of the time taken to render each frame.
+ * @return The frame times in nanoseconds.
+ * @since 1.1
+ */
+  public Histogram getFrameHistogram(){
+    return frameTimes;
+  }
+
+  /**
+ * Gets the Histogram of the time taken by one stage of each frame.
+ * @param  stage The stage.
+ * @return The times of the stage in nanoseconds.
+ * @since 1.1
+ */
+  public Histogram getStageHistogram(RenderStage stage){
+    return stageTimes.get(stage);
+  }
+
+  /**
+ * Gets the Histogram of the bytes allocated by the rendering thread in each
+ * frame. Allocations made by the threads projecting shapes in parallel are not
+ * included. It is empty if the JVM can not measure allocations.
+ * @return The bytes allocated in each frame.
+ * @since 1.1
+ */
+  public Histogram getAllocationHistogram(){
+    return allocations;
+  }
+
+  @Override
+  public long getFrameCount(){
+    return frameTimes.getCount();
+  }
+
+  @Override
+  public double getFrameTimeP50Millis(){
+    return toMillis(frameTimes.getPercentile(50));
+  }
+
+  @Override
+  public double getFrameTimeP99Millis(){
+    return toMillis(frameTimes.getPercentile(99));
+  }
+
+  @Override
+  public double getFrameTimeMaxMillis(){
+    return toMillis(frameTimes.getMax());
+  }
+
+  @Override
+  public Map<String, Double> getStageTimeP50Millis(){
+    return stagePercentiles(50);
+  }
+
+  @Override
+  public Map<String, Double> getStageTimeP99Millis(){
+    return stagePercentiles(99);
+  }
+
+  @Override
+  public Map<String, Double> getStageTimeMaxMillis(){
+    return stagePercentiles(100);
+  }
+
+  private Map<String, Double> stagePercentiles(double percentile){
+    Map<String, Double> times = new LinkedHashMap<String, Double>();
+    for(RenderStage stage : RenderStage.values()){
+      times.put(stage.name(), toMillis(stageTimes.get(stage).getPercentile(percentile)));
+    }
+    return times;
+  }
+
+  private static double toMillis(long nanos){
+    return nanos/1e6;
+  }
+
+  @Override
+  public long getAllocatedBytesP50(){
+    return ALLOCATION_BEAN == null ? -1 : allocations.getPercentile(50);
+  }
+
+  @Override
+  public long getAllocatedBytesP99(){
+    return ALLOCATION_BEAN == null ? -1 : allocations.getPercentile(99);
+  }
+
+  @Override
+  public long getAllocatedBytesMax(){
+    return ALLOCATION_BEAN == null ? -1 : allocations.getMax();
+  }
+
+  @Override
+  public synchronized int getShapesDrawn(){
+    return shapesDrawn;
+  }
+
+  @Override
+  public synchronized int getShapesCulled(){
+    return shapesCulled;
+  }
+
+  @Override
+  public synchronized int getVertexesProjected(){
+    return vertexesProjected;
+  }
+
+  @Override
+  public synchronized int getEdgesDrawn(){
+    return edgesDrawn;
+  }
+
+  @Override
+  public synchronized int getEdgesCulled(){
+    return edgesCulled;
+  }
+
+  @Override
+  public synchronized int getPolygonsDrawn(){
+    return polygonsDrawn;
+  }
+
+  @Override
+  public synchronized int getPolygonsCulled(){
+    return polygonsCulled;
+  }
+
+  @Override
+  public synchronized void reset(){
+    frameTimes.reset();
+    for(Histogram histogram : stageTimes.values()){
+      histogram.reset();
+    }
+    allocations.reset();
+  }
+}
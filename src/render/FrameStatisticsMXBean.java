@@ -0,0 +1,68 @@
+package render;
+import java.util.Map;
+
+/** The management interface of FrameStatistics, through which frame timings
+ * and counts can be watched over JMX. Times are in milliseconds and
+ * percentiles are over every frame since the statistics were last reset.
+ * Counts are of the last frame rendered.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public interface FrameStatisticsMXBean{
+
+  /** @return The number of frames rendered since the last reset.*/
+  long getFrameCount();
+
+  /** @return The median time taken to render a frame.*/
+  double getFrameTimeP50Millis();
+
+  /** @return The 99th percentile of the time taken to render a frame.*/
+  double getFrameTimeP99Millis();
+
+  /** @return The longest time taken to render a frame.*/
+  double getFrameTimeMaxMillis();
+
+  /** @return The median time taken by each RenderStage, by name.*/
+  Map<String, Double> getStageTimeP50Millis();
+
+  /** @return The 99th percentile of the time taken by each RenderStage, by name.*/
+  Map<String, Double> getStageTimeP99Millis();
+
+  /** @return The longest time taken by each RenderStage, by name.*/
+  Map<String, Double> getStageTimeMaxMillis();
+
+  /** @return The median number of bytes allocated by the rendering thread in a frame, -1 if it can not be measured.*/
+  long getAllocatedBytesP50();
+
+  /** @return The 99th percentile of the number of bytes allocated by the rendering thread in a frame, -1 if it can not be measured.*/
+  long getAllocatedBytesP99();
+
+  /** @return The most bytes allocated by the rendering thread in a frame, -1 if it can not be measured.*/
+  long getAllocatedBytesMax();
+
+  /** @return The number of shapes, meshes and instances that were projected.*/
+  int getShapesDrawn();
+
+  /** @return The number of shapes, meshes and instances that were culled as out of view.*/
+  int getShapesCulled();
+
+  /** @return The number of vertexes that were projected.*/
+  int getVertexesProjected();
+
+  /** @return The number of edges that were drawn as lines.*/
+  int getEdgesDrawn();
+
+  /** @return The number of edges that were culled for being behind the near plane.*/
+  int getEdgesCulled();
+
+  /** @return The number of polygons that were filled.*/
+  int getPolygonsDrawn();
+
+  /** @return The number of polygons that were culled for being behind the near plane.*/
+  int getPolygonsCulled();
+
+  /** Forgets every frame rendered so far.*/
+  void reset();
+}
@@ -0,0 +1,145 @@
+package render;
+import matrix.*;
+
+/** A Frustum is the part of a Scene that can be seen by a Camera. It is made
+ * up of six planes, the four sides of the screen, a near plane and a far
+ * plane, and is used to find geometry that can be skipped because it is not
+ * in view.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class Frustum{
+
+  /** The number of planes that make up a Frustum.*/
+  private static final int PLANES = 6;
+  /** The x, y and z parts of the inward facing normal of each plane.*/
+  private final double[] a = new double[PLANES], b = new double[PLANES], c = new double[PLANES];
+  /** The offset of each plane, a point (x, y, z) is inside when a*x+b*y+c*z+d >= 0.*/
+  private final double[] d = new double[PLANES];
+
+  /**
+ * Creates a Frustum that contains everything.
+ * @since 1.1
+ */
+  public Frustum(){
+    for(int i=0; i<PLANES; i++){
+      d[i] = 1;
+    }
+  }
+
+  /**
+ * Sets the planes of the Frustum from a view-projection matrix as made by
+ * Camera.getViewProjectionMatrix. The fourth element of a transformed point is
+ * its distance in front of the Camera and the screen shows projected x and y
+ * coordinates from -0.5 to 0.5.
+ * @param  viewProjection The view-projection matrix.
+ * @param  near The closest distance in front of the Camera that can be seen.
+ * @param  far The furthest distance in front of the Camera that can be seen.
+ * @return This Frustum.
+ * @since 1.1
+ */
+  public Frustum set(Matrix4 viewProjection, double near, double far){
+    Matrix4 m = viewProjection;
+    // left and right: -0.5w <= x <= 0.5w
+    setPlane(0, 0.5*m.get(3,0)+m.get(0,0), 0.5*m.get(3,1)+m.get(0,1), 0.5*m.get(3,2)+m.get(0,2), 0.5*m.get(3,3)+m.get(0,3));
+    setPlane(1, 0.5*m.get(3,0)-m.get(0,0), 0.5*m.get(3,1)-m.get(0,1), 0.5*m.get(3,2)-m.get(0,2), 0.5*m.get(3,3)-m.get(0,3));
+    // bottom and top: -0.5w <= y <= 0.5w
+    setPlane(2, 0.5*m.get(3,0)+m.get(1,0), 0.5*m.get(3,1)+m.get(1,1), 0.5*m.get(3,2)+m.get(1,2), 0.5*m.get(3,3)+m.get(1,3));
+    setPlane(3, 0.5*m.get(3,0)-m.get(1,0), 0.5*m.get(3,1)-m.get(1,1), 0.5*m.get(3,2)-m.get(1,2), 0.5*m.get(3,3)-m.get(1,3));
+    // near and far: near <= w <= far
+    setPlane(4, m.get(3,0), m.get(3,1), m.get(3,2), m.get(3,3)-near);
+    setPlane(5, -m.get(3,0), -m.get(3,1), -m.get(3,2), far-m.get(3,3));
+    return this;
+  }
+
+  /**
+ * Sets one plane of the Frustum.
+ * @param  i The index of the plane.
+ * @param  a The x part of the inward facing normal.
+ * @param  b The y part of the inward facing normal.
+ * @param  c The z part of the inward facing normal.
+ * @param  d The offset of the plane.
+ * @since 1.1
+ */
+  private void setPlane(int i, double a, double b, double c, double d){
+    this.a[i] = a;
+    this.b[i] = b;
+    this.c[i] = c;
+    this.d[i] = d;
+  }
+
+  /**
+ * Gets whether a point is inside the Frustum.
+ * @param  x The x coordinate of the point.
+ * @param  y The y coordinate of the point.
+ * @param  z The z coordinate of the point.
+ * @return True if the point is inside the Frustum.
+ * @since 1.1
+ */
+  public boolean contains(double x, double y, double z){
+    for(int i=0; i<PLANES; i++){
+      if(a[i]*x+b[i]*y+c[i]*z+d[i] < 0){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+ * Gets whether a box could be partly inside the Frustum. It is false only when
+ * the box is completely outside one of the planes, so a few boxes near the
+ * corners of the Frustum are reported as inside when they are not.
+ * @param  box The box to test.
+ * @return False if the box is definitely outside the Frustum.
+ * @since 1.1
+ */
+  public boolean intersects(BoundingBox box){
+    return intersects(box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ());
+  }
+
+  /**
+ * Gets whether a box could be partly inside the Frustum. It is false only when
+ * the box is completely outside one of the planes.
+ * @param  minX The smallest x coordinate inside the box.
+ * @param  minY The smallest y coordinate inside the box.
+ * @param  minZ The smallest z coordinate inside the box.
+ * @param  maxX The largest x coordinate inside the box.
+ * @param  maxY The largest y coordinate inside the box.
+ * @param  maxZ The largest z coordinate inside the box.
+ * @return False if the box is definitely outside the Frustum.
+ * @since 1.1
+ */
+  public boolean intersects(double minX, double minY, double minZ, double maxX, double maxY, double maxZ){
+    for(int i=0; i<PLANES; i++){
+      // the corner of the box furthest along the normal of the plane
+      double x = a[i] >= 0 ? maxX : minX;
+      double y = b[i] >= 0 ? maxY : minY;
+      double z = c[i] >= 0 ? maxZ : minZ;
+      if(a[i]*x+b[i]*y+c[i]*z+d[i] < 0){
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+ * Gets whether a sphere could be partly inside the Frustum.
+ * @param  x The x coordinate of the centre of the sphere.
+ * @param  y The y coordinate of the centre of the sphere.
+ * @param  z The z coordinate of the centre of the sphere.
+ * @param  radius The radius of the sphere.
+ * @return False if the sphere is definitely outside the Frustum.
+ * @since 1.1
+ */
+  public boolean intersectsSphere(double x, double y, double z, double radius){
+    for(int i=0; i<PLANES; i++){
+      double length = Math.sqrt(a[i]*a[i]+b[i]*b[i]+c[i]*c[i]);
+      if(a[i]*x+b[i]*y+c[i]*z+d[i] < -radius*length){
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,157 @@
+package render;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** A Geometry is a set of Shape2Ds and IndexedMeshes that is stored once and
+ * drawn in a Scene any number of times through GeometryInstances, each with a
+ * model matrix of its own. The shapes and meshes are copied into a VertexStore
+ * of the Geometry when it is made, in model space, and must not be changed
+ * afterwards, so the memory used depends on the number of different assets
+ * rather than the number of times they appear.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class Geometry{
+
+  /** Holds the vertexes of every shape and mesh packed together.*/
+  private final VertexStore vertexStore;
+  /** The shapes of the Geometry, in model space.*/
+  private final List<Shape2D> shapes;
+  /** The meshes of the Geometry, in model space.*/
+  private final List<IndexedMesh> meshes;
+  /** The box that contains every vertex, in model space.*/
+  private final BoundingBox bounds = new BoundingBox();
+  /** The number of vertexes of every shape and mesh.*/
+  private final int numberOfVertexes;
+
+  /**
+ * Creates a Geometry from copies of some Shape2Ds.
+ * @param  shapes The shapes, in model space.
+ * @since 1.1
+ */
+  public Geometry(Iterable<Shape2D> shapes){
+    this(shapes, Collections.<IndexedMesh>emptyList());
+  }
+
+  /**
+ * Creates a Geometry from copies of some Shape2Ds.
+ * @param  shapes The shapes, in model space.
+ * @since 1.1
+ */
+  public Geometry(Shape2D... shapes){
+    this(Arrays.asList(shapes), Collections.<IndexedMesh>emptyList());
+  }
+
+  /**
+ * Creates a Geometry from a copy of an IndexedMesh.
+ * @param  mesh The mesh, in model space.
+ * @since 1.1
+ */
+  public Geometry(IndexedMesh mesh){
+    this(Collections.<Shape2D>emptyList(), Collections.singletonList(mesh));
+  }
+
+  /**
+ * Creates a Geometry from copies of some Shape2Ds and IndexedMeshes.
+ * @param  shapes The shapes, in model space.
+ * @param  meshes The meshes, in model space.
+ * @since 1.1
+ */
+  public Geometry(Iterable<Shape2D> shapes, Iterable<IndexedMesh> meshes){
+    vertexStore = new VertexStore();
+    ArrayList<Shape2D> shapeCopies = new ArrayList<Shape2D>();
+    for(Shape2D shape : shapes){
+      Shape2D copy = shape.copy();
+      copy.moveTo(vertexStore);
+      shapeCopies.add(copy);
+    }
+    ArrayList<IndexedMesh> meshCopies = new ArrayList<IndexedMesh>();
+    for(IndexedMesh mesh : meshes){
+      IndexedMesh copy = mesh.copy();
+      copy.moveTo(vertexStore);
+      meshCopies.add(copy);
+    }
+    // stops the shapes being moved out if they are added to a Scene themselves
+    vertexStore.markShared();
+    this.shapes = Collections.unmodifiableList(shapeCopies);
+    this.meshes = Collections.unmodifiableList(meshCopies);
+    numberOfVertexes = vertexStore.getVertexCount();
+    findBounds();
+  }
+
+  /**
+ * Creates a Geometry from shapes and meshes read from a snapshot, which are
+ * already in a VertexStore of their own.
+ * @param  vertexStore The store the vertexes are kept in, marked as shared.
+ * @param  shapes The shapes, in model space.
+ * @param  meshes The meshes, in model space.
+ * @since 1.1
+ */
+  Geometry(VertexStore vertexStore, List<Shape2D> shapes, List<IndexedMesh> meshes){
+    this.vertexStore = vertexStore;
+    this.shapes = Collections.unmodifiableList(new ArrayList<Shape2D>(shapes));
+    this.meshes = Collections.unmodifiableList(new ArrayList<IndexedMesh>(meshes));
+    numberOfVertexes = vertexStore.getVertexCount();
+    findBounds();
+  }
+
+  private void findBounds(){
+    bounds.setEmpty();
+    for(Shape2D shape : shapes){
+      bounds.include(shape.getBounds());
+    }
+    for(IndexedMesh mesh : meshes){
+      bounds.include(mesh.getBounds());
+    }
+  }
+
+  /**
+ * Gets the shapes of the Geometry. They must not be changed.
+ * @return The shapes in model space.
+ * @since 1.1
+ */
+  public List<Shape2D> getShapes(){
+    return shapes;
+  }
+
+  /**
+ * Gets the meshes of the Geometry. They must not be changed.
+ * @return The meshes in model space.
+ * @since 1.1
+ */
+  public List<IndexedMesh> getMeshes(){
+    return meshes;
+  }
+
+  /**
+ * Gets the box that contains every vertex of the Geometry in model space. It
+ * must not be modified.
+ * @return The bounding box in model space.
+ * @since 1.1
+ */
+  public BoundingBox getBounds(){
+    return bounds;
+  }
+
+  /**
+ * Gets the number of vertexes of every shape and mesh together.
+ * @return The number of vertexes.
+ * @since 1.1
+ */
+  public int getNumberOfVertexes(){
+    return numberOfVertexes;
+  }
+
+  /**
+ * Gets the VertexStore the vertexes of the Geometry are kept in.
+ * @return The VertexStore of the Geometry.
+ * @since 1.1
+ */
+  public VertexStore getVertexStore(){
+    return vertexStore;
+  }
+}
@@ -0,0 +1,178 @@
+package render;
+import matrix.*;
+
+/** A GeometryInstance places a Geometry in a Scene with a model matrix that
+ * takes it from model space to world space. Many instances can share one
+ * Geometry, each moved, turned or scaled differently, without its vertexes
+ * being copied. The model matrix is combined with the view-projection matrix
+ * once per instance when it is drawn rather than applied to every vertex. Each
+ * renderer picks the level of an instance made from a LevelOfDetail every
+ * frame from its size on screen, keeping the level it last drew the instance
+ * at by the index of the instance in its Scene. Once its Scene has been
+ * published, frames draw a copy of the instance made when it was last
+ * published, at the same index, so it can be moved while a frame is being
+ * drawn.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class GeometryInstance{
+
+  /** The Geometry that is drawn at full detail.*/
+  private final Geometry geometry;
+  /** The levels the Geometry can be drawn at, null if it is always drawn in full.*/
+  private final LevelOfDetail levelOfDetail;
+  /** Takes the Geometry from model space to world space.*/
+  private final Matrix4 transform = new Matrix4();
+  /** The box that contains the transformed Geometry, in world space.*/
+  private final BoundingBox bounds = new BoundingBox();
+  /** Holds a corner of the bounding box being transformed.*/
+  private final Vec4 corner = new Vec4();
+  /** The copy of the instance in the frames published last, null before it is first published.*/
+  private GeometryInstance published;
+  /** Whether the transform has changed since the instance was last published.*/
+  private boolean changed;
+
+  /**
+ * Creates a GeometryInstance.
+ * @param  geometry The Geometry to draw.
+ * @param  transform The model matrix, which is copied.
+ * @since 1.1
+ */
+  public GeometryInstance(Geometry geometry, Matrix4 transform){
+    this.geometry = geometry;
+    this.levelOfDetail = null;
+    setTransform(transform);
+  }
+
+  /**
+ * Creates a GeometryInstance drawn at the level of detail that fits its size
+ * on screen.
+ * @param  levelOfDetail The levels to draw, the first of which is used for the bounds.
+ * @param  transform The model matrix, which is copied.
+ * @since 1.1
+ */
+  public GeometryInstance(LevelOfDetail levelOfDetail, Matrix4 transform){
+    this.geometry = levelOfDetail.getLevel(0);
+    this.levelOfDetail = levelOfDetail;
+    setTransform(transform);
+  }
+
+  /**
+ * Creates a GeometryInstance that draws a Geometry where it is, with the
+ * identity as its model matrix.
+ * @param  geometry The Geometry to draw.
+ * @since 1.1
+ */
+  public GeometryInstance(Geometry geometry){
+    this(geometry, new Matrix4());
+  }
+
+  /**
+ * Creates a copy of an instance to publish.
+ * @since 1.1
+ */
+  private GeometryInstance(GeometryInstance instance){
+    this.geometry = instance.geometry;
+    this.levelOfDetail = instance.levelOfDetail;
+    this.transform.set(instance.transform);
+    this.bounds.set(instance.bounds);
+  }
+
+  /**
+ * Gets the copy of the instance to put in a frame being published, making a
+ * new one if the instance has changed since it was last published.
+ * @return An unchanging copy of the instance.
+ * @since 1.1
+ */
+  GeometryInstance publish(){
+    if(published == null || changed){
+      published = new GeometryInstance(this);
+      changed = false;
+    }
+    return published;
+  }
+
+  /**
+ * Gets the Geometry that is drawn at full detail.
+ * @return The Geometry of the instance.
+ * @since 1.1
+ */
+  public Geometry getGeometry(){
+    return geometry;
+  }
+
+  /**
+ * Gets the levels the Geometry can be drawn at.
+ * @return The LevelOfDetail of the instance, null if it is always drawn in full.
+ * @since 1.1
+ */
+  public LevelOfDetail getLevelOfDetail(){
+    return levelOfDetail;
+  }
+
+  /**
+ * Picks the level of detail to draw for a size on screen, keeping to the
+ * level drawn last unless the size has moved far enough past a switch size.
+ * @param  screenSize The size of the instance on screen in pixels.
+ * @param  current The level the instance was last drawn at, -1 if it has not been drawn.
+ * @return The level to draw, 0 for full detail.
+ * @since 1.1
+ */
+  int selectLevel(double screenSize, int current){
+    return levelOfDetail == null ? 0 : levelOfDetail.selectLevel(screenSize, current);
+  }
+
+  /**
+ * Gets the Geometry to draw at a level of detail.
+ * @param  level The level picked by selectLevel.
+ * @return The Geometry of the level.
+ * @since 1.1
+ */
+  Geometry getGeometry(int level){
+    return levelOfDetail == null ? geometry : levelOfDetail.getLevel(level);
+  }
+
+  /**
+ * Gets the model matrix. It must not be modified, use setTransform instead.
+ * @return The model matrix.
+ * @since 1.1
+ */
+  public Matrix4 getTransform(){
+    return transform;
+  }
+
+  /**
+ * Sets the model matrix and works out the bounds again. The model matrix
+ * should be affine, moving, turning and scaling the Geometry.
+ * @param  transform The model matrix, which is copied.
+ * @since 1.1
+ */
+  public void setTransform(Matrix4 transform){
+    this.transform.set(transform);
+    changed = true;
+    BoundingBox model = geometry.getBounds();
+    bounds.setEmpty();
+    if(model.isEmpty()){
+      return;
+    }
+    for(int i=0; i<8; i++){
+      double x = (i & 1) == 0 ? model.getMinX() : model.getMaxX();
+      double y = (i & 2) == 0 ? model.getMinY() : model.getMaxY();
+      double z = (i & 4) == 0 ? model.getMinZ() : model.getMaxZ();
+      this.transform.transform(x, y, z, corner);
+      bounds.include(corner.getX(), corner.getY(), corner.getZ());
+    }
+  }
+
+  /**
+ * Gets the box that contains the transformed Geometry in world space. It must
+ * not be modified.
+ * @return The bounding box in world space.
+ * @since 1.1
+ */
+  public BoundingBox getBounds(){
+    return bounds;
+  }
+}
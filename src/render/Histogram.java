@@ -0,0 +1,141 @@
+package render;
+import java.util.Arrays;
+
+/** A Histogram counts non-negative long values, such as durations in
+ * nanoseconds or numbers of bytes, so that percentiles of them can be read
+ * back. Values are counted in buckets, sixteen for every power of two, so a
+ * percentile is within about 6% of the true value however large the values
+ * get. The largest value is kept exactly. Recording never allocates and a
+ * Histogram can be recorded to and read from on different threads.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class Histogram{
+
+  /** The number of bits of a value, after its leading one, used to pick its bucket.*/
+  private static final int SUB_BUCKET_BITS = 4;
+  /** The number of buckets for every power of two.*/
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /** The number of values counted in each bucket.*/
+  private final long[] counts = new long[(64-SUB_BUCKET_BITS)*SUB_BUCKETS];
+  /** The number of values counted.*/
+  private long count;
+  /** The sum of the values counted.*/
+  private long total;
+  /** The largest value counted.*/
+  private long max;
+
+  /**
+ * Counts a value. Negative values are counted as 0.
+ * @param  value The value to count.
+ * @since 1.1
+ */
+  public synchronized void record(long value){
+    if(value < 0){
+      value = 0;
+    }
+    counts[bucketOf(value)]++;
+    count++;
+    total += value;
+    if(value > max){
+      max = value;
+    }
+  }
+
+  /**
+ * Gets the value that a fraction of the counted values are at or below.
+ * @param  percentile The percentile, from 0 to 100.
+ * @return The largest value that could be in the bucket holding the
+ *         percentile, but no more than the largest value counted. 0 if nothing
+ *         has been counted.
+ * @since 1.1
+ */
+  public synchronized long getPercentile(double percentile){
+    if(count == 0){
+      return 0;
+    }
+    long rank = Math.max(1, (long)Math.ceil(count*Math.min(100, Math.max(0, percentile))/100));
+    long seen = 0;
+    for(int i=0; i<counts.length; i++){
+      seen += counts[i];
+      if(seen >= rank){
+        return Math.min(max, highestValueIn(i));
+      }
+    }
+    return max;
+  }
+
+  /**
+ * Gets the largest value counted.
+ * @return The largest value counted, 0 if nothing has been counted.
+ * @since 1.1
+ */
+  public synchronized long getMax(){
+    return max;
+  }
+
+  /**
+ * Gets the mean of the values counted.
+ * @return The mean, 0 if nothing has been counted.
+ * @since 1.1
+ */
+  public synchronized double getMean(){
+    return count == 0 ? 0 : (double)total/count;
+  }
+
+  /**
+ * Gets the number of values counted.
+ * @return The number of values counted.
+ * @since 1.1
+ */
+  public synchronized long getCount(){
+    return count;
+  }
+
+  /**
+ * Forgets every value counted.
+ * @since 1.1
+ */
+  public synchronized void reset(){
+    Arrays.fill(counts, 0);
+    count = 0;
+    total = 0;
+    max = 0;
+  }
+
+  /**
+ * Gets the bucket a value is counted in. Values below SUB_BUCKETS each have a
+ * bucket of their own, larger values share a bucket with the values that have
+ * the same leading SUB_BUCKET_BITS+1 bits.
+ * @param  value A value that is not negative.
+ * @return The index of the bucket.
+ * @since 1.1
+ */
+  private static int bucketOf(long value){
+    if(value < SUB_BUCKETS){
+      return (int)value;
+    }
+    int exponent = 63-Long.numberOfLeadingZeros(value);
+    int subBucket = (int)(value >>> (exponent-SUB_BUCKET_BITS)) & (SUB_BUCKETS-1);
+    return (exponent-SUB_BUCKET_BITS+1)*SUB_BUCKETS+subBucket;
+  }
+
+  /**
+ * Gets the largest value that is counted in a bucket.
+ * @param  bucket The index of the bucket.
+ * @return The largest value of the bucket.
+ * @since 1.1
+ */
+  private static long highestValueIn(int bucket){
+    if(bucket < SUB_BUCKETS){
+      return bucket;
+    }
+    int exponent = bucket/SUB_BUCKETS+SUB_BUCKET_BITS-1;
+    long subBucket = bucket%SUB_BUCKETS;
+    int shift = exponent-SUB_BUCKET_BITS;
+    return ((SUB_BUCKETS+subBucket+1) << shift)-1;
+  }
+}
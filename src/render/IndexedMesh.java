@@ -0,0 +1,480 @@
+package render;
+import java.awt.Color;
+import java.util.Arrays;
+import matrix.*;
+
+/** An IndexedMesh is a surface made of polygon faces that share vertexes. The
+ * vertexes are kept once, in a VertexStore like those of a Shape2D, and each
+ * face is a list of indexes into them. The edges of the faces are worked out
+ * the first time they are needed with each edge shared by two faces kept only
+ * once, so when it is rendered every vertex is transformed once and every edge
+ * drawn once however many faces meet there.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class IndexedMesh{
+
+  /** The store the vertexes of the mesh are kept in.*/
+  private VertexStore store;
+  /** The index of the mesh within the store.*/
+  private int shapeIndex;
+  /** The indexes of the vertexes of every face, one face after another.*/
+  private final int[] faceIndexes;
+  /** Where each face starts in faceIndexes, with one more entry for the end of the last face.*/
+  private final int[] faceStarts;
+  /** The color of each face.*/
+  private final Color[] faceColors;
+  /** The indexes of the two vertexes of each unique edge, one edge after
+   * another, null until they are first needed. Threads drawing the mesh at
+   * once may each work them out, they all get the same edges.*/
+  private volatile int[] edges;
+  /** The box that contains every vertex of the mesh.*/
+  private final BoundingBox bounds = new BoundingBox();
+  /** Whether bounds has been worked out since the vertexes last changed.*/
+  private boolean boundsValid;
+
+  /**
+ * Creates an IndexedMesh with a default color of Color.WHITE.
+ * @param  vertexes The vertexes of the mesh.
+ * @param  faces The indexes into vertexes of the vertexes of each face, in the
+ *         order they are joined.
+ * @throws IllegalArgumentException Throws IllegalArgumentException if a face has
+ *         fewer than 3 vertexes or an index is not of a vertex.
+ * @since 1.1
+ */
+  public IndexedMesh(Point[] vertexes, int[][] faces){
+    this(vertexes, faces, Color.WHITE);
+  }
+
+  /**
+ * Creates an IndexedMesh with every face the same Color.
+ * @param  vertexes The vertexes of the mesh.
+ * @param  faces The indexes into vertexes of the vertexes of each face, in the
+ *         order they are joined.
+ * @param  color The color of the faces.
+ * @throws IllegalArgumentException Throws IllegalArgumentException if a face has
+ *         fewer than 3 vertexes or an index is not of a vertex.
+ * @since 1.1
+ */
+  public IndexedMesh(Point[] vertexes, int[][] faces, Color color){
+    this(vertexes, faces, filled(faces.length, color));
+  }
+
+  /**
+ * Creates an IndexedMesh with a Color for each face.
+ * @param  vertexes The vertexes of the mesh.
+ * @param  faces The indexes into vertexes of the vertexes of each face, in the
+ *         order they are joined.
+ * @param  faceColors The color of each face.
+ * @throws IllegalArgumentException Throws IllegalArgumentException if a face has
+ *         fewer than 3 vertexes, an index is not of a vertex or there is not a
+ *         color for each face.
+ * @since 1.1
+ */
+  public IndexedMesh(Point[] vertexes, int[][] faces, Color[] faceColors){
+    if(faceColors.length != faces.length){
+      throw new IllegalArgumentException("Need a color for each of the "+faces.length+" faces, not "+faceColors.length);
+    }
+    store = new VertexStore(vertexes.length, 1);
+    shapeIndex = store.addShape(vertexes.length);
+    for(int i=0; i<vertexes.length; i++){
+      store.set(i, vertexes[i].getX(), vertexes[i].getY(), vertexes[i].getZ());
+    }
+    faceStarts = new int[faces.length+1];
+    for(int f=0; f<faces.length; f++){
+      if(faces[f].length < 3){
+        throw new IllegalArgumentException("Face "+f+" has fewer than 3 vertexes");
+      }
+      faceStarts[f+1] = faceStarts[f]+faces[f].length;
+    }
+    faceIndexes = new int[faceStarts[faces.length]];
+    for(int f=0; f<faces.length; f++){
+      for(int i=0; i<faces[f].length; i++){
+        if(faces[f][i] < 0 || faces[f][i] >= vertexes.length){
+          throw new IllegalArgumentException("Face "+f+" uses vertex "+faces[f][i]+" of "+vertexes.length);
+        }
+        faceIndexes[faceStarts[f]+i] = faces[f][i];
+      }
+    }
+    this.faceColors = faceColors.clone();
+  }
+
+  /**
+ * Creates an IndexedMesh over vertexes that are already in a VertexStore,
+ * with every face the same Color. The face arrays are kept as they are rather
+ * than copied, so loaders can build them without a second copy.
+ * @param  store The store the vertexes are kept in.
+ * @param  shapeIndex The index in the store of the vertexes of the mesh.
+ * @param  faceIndexes The indexes of the vertexes of every face, one face after another.
+ * @param  faceStarts Where each face starts in faceIndexes, with one more entry
+ *         for the end of the last face.
+ * @param  color The color of the faces.
+ * @throws IllegalArgumentException Throws IllegalArgumentException if a face has
+ *         fewer than 3 vertexes or an index is not of a vertex.
+ * @since 1.1
+ */
+  public IndexedMesh(VertexStore store, int shapeIndex, int[] faceIndexes, int[] faceStarts, Color color){
+    int vertexCount = store.getCount(shapeIndex);
+    if(faceStarts.length == 0 || faceStarts[0] != 0 || faceStarts[faceStarts.length-1] != faceIndexes.length){
+      throw new IllegalArgumentException("Face starts do not cover the "+faceIndexes.length+" face indexes");
+    }
+    for(int f=0; f<faceStarts.length-1; f++){
+      if(faceStarts[f+1]-faceStarts[f] < 3){
+        throw new IllegalArgumentException("Face "+f+" has fewer than 3 vertexes");
+      }
+      for(int i=faceStarts[f]; i<faceStarts[f+1]; i++){
+        if(faceIndexes[i] < 0 || faceIndexes[i] >= vertexCount){
+          throw new IllegalArgumentException("Face "+f+" uses vertex "+faceIndexes[i]+" of "+vertexCount);
+        }
+      }
+    }
+    this.store = store;
+    this.shapeIndex = shapeIndex;
+    this.faceIndexes = faceIndexes;
+    this.faceStarts = faceStarts;
+    this.faceColors = filled(faceStarts.length-1, color);
+  }
+
+  /**
+ * Creates an IndexedMesh that shares the faces and edges of another but has
+ * its vertexes somewhere else.
+ * @since 1.1
+ */
+  private IndexedMesh(IndexedMesh mesh, VertexStore store, int shapeIndex){
+    this.store = store;
+    this.shapeIndex = shapeIndex;
+    this.faceIndexes = mesh.faceIndexes;
+    this.faceStarts = mesh.faceStarts;
+    this.faceColors = mesh.faceColors.clone();
+    this.edges = mesh.edges;
+  }
+
+  private static Color[] filled(int count, Color color){
+    Color[] colors = new Color[count];
+    Arrays.fill(colors, color);
+    return colors;
+  }
+
+  /**
+ * Works out the edges of the faces, each once. An edge is kept as its two
+ * vertexes packed into a long, lowest first, so sorting puts the same edge of
+ * neighbouring faces next to each other.
+ * @param  faceIndexes The indexes of the vertexes of every face.
+ * @param  faceStarts Where each face starts in faceIndexes.
+ * @return The vertexes of each unique edge, lowest first, in order.
+ * @since 1.1
+ */
+  private static int[] findEdges(int[] faceIndexes, int[] faceStarts){
+    long[] keys = new long[faceIndexes.length];
+    for(int f=0; f<faceStarts.length-1; f++){
+      int start = faceStarts[f];
+      int end = faceStarts[f+1];
+      for(int i=start; i<end; i++){
+        int a = faceIndexes[i];
+        int b = faceIndexes[i == end-1 ? start : i+1];
+        keys[i] = ((long)Math.min(a, b) << 32) | Math.max(a, b);
+      }
+    }
+    Arrays.sort(keys);
+    int unique = 0;
+    for(int i=0; i<keys.length; i++){
+      if(i == 0 || keys[i] != keys[i-1]){
+        keys[unique++] = keys[i];
+      }
+    }
+    int[] edges = new int[unique*2];
+    for(int i=0; i<unique; i++){
+      edges[i*2] = (int)(keys[i] >>> 32);
+      edges[i*2+1] = (int)keys[i];
+    }
+    return edges;
+  }
+
+  /**
+  * Copies the vertexes of the mesh into another VertexStore and keeps them
+  * there from then on.
+  * @param  target The store to move the vertexes to.
+  * @since 1.1
+  */
+  void moveTo(VertexStore target){
+    int count = getNumberOfVertexes();
+    int offset = getVertexOffset();
+    int newIndex = target.addShape(count);
+    int newOffset = target.getOffset(newIndex);
+    for(int i=0; i<count; i++){
+      target.set(newOffset+i, store.getX(offset+i), store.getY(offset+i), store.getZ(offset+i));
+    }
+    store = target;
+    shapeIndex = newIndex;
+  }
+
+  /**
+  * Transforms the mesh by a transformation matrix.
+  * @param  m The 4x4 transformation matrix to be applied to the mesh.
+  * @throws MatrixException Throws MatrixException if m is not 4x4.
+  * @since 1.1
+  */
+  public void transform(Matrix m){
+    transform(new Matrix4(m));
+  }
+
+  /**
+  * Transforms the mesh by a Matrix4 in place, all the vertexes in one batch.
+  * @param  m The transformation Matrix4 to be applied to the mesh.
+  * @since 1.1
+  */
+  public void transform(Matrix4 m){
+    double[] xs = store.getXs();
+    double[] ys = store.getYs();
+    double[] zs = store.getZs();
+    int offset = getVertexOffset();
+    m.transform(xs, ys, zs, offset, getNumberOfVertexes(), xs, ys, zs, null, offset);
+    invalidateBounds();
+  }
+
+  /**
+  * Gets the number of vertexes of the mesh.
+  * @return The number of vertexes.
+  * @since 1.1
+  */
+  public int getNumberOfVertexes(){
+    return store.getCount(shapeIndex);
+  }
+
+  /**
+  * Gets a vertex of the mesh. The Point is a copy, use setVertex to move it.
+  * @param  i The index of the vertex.
+  * @return A new Point at the vertex.
+  * @throws IndexOutOfBoundsException Throws IndexOutOfBoundsException if there is no vertex i.
+  * @since 1.1
+  */
+  public Point getVertex(int i){
+    int index = getVertexOffset()+checkVertex(i);
+    return new Point(store.getX(index), store.getY(index), store.getZ(index));
+  }
+
+  /**
+  * Moves a vertex of the mesh, and with it every face and edge that uses it.
+  * @param  i The index of the vertex.
+  * @param  x The new x coordinate.
+  * @param  y The new y coordinate.
+  * @param  z The new z coordinate.
+  * @throws IndexOutOfBoundsException Throws IndexOutOfBoundsException if there is no vertex i.
+  * @since 1.1
+  */
+  public void setVertex(int i, double x, double y, double z){
+    store.set(getVertexOffset()+checkVertex(i), x, y, z);
+    invalidateBounds();
+  }
+
+  private int checkVertex(int i){
+    if(i < 0 || i >= getNumberOfVertexes()){
+      throw new IndexOutOfBoundsException("No vertex "+i+" in a mesh of "+getNumberOfVertexes());
+    }
+    return i;
+  }
+
+  /**
+  * Gets the number of faces of the mesh.
+  * @return The number of faces.
+  * @since 1.1
+  */
+  public int getNumberOfFaces(){
+    return faceColors.length;
+  }
+
+  /**
+  * Gets the indexes of the vertexes of a face.
+  * @param  f The index of the face.
+  * @return A copy of the indexes of the vertexes of the face, in order.
+  * @since 1.1
+  */
+  public int[] getFace(int f){
+    return Arrays.copyOfRange(faceIndexes, faceStarts[f], faceStarts[f+1]);
+  }
+
+  /**
+  * Gets the color of a face.
+  * @param  f The index of the face.
+  * @return The color of the face.
+  * @since 1.1
+  */
+  public Color getFaceColor(int f){
+    return faceColors[f];
+  }
+
+  /**
+  * Sets the color of a face.
+  * @param  f The index of the face.
+  * @param  color The color of the face.
+  * @since 1.1
+  */
+  public void setFaceColor(int f, Color color){
+    faceColors[f] = color;
+    store.markChanged(shapeIndex);
+  }
+
+  /**
+  * Sets the color of every face.
+  * @param  color The color of the faces.
+  * @since 1.1
+  */
+  public void setColor(Color color){
+    Arrays.fill(faceColors, color);
+    store.markChanged(shapeIndex);
+  }
+
+  /**
+  * Gets the number of unique edges of the mesh.
+  * @return The number of edges.
+  * @since 1.1
+  */
+  public int getNumberOfEdges(){
+    return getEdges().length/2;
+  }
+
+  /**
+  * Gets the indexes of the two vertexes of an edge.
+  * @param  e The index of the edge.
+  * @return The indexes of the vertexes, the lowest first.
+  * @since 1.1
+  */
+  public int[] getEdge(int e){
+    int[] edges = getEdges();
+    return new int[]{edges[e*2], edges[e*2+1]};
+  }
+
+  /**
+  * Gets the indexes of the vertexes of every face, one face after another.
+  * @return The face indexes, not to be modified.
+  * @since 1.1
+  */
+  int[] getFaceIndexes(){
+    return faceIndexes;
+  }
+
+  /**
+  * Gets where each face starts in the face indexes, with one more entry for
+  * the end of the last face.
+  * @return The face starts, not to be modified.
+  * @since 1.1
+  */
+  int[] getFaceStarts(){
+    return faceStarts;
+  }
+
+  /**
+  * Gets the indexes of the two vertexes of every edge, one edge after another.
+  * @return The edges, not to be modified.
+  * @since 1.1
+  */
+  int[] getEdges(){
+    int[] edges = this.edges;
+    if(edges == null){
+      edges = findEdges(faceIndexes, faceStarts);
+      this.edges = edges;
+    }
+    return edges;
+  }
+
+  /**
+  * Gets the VertexStore the vertexes of the mesh are kept in.
+  * @return The VertexStore of the mesh.
+  * @since 1.1
+  */
+  public VertexStore getVertexStore(){
+    return store;
+  }
+
+  /**
+  * Gets the index of the mesh within its VertexStore.
+  * @return The index of the mesh in the store.
+  * @since 1.1
+  */
+  int getShapeIndex(){
+    return shapeIndex;
+  }
+
+  /**
+  * Gets the index in the VertexStore of the first vertex of the mesh. The
+  * vertexes of the mesh follow on from it.
+  * @return The index of the first vertex of the mesh.
+  * @since 1.1
+  */
+  public int getVertexOffset(){
+    return store.getOffset(shapeIndex);
+  }
+
+  /**
+  * Gets the box that contains every vertex of the mesh. It is only worked out
+  * again after the mesh has changed. The BoundingBox is owned by the mesh so
+  * it must not be modified.
+  * @return The bounding box of the mesh.
+  * @since 1.1
+  */
+  public BoundingBox getBounds(){
+    if(!boundsValid){
+      double[] xs = store.getXs();
+      double[] ys = store.getYs();
+      double[] zs = store.getZs();
+      int offset = getVertexOffset();
+      int end = offset+getNumberOfVertexes();
+      bounds.setEmpty();
+      for(int i=offset; i<end; i++){
+        bounds.include(xs[i], ys[i], zs[i]);
+      }
+      boundsValid = true;
+    }
+    return bounds;
+  }
+
+  /**
+  * Marks the bounding box as needing to be worked out again. This must be
+  * called after changing the vertexes through the VertexStore directly.
+  * @since 1.1
+  */
+  public void invalidateBounds(){
+    boundsValid = false;
+    store.markChanged(shapeIndex);
+  }
+
+  /**
+  * Creates a view of the mesh, sharing its faces and edges, over a view of its
+  * VertexStore.
+  * @param  view The view of the store the vertexes of the mesh are kept in.
+  * @return A new IndexedMesh with the same index in the view.
+  * @since 1.1
+  */
+  IndexedMesh view(VertexStore view){
+    // work out the edges once here rather than once in every view
+    getEdges();
+    return new IndexedMesh(this, view, shapeIndex);
+  }
+
+  /**
+  * Brings a view of a mesh up to date after the mesh has changed.
+  * @param  mesh The mesh this is a view of.
+  * @since 1.1
+  */
+  void refreshView(IndexedMesh mesh){
+    System.arraycopy(mesh.faceColors, 0, faceColors, 0, faceColors.length);
+    boundsValid = false;
+  }
+
+  /**
+  * Creates a new IndexedMesh with its own copy of the vertexes.
+  * @return A copy of the mesh.
+  * @since 1.1
+  */
+  public IndexedMesh copy(){
+    int count = getNumberOfVertexes();
+    VertexStore newStore = new VertexStore(count, 1);
+    IndexedMesh newMesh = new IndexedMesh(this, newStore, newStore.addShape(count));
+    System.arraycopy(store.getXs(), getVertexOffset(), newStore.getXs(), 0, count);
+    System.arraycopy(store.getYs(), getVertexOffset(), newStore.getYs(), 0, count);
+    System.arraycopy(store.getZs(), getVertexOffset(), newStore.getZs(), 0, count);
+    return newMesh;
+  }
+}
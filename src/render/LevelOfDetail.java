@@ -0,0 +1,314 @@
+package render;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** A LevelOfDetail is a Geometry kept at several levels of detail, from the
+ * full Geometry down to coarse simplifications of it, each with the size on
+ * screen below which the next level is used instead. A GeometryInstance made
+ * from a LevelOfDetail is drawn each frame with the level that fits how big
+ * it is on screen, so instances far from the camera cost few vertexes. A
+ * level is only left once the size has moved past its switch size by the
+ * hysteresis, so an instance near a switch size does not flick between two
+ * levels from frame to frame.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class LevelOfDetail{
+
+  /** The hysteresis used when none is given, a tenth of the switch size.*/
+  public static final double DEFAULT_HYSTERESIS = 0.1;
+
+  /** The levels, the most detailed first.*/
+  private final Geometry[] levels;
+  /** The size on screen in pixels below which each level but the last gives way to the next.*/
+  private final double[] switchSizes;
+  /** How far past a switch size, as a fraction of it, the size must go before the level changes.*/
+  private final double hysteresis;
+
+  /**
+ * Creates a LevelOfDetail with the default hysteresis.
+ * @param  levels The levels, the most detailed first.
+ * @param  switchSizes For each level but the last, the size on screen in
+ *         pixels below which the next level is used. They must go down.
+ * @throws IllegalArgumentException Throws IllegalArgumentException if there
+ *         are no levels or the switch sizes do not fit them.
+ * @since 1.1
+ */
+  public LevelOfDetail(Geometry[] levels, double[] switchSizes){
+    this(levels, switchSizes, DEFAULT_HYSTERESIS);
+  }
+
+  /**
+ * Creates a LevelOfDetail.
+ * @param  levels The levels, the most detailed first.
+ * @param  switchSizes For each level but the last, the size on screen in
+ *         pixels below which the next level is used. They must go down.
+ * @param  hysteresis How far past a switch size, as a fraction of it from 0
+ *         up to 1, the size must go before the level changes.
+ * @throws IllegalArgumentException Throws IllegalArgumentException if there
+ *         are no levels or the switch sizes or hysteresis do not fit them.
+ * @since 1.1
+ */
+  public LevelOfDetail(Geometry[] levels, double[] switchSizes, double hysteresis){
+    if(levels.length == 0){
+      throw new IllegalArgumentException("A LevelOfDetail needs at least one level");
+    }
+    if(switchSizes.length != levels.length-1){
+      throw new IllegalArgumentException(levels.length+" levels need "+(levels.length-1)+" switch sizes, not "+switchSizes.length);
+    }
+    for(int i=0; i<switchSizes.length; i++){
+      if(!(switchSizes[i] > 0) || (i > 0 && switchSizes[i] >= switchSizes[i-1])){
+        throw new IllegalArgumentException("Switch sizes must be positive and go down: "+Arrays.toString(switchSizes));
+      }
+    }
+    if(!(hysteresis >= 0 && hysteresis < 1)){
+      throw new IllegalArgumentException("Hysteresis must be from 0 up to 1, not "+hysteresis);
+    }
+    for(Geometry level : levels){
+      if(level == null){
+        throw new IllegalArgumentException("A level is null");
+      }
+    }
+    this.levels = levels.clone();
+    this.switchSizes = switchSizes.clone();
+    this.hysteresis = hysteresis;
+  }
+
+  /**
+ * Creates a LevelOfDetail from a Geometry by simplifying it over and over.
+ * Each level merges the vertexes that fall in the same cell of a grid, with
+ * cells twice the size of those of the level before, and drops the faces
+ * and shapes that are left with too few vertexes. The grid is fitted so a
+ * cell covers about two pixels at the largest size its level is used at. The
+ * switch size halves from one level to the next.
+ * @param  geometry The Geometry, used as it is for the most detailed level.
+ * @param  count The number of levels, at least 1.
+ * @param  switchSize The size on screen in pixels below which the first
+ *         simplified level is used.
+ * @return A new LevelOfDetail.
+ * @throws IllegalArgumentException Throws IllegalArgumentException if count
+ *         is less than 1 or switchSize is not positive.
+ * @since 1.1
+ */
+  public static LevelOfDetail simplify(Geometry geometry, int count, double switchSize){
+    if(count < 1){
+      throw new IllegalArgumentException("A LevelOfDetail needs at least one level, not "+count);
+    }
+    if(!(switchSize > 0)){
+      throw new IllegalArgumentException("Switch size must be positive, not "+switchSize);
+    }
+    Geometry[] levels = new Geometry[count];
+    double[] switchSizes = new double[count-1];
+    levels[0] = geometry;
+    BoundingBox bounds = geometry.getBounds();
+    double diagonal = bounds.isEmpty() ? 0 : Math.sqrt(square(bounds.getMaxX()-bounds.getMinX())
+                                                     + square(bounds.getMaxY()-bounds.getMinY())
+                                                     + square(bounds.getMaxZ()-bounds.getMinZ()));
+    for(int k=1; k<count; k++){
+      switchSizes[k-1] = switchSize/(1L << (k-1));
+      levels[k] = diagonal == 0 ? geometry : cluster(geometry, diagonal*(1L << k)/switchSize);
+    }
+    return new LevelOfDetail(levels, switchSizes);
+  }
+
+  /**
+ * Makes a simpler copy of a Geometry by merging the vertexes in each cell of
+ * a grid into one at their average.
+ * @param  geometry The Geometry to simplify.
+ * @param  cellSize The size of a cell of the grid.
+ * @return A new Geometry.
+ * @since 1.1
+ */
+  private static Geometry cluster(Geometry geometry, double cellSize){
+    BoundingBox bounds = geometry.getBounds();
+    VertexStore store = geometry.getVertexStore();
+    int vertexCount = store.getVertexCount();
+
+    // which cell each vertex of the store falls in, and the average of each cell
+    HashMap<Long, Integer> cells = new HashMap<Long, Integer>();
+    int[] cellOf = new int[vertexCount];
+    double[] sums = new double[48];
+    int[] counts = new int[16];
+    for(int i=0; i<vertexCount; i++){
+      long key = cellCoordinate(store.getX(i), bounds.getMinX(), cellSize)
+               | cellCoordinate(store.getY(i), bounds.getMinY(), cellSize) << 21
+               | cellCoordinate(store.getZ(i), bounds.getMinZ(), cellSize) << 42;
+      Integer cell = cells.get(key);
+      if(cell == null){
+        cell = cells.size();
+        cells.put(key, cell);
+        if(cell == counts.length){
+          counts = Arrays.copyOf(counts, cell*2);
+          sums = Arrays.copyOf(sums, cell*6);
+        }
+      }
+      cellOf[i] = cell;
+      sums[cell*3] += store.getX(i);
+      sums[cell*3+1] += store.getY(i);
+      sums[cell*3+2] += store.getZ(i);
+      counts[cell]++;
+    }
+    Point[] centers = new Point[cells.size()];
+    for(int c=0; c<centers.length; c++){
+      centers[c] = new Point(sums[c*3]/counts[c], sums[c*3+1]/counts[c], sums[c*3+2]/counts[c]);
+    }
+
+    int[] merged = new int[16];
+    ArrayList<Shape2D> shapes = new ArrayList<Shape2D>();
+    for(Shape2D shape : geometry.getShapes()){
+      int n = shape.getNumberOfVertexes();
+      if(merged.length < n){
+        merged = new int[n];
+      }
+      int m = merge(cellOf, shape.getVertexOffset(), null, 0, n, merged);
+      if(m >= Math.min(n, 3)){
+        Point[] vertexes = new Point[m];
+        for(int i=0; i<m; i++){
+          vertexes[i] = centers[merged[i]];
+        }
+        shapes.add(new Shape2D(vertexes, shape.getColor()));
+      }
+    }
+
+    ArrayList<IndexedMesh> meshes = new ArrayList<IndexedMesh>();
+    int[] newIndex = new int[centers.length];
+    for(IndexedMesh mesh : geometry.getMeshes()){
+      int[] faceIndexes = mesh.getFaceIndexes();
+      int[] faceStarts = mesh.getFaceStarts();
+      ArrayList<int[]> faces = new ArrayList<int[]>();
+      ArrayList<Color> colors = new ArrayList<Color>();
+      ArrayList<Point> vertexes = new ArrayList<Point>();
+      Arrays.fill(newIndex, -1);
+      for(int f=0; f<mesh.getNumberOfFaces(); f++){
+        int n = faceStarts[f+1]-faceStarts[f];
+        if(merged.length < n){
+          merged = new int[n];
+        }
+        int m = merge(cellOf, mesh.getVertexOffset(), faceIndexes, faceStarts[f], n, merged);
+        if(m < 3){
+          continue;
+        }
+        int[] face = new int[m];
+        for(int i=0; i<m; i++){
+          if(newIndex[merged[i]] < 0){
+            newIndex[merged[i]] = vertexes.size();
+            vertexes.add(centers[merged[i]]);
+          }
+          face[i] = newIndex[merged[i]];
+        }
+        faces.add(face);
+        colors.add(mesh.getFaceColor(f));
+      }
+      if(!faces.isEmpty()){
+        meshes.add(new IndexedMesh(vertexes.toArray(new Point[0]), faces.toArray(new int[0][]),
+                                   colors.toArray(new Color[0])));
+      }
+    }
+    return new Geometry(shapes, meshes);
+  }
+
+  /**
+ * Works out the cells of a run of vertexes, leaving out any that are in the
+ * same cell as the one before, going round from the last to the first.
+ * @param  cellOf The cell of each vertex of the store.
+ * @param  offset The index in the store of the first vertex of the shape or mesh.
+ * @param  indexes The indexes of the vertexes from offset, or null if they follow on from it.
+ * @param  start Where the run starts in indexes, or from offset if indexes is null.
+ * @param  n The number of vertexes in the run.
+ * @param  merged The array the cells are written to.
+ * @return The number of cells written.
+ * @since 1.1
+ */
+  private static int merge(int[] cellOf, int offset, int[] indexes, int start, int n, int[] merged){
+    int m = 0;
+    for(int i=0; i<n; i++){
+      int cell = cellOf[offset+(indexes == null ? start+i : indexes[start+i])];
+      if(m == 0 || merged[m-1] != cell){
+        merged[m++] = cell;
+      }
+    }
+    while(m > 1 && merged[m-1] == merged[0]){
+      m--;
+    }
+    return m;
+  }
+
+  private static long cellCoordinate(double x, double min, double cellSize){
+    return Math.min((long)((x-min)/cellSize), (1L << 21)-1);
+  }
+
+  private static double square(double x){
+    return x*x;
+  }
+
+  /**
+ * Picks the level to draw at a size on screen. A level other than the
+ * current one is only picked once the size is past the switch size between
+ * them by the hysteresis.
+ * @param  screenSize The size on screen in pixels.
+ * @param  current The level drawn last frame, or -1 if there is none.
+ * @return The level to draw.
+ * @since 1.1
+ */
+  public int selectLevel(double screenSize, int current){
+    int last = levels.length-1;
+    if(current < 0 || current > last){
+      int level = 0;
+      while(level < last && screenSize < switchSizes[level]){
+        level++;
+      }
+      return level;
+    }
+    int level = current;
+    while(level < last && screenSize < switchSizes[level]*(1-hysteresis)){
+      level++;
+    }
+    while(level > 0 && screenSize > switchSizes[level-1]*(1+hysteresis)){
+      level--;
+    }
+    return level;
+  }
+
+  /**
+ * Gets the number of levels.
+ * @return The number of levels.
+ * @since 1.1
+ */
+  public int getNumberOfLevels(){
+    return levels.length;
+  }
+
+  /**
+ * Gets a level.
+ * @param  level The index of the level, 0 for the most detailed.
+ * @return The Geometry of the level.
+ * @since 1.1
+ */
+  public Geometry getLevel(int level){
+    return levels[level];
+  }
+
+  /**
+ * Gets the size on screen below which the level after a level is used.
+ * @param  level The index of the level, not the last.
+ * @return The switch size in pixels.
+ * @since 1.1
+ */
+  public double getSwitchSize(int level){
+    return switchSizes[level];
+  }
+
+  /**
+ * Gets how far past a switch size, as a fraction of it, the size on screen
+ * must go before the level changes.
+ * @return The hysteresis.
+ * @since 1.1
+ */
+  public double getHysteresis(){
+    return hysteresis;
+  }
+}
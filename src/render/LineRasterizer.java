@@ -0,0 +1,400 @@
+package render;
+import java.util.Arrays;
+
+/** A LineRasterizer draws lines one pixel wide straight into an int[] of
+ * packed RGB pixels, without a depth buffer. Lines are clipped to the buffer
+ * with the Liang-Barsky algorithm before they are drawn, so an end point far
+ * off screen costs no more than one on it, then drawn with Bresenham's
+ * algorithm, or with Xiaolin Wu's algorithm blending them into what is
+ * already there when they are antialiased. Drawing can be kept inside a clip
+ * rectangle, working out where each line enters it rather than stepping up
+ * to it, and the pixels drawn inside it are the same as without it.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class LineRasterizer{
+
+  /** The width of the buffer in pixels.*/
+  private final int width;
+  /** The height of the buffer in pixels.*/
+  private final int height;
+  /** The color of each pixel, row by row.*/
+  private final int[] colorBuffer;
+  /** The left of the rectangle drawing is kept inside.*/
+  private int clipX;
+  /** The top of the rectangle drawing is kept inside.*/
+  private int clipY;
+  /** The right of the rectangle drawing is kept inside, inclusive.*/
+  private int clipMaxX;
+  /** The bottom of the rectangle drawing is kept inside, inclusive.*/
+  private int clipMaxY;
+  /** The start of the last line clipped.*/
+  private double clippedX0, clippedY0;
+  /** The end of the last line clipped.*/
+  private double clippedX1, clippedY1;
+
+  /**
+ * Creates a LineRasterizer that draws into a color buffer.
+ * @param  colorBuffer The packed RGB pixels to draw into, row by row.
+ * @param  width The width of the buffer in pixels.
+ * @param  height The height of the buffer in pixels.
+ * @since 1.1
+ */
+  public LineRasterizer(int[] colorBuffer, int width, int height){
+    if(colorBuffer.length < width*height){
+      throw new IllegalArgumentException("Color buffer too small for "+width+"x"+height);
+    }
+    this.width = width;
+    this.height = height;
+    this.colorBuffer = colorBuffer;
+    setClip(0, 0, width, height);
+  }
+
+  /**
+ * Keeps drawing and clearing inside a rectangle of the buffer. It starts as
+ * the whole of the buffer.
+ * @param  x The left of the rectangle.
+ * @param  y The top of the rectangle.
+ * @param  width The width of the rectangle.
+ * @param  height The height of the rectangle.
+ * @since 1.1
+ */
+  public void setClip(int x, int y, int width, int height){
+    clipX = Math.max(0, x);
+    clipY = Math.max(0, y);
+    clipMaxX = Math.min(this.width, x+width)-1;
+    clipMaxY = Math.min(this.height, y+height)-1;
+  }
+
+  /**
+ * Fills the clip of the color buffer with one color.
+ * @param  color The packed RGB color to clear to.
+ * @since 1.1
+ */
+  public void clear(int color){
+    if(clipX == 0 && clipMaxX == width-1){
+      Arrays.fill(colorBuffer, clipY*width, (clipMaxY+1)*width, color);
+      return;
+    }
+    for(int y=clipY; y<=clipMaxY; y++){
+      Arrays.fill(colorBuffer, y*width+clipX, y*width+clipMaxX+1, color);
+    }
+  }
+
+  /**
+ * Draws a line with Bresenham's algorithm, setting each pixel it passes
+ * through to the color. A line with both ends on the same pixel sets that
+ * pixel.
+ * @param  x0 The x coordinate on screen of the start of the line.
+ * @param  y0 The y coordinate on screen of the start of the line.
+ * @param  x1 The x coordinate on screen of the end of the line.
+ * @param  y1 The y coordinate on screen of the end of the line.
+ * @param  color The packed RGB color of the line.
+ * @since 1.1
+ */
+  public void drawLine(int x0, int y0, int x1, int y1, int color){
+    if(x0 < 0 || y0 < 0 || x0 >= width || y0 >= height
+       || x1 < 0 || y1 < 0 || x1 >= width || y1 >= height){
+      if(!clip(x0, y0, x1, y1, width-1, height-1)){
+        return;
+      }
+      x0 = (int)Math.round(clippedX0);
+      y0 = (int)Math.round(clippedY0);
+      x1 = (int)Math.round(clippedX1);
+      y1 = (int)Math.round(clippedY1);
+    }
+    int dx = Math.abs(x1-x0), dy = Math.abs(y1-y0);
+    if(dx >= dy){
+      drawSpan(x0, y0, dx, dy, x0 < x1 ? 1 : -1, y0 < y1 ? 1 : -1, clipX, clipMaxX, clipY, clipMaxY, 1, width, color);
+    }else{
+      drawSpan(y0, x0, dy, dx, y0 < y1 ? 1 : -1, x0 < x1 ? 1 : -1, clipY, clipMaxY, clipX, clipMaxX, width, 1, color);
+    }
+  }
+
+  /**
+ * Draws a line between points that need not be on pixels with Bresenham's
+ * algorithm. Pixel x covers the coordinates from x up to x+1, as it does for
+ * polygons, and the line is clipped to the buffer with the Liang-Barsky
+ * algorithm before its ends are moved onto the pixels they fall in, so an
+ * end too far off screen to be a pixel coordinate still draws the line
+ * towards it.
+ * @param  x0 The x coordinate on screen of the start of the line.
+ * @param  y0 The y coordinate on screen of the start of the line.
+ * @param  x1 The x coordinate on screen of the end of the line.
+ * @param  y1 The y coordinate on screen of the end of the line.
+ * @param  color The packed RGB color of the line.
+ * @since 1.1
+ */
+  public void drawLine(double x0, double y0, double x1, double y1, int color){
+    // up to just short of the right and bottom edges, which are past the last pixels
+    if(!clip(x0, y0, x1, y1, Math.nextDown((double)width), Math.nextDown((double)height))){
+      return;
+    }
+    // rounding can still leave an end on the edge
+    drawLine(Math.min((int)clippedX0, width-1), Math.min((int)clippedY0, height-1),
+             Math.min((int)clippedX1, width-1), Math.min((int)clippedY1, height-1), color);
+  }
+
+  /**
+ * Draws the part of a line inside the clip with Bresenham's algorithm,
+ * stepping along whichever axis the line is longer in. The pixel at step k
+ * is moved floor((2*minor*k+major)/(2*major)) across, so the steps before
+ * the line enters the clip are skipped rather than taken.
+ * @param  u0 The start of the line along the axis stepped along.
+ * @param  v0 The start of the line across it.
+ * @param  major How far the line goes along the axis, at least minor.
+ * @param  minor How far the line goes across it.
+ * @param  stepU 1 or -1 for the way the line goes along the axis.
+ * @param  stepV 1 or -1 for the way the line goes across it.
+ * @param  minU The smallest coordinate along the axis inside the clip.
+ * @param  maxU The largest coordinate along the axis inside the clip.
+ * @param  minV The smallest coordinate across the axis inside the clip.
+ * @param  maxV The largest coordinate across the axis inside the clip.
+ * @param  strideU How far a step along the axis moves in the color buffer.
+ * @param  strideV How far a step across it moves in the color buffer.
+ * @param  color The packed RGB color of the line.
+ * @since 1.1
+ */
+  private void drawSpan(int u0, int v0, int major, int minor, int stepU, int stepV,
+                        int minU, int maxU, int minV, int maxV, int strideU, int strideV, int color){
+    // the steps that keep u inside the clip
+    long first = stepU > 0 ? minU-u0 : u0-maxU;
+    long last = stepU > 0 ? maxU-u0 : u0-minU;
+    // and the offsets across that keep v inside it
+    long low = stepV > 0 ? minV-v0 : v0-maxV;
+    long high = stepV > 0 ? maxV-v0 : v0-minV;
+    first = Math.max(first, 0);
+    last = Math.min(last, major);
+    if(major == 0){
+      if(first == 0 && last == 0 && low <= 0 && high >= 0){
+        colorBuffer[v0*strideV+u0*strideU] = color;
+      }
+      return;
+    }
+    if(first == 0 && last == major && low <= 0 && high >= minor){
+      // all inside the clip, which is always so without one
+    }else if(minor == 0){
+      if(low > 0 || high < 0){
+        return;
+      }
+    }else{
+      long twiceMajor = 2L*major, twiceMinor = 2L*minor;
+      // the first step moved at least low across and the last moved at most high
+      if(low > 0){
+        first = Math.max(first, Math.floorDiv(twiceMajor*low-major+twiceMinor-1, twiceMinor));
+      }
+      last = Math.min(last, Math.floorDiv(twiceMajor*high+major+twiceMinor-1, twiceMinor)-1);
+    }
+    if(first > last){
+      return;
+    }
+    int twiceMajor = 2*major, twiceMinor = 2*minor;
+    int across = 0, remainder = major;
+    if(first > 0){
+      long numerator = twiceMinor*first+major;
+      across = (int)(numerator/twiceMajor);
+      remainder = (int)(numerator%twiceMajor);
+    }
+    int index = (v0+stepV*across)*strideV+(u0+stepU*(int)first)*strideU;
+    int stepIndexU = stepU*strideU, stepIndexV = stepV*strideV;
+    for(long k=first; k<=last; k++){
+      colorBuffer[index] = color;
+      index += stepIndexU;
+      remainder += twiceMinor;
+      if(remainder >= twiceMajor){
+        remainder -= twiceMajor;
+        index += stepIndexV;
+      }
+    }
+  }
+
+  /**
+ * Draws an antialiased line with Xiaolin Wu's algorithm, blending the color
+ * into each of the two pixels nearest the line along its length by how much
+ * of the line covers them. Pixel centers are at whole coordinates.
+ * @param  x0 The x coordinate on screen of the start of the line.
+ * @param  y0 The y coordinate on screen of the start of the line.
+ * @param  x1 The x coordinate on screen of the end of the line.
+ * @param  y1 The y coordinate on screen of the end of the line.
+ * @param  color The packed RGB color of the line.
+ * @since 1.1
+ */
+  public void drawLineAntialiased(double x0, double y0, double x1, double y1, int color){
+    // half a pixel of margin so pixels partly covered at the edges are blended
+    if(!clip(x0+0.5, y0+0.5, x1+0.5, y1+0.5, width, height)){
+      return;
+    }
+    x0 = clippedX0-0.5;
+    y0 = clippedY0-0.5;
+    x1 = clippedX1-0.5;
+    y1 = clippedY1-0.5;
+    boolean steep = Math.abs(y1-y0) > Math.abs(x1-x0);
+    if(steep){
+      double t = x0; x0 = y0; y0 = t;
+      t = x1; x1 = y1; y1 = t;
+    }
+    if(x0 > x1){
+      double t = x0; x0 = x1; x1 = t;
+      t = y0; y0 = y1; y1 = t;
+    }
+    double dx = x1-x0;
+    double gradient = dx == 0 ? 1 : (y1-y0)/dx;
+
+    // the ends cover their pixels by how far the line reaches into them
+    double xEnd = Math.round(x0);
+    double yStart = y0+gradient*(xEnd-x0);
+    int firstX = (int)xEnd;
+    blendPair(firstX, yStart, 1-fraction(x0+0.5), steep, color);
+
+    xEnd = Math.round(x1);
+    int lastX = (int)xEnd;
+    if(lastX != firstX){
+      blendPair(lastX, y1+gradient*(xEnd-x1), fraction(x1+0.5), steep, color);
+    }
+
+    // only the part inside the clip, each y worked out from the start so it
+    // does not depend on where the clip begins
+    int from = Math.max(firstX+1, steep ? clipY : clipX);
+    int to = Math.min(lastX-1, steep ? clipMaxY : clipMaxX);
+    for(int x=from; x<=to; x++){
+      blendPair(x, yStart+gradient*(x-firstX), 1, steep, color);
+    }
+  }
+
+  /**
+ * Blends a color into the two pixels either side of a point on a line, each
+ * by how near the point is to it.
+ * @param  x The coordinate along the line's major axis.
+ * @param  y The coordinate across it.
+ * @param  coverage How much of the length of the pixel the line covers.
+ * @param  steep Whether the major axis is y rather than x.
+ * @param  color The packed RGB color of the line.
+ * @since 1.1
+ */
+  private void blendPair(int x, double y, double coverage, boolean steep, int color){
+    int below = (int)Math.floor(y);
+    double above = fraction(y);
+    if(steep){
+      blend(below, x, (1-above)*coverage, color);
+      blend(below+1, x, above*coverage, color);
+    }else{
+      blend(x, below, (1-above)*coverage, color);
+      blend(x, below+1, above*coverage, color);
+    }
+  }
+
+  /**
+ * Blends a color into a pixel if it is inside the clip.
+ * @param  x The x coordinate of the pixel.
+ * @param  y The y coordinate of the pixel.
+ * @param  coverage How much of the color to blend in, from 0 to 1.
+ * @param  color The packed RGB color to blend in.
+ * @since 1.1
+ */
+  private void blend(int x, int y, double coverage, int color){
+    if(x < clipX || y < clipY || x > clipMaxX || y > clipMaxY){
+      return;
+    }
+    int alpha = (int)(coverage*256);
+    if(alpha <= 0){
+      return;
+    }
+    int index = y*width+x;
+    int old = colorBuffer[index];
+    int r = (old >> 16) & 0xFF, g = (old >> 8) & 0xFF, b = old & 0xFF;
+    r += (((color >> 16) & 0xFF)-r)*alpha >> 8;
+    g += (((color >> 8) & 0xFF)-g)*alpha >> 8;
+    b += ((color & 0xFF)-b)*alpha >> 8;
+    colorBuffer[index] = r << 16 | g << 8 | b;
+  }
+
+  /**
+ * Gets the part of a number after the point.
+ * @param  x The number.
+ * @return x less the largest whole number not above it.
+ * @since 1.1
+ */
+  private static double fraction(double x){
+    return x-Math.floor(x);
+  }
+
+  /**
+ * Clips a line to a rectangle from the origin with the Liang-Barsky
+ * algorithm, leaving the part inside in clippedX0, clippedY0, clippedX1 and
+ * clippedY1.
+ * @param  x0 The x coordinate of the start of the line.
+ * @param  y0 The y coordinate of the start of the line.
+ * @param  x1 The x coordinate of the end of the line.
+ * @param  y1 The y coordinate of the end of the line.
+ * @param  maxX The largest x coordinate inside the rectangle.
+ * @param  maxY The largest y coordinate inside the rectangle.
+ * @return True if some of the line is inside the rectangle.
+ * @since 1.1
+ */
+  private boolean clip(double x0, double y0, double x1, double y1, double maxX, double maxY){
+    double dx = x1-x0, dy = y1-y0;
+    double enter = 0, leave = 1;
+    // each edge as how far the line moves towards it and how far inside the start is
+    for(int edge=0; edge<4; edge++){
+      double p, q;
+      switch(edge){
+        case 0: p = -dx; q = x0; break;
+        case 1: p = dx; q = maxX-x0; break;
+        case 2: p = -dy; q = y0; break;
+        default: p = dy; q = maxY-y0; break;
+      }
+      if(p == 0){
+        if(q < 0){
+          return false;
+        }
+        continue;
+      }
+      double t = q/p;
+      if(p < 0){
+        if(t > leave){
+          return false;
+        }
+        enter = Math.max(enter, t);
+      }else{
+        if(t < enter){
+          return false;
+        }
+        leave = Math.min(leave, t);
+      }
+    }
+    clippedX0 = x0+enter*dx;
+    clippedY0 = y0+enter*dy;
+    clippedX1 = x0+leave*dx;
+    clippedY1 = y0+leave*dy;
+    return true;
+  }
+
+  /**
+ * Gets the width of the buffer in pixels.
+ * @return The width of the buffer in pixels.
+ * @since 1.1
+ */
+  public int getWidth(){
+    return width;
+  }
+
+  /**
+ * Gets the height of the buffer in pixels.
+ * @return The height of the buffer in pixels.
+ * @since 1.1
+ */
+  public int getHeight(){
+    return height;
+  }
+
+  /**
+ * Gets the color buffer being drawn into.
+ * @return The packed RGB pixels, row by row.
+ * @since 1.1
+ */
+  public int[] getColorBuffer(){
+    return colorBuffer;
+  }
+}
@@ -0,0 +1,954 @@
+package render;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import matrix.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** An OffscreenRenderer renders a Scene as seen from a Camera without the need
+ * for a display. It can draw onto any Graphics2D, into a BufferedImage or into
+ * an int[] framebuffer of packed RGB pixels. The shapes, meshes and instances
+ * in view are transformed and projected in chunks, spread over a ForkJoinPool
+ * when there are enough of them, into DrawBatches that are then drawn in order
+ * straight into a framebuffer of packed RGB pixels, lines by a LineRasterizer
+ * and filled shapes by a Rasterizer, which is copied onto the screen once.
+ * In RenderMode.PAINTER the projected primitives are radix sorted by depth
+ * into a DepthOrder and painted from the furthest without a depth buffer.
+ * With more than one thread the framebuffer is drawn in tiles by a
+ * FrameRasterizer, each tile on whichever thread takes it. The time
+ * taken by each RenderStage is kept in FrameStatistics and recorded as a
+ * FrameEvent for Java Flight Recorder. Each instance made from a LevelOfDetail
+ * is drawn at the level that fits its size on screen, and with a detail
+ * threshold set anything smaller on screen than it is drawn as a single point
+ * instead of being projected. Rendering can be split into project, which
+ * packs the frame into a ProjectedFrame, and draw, so one thread can project
+ * a frame while another draws the one before. An OffscreenRenderer reuses its
+ * working storage between frames so it should only project one frame and
+ * draw one frame at a time; once warmed up, rendering again and again into
+ * the same BufferedImage allocates nothing.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class OffscreenRenderer{
+
+  /** The number of shapes projected together as one piece of work.*/
+  private static final int CHUNK_SIZE = 1024;
+  /** About the number of vertexes of GeometryInstances projected together as one piece of work.*/
+  private static final int INSTANCE_CHUNK_VERTEXES = 4096;
+  /** The pixels of the dot drawn in the center of the frame as runs of x, y
+   * and length, worked out once since fillOval makes new shapes each time.*/
+  private static final int[] CENTER_DOT_SPANS = findSpans(5, 5);
+
+  /** The furthest object that is to be rendered.*/
+  private double renderDistance;
+  /** The distance from the camera/eye to the screen.*/
+  private double screenDistance;
+  /** The feild of view.*/
+  private double fov;
+  /** Holds the part of the Scene that is in view while rendering.*/
+  private Frustum frustum = new Frustum();
+  /** Holds the shapes that could be in view while rendering.*/
+  private ArrayList<Shape2D> visibleShapes = new ArrayList<Shape2D>();
+  /** Holds the meshes that could be in view while rendering.*/
+  private ArrayList<IndexedMesh> visibleMeshes = new ArrayList<IndexedMesh>();
+  /** Holds the instances that could be in view while rendering.*/
+  private ArrayList<GeometryInstance> visibleInstances = new ArrayList<GeometryInstance>();
+  /** The index in the instances of the Scene of each visible instance, by its index in visibleInstances.*/
+  private int[] visibleInstanceIndexes = new int[16];
+  /** The level of detail each visible instance is drawn at, by its index in visibleInstances.*/
+  private int[] visibleLevels = new int[16];
+  /** One more than the level of detail each instance of levelScene was last
+   * drawn at by this renderer, by its index in the instances of the Scene, 0
+   * if it has not been drawn.*/
+  private int[] instanceLevels = new int[16];
+  /** The Scene whose instances instanceLevels are of, null before one is rendered.*/
+  private Scene levelScene;
+  /** The number of chunks of visible shapes in the frame being rendered.*/
+  private int shapeChunks;
+  /** The number of chunks of visible shapes and meshes in the frame being rendered.*/
+  private int meshChunks;
+  /** The index in visibleInstances of the first instance of each chunk of
+   * instances, followed by the number of visible instances.*/
+  private int[] instanceChunkStarts = new int[1];
+  /** The size on screen in pixels below which a shape, mesh or instance is drawn as a point, 0 to project everything.*/
+  private double detailThreshold;
+  /** The elements of the view-projection matrix of the frame being rendered, row by row.*/
+  private final double[] viewProjectionElements = new double[16];
+  /** The frame render projects into and then draws.*/
+  private final ProjectedFrame projected = new ProjectedFrame();
+  /** The frame being projected, null between frames.*/
+  private ProjectedFrame projecting;
+  /** The number of threads used to project shapes, 1 to do it all on the calling thread.*/
+  private int parallelism;
+  /** The pool of parallelism threads that projects chunks of shapes and draws
+   * tiles, null until it is needed or once parallelism has changed.*/
+  private Workers workers;
+  /** The next chunk for a ProjectTask to take.*/
+  private final AtomicInteger nextChunk = new AtomicInteger();
+  /** The number of chunks of the frame the pool is projecting.*/
+  private int projectingChunks;
+  /** The view-projection matrix of the frame the pool is projecting.*/
+  private Matrix4 projectingViewProjection;
+  /** The width of the frame the pool is projecting.*/
+  private double projectingWidth;
+  /** The height of the frame the pool is projecting.*/
+  private double projectingHeight;
+  /** How the shapes are drawn.*/
+  private RenderMode mode = RenderMode.WIREFRAME;
+  /** The frame shapes are drawn into before it is copied onto the screen.*/
+  private BufferedImage frame;
+  /** Draws frames into frame or the image being rendered into, in tiles over the pool when there is one.*/
+  private final FrameRasterizer frameRasterizer = new FrameRasterizer();
+  /** Whether wireframe lines are antialiased.*/
+  private boolean antialiasing;
+  /** The image last rendered into by render(Scene, Camera, BufferedImage), null if there is none.*/
+  private BufferedImage target;
+  /** The Graphics2D of target.*/
+  private Graphics2D targetGraphics;
+  /** The image of type TYPE_INT_RGB being drawn into, to draw into straight, null if there is none.*/
+  private BufferedImage drawingInto;
+  /** The timings and counts of the frames rendered.*/
+  private final FrameStatistics statistics = new FrameStatistics();
+  /** Holds the time taken by each RenderStage of the frame being rendered.*/
+  private final long[] stageNanos = new long[RenderStage.values().length];
+
+  /**
+ * Creates an OffscreenRenderer with a render distance of 20, a screen distance
+ * of 1 and a feild of view of pi/2.
+ * @since 1.1
+ */
+  public OffscreenRenderer(){
+    renderDistance = 20;
+    screenDistance = 1;
+    fov = (1/2.0)*Math.PI;
+    parallelism = Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+ * Renders a Scene as seen from a Camera into a new BufferedImage.
+ * @param  scene The Scene to render.
+ * @param  camera The Camera the Scene is viewed from.
+ * @param  width The width of the image in pixels.
+ * @param  height The height of the image in pixels.
+ * @return A BufferedImage of type TYPE_INT_RGB holding the rendered frame.
+ * @since 1.1
+ */
+  public BufferedImage render(Scene scene, Camera camera, int width, int height){
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    render(scene, camera, image);
+    return image;
+  }
+
+  /**
+ * Renders a Scene as seen from a Camera into an existing BufferedImage. The
+ * whole image is overwritten. The Graphics2D of the image is kept for as long
+ * as the same image is rendered into, and filled shapes are drawn straight
+ * into an image of type TYPE_INT_RGB that is not a subimage, so rendering
+ * frame after frame into the same image allocates nothing once the working
+ * storage has grown to fit.
+ * @param  scene The Scene to render.
+ * @param  camera The Camera the Scene is viewed from.
+ * @param  image The image to render into.
+ * @since 1.1
+ */
+  public void render(Scene scene, Camera camera, BufferedImage image){
+    if(image != target){
+      if(targetGraphics != null){
+        targetGraphics.dispose();
+      }
+      targetGraphics = image.createGraphics();
+      target = image;
+    }
+    project(scene, camera, image.getWidth(), image.getHeight(), projected);
+    // a subimage shares the pixels of the image it was cut from
+    boolean ownPixels = image.getRaster().getDataBuffer().getSize() == image.getWidth()*image.getHeight();
+    drawingInto = image.getType() == BufferedImage.TYPE_INT_RGB && ownPixels ? image : null;
+    try{
+      draw(projected, targetGraphics);
+    }finally{
+      drawingInto = null;
+    }
+  }
+
+  /**
+ * Renders a Scene as seen from a Camera into an int[] framebuffer of packed
+ * RGB pixels, stored row by row.
+ * @param  scene The Scene to render.
+ * @param  camera The Camera the Scene is viewed from.
+ * @param  width The width of the frame in pixels.
+ * @param  height The height of the frame in pixels.
+ * @return The rendered frame as an array of width*height packed RGB pixels.
+ * @since 1.1
+ */
+  public int[] renderToArray(Scene scene, Camera camera, int width, int height){
+    return getFramebuffer(render(scene, camera, width, height));
+  }
+
+  /**
+ * Renders a Scene as seen from a Camera onto a Graphics2D.
+ * @param  scene The Scene to render.
+ * @param  camera The Camera the Scene is viewed from.
+ * @param  g2d The Graphics2D to draw onto.
+ * @param  width The width of the area being drawn to.
+ * @param  height The height of the area being drawn to.
+ * @since 1.1
+ */
+  public void render(Scene scene, Camera camera, Graphics2D g2d, int width, int height){
+    project(scene, camera, width, height, projected);
+    draw(projected, g2d);
+  }
+
+  /**
+ * Culls and projects a Scene as seen from a Camera into a ProjectedFrame, the
+ * first half of rendering it. Once it returns the ProjectedFrame no longer
+ * refers to the Scene, so the Scene can change while it is drawn. One thread
+ * can project frames while another draws them, but only one frame can be
+ * projected at a time.
+ * @param  scene The Scene to render.
+ * @param  camera The Camera the Scene is viewed from.
+ * @param  width The width of the area being drawn to.
+ * @param  height The height of the area being drawn to.
+ * @param  dest The ProjectedFrame to project into, which must not be being drawn.
+ * @since 1.1
+ */
+  public void project(Scene scene, Camera camera, int width, int height, ProjectedFrame dest){
+    dest.event.begin();
+    dest.frameStart = System.nanoTime();
+    long allocatedStart = FrameStatistics.currentThreadAllocatedBytes();
+    dest.reset(width, height, mode);
+    projecting = dest;
+    double sh = height;
+    double sw = width;
+    double ar = sh/sw;
+
+    // the view-projection is cached by the camera and only rebuilt when it moves
+    Matrix4 viewProjection = camera.getViewProjectionMatrix(ar, fov, screenDistance, renderDistance);
+    Frustum frustum = this.frustum.set(viewProjection, screenDistance, renderDistance);
+
+    // project the Scene as it was last published, which writers do not change
+    // while it is held
+    SceneFrame sceneFrame = scene.acquireFrame();
+    try{
+      Scene view = sceneFrame.getScene();
+      // skip shapes that are out of view or beyond the render distance
+      visibleShapes.clear();
+      view.findShapesInView(frustum, visibleShapes);
+      visibleMeshes.clear();
+      view.findMeshesInView(frustum, visibleMeshes);
+      visibleInstances.clear();
+      findInstancesInView(scene, view, frustum);
+      selectDetail(viewProjection, sw, sh);
+      dest.projectStart = System.nanoTime();
+
+      // project the shapes in chunks, each mesh as a chunk of its own and the
+      // instances in chunks of about the same number of vertexes, in parallel
+      // when there are enough of them
+      shapeChunks = (visibleShapes.size()+CHUNK_SIZE-1)/CHUNK_SIZE;
+      meshChunks = shapeChunks+visibleMeshes.size();
+      int chunks = meshChunks+chunkInstances();
+      dest.setChunks(chunks);
+      Workers threads = chunks > 1 ? acquireWorkers() : null;
+      if(threads != null){
+        try{
+          projectingViewProjection = viewProjection;
+          projectingWidth = sw;
+          projectingHeight = sh;
+          projectingChunks = chunks;
+          nextChunk.set(0);
+          projectAll(threads);
+        }finally{
+          releaseWorkers(threads);
+        }
+      }else{
+        for(int chunk=0; chunk<chunks; chunk++){
+          projectChunk(chunk, viewProjection, sw, sh);
+        }
+      }
+      dest.sceneShapes = view.getShapes2D().size()+view.getMeshes().size()+view.getInstances().size();
+      // those below the detail threshold are drawn as points
+      dest.shapesDrawn = visibleShapes.size()+visibleMeshes.size()+visibleInstances.size()+dest.getPointBatch().getLineCount();
+    }finally{
+      sceneFrame.release();
+      projecting = null;
+    }
+    // painting needs every primitive in order from the furthest to the nearest
+    if(dest.getRenderMode() == RenderMode.PAINTER){
+      dest.sortBackToFront();
+    }
+    dest.projectEnd = System.nanoTime();
+    dest.allocated = allocatedStart < 0 ? -1 : FrameStatistics.currentThreadAllocatedBytes()-allocatedStart;
+  }
+
+  /**
+ * Draws a ProjectedFrame onto a Graphics2D, the second half of rendering a
+ * Scene, and adds the frame to the statistics. Only one frame can be drawn
+ * at a time.
+ * @param  frame The ProjectedFrame to draw, which must not be being projected.
+ * @param  g2d The Graphics2D to draw onto.
+ * @since 1.1
+ */
+  public void draw(ProjectedFrame frame, Graphics2D g2d){
+    long drawStart = System.nanoTime();
+    long allocatedStart = FrameStatistics.currentThreadAllocatedBytes();
+    int width = frame.getWidth();
+    int height = frame.getHeight();
+
+    // clears the whole area to black first
+    drawFrame(g2d, frame, width, height);
+    g2d.setColor(Color.WHITE);
+    for(int i=0; i<CENTER_DOT_SPANS.length; i+=3){
+      g2d.fillRect(width/2+CENTER_DOT_SPANS[i], height/2+CENTER_DOT_SPANS[i+1], CENTER_DOT_SPANS[i+2], 1);
+    }
+
+    long frameEnd = System.nanoTime();
+    long allocated = allocatedStart < 0 || frame.allocated < 0 ? -1
+                     : frame.allocated+FrameStatistics.currentThreadAllocatedBytes()-allocatedStart;
+    recordFrame(frame, drawStart, frameEnd, allocated);
+  }
+
+  /**
+ * Adds the timings and counts of a frame just drawn to the statistics, and
+ * commits its FrameEvent if Java Flight Recorder wants it. The time of the
+ * frame runs from when it started being projected to when it was drawn, so
+ * includes any time it spent waiting between the two.
+ * @param  frame The frame that was drawn.
+ * @param  drawStart When drawing started, in nanoseconds.
+ * @param  frameEnd When the frame ended, in nanoseconds.
+ * @param  allocated The bytes allocated projecting and drawing the frame, -1 if unknown.
+ * @since 1.1
+ */
+  private void recordFrame(ProjectedFrame frame, long drawStart, long frameEnd, long allocated){
+    int vertexes = 0, edgesDrawn = 0, edgesCulled = 0, polygonsDrawn = 0, polygonsCulled = 0;
+    for(int chunk=0; chunk<frame.getChunks(); chunk++){
+      ShapeProjector projector = frame.getProjector(chunk);
+      vertexes += projector.getVertexCount();
+      edgesDrawn += projector.getBatch().getLineCount();
+      edgesCulled += projector.getCulledEdgeCount();
+      polygonsDrawn += projector.getBatch().getPolygonCount();
+      polygonsCulled += projector.getCulledPolygonCount();
+    }
+    int shapesDrawn = frame.shapesDrawn;
+    int shapesCulled = frame.sceneShapes-shapesDrawn;
+    stageNanos[RenderStage.CULL.ordinal()] = frame.projectStart-frame.frameStart;
+    stageNanos[RenderStage.PROJECT.ordinal()] = frame.projectEnd-frame.projectStart;
+    stageNanos[RenderStage.DRAW.ordinal()] = frameEnd-drawStart;
+    statistics.recordFrame(stageNanos, frameEnd-frame.frameStart, allocated, shapesDrawn, shapesCulled,
+                           vertexes, edgesDrawn, edgesCulled, polygonsDrawn, polygonsCulled);
+
+    FrameEvent event = frame.event;
+    event.end();
+    if(event.shouldCommit()){
+      event.cullTime = stageNanos[RenderStage.CULL.ordinal()];
+      event.projectTime = stageNanos[RenderStage.PROJECT.ordinal()];
+      event.drawTime = stageNanos[RenderStage.DRAW.ordinal()];
+      event.allocated = allocated;
+      event.shapesDrawn = shapesDrawn;
+      event.shapesCulled = shapesCulled;
+      event.vertexesProjected = vertexes;
+      event.edgesDrawn = edgesDrawn;
+      event.edgesCulled = edgesCulled;
+      event.polygonsDrawn = polygonsDrawn;
+      event.polygonsCulled = polygonsCulled;
+      event.commit();
+    }
+  }
+
+  /**
+ * Draws the projected frame into the frame image with the FrameRasterizer,
+ * shapes filled with the depth buffer, painted back to front or as white
+ * outlines antialiased if that is turned on, then copies the frame image onto
+ * the Graphics2D in one go, or draws straight into the image being rendered
+ * into if it has the same size. With more than one thread the screen is
+ * drawn in tiles across the pool, giving the same pixels as on one thread.
+ * @param  g2d The Graphics2D to draw onto.
+ * @param  projectedFrame The frame to draw.
+ * @param  width The width of the area being drawn to.
+ * @param  height The height of the area being drawn to.
+ * @since 1.1
+ */
+  private void drawFrame(Graphics2D g2d, ProjectedFrame projectedFrame, int width, int height){
+    BufferedImage image = getDrawTarget(width, height);
+    frameRasterizer.setTarget(getFramebuffer(image), width, height);
+    Workers threads = acquireWorkers();
+    try{
+      frameRasterizer.draw(projectedFrame, antialiasing, threads == null ? null : threads.pool);
+    }finally{
+      releaseWorkers(threads);
+    }
+    // the copy allocates, so it is skipped when drawing straight into the image
+    if(image == frame){
+      g2d.drawImage(frame, 0, 0, null);
+    }
+  }
+
+  /**
+ * Gets the image to draw a frame into: the image being rendered into if it
+ * can be drawn into straight and has the same size, otherwise frame, made
+ * again if its size has changed.
+ * @param  width The width of the area being drawn to.
+ * @param  height The height of the area being drawn to.
+ * @return The image to draw into.
+ * @since 1.1
+ */
+  private BufferedImage getDrawTarget(int width, int height){
+    BufferedImage image = drawingInto;
+    if(image != null && image.getWidth() == width && image.getHeight() == height){
+      return image;
+    }
+    if(frame == null || frame.getWidth() != width || frame.getHeight() != height){
+      frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+    return frame;
+  }
+
+  /**
+ * Picks the level of detail of each visible instance from its size on
+ * screen and, if there is a detail threshold, takes the shapes, meshes and
+ * instances smaller than it out of the visible lists and adds a point for
+ * each to the batch of points.
+ * @param  viewProjection The view-projection matrix of the camera.
+ * @param  sw The width of the area being drawn to.
+ * @param  sh The height of the area being drawn to.
+ * @since 1.1
+ */
+  private void selectDetail(Matrix4 viewProjection, double sw, double sh){
+    double[] m = viewProjectionElements;
+    for(int i=0; i<16; i++){
+      m[i] = viewProjection.get(i/4, i%4);
+    }
+    // the pixels a unit covers one unit in front of the camera, the rows of the
+    // view are unit vectors so the lengths of the rows are the projection scales
+    double pixels = Math.max(sw*Math.sqrt(m[0]*m[0]+m[1]*m[1]+m[2]*m[2]),
+                             sh*Math.sqrt(m[4]*m[4]+m[5]*m[5]+m[6]*m[6]));
+    boolean filled = mode != RenderMode.WIREFRAME;
+    if(detailThreshold > 0){
+      int kept = 0;
+      for(int i=0; i<visibleShapes.size(); i++){
+        Shape2D shape = visibleShapes.get(i);
+        if(isPoint(shape.getBounds(), pixels, filled ? shape.getColor().getRGB() & 0xFFFFFF : 0xFFFFFF, sw, sh)){
+          continue;
+        }
+        visibleShapes.set(kept++, shape);
+      }
+      truncate(visibleShapes, kept);
+      kept = 0;
+      for(int i=0; i<visibleMeshes.size(); i++){
+        IndexedMesh mesh = visibleMeshes.get(i);
+        int color = filled && mesh.getNumberOfFaces() > 0 ? mesh.getFaceColor(0).getRGB() & 0xFFFFFF : 0xFFFFFF;
+        if(isPoint(mesh.getBounds(), pixels, color, sw, sh)){
+          continue;
+        }
+        visibleMeshes.set(kept++, mesh);
+      }
+      truncate(visibleMeshes, kept);
+    }
+    int kept = 0;
+    for(int i=0; i<visibleInstances.size(); i++){
+      GeometryInstance instance = visibleInstances.get(i);
+      double size = screenSize(instance.getBounds(), pixels);
+      if(size < detailThreshold){
+        addPoint(instance.getBounds(), filled ? getColor(instance.getGeometry()) : 0xFFFFFF, sw, sh);
+        continue;
+      }
+      if(kept == visibleLevels.length){
+        visibleLevels = Arrays.copyOf(visibleLevels, kept*2);
+      }
+      visibleLevels[kept] = selectLevel(instance, visibleInstanceIndexes[i], size);
+      visibleInstanceIndexes[kept] = visibleInstanceIndexes[i];
+      visibleInstances.set(kept++, instance);
+    }
+    truncate(visibleInstances, kept);
+  }
+
+  /**
+ * Adds the instances of a Scene that could be in view to visibleInstances,
+ * with the index of each in the Scene, forgetting the levels of detail the
+ * instances were drawn at if the Scene is not the one rendered last.
+ * Instances are only ever added to a Scene, so the index of each is the same
+ * in every frame published from it.
+ * @param  scene The Scene being rendered.
+ * @param  view The Scene as it was last published, or the Scene itself.
+ * @param  frustum The Frustum of the camera.
+ * @since 1.1
+ */
+  private void findInstancesInView(Scene scene, Scene view, Frustum frustum){
+    if(scene != levelScene){
+      Arrays.fill(instanceLevels, 0);
+      levelScene = scene;
+    }
+    ArrayList<GeometryInstance> instances = view.getInstances();
+    for(int i=0; i<instances.size(); i++){
+      GeometryInstance instance = instances.get(i);
+      if(frustum.intersects(instance.getBounds())){
+        int visible = visibleInstances.size();
+        if(visible == visibleInstanceIndexes.length){
+          visibleInstanceIndexes = Arrays.copyOf(visibleInstanceIndexes, visible*2);
+        }
+        visibleInstanceIndexes[visible] = i;
+        visibleInstances.add(instance);
+      }
+    }
+  }
+
+  /**
+ * Picks the level of detail to draw an instance at from the level this
+ * renderer drew it at last, so renderers drawing the same frame each keep
+ * their own.
+ * @param  instance The instance.
+ * @param  index The index of the instance in its Scene.
+ * @param  screenSize The size of the instance on screen in pixels.
+ * @return The level to draw, 0 for full detail.
+ * @since 1.1
+ */
+  private int selectLevel(GeometryInstance instance, int index, double screenSize){
+    if(index >= instanceLevels.length){
+      instanceLevels = Arrays.copyOf(instanceLevels, Math.max(index+1, instanceLevels.length*2));
+    }
+    int level = instance.selectLevel(screenSize, instanceLevels[index]-1);
+    instanceLevels[index] = level+1;
+    return level;
+  }
+
+  /**
+ * Gets the level of detail this renderer last drew an instance of the Scene
+ * it last rendered at.
+ * @param  instance The instance, as added to the Scene.
+ * @return The level, 0 for full detail or if it has not been drawn.
+ * @since 1.1
+ */
+  public int getLevel(GeometryInstance instance){
+    Scene scene = levelScene;
+    int[] levels = instanceLevels;
+    int index = scene == null ? -1 : scene.getInstances().indexOf(instance);
+    return index >= 0 && index < levels.length ? Math.max(levels[index]-1, 0) : 0;
+  }
+
+  /**
+ * Removes the elements of a list from an index on, from the end so nothing
+ * is moved or allocated.
+ * @param  list The list.
+ * @param  size The number of elements to keep.
+ * @since 1.1
+ */
+  private static void truncate(ArrayList<?> list, int size){
+    for(int i=list.size()-1; i>=size; i--){
+      list.remove(i);
+    }
+  }
+
+  /**
+ * Adds a point for a box to the batch of points if it is smaller on screen
+ * than the detail threshold.
+ * @return Whether the box is drawn as a point.
+ * @since 1.1
+ */
+  private boolean isPoint(BoundingBox box, double pixels, int color, double sw, double sh){
+    if(screenSize(box, pixels) >= detailThreshold){
+      return false;
+    }
+    addPoint(box, color, sw, sh);
+    return true;
+  }
+
+  /**
+ * Works out about how many pixels across a box is on screen, from its
+ * diagonal and the distance in front of the camera of its center. A box that
+ * reaches the screen distance is taken as being as big as can be.
+ * @param  box The box, in world space.
+ * @param  pixels The pixels a unit covers one unit in front of the camera.
+ * @return The size on screen in pixels.
+ * @since 1.1
+ */
+  private double screenSize(BoundingBox box, double pixels){
+    double[] m = viewProjectionElements;
+    double dx = box.getMaxX()-box.getMinX(), dy = box.getMaxY()-box.getMinY(), dz = box.getMaxZ()-box.getMinZ();
+    double x = box.getMinX()+dx/2, y = box.getMinY()+dy/2, z = box.getMinZ()+dz/2;
+    double diagonal = Math.sqrt(dx*dx+dy*dy+dz*dz);
+    double w = m[12]*x+m[13]*y+m[14]*z+m[15];
+    if(w-diagonal/2 <= screenDistance){
+      return Double.POSITIVE_INFINITY;
+    }
+    return diagonal*pixels/w;
+  }
+
+  /**
+ * Adds a point at the center of a box to the batch of points.
+ * @since 1.1
+ */
+  private void addPoint(BoundingBox box, int color, double sw, double sh){
+    double[] m = viewProjectionElements;
+    double x = (box.getMinX()+box.getMaxX())/2, y = (box.getMinY()+box.getMaxY())/2, z = (box.getMinZ()+box.getMaxZ())/2;
+    double w = m[12]*x+m[13]*y+m[14]*z+m[15];
+    float px = (float)(sw/2+sw*((m[0]*x+m[1]*y+m[2]*z+m[3])/w));
+    float py = (float)(sh/2-sh*((m[4]*x+m[5]*y+m[6]*z+m[7])/w));
+    float depth = (float)((m[8]*x+m[9]*y+m[10]*z+m[11])/w);
+    projecting.getPointBatch().addLine(px, py, depth, px, py, depth, color);
+  }
+
+  /**
+ * Gets the color a Geometry is drawn in as a point, that of its first shape
+ * or of the first face of its first mesh.
+ * @since 1.1
+ */
+  private static int getColor(Geometry geometry){
+    if(!geometry.getShapes().isEmpty()){
+      return geometry.getShapes().get(0).getColor().getRGB() & 0xFFFFFF;
+    }
+    for(IndexedMesh mesh : geometry.getMeshes()){
+      if(mesh.getNumberOfFaces() > 0){
+        return mesh.getFaceColor(0).getRGB() & 0xFFFFFF;
+      }
+    }
+    return 0xFFFFFF;
+  }
+
+  /**
+ * Splits the visible instances into chunks, cutting a chunk once the
+ * Geometries of its instances have enough vertexes between them.
+ * @return The number of chunks of instances.
+ * @since 1.1
+ */
+  private int chunkInstances(){
+    int chunks = 0;
+    int vertexes = 0;
+    for(int i=0; i<visibleInstances.size(); i++){
+      if(vertexes == 0){
+        if(instanceChunkStarts.length < chunks+2){
+          instanceChunkStarts = Arrays.copyOf(instanceChunkStarts, (chunks+2)*2);
+        }
+        instanceChunkStarts[chunks++] = i;
+      }
+      vertexes += Math.max(1, visibleInstances.get(i).getGeometry(visibleLevels[i]).getNumberOfVertexes());
+      if(vertexes >= INSTANCE_CHUNK_VERTEXES){
+        vertexes = 0;
+      }
+    }
+    instanceChunkStarts[chunks] = visibleInstances.size();
+    return chunks;
+  }
+
+  /**
+ * Projects one chunk of the visible shapes, one visible mesh or one chunk of
+ * the visible instances into the batch of its ShapeProjector.
+ * @param  chunk The index of the chunk.
+ * @param  viewProjection The view-projection matrix of the camera.
+ * @param  sw The width of the area being drawn to.
+ * @param  sh The height of the area being drawn to.
+ * @since 1.1
+ */
+  private void projectChunk(int chunk, Matrix4 viewProjection, double sw, double sh){
+    if(chunk >= meshChunks){
+      int instanceChunk = chunk-meshChunks;
+      projecting.getProjector(chunk).projectInstances(visibleInstances, visibleLevels, instanceChunkStarts[instanceChunk],
+                                                      instanceChunkStarts[instanceChunk+1], viewProjection, screenDistance, sw, sh, mode);
+      return;
+    }
+    if(chunk >= shapeChunks){
+      projecting.getProjector(chunk).project(visibleMeshes.get(chunk-shapeChunks), viewProjection, screenDistance, sw, sh, mode);
+      return;
+    }
+    int from = chunk*CHUNK_SIZE;
+    int to = Math.min(from+CHUNK_SIZE, visibleShapes.size());
+    projecting.getProjector(chunk).project(visibleShapes, from, to, viewProjection, screenDistance, sw, sh, mode);
+  }
+
+  /** A ProjectTask projects chunks of the frame being projected, taking the
+   * next chunk no task has taken until there are none left. The tasks are
+   * made once and reused for every frame.*/
+  private class ProjectTask extends RecursiveAction{
+    private static final long serialVersionUID = 1L;
+    @Override
+    protected void compute(){
+      int chunk;
+      while((chunk = nextChunk.getAndIncrement()) < projectingChunks){
+        projectChunk(chunk, projectingViewProjection, projectingWidth, projectingHeight);
+      }
+    }
+  }
+
+  /**
+ * Takes the pool for a frame to project or draw with, making it the first
+ * time. The thread projecting and the thread drawing each take it, and it
+ * is not shut down until every frame that took it has released it.
+ * @return The Workers of parallelism threads, or null with only one thread.
+ * @since 1.1
+ */
+  private synchronized Workers acquireWorkers(){
+    if(parallelism == 1){
+      return null;
+    }
+    if(workers == null){
+      workers = new Workers(parallelism);
+    }
+    workers.users++;
+    return workers;
+  }
+
+  /**
+ * Releases the pool taken for a frame, shutting it down if parallelism has
+ * changed since and no other frame is using it.
+ * @param  threads The Workers got from acquireWorkers, may be null.
+ * @since 1.1
+ */
+  private synchronized void releaseWorkers(Workers threads){
+    if(threads != null && --threads.users == 0 && threads != workers){
+      threads.pool.shutdown();
+    }
+  }
+
+  /** Workers are a pool of threads with a ProjectTask for each, kept together
+   * so a frame uses the tasks made for the pool it runs on even if parallelism
+   * changes while it is projected.*/
+  private final class Workers{
+    final ForkJoinPool pool;
+    final ProjectTask[] projectTasks;
+    /** The number of frames using the pool, guarded by the OffscreenRenderer.*/
+    int users;
+
+    Workers(int parallelism){
+      pool = new ForkJoinPool(parallelism);
+      projectTasks = new ProjectTask[parallelism];
+      for(int i=0; i<parallelism; i++){
+        projectTasks[i] = new ProjectTask();
+      }
+    }
+  }
+
+  /**
+ * Projects the chunks of a frame with every ProjectTask of a pool, running the
+ * first on this thread. The others are handed to the pool from outside it so
+ * that no worker ever blocks waiting for another.
+ * @param  threads The Workers to project with.
+ * @since 1.1
+ */
+  private void projectAll(Workers threads){
+    ProjectTask[] tasks = threads.projectTasks;
+    for(int i=1; i<tasks.length; i++){
+      tasks[i].reinitialize();
+      threads.pool.execute(tasks[i]);
+    }
+    tasks[0].reinitialize();
+    try{
+      tasks[0].invoke();
+    }finally{
+      // the others still project the frame until they have taken every chunk
+      for(int i=1; i<tasks.length; i++){
+        tasks[i].quietlyJoin();
+      }
+    }
+    for(int i=1; i<tasks.length; i++){
+      tasks[i].join();
+    }
+  }
+
+  /**
+ * Works out the pixels fillOval fills for an oval as runs along each row.
+ * @param  width The width of the oval.
+ * @param  height The height of the oval.
+ * @return The runs as x, y and length from the corner of the oval.
+ * @since 1.1
+ */
+  private static int[] findSpans(int width, int height){
+    BufferedImage image = new BufferedImage(width+1, height+1, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g2d = image.createGraphics();
+    try{
+      g2d.setColor(Color.WHITE);
+      g2d.fillOval(0, 0, width, height);
+    }finally{
+      g2d.dispose();
+    }
+    int[] pixels = getFramebuffer(image);
+    int[] spans = new int[0];
+    for(int y=0; y<=height; y++){
+      for(int x=0; x<=width; x++){
+        if(pixels[y*(width+1)+x] == 0){
+          continue;
+        }
+        int start = x;
+        while(x <= width && pixels[y*(width+1)+x] != 0){
+          x++;
+        }
+        spans = Arrays.copyOf(spans, spans.length+3);
+        spans[spans.length-3] = start;
+        spans[spans.length-2] = y;
+        spans[spans.length-1] = x-start;
+      }
+    }
+    return spans;
+  }
+
+  /**
+ * Gets the int[] of packed RGB pixels backing a BufferedImage of type
+ * TYPE_INT_RGB. Writes to the array are visible in the image.
+ * @param  image An image of type TYPE_INT_RGB.
+ * @return The pixels of the image stored row by row.
+ * @since 1.1
+ */
+  public static int[] getFramebuffer(BufferedImage image){
+    return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+  }
+
+  /**
+ * Sets the render distance. Shapes that are completely further in front of
+ * the camera than it are not drawn.
+ * @param  x The render distance.
+ * @since 1.1
+ */
+  public void setRenderDistance(double x){
+    this.renderDistance = x;
+  }
+
+  /**
+ * Sets the screen distance. It is also the near plane, anything closer to the
+ * camera is clipped off.
+ * @param  x The screen distance.
+ * @since 1.1
+ */
+  public void setScreenDistance(double x){
+    this.screenDistance = x;
+  }
+
+  /**
+ * Sets the feild of view.
+ * @param  x The feild of view in radians.
+ * @since 1.1
+ */
+  public void setFov(double x){
+    this.fov = x;
+  }
+
+  /**
+ * Sets how the shapes are drawn. It starts as RenderMode.WIREFRAME.
+ * @param  mode How the shapes are to be drawn.
+ * @since 1.1
+ */
+  public void setRenderMode(RenderMode mode){
+    this.mode = mode;
+  }
+
+  /**
+ * Gets how the shapes are drawn.
+ * @return How the shapes are drawn.
+ * @since 1.1
+ */
+  public RenderMode getRenderMode(){
+    return mode;
+  }
+
+  /**
+ * Sets whether the lines of wireframes are antialiased with Xiaolin Wu's
+ * algorithm. It starts off.
+ * @param  antialiasing True to antialias wireframe lines.
+ * @since 1.1
+ */
+  public void setAntialiasing(boolean antialiasing){
+    this.antialiasing = antialiasing;
+  }
+
+  /**
+ * Gets whether the lines of wireframes are antialiased.
+ * @return True if wireframe lines are antialiased.
+ * @since 1.1
+ */
+  public boolean isAntialiasing(){
+    return antialiasing;
+  }
+
+  /**
+ * Sets the detail threshold. Shapes, meshes and instances that are smaller on
+ * screen than it are drawn as a single point at their center rather than
+ * being projected. It starts as 0, which projects everything.
+ * @param  x The detail threshold in pixels.
+ * @since 1.1
+ */
+  public void setDetailThreshold(double x){
+    this.detailThreshold = x;
+  }
+
+  /**
+ * Gets the detail threshold.
+ * @return The detail threshold in pixels.
+ * @since 1.1
+ */
+  public double getDetailThreshold(){
+    return detailThreshold;
+  }
+
+  /**
+ * Sets the number of threads used to transform and project the shapes and to
+ * draw the tiles of the frame. With 1 everything is done on the calling
+ * thread. The frame drawn is the same whatever the number. It starts as the
+ * number of available processors. It can be changed while frames are being
+ * projected and drawn, which finish on the threads they started with.
+ * @param  x The number of threads.
+ * @throws IllegalArgumentException Throws IllegalArgumentException if x is less than 1.
+ * @since 1.1
+ */
+  public synchronized void setParallelism(int x){
+    if(x < 1){
+      throw new IllegalArgumentException("Parallelism must be at least 1: "+x);
+    }
+    if(x == parallelism){
+      return;
+    }
+    this.parallelism = x;
+    if(workers != null){
+      // frames still using the old pool shut it down when they release it
+      if(workers.users == 0){
+        workers.pool.shutdown();
+      }
+      workers = null;
+    }
+  }
+
+  /**
+ * Gets the number of threads used to transform and project the shapes.
+ * @return The number of threads.
+ * @since 1.1
+ */
+  public synchronized int getParallelism(){
+    return parallelism;
+  }
+
+  /**
+ * Gets the timings and counts of the frames rendered so far.
+ * @return The FrameStatistics of this OffscreenRenderer.
+ * @since 1.1
+ */
+  public FrameStatistics getStatistics(){
+    return statistics;
+  }
+
+  /**
+ * Gets the render distance.
+ * @return The render distance.
+ * @since 1.1
+ */
+  public double getRenderDistance(){
+    return renderDistance;
+  }
+
+  /**
+ * Gets the screen distance.
+ * @return The screen distance.
+ * @since 1.1
+ */
+  public double getScreenDistance(){
+    return screenDistance;
+  }
+
+  /**
+ * Gets the feild of view.
+ * @return The feild of view in radians.
+ * @since 1.1
+ */
+  public double getFov(){
+    return fov;
+  }
+}
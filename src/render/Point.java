@@ -2,7 +2,8 @@ package render;
 import matrix.*;
 import java.lang.Math;
 
-/** A Point represents a location in a 3D coordinate space.
+/** A Point represents a location in a 3D coordinate space. It keeps just its
+ * three coordinates, the homogeneous form is only made when it is asked for.
  * @author      Nathan Jones <nathanjones.ec@gmail.com>
  * @version     1.0
  * @since       1.0
@@ -15,8 +16,6 @@ public class Point{
   private double y;
   /** Represents the z coordinate.*/
   private double z;
-  /** Represents the coordinate in homogeneous form.*/
-  private Matrix homoCoord;
 
   /**
   * Creates a Point with coordinates (0, 0, 0).
@@ -26,7 +25,6 @@ public class Point{
      x = 0;
      y = 0;
      z = 0;
-     homoCoord = new Matrix(new double[][]{{0}, {0}, {0}, {1}});
   }
 
  /**
@@ -40,7 +38,6 @@ public class Point{
     this.x = x;
     this.y = y;
     this.z = z;
-    homoCoord = new Matrix(new double[][]{{x}, {y}, {z}, {1}});
   }
 
   /**
@@ -52,16 +49,16 @@ public class Point{
     x = homoCoord.get(0,0);
     y = homoCoord.get(1,0);
     z = homoCoord.get(2,0);
-    this.homoCoord = homoCoord;
   }
 
   /**
- * Gets the 4x1 Matrix representaion of the homogeneous coordinate.
+ * Gets the 4x1 Matrix representaion of the homogeneous coordinate. A new
+ * Matrix is made each time, so changing it does not change the Point.
  * @return The 4x1 Matrix representaion of the homogeneous coordinate.
  * @since 1.0
  */
   public Matrix getPointAsMatrix(){
-    return homoCoord;
+    return new Matrix(new double[][]{{x}, {y}, {z}, {1}});
   }
 
   /**
@@ -98,7 +95,6 @@ public class Point{
   * @since 1.0
   */
   public void setPoint(Matrix coord){
-    this.homoCoord = coord;
     x = coord.get(0,0);
     y = coord.get(1,0);
     z = coord.get(2,0);
@@ -111,7 +107,6 @@ public class Point{
   */
   public void setX(double x){
     this.x = x;
-    this.homoCoord.set(0, 0, x);
   }
 
   /**
@@ -121,7 +116,6 @@ public class Point{
   */
   public void setY(double y){
     this.y = y;
-    this.homoCoord.set(1, 0, y);
   }
 
   /**
@@ -131,7 +125,6 @@ public class Point{
   */
   public void setZ(double z){
     this.z = z;
-    this.homoCoord.set(2, 0, z);
   }
 
   /**
@@ -140,10 +133,28 @@ public class Point{
   * @since 1.0
   */
   public void transform(Matrix m){
-    homoCoord = Matrix.mult(m, homoCoord);
-    x = homoCoord.get(0,0);
-    y = homoCoord.get(1,0);
-    z = homoCoord.get(2,0);
+    if(m.getRows() >= 3 && m.getColumns() == 4){
+      double newX = transformRow(m, 0);
+      double newY = transformRow(m, 1);
+      z = transformRow(m, 2);
+      x = newX;
+      y = newY;
+      return;
+    }
+    setPoint(Matrix.mult(m, getPointAsMatrix()));
+  }
+
+  /**
+  * Transforms the point by a Matrix4 without allocating anything.
+  * @param  m The transformation Matrix4 that represents the transformation you want to take place.
+  * @since 1.1
+  */
+  public void transform(Matrix4 m){
+    double newX = m.transformX(x, y, z);
+    double newY = m.transformY(x, y, z);
+    z = m.transformZ(x, y, z);
+    x = newX;
+    y = newY;
   }
 
   /**
@@ -152,8 +163,32 @@ public class Point{
   * @since 1.0
   */
   public Point getTransformedPoint(Matrix m){
-    Point newPoint = new Point(Matrix.mult(m, homoCoord));
-    return newPoint;
+    if(m.getRows() >= 3 && m.getColumns() == 4){
+      return new Point(transformRow(m, 0), transformRow(m, 1), transformRow(m, 2));
+    }
+    return new Point(Matrix.mult(m, getPointAsMatrix()));
+  }
+
+  /**
+  * Works out one element of a Matrix times the homogeneous coordinate without
+  * making the 4x1 Matrix, adding in the same order Matrix.mult does.
+  * @param  m A Matrix with 4 columns.
+  * @param  row The row of the Matrix.
+  * @return The element of the product in that row.
+  * @since 1.1
+  */
+  private double transformRow(Matrix m, int row){
+    return m.get(row,0)*getX()+m.get(row,1)*getY()+m.get(row,2)*getZ()+m.get(row,3);
+  }
+
+  /**
+  * Returns the Point after being transformed by a Matrix4 without altering the original Point
+  * @param  m The transformation Matrix4 that represents the transformation you want to take place.
+  * @since 1.1
+  */
+  public Point getTransformedPoint(Matrix4 m){
+    double x = getX(), y = getY(), z = getZ();
+    return new Point(m.transformX(x, y, z), m.transformY(x, y, z), m.transformZ(x, y, z));
   }
 
   /**
@@ -162,7 +197,7 @@ public class Point{
   * @since 1.0
   */
   public Point getRelativePoint(Point pointToBeRelativeTo){
-     return new Point(Matrix.sub(this.getPointAsMatrix(), pointToBeRelativeTo.getPointAsMatrix()));
+     return new Point(getX()-pointToBeRelativeTo.getX(), getY()-pointToBeRelativeTo.getY(), getZ()-pointToBeRelativeTo.getZ());
   }
 
   /**
@@ -172,8 +207,10 @@ public class Point{
   * @since 1.0
   */
   public double getDistanceToPoint(Point pointToGetDistanceTo){
-     Point fromOrigin = getRelativePoint(pointToGetDistanceTo);
-     return Math.sqrt(Math.pow(fromOrigin.getX(), 2)+Math.pow(fromOrigin.getY(), 2)+Math.pow(fromOrigin.getZ(), 2));
+     double dx = getX()-pointToGetDistanceTo.getX();
+     double dy = getY()-pointToGetDistanceTo.getY();
+     double dz = getZ()-pointToGetDistanceTo.getZ();
+     return Math.sqrt(dx*dx+dy*dy+dz*dz);
   }
 
   /**
@@ -182,7 +219,7 @@ public class Point{
   * @since 1.0
   */
   public String toString(){
-    return "("+x+", "+y+", "+z+")";
+    return "("+getX()+", "+getY()+", "+getZ()+")";
   }
 
   /**
@@ -191,6 +228,6 @@ public class Point{
   * @since 1.0
   */
   public Point clone(){
-    return new Point(x, y, z);
+    return new Point(getX(), getY(), getZ());
   }
 }
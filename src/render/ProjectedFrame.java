@@ -0,0 +1,166 @@
+package render;
+import java.util.ArrayList;
+
+/** A ProjectedFrame holds a frame of a Scene once it has been culled and
+ * projected, packed into DrawBatches of screen coordinates and colors that
+ * no longer refer to the Scene, ready to be drawn. OffscreenRenderer.project
+ * fills one and OffscreenRenderer.draw draws it, so one thread can project
+ * the next frame while another draws the last. A ProjectedFrame is not
+ * changed between being projected and being drawn, and is reused for frame
+ * after frame so it keeps its storage.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public final class ProjectedFrame{
+
+  /** One ShapeProjector for each chunk of visible shapes, then one for each
+   * visible mesh, then one for each chunk of visible instances.*/
+  private final ArrayList<ShapeProjector> projectors = new ArrayList<ShapeProjector>();
+  /** Holds the points drawn for shapes, meshes and instances below the detail threshold.*/
+  private final DrawBatch pointBatch = new DrawBatch();
+  /** The order the primitives are painted in for RenderMode.PAINTER.*/
+  private final DepthOrder depthOrder = new DepthOrder();
+  /** The number of chunks that were projected.*/
+  private int chunks;
+  /** The width of the area the frame was projected for.*/
+  private int width;
+  /** The height of the area the frame was projected for.*/
+  private int height;
+  /** How the frame is to be drawn.*/
+  private RenderMode mode = RenderMode.WIREFRAME;
+  /** The event of the frame, begun when it started being projected and reused from frame to frame.*/
+  final FrameEvent event = new FrameEvent();
+  /** When projecting the frame started, in nanoseconds.*/
+  long frameStart;
+  /** When the shapes in view had been found and projecting them started, in nanoseconds.*/
+  long projectStart;
+  /** When projecting the frame ended, in nanoseconds.*/
+  long projectEnd;
+  /** The bytes allocated by the thread that projected the frame, -1 if unknown.*/
+  long allocated;
+  /** The number of shapes, meshes and instances in the Scene.*/
+  int sceneShapes;
+  /** The number of shapes, meshes and instances drawn, including those drawn as points.*/
+  int shapesDrawn;
+
+  /**
+ * Creates an empty ProjectedFrame.
+ * @since 1.1
+ */
+  public ProjectedFrame(){
+  }
+
+  /**
+ * Starts a new frame, keeping the storage of the last.
+ * @param  width The width of the area being drawn to.
+ * @param  height The height of the area being drawn to.
+ * @param  mode How the frame is to be drawn.
+ * @since 1.1
+ */
+  void reset(int width, int height, RenderMode mode){
+    this.width = width;
+    this.height = height;
+    this.mode = mode;
+    chunks = 0;
+    pointBatch.clear();
+  }
+
+  /**
+ * Sets the number of chunks to be projected, making sure there is a
+ * ShapeProjector for each.
+ * @param  chunks The number of chunks.
+ * @since 1.1
+ */
+  void setChunks(int chunks){
+    while(projectors.size() < chunks){
+      projectors.add(new ShapeProjector());
+    }
+    this.chunks = chunks;
+  }
+
+  /**
+ * Gets the number of chunks that were projected.
+ * @return The number of chunks.
+ * @since 1.1
+ */
+  int getChunks(){
+    return chunks;
+  }
+
+  /**
+ * Gets the ShapeProjector of a chunk.
+ * @param  chunk The index of the chunk.
+ * @return The ShapeProjector.
+ * @since 1.1
+ */
+  ShapeProjector getProjector(int chunk){
+    return projectors.get(chunk);
+  }
+
+  /**
+ * Gets the batch of a chunk, or the batch of points after the last chunk.
+ * @param  chunk The index of the chunk, getChunks() for the points.
+ * @return The DrawBatch to draw.
+ * @since 1.1
+ */
+  DrawBatch getBatch(int chunk){
+    return chunk == chunks ? pointBatch : projectors.get(chunk).getBatch();
+  }
+
+  /**
+ * Gets the batch of points drawn for shapes, meshes and instances below the
+ * detail threshold.
+ * @return The DrawBatch of points.
+ * @since 1.1
+ */
+  DrawBatch getPointBatch(){
+    return pointBatch;
+  }
+
+  /**
+ * Puts the primitives of every batch in order from the furthest to the
+ * nearest, for painting them over one another.
+ * @since 1.1
+ */
+  void sortBackToFront(){
+    depthOrder.sort(this);
+  }
+
+  /**
+ * Gets the order the primitives were last put in by sortBackToFront.
+ * @return The DepthOrder of the primitives.
+ * @since 1.1
+ */
+  DepthOrder getDepthOrder(){
+    return depthOrder;
+  }
+
+  /**
+ * Gets the width of the area the frame was projected for.
+ * @return The width in pixels.
+ * @since 1.1
+ */
+  public int getWidth(){
+    return width;
+  }
+
+  /**
+ * Gets the height of the area the frame was projected for.
+ * @return The height in pixels.
+ * @since 1.1
+ */
+  public int getHeight(){
+    return height;
+  }
+
+  /**
+ * Gets how the frame is to be drawn.
+ * @return The RenderMode the frame was projected with.
+ * @since 1.1
+ */
+  public RenderMode getRenderMode(){
+    return mode;
+  }
+}
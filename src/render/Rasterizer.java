@@ -0,0 +1,478 @@
+package render;
+import java.util.Arrays;
+
+/** A Rasterizer fills polygons and draws lines straight into an int[] of
+ * packed RGB pixels, keeping a float[] depth buffer so that nearer primitives
+ * hide further ones whatever order they are drawn in. Depths are the projected
+ * z coordinate divided by w, which changes linearly across the screen, and
+ * smaller depths are nearer. Made without a depth buffer it paints each
+ * primitive over what is already there, so they have to be drawn from the
+ * furthest to the nearest.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class Rasterizer{
+
+  /** The number of steps a pixel is split into along each axis for the edge tests.*/
+  private static final long SUBPIXELS = 256;
+  /** How far off screen, in pixels, a vertex can be before its triangle is clipped.*/
+  private static final float GUARD_BAND = 1 << 20;
+  /** The most vertexes a triangle can have once clipped to the four sides of the guard band.*/
+  private static final int GUARD_VERTEXES = 7;
+
+  /** The width of the buffers in pixels.*/
+  private final int width;
+  /** The height of the buffers in pixels.*/
+  private final int height;
+  /** The color of each pixel, row by row.*/
+  private final int[] colorBuffer;
+  /** The depth of each pixel, row by row, null when primitives are painted over each other.*/
+  private final float[] depthBuffer;
+  /** The left of the rectangle drawing is kept inside.*/
+  private int clipX;
+  /** The top of the rectangle drawing is kept inside.*/
+  private int clipY;
+  /** The width of the rectangle drawing is kept inside.*/
+  private int clipWidth;
+  /** The height of the rectangle drawing is kept inside.*/
+  private int clipHeight;
+  /** A triangle being clipped to the guard band.*/
+  private float[] guardPolygon = new float[GUARD_VERTEXES*3];
+  /** The triangle clipped to the next side of the guard band.*/
+  private float[] guardClipped = new float[GUARD_VERTEXES*3];
+
+  /**
+ * Creates a Rasterizer with its own depth buffer that draws into a color buffer.
+ * @param  colorBuffer The packed RGB pixels to draw into, row by row.
+ * @param  width The width of the buffer in pixels.
+ * @param  height The height of the buffer in pixels.
+ * @since 1.1
+ */
+  public Rasterizer(int[] colorBuffer, int width, int height){
+    this(colorBuffer, new float[width*height], width, height);
+  }
+
+  /**
+ * Creates a Rasterizer that draws into a color buffer and a depth buffer it
+ * may share with other Rasterizers, each drawing inside its own clip.
+ * @param  colorBuffer The packed RGB pixels to draw into, row by row.
+ * @param  depthBuffer The depth of each pixel, row by row, or null to paint
+ *                     each primitive over what is already there.
+ * @param  width The width of the buffers in pixels.
+ * @param  height The height of the buffers in pixels.
+ * @since 1.1
+ */
+  public Rasterizer(int[] colorBuffer, float[] depthBuffer, int width, int height){
+    if(colorBuffer.length < width*height){
+      throw new IllegalArgumentException("Color buffer too small for "+width+"x"+height);
+    }
+    if(depthBuffer != null && depthBuffer.length < width*height){
+      throw new IllegalArgumentException("Depth buffer too small for "+width+"x"+height);
+    }
+    this.width = width;
+    this.height = height;
+    this.colorBuffer = colorBuffer;
+    this.depthBuffer = depthBuffer;
+    setClip(0, 0, width, height);
+  }
+
+  /**
+ * Keeps drawing and clearing inside a rectangle of the buffers. Pixels drawn
+ * inside it are the same as they would be without it. It starts as the
+ * whole of the buffers.
+ * @param  x The left of the rectangle.
+ * @param  y The top of the rectangle.
+ * @param  width The width of the rectangle.
+ * @param  height The height of the rectangle.
+ * @since 1.1
+ */
+  public void setClip(int x, int y, int width, int height){
+    clipX = Math.max(0, x);
+    clipY = Math.max(0, y);
+    clipWidth = Math.max(0, Math.min(this.width, x+width)-clipX);
+    clipHeight = Math.max(0, Math.min(this.height, y+height)-clipY);
+  }
+
+  /**
+ * Fills the clip of the color buffer with one color and sets every depth in
+ * it to the furthest if there is a depth buffer.
+ * @param  color The packed RGB color to clear to.
+ * @since 1.1
+ */
+  public void clear(int color){
+    if(clipWidth == width){
+      Arrays.fill(colorBuffer, clipY*width, (clipY+clipHeight)*width, color);
+      if(depthBuffer != null){
+        Arrays.fill(depthBuffer, clipY*width, (clipY+clipHeight)*width, Float.POSITIVE_INFINITY);
+      }
+      return;
+    }
+    for(int y=clipY; y<clipY+clipHeight; y++){
+      int row = y*width;
+      Arrays.fill(colorBuffer, row+clipX, row+clipX+clipWidth, color);
+      if(depthBuffer != null){
+        Arrays.fill(depthBuffer, row+clipX, row+clipX+clipWidth, Float.POSITIVE_INFINITY);
+      }
+    }
+  }
+
+  /**
+ * Fills a convex polygon by splitting it into a fan of triangles.
+ * @param  vertexes The vertexes packed as x, y, depth in screen coordinates.
+ * @param  offset The index in vertexes of the x coordinate of the first vertex.
+ * @param  count The number of vertexes.
+ * @param  color The packed RGB color to fill with.
+ * @since 1.1
+ */
+  public void fillPolygon(float[] vertexes, int offset, int count, int color){
+    float x0 = vertexes[offset], y0 = vertexes[offset+1], z0 = vertexes[offset+2];
+    for(int i=1; i<count-1; i++){
+      int a = offset+i*3;
+      int b = a+3;
+      fillTriangle(x0, y0, z0, vertexes[a], vertexes[a+1], vertexes[a+2], vertexes[b], vertexes[b+1], vertexes[b+2], color);
+    }
+  }
+
+  /**
+ * Fills a triangle. A pixel is filled when its centre is inside the triangle,
+ * pixels on a shared edge are only filled by one of the triangles, and only
+ * where the triangle is nearer than what is already there if there is a
+ * depth buffer. The vertexes are
+ * snapped to 1/256 of a pixel and the edges tested with whole numbers, so
+ * whether a pixel is filled and its depth do not depend on the clip.
+ * @param  x0 The x coordinate on screen of the first vertex.
+ * @param  y0 The y coordinate on screen of the first vertex.
+ * @param  z0 The depth of the first vertex.
+ * @param  x1 The x coordinate on screen of the second vertex.
+ * @param  y1 The y coordinate on screen of the second vertex.
+ * @param  z1 The depth of the second vertex.
+ * @param  x2 The x coordinate on screen of the third vertex.
+ * @param  y2 The y coordinate on screen of the third vertex.
+ * @param  z2 The depth of the third vertex.
+ * @param  color The packed RGB color to fill with.
+ * @since 1.1
+ */
+  public void fillTriangle(float x0, float y0, float z0, float x1, float y1, float z1,
+                           float x2, float y2, float z2, int color){
+    if(Float.isNaN(x0+y0+x1+y1+x2+y2)){
+      return;
+    }
+    if(Math.abs(x0) > GUARD_BAND || Math.abs(y0) > GUARD_BAND || Math.abs(x1) > GUARD_BAND
+       || Math.abs(y1) > GUARD_BAND || Math.abs(x2) > GUARD_BAND || Math.abs(y2) > GUARD_BAND){
+      fillClippedToGuardBand(x0, y0, z0, x1, y1, z1, x2, y2, z2, color);
+      return;
+    }
+    long sx0 = Math.round(x0*(double)SUBPIXELS), sy0 = Math.round(y0*(double)SUBPIXELS);
+    long sx1 = Math.round(x1*(double)SUBPIXELS), sy1 = Math.round(y1*(double)SUBPIXELS);
+    long sx2 = Math.round(x2*(double)SUBPIXELS), sy2 = Math.round(y2*(double)SUBPIXELS);
+    long area = (sx1-sx0)*(sy2-sy0)-(sx2-sx0)*(sy1-sy0);
+    if(area == 0){
+      return;
+    }
+    // make the winding the same for every triangle so the edge tests agree
+    if(area < 0){
+      long t = sx1; sx1 = sx2; sx2 = t;
+      t = sy1; sy1 = sy2; sy2 = t;
+      float f = z1; z1 = z2; z2 = f;
+      area = -area;
+    }
+
+    int minX = (int)Math.max(clipX, Math.floorDiv(Math.min(sx0, Math.min(sx1, sx2)), SUBPIXELS));
+    int maxX = (int)Math.min(clipX+clipWidth-1, Math.floorDiv(Math.max(sx0, Math.max(sx1, sx2)), SUBPIXELS));
+    int minY = (int)Math.max(clipY, Math.floorDiv(Math.min(sy0, Math.min(sy1, sy2)), SUBPIXELS));
+    int maxY = (int)Math.min(clipY+clipHeight-1, Math.floorDiv(Math.max(sy0, Math.max(sy1, sy2)), SUBPIXELS));
+    if(minX > maxX || minY > maxY){
+      return;
+    }
+
+    // edge functions, each changes by a fixed step moving one pixel
+    long a0 = (sy1-sy2)*SUBPIXELS, b0 = (sx2-sx1)*SUBPIXELS;
+    long a1 = (sy2-sy0)*SUBPIXELS, b1 = (sx0-sx2)*SUBPIXELS;
+    long a2 = (sy0-sy1)*SUBPIXELS, b2 = (sx1-sx0)*SUBPIXELS;
+    // top-left rule, pixels exactly on a right or bottom edge are left out
+    long bias0 = isTopLeft(a0, b0) ? 0 : -1;
+    long bias1 = isTopLeft(a1, b1) ? 0 : -1;
+    long bias2 = isTopLeft(a2, b2) ? 0 : -1;
+    // the depth as a plane through the vertexes, worked out from the pixel
+    // alone rather than stepped from the corner of the clip
+    double depthX = (a0*(double)z0+a1*(double)z1+a2*(double)z2)/area;
+    double depthY = (b0*(double)z0+b1*(double)z1+b2*(double)z2)/area;
+    double depthOrigin = z0+depthX*(0.5-sx0/(double)SUBPIXELS)+depthY*(0.5-sy0/(double)SUBPIXELS);
+    long px = (long)minX*SUBPIXELS+SUBPIXELS/2;
+    long py = (long)minY*SUBPIXELS+SUBPIXELS/2;
+    long rowW0 = (sx2-sx1)*(py-sy1)-(sy2-sy1)*(px-sx1)+bias0;
+    long rowW1 = (sx0-sx2)*(py-sy2)-(sy0-sy2)*(px-sx2)+bias1;
+    long rowW2 = (sx1-sx0)*(py-sy0)-(sy1-sy0)*(px-sx0)+bias2;
+
+    if(depthBuffer == null){
+      for(int y=minY; y<=maxY; y++){
+        long w0 = rowW0, w1 = rowW1, w2 = rowW2;
+        int index = y*width+minX;
+        for(int x=minX; x<=maxX; x++, index++){
+          if((w0|w1|w2) >= 0){
+            colorBuffer[index] = color;
+          }
+          w0 += a0;
+          w1 += a1;
+          w2 += a2;
+        }
+        rowW0 += b0;
+        rowW1 += b1;
+        rowW2 += b2;
+      }
+      return;
+    }
+    for(int y=minY; y<=maxY; y++){
+      long w0 = rowW0, w1 = rowW1, w2 = rowW2;
+      double rowDepth = depthOrigin+depthY*y;
+      int index = y*width+minX;
+      for(int x=minX; x<=maxX; x++, index++){
+        if((w0|w1|w2) >= 0){
+          float depth = (float)(rowDepth+depthX*x);
+          if(depth < depthBuffer[index]){
+            depthBuffer[index] = depth;
+            colorBuffer[index] = color;
+          }
+        }
+        w0 += a0;
+        w1 += a1;
+        w2 += a2;
+      }
+      rowW0 += b0;
+      rowW1 += b1;
+      rowW2 += b2;
+    }
+  }
+
+  /**
+ * Fills a triangle with a vertex outside the guard band by clipping it to
+ * the guard band, keeping the edge tests of fillTriangle in range of a long,
+ * and filling the polygon left.
+ * @since 1.1
+ */
+  private void fillClippedToGuardBand(float x0, float y0, float z0, float x1, float y1, float z1,
+                                      float x2, float y2, float z2, int color){
+    float[] polygon = guardPolygon;
+    polygon[0] = x0; polygon[1] = y0; polygon[2] = z0;
+    polygon[3] = x1; polygon[4] = y1; polygon[5] = z1;
+    polygon[6] = x2; polygon[7] = y2; polygon[8] = z2;
+    int count = 3;
+    for(int plane=0; plane<4 && count > 0; plane++){
+      count = clipToPlane(polygon, count, guardClipped, plane);
+      float[] t = polygon; polygon = guardClipped; guardClipped = t;
+    }
+    guardPolygon = polygon;
+    if(count >= 3){
+      fillPolygon(polygon, 0, count, color);
+    }
+  }
+
+  /**
+ * Clips a polygon to one side of the guard band with the Sutherland-Hodgman
+ * algorithm.
+ * @param  in The vertexes of the polygon packed as x, y, depth.
+ * @param  count The number of vertexes.
+ * @param  out Where the vertexes of the clipped polygon are put.
+ * @param  plane 0 to 3 for the left, right, top and bottom of the guard band.
+ * @return The number of vertexes of the clipped polygon.
+ * @since 1.1
+ */
+  private static int clipToPlane(float[] in, int count, float[] out, int plane){
+    int axis = plane/2;
+    float bound = plane%2 == 0 ? -GUARD_BAND : GUARD_BAND;
+    int kept = 0;
+    for(int i=0; i<count; i++){
+      int a = i*3, b = (i+1)%count*3;
+      float da = plane%2 == 0 ? in[a+axis]-bound : bound-in[a+axis];
+      float db = plane%2 == 0 ? in[b+axis]-bound : bound-in[b+axis];
+      if(da >= 0){
+        out[kept*3] = in[a];
+        out[kept*3+1] = in[a+1];
+        out[kept*3+2] = in[a+2];
+        kept++;
+      }
+      if((da >= 0) != (db >= 0)){
+        float t = da/(da-db);
+        out[kept*3] = in[a]+t*(in[b]-in[a]);
+        out[kept*3+1] = in[a+1]+t*(in[b+1]-in[a+1]);
+        out[kept*3+2] = in[a+2]+t*(in[b+2]-in[a+2]);
+        out[kept*3+axis] = bound;
+        kept++;
+      }
+    }
+    return kept;
+  }
+
+  /**
+ * Gets whether an edge is a top or left edge of a triangle.
+ * @param  a How much the edge function changes going one pixel right.
+ * @param  b How much the edge function changes going one pixel down.
+ * @return True if the edge is a top or left edge.
+ * @since 1.1
+ */
+  private static boolean isTopLeft(long a, long b){
+    return a > 0 || (a == 0 && b > 0);
+  }
+
+  /**
+ * Draws a line between points that need not be on pixels, only where it is
+ * nearer than what is already there if there is a depth buffer. Pixel x
+ * covers the coordinates from x up to x+1, as it does for polygons. The line
+ * is clipped to the buffers with the Liang-Barsky algorithm, its depth
+ * clipped with it, before its ends are moved onto the pixels they fall in,
+ * so an end too far off screen to be a pixel coordinate still draws the line
+ * towards it.
+ * @param  x0 The x coordinate on screen of the start of the line.
+ * @param  y0 The y coordinate on screen of the start of the line.
+ * @param  z0 The depth of the start of the line.
+ * @param  x1 The x coordinate on screen of the end of the line.
+ * @param  y1 The y coordinate on screen of the end of the line.
+ * @param  z1 The depth of the end of the line.
+ * @param  color The packed RGB color of the line.
+ * @since 1.1
+ */
+  public void drawLine(double x0, double y0, float z0, double x1, double y1, float z1, int color){
+    double dx = x1-x0, dy = y1-y0;
+    double enter = 0, leave = 1;
+    // up to just short of the right and bottom edges, which are past the last pixels
+    double maxX = Math.nextDown((double)width), maxY = Math.nextDown((double)height);
+    // each edge as how far the line moves towards it and how far inside the start is
+    for(int edge=0; edge<4; edge++){
+      double p, q;
+      switch(edge){
+        case 0: p = -dx; q = x0; break;
+        case 1: p = dx; q = maxX-x0; break;
+        case 2: p = -dy; q = y0; break;
+        default: p = dy; q = maxY-y0; break;
+      }
+      if(p == 0){
+        if(q < 0){
+          return;
+        }
+        continue;
+      }
+      double t = q/p;
+      if(p < 0){
+        if(t > leave){
+          return;
+        }
+        enter = Math.max(enter, t);
+      }else{
+        if(t < enter){
+          return;
+        }
+        leave = Math.min(leave, t);
+      }
+    }
+    float dz = z1-z0;
+    // rounding can still leave an end on the edge
+    drawLine(Math.min((int)(x0+enter*dx), width-1), Math.min((int)(y0+enter*dy), height-1), (float)(z0+enter*dz),
+             Math.min((int)(x0+leave*dx), width-1), Math.min((int)(y0+leave*dy), height-1), (float)(z0+leave*dz), color);
+  }
+
+  /**
+ * Draws a line one pixel wide, only where it is nearer than what is already
+ * there if there is a depth buffer. Only the part of the line inside the clip is stepped along.
+ * @param  x0 The x coordinate on screen of the start of the line.
+ * @param  y0 The y coordinate on screen of the start of the line.
+ * @param  z0 The depth of the start of the line.
+ * @param  x1 The x coordinate on screen of the end of the line.
+ * @param  y1 The y coordinate on screen of the end of the line.
+ * @param  z1 The depth of the end of the line.
+ * @param  color The packed RGB color of the line.
+ * @since 1.1
+ */
+  public void drawLine(int x0, int y0, float z0, int x1, int y1, float z1, int color){
+    long steps = Math.max(Math.abs((long)x1-x0), Math.abs((long)y1-y0));
+    if(steps == 0){
+      plot(x0, y0, z0, color);
+      return;
+    }
+    double dx = ((long)x1-x0)/(double)steps;
+    double dy = ((long)y1-y0)/(double)steps;
+    float dz = (z1-z0)/steps;
+    // only step along the part of the line that rounds into the clip
+    long first = 0, last = steps;
+    if(dx == 0){
+      if(x0 < clipX || x0 >= clipX+clipWidth){
+        return;
+      }
+    }else{
+      double a = (clipX-0.5-x0)/dx, b = (clipX+clipWidth-0.5-x0)/dx;
+      first = Math.max(first, (long)Math.floor(Math.min(a, b)));
+      last = Math.min(last, (long)Math.ceil(Math.max(a, b)));
+    }
+    if(dy == 0){
+      if(y0 < clipY || y0 >= clipY+clipHeight){
+        return;
+      }
+    }else{
+      double a = (clipY-0.5-y0)/dy, b = (clipY+clipHeight-0.5-y0)/dy;
+      first = Math.max(first, (long)Math.floor(Math.min(a, b)));
+      last = Math.min(last, (long)Math.ceil(Math.max(a, b)));
+    }
+    for(long i=first; i<=last; i++){
+      plot((int)Math.round(x0+dx*i), (int)Math.round(y0+dy*i), z0+dz*i, color);
+    }
+  }
+
+  /**
+ * Sets one pixel if it is inside the clip and nearer than what is already
+ * there, or whatever is there without a depth buffer.
+ * @param  x The x coordinate of the pixel.
+ * @param  y The y coordinate of the pixel.
+ * @param  depth The depth of the pixel.
+ * @param  color The packed RGB color of the pixel.
+ * @since 1.1
+ */
+  private void plot(int x, int y, float depth, int color){
+    if(x < clipX || y < clipY || x >= clipX+clipWidth || y >= clipY+clipHeight){
+      return;
+    }
+    int index = y*width+x;
+    if(depthBuffer == null){
+      colorBuffer[index] = color;
+    }else if(depth <= depthBuffer[index]){
+      depthBuffer[index] = depth;
+      colorBuffer[index] = color;
+    }
+  }
+
+  /**
+ * Gets the width of the buffers in pixels.
+ * @return The width of the buffers in pixels.
+ * @since 1.1
+ */
+  public int getWidth(){
+    return width;
+  }
+
+  /**
+ * Gets the height of the buffers in pixels.
+ * @return The height of the buffers in pixels.
+ * @since 1.1
+ */
+  public int getHeight(){
+    return height;
+  }
+
+  /**
+ * Gets the color buffer being drawn into.
+ * @return The packed RGB pixels, row by row.
+ * @since 1.1
+ */
+  public int[] getColorBuffer(){
+    return colorBuffer;
+  }
+
+  /**
+ * Gets the depth buffer.
+ * @return The depth of each pixel, row by row, or null if there is none.
+ * @since 1.1
+ */
+  public float[] getDepthBuffer(){
+    return depthBuffer;
+  }
+}
@@ -0,0 +1,21 @@
+package render;
+
+/** A RenderMode is a way an OffscreenRenderer can draw the shapes of a Scene.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public enum RenderMode{
+  /** White outlines of every shape drawn through Graphics2D.*/
+  WIREFRAME,
+  /** Shapes filled with their own color into an int[] framebuffer with a depth
+   * buffer, so nearer shapes hide further ones. Shapes with fewer than three
+   * vertexes are drawn as lines.*/
+  FILLED,
+  /** Shapes filled like FILLED but without a depth buffer, painted over one
+   * another from the furthest to the nearest by the mean depth of their
+   * vertexes. It needs no memory for depths but shapes that cut through or
+   * overlap each other in a cycle can be drawn in the wrong order.*/
+  PAINTER
+}
@@ -0,0 +1,20 @@
+package render;
+
+/** The stages an OffscreenRenderer goes through to render a frame, in order,
+ * each of which is timed by its FrameStatistics.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public enum RenderStage{
+  /** Finding the view frustum and the shapes that could be in it.*/
+  CULL,
+  /** Transforming the vertexes of the visible shapes by the view-projection
+   * matrix, clipping them at the near plane and dividing by w. The view
+   * transform and the perspective divide are done in the same pass over each
+   * vertex so they are timed together.*/
+  PROJECT,
+  /** Drawing the projected lines and polygons onto the target.*/
+  DRAW
+}
@@ -1,7 +1,20 @@
 package render;
+import matrix.Matrix4;
 import java.util.ArrayList;
+import java.util.List;
 
-/** A Scene is an object that has a camera and a list of Shape2D objects.
+/** A Scene is an object that has a camera, a list of Shape2D objects, a list
+ * of IndexedMesh objects and a list of GeometryInstance objects.
+ *
+ * <p>A Scene can be changed by other threads while it is being drawn. Once
+ * publish has been called, renderers only draw what the Scene was when it was
+ * last published, a SceneFrame that is not changed while it is being drawn
+ * and is handed over without locking. Writers change the Scene as they like
+ * then call publish, for example once per tick of a simulation, and only what
+ * changed since is copied. Until publish is first called renderers draw the
+ * Scene itself, so a Scene used from one thread need never publish it. The
+ * add methods and publish are synchronized on the Scene, and writers on more
+ * than one thread should hold its lock while changing the shapes in it.
  * @author      Nathan Jones <nathanjones.ec@gmail.com>
  * @version     1.0
  * @since       1.0
@@ -11,8 +24,22 @@ public class Scene{
 
   /** Holds the differnt shapes that are in the Scene.*/
   private ArrayList<Shape2D> shapes2D;
+  /** Holds the meshes that are in the Scene.*/
+  private ArrayList<IndexedMesh> meshes = new ArrayList<IndexedMesh>();
+  /** Holds the instances of Geometry that are in the Scene.*/
+  private ArrayList<GeometryInstance> instances = new ArrayList<GeometryInstance>();
   /** The camera that is within the Scene.*/
   private Camera camera;
+  /** Holds the vertexes of the shapes in the Scene packed together.*/
+  private VertexStore vertexStore;
+  /** Holds the shapes by location, null unless it has been enabled.*/
+  private BoundingVolumeHierarchy<Shape2D> spatialIndex;
+  /** The number of times shapes, meshes or instances have been added.*/
+  private int structure;
+  /** The frame renderers draw, the Scene itself until it is first published.*/
+  private volatile SceneFrame frame = new SceneFrame(this);
+  /** Frames published before the current one, to be reused once no reader holds them.*/
+  private final ArrayList<SceneFrame> retiredFrames = new ArrayList<SceneFrame>();
 
   /**
   * Creates a Scene with a Camera location at the origin facing along the z axis.
@@ -21,6 +48,8 @@ public class Scene{
   public Scene(){
     camera = new Camera();
     shapes2D = new ArrayList<Shape2D>();
+    vertexStore = new VertexStore();
+    vertexStore.markShared();
   }
 
   /**
@@ -33,15 +62,38 @@ public class Scene{
   public Scene(Point cameraLocation, double pitch, double yaw){
     camera = new Camera(cameraLocation, pitch, yaw);
     shapes2D = new ArrayList<Shape2D>();
+    vertexStore = new VertexStore();
+    vertexStore.markShared();
   }
 
   /**
-  * Adds a Shape2D to the scene.
+  * Creates a Scene around a Camera and a VertexStore that already hold what
+  * was read from a snapshot.
+  * @param  camera The Camera of the Scene.
+  * @param  vertexStore The store the vertexes of the shapes are kept in, marked as shared.
+  * @since 1.1
+  */
+  Scene(Camera camera, VertexStore vertexStore){
+    this.camera = camera;
+    shapes2D = new ArrayList<Shape2D>();
+    this.vertexStore = vertexStore;
+  }
+
+  /**
+  * Adds a Shape2D to the scene. Unless the shape is already in another Scene
+  * its vertexes are moved into the VertexStore of this Scene.
   * @param  shape The shape2D that you want to add to the Scene
   * @since 1.0
   */
-  public void add(Shape2D shape){
+  public synchronized void add(Shape2D shape){
+    if(!shape.getVertexStore().isShared()){
+      shape.moveTo(vertexStore);
+    }
     shapes2D.add(shape);
+    structure++;
+    if(spatialIndex != null){
+      shape.setSpatialIndex(spatialIndex, spatialIndex.insert(shape, shape.getBounds()));
+    }
   }
 
   /**
@@ -49,9 +101,109 @@ public class Scene{
   * @param  shapes An itterable object that holds shape2Ds that you want to add to the Scene.
   * @since 1.0
   */
-  public void add(Iterable<Shape2D> shapes){
+  public synchronized void add(Iterable<Shape2D> shapes){
     for(Shape2D shape : shapes){
-      shapes2D.add(shape);
+      add(shape);
+    }
+  }
+
+  /**
+  * Adds an IndexedMesh to the scene. Unless the mesh is already in another
+  * Scene its vertexes are moved into the VertexStore of this Scene.
+  * @param  mesh The IndexedMesh that you want to add to the Scene
+  * @since 1.1
+  */
+  public synchronized void add(IndexedMesh mesh){
+    if(!mesh.getVertexStore().isShared()){
+      mesh.moveTo(vertexStore);
+    }
+    meshes.add(mesh);
+    structure++;
+  }
+
+  /**
+  * Adds a GeometryInstance to the scene. Its Geometry stays in its own
+  * VertexStore, so one Geometry can be added any number of times.
+  * @param  instance The GeometryInstance that you want to add to the Scene
+  * @since 1.1
+  */
+  public synchronized void add(GeometryInstance instance){
+    instances.add(instance);
+    structure++;
+  }
+
+  /**
+  * Adds a Geometry to the scene with a model matrix.
+  * @param  geometry The Geometry that you want to add to the Scene
+  * @param  transform The model matrix that places it in the Scene, which is copied.
+  * @return The GeometryInstance that was added.
+  * @since 1.1
+  */
+  public GeometryInstance add(Geometry geometry, Matrix4 transform){
+    GeometryInstance instance = new GeometryInstance(geometry, transform);
+    add(instance);
+    return instance;
+  }
+
+  /**
+  * Adds a Geometry with levels of detail to the scene with a model matrix.
+  * @param  levelOfDetail The levels of the Geometry that you want to add to the Scene
+  * @param  transform The model matrix that places it in the Scene, which is copied.
+  * @return The GeometryInstance that was added.
+  * @since 1.1
+  */
+  public GeometryInstance add(LevelOfDetail levelOfDetail, Matrix4 transform){
+    GeometryInstance instance = new GeometryInstance(levelOfDetail, transform);
+    add(instance);
+    return instance;
+  }
+
+  /**
+  * Publishes what the Scene is now for renderers to draw. Frames are reused
+  * once no renderer holds them, so publishing copies only the vertexes,
+  * shapes, meshes and instances that changed since a frame was last used,
+  * and the spatial index if it changed at all. The shapes that moved are
+  * moved in the spatial index first.
+  * @since 1.1
+  */
+  public synchronized void publish(){
+    refitSpatialIndex();
+    SceneFrame next = null;
+    for(int i=0; i<retiredFrames.size(); i++){
+      if(!retiredFrames.get(i).isHeld()){
+        next = retiredFrames.remove(i);
+        break;
+      }
+    }
+    if(next == null){
+      next = new SceneFrame(camera);
+    }
+    next.update(this, structure);
+    SceneFrame previous = frame;
+    frame = next;
+    if(!previous.isLive()){
+      retiredFrames.add(previous);
+      // a reader that holds on to frames for long has the oldest left to it
+      if(retiredFrames.size() > 2){
+        retiredFrames.remove(0);
+      }
+    }
+  }
+
+  /**
+  * Gets the frame to draw and holds it until it is released. It does not
+  * lock, if a new frame is published while it is being got it tries again.
+  * @return The frame, to be released once it has been drawn.
+  * @since 1.1
+  */
+  SceneFrame acquireFrame(){
+    while(true){
+      SceneFrame current = frame;
+      current.acquire();
+      if(current == frame){
+        return current;
+      }
+      current.release();
     }
   }
 
@@ -73,4 +225,223 @@ public class Scene{
     return shapes2D;
   }
 
+  /**
+ * Gets the IndexedMeshes in the Scene.
+ * @return The IndexedMeshes in the Scene as a ArrayList.
+ * @since 1.1
+ */
+  public ArrayList<IndexedMesh> getMeshes(){
+    return meshes;
+  }
+
+  /**
+ * Gets the GeometryInstances in the Scene.
+ * @return The GeometryInstances in the Scene as a ArrayList.
+ * @since 1.1
+ */
+  public ArrayList<GeometryInstance> getInstances(){
+    return instances;
+  }
+
+  /**
+ * Gets the VertexStore that the vertexes of the Shape2Ds and IndexedMeshes in
+ * the Scene are kept in.
+ * @return The VertexStore of the Scene.
+ * @since 1.1
+ */
+  public VertexStore getVertexStore(){
+    return vertexStore;
+  }
+
+  /**
+ * Turns the spatial index on or off. While it is on the Shape2Ds are also kept
+ * in a BoundingVolumeHierarchy that is used to find the shapes in view, so the
+ * time taken depends on how many shapes are visible rather than how many are
+ * in the Scene. It is off by default.
+ * @param  enabled Whether the spatial index should be kept.
+ * @since 1.1
+ */
+  public synchronized void setSpatialIndexEnabled(boolean enabled){
+    if(!enabled){
+      if(spatialIndex != null){
+        for(Shape2D shape : shapes2D){
+          shape.removeSpatialIndex(spatialIndex);
+        }
+      }
+      spatialIndex = null;
+    }else if(spatialIndex == null){
+      spatialIndex = new BoundingVolumeHierarchy<Shape2D>();
+      for(Shape2D shape : shapes2D){
+        shape.setSpatialIndex(spatialIndex, spatialIndex.insert(shape, shape.getBounds()));
+      }
+    }
+  }
+
+  /**
+ * Sets the spatial index to one read from a snapshot, over the Shape2Ds of the
+ * Scene in order.
+ * @param  spatialIndex The spatial index.
+ * @since 1.1
+ */
+  void setSpatialIndex(BoundingVolumeHierarchy<Shape2D> spatialIndex){
+    this.spatialIndex = spatialIndex;
+    for(int i=0; i<shapes2D.size(); i++){
+      shapes2D.get(i).setSpatialIndex(spatialIndex, i);
+    }
+  }
+
+  /**
+ * Sets the spatial index of a published copy of a Scene, whose shapes never
+ * move so are not told to mark themselves in it.
+ * @param  spatialIndex The copy of the spatial index, or null if there is none.
+ * @since 1.1
+ */
+  void setSpatialIndexCopy(BoundingVolumeHierarchy<Shape2D> spatialIndex){
+    this.spatialIndex = spatialIndex;
+  }
+
+  /**
+ * Gets whether the spatial index is on.
+ * @return True if the spatial index is on.
+ * @since 1.1
+ */
+  public boolean isSpatialIndexEnabled(){
+    return spatialIndex != null;
+  }
+
+  /**
+ * Gets the spatial index, turning it on if it is not already and moving the
+ * shapes that have moved since it was last used.
+ * @return The BoundingVolumeHierarchy over the Shape2Ds in the Scene.
+ * @since 1.1
+ */
+  public synchronized BoundingVolumeHierarchy<Shape2D> getSpatialIndex(){
+    setSpatialIndexEnabled(true);
+    refitSpatialIndex();
+    return spatialIndex;
+  }
+
+  /**
+ * Moves every Shape2D in the Scene to where it now is in the spatial index. The
+ * shapes that invalidateBounds has been called on are moved anyway before the
+ * index is next searched or published, so this is only needed after changing
+ * the VertexStore directly without calling it. It does nothing when the
+ * spatial index is off.
+ * @since 1.1
+ */
+  public synchronized void updateSpatialIndex(){
+    if(spatialIndex != null){
+      for(int i=0; i<shapes2D.size(); i++){
+        spatialIndex.update(i, shapes2D.get(i).getBounds());
+      }
+      spatialIndex.clearMoved();
+    }
+  }
+
+  /**
+ * Moves only the Shape2Ds marked as moved since the spatial index was last
+ * used to where they now are in it.
+ * @since 1.1
+ */
+  private synchronized void refitSpatialIndex(){
+    if(spatialIndex != null && spatialIndex.getMovedCount() > 0){
+      for(int i=0; i<spatialIndex.getMovedCount(); i++){
+        int item = spatialIndex.getMoved(i);
+        spatialIndex.update(item, shapes2D.get(item).getBounds());
+      }
+      spatialIndex.clearMoved();
+    }
+  }
+
+  /**
+ * Adds every Shape2D that could be partly inside a Frustum to a List.
+ * @param  frustum The Frustum to search.
+ * @param  out The List the shapes are added to.
+ * @since 1.1
+ */
+  public void findShapesInView(Frustum frustum, List<Shape2D> out){
+    if(spatialIndex != null){
+      refitSpatialIndex();
+      spatialIndex.queryFrustum(frustum, out);
+      return;
+    }
+    for(int i=0; i<shapes2D.size(); i++){
+      Shape2D shape = shapes2D.get(i);
+      if(frustum.intersects(shape.getBounds())){
+        out.add(shape);
+      }
+    }
+  }
+
+  /**
+ * Adds every IndexedMesh that could be partly inside a Frustum to a List.
+ * Meshes are not in the spatial index, there are usually few enough of them
+ * to check each one.
+ * @param  frustum The Frustum to search.
+ * @param  out The List the meshes are added to.
+ * @since 1.1
+ */
+  public void findMeshesInView(Frustum frustum, List<IndexedMesh> out){
+    for(int i=0; i<meshes.size(); i++){
+      IndexedMesh mesh = meshes.get(i);
+      if(frustum.intersects(mesh.getBounds())){
+        out.add(mesh);
+      }
+    }
+  }
+
+  /**
+ * Adds every GeometryInstance that could be partly inside a Frustum to a List.
+ * Like meshes, instances are not in the spatial index.
+ * @param  frustum The Frustum to search.
+ * @param  out The List the instances are added to.
+ * @since 1.1
+ */
+  public void findInstancesInView(Frustum frustum, List<GeometryInstance> out){
+    for(int i=0; i<instances.size(); i++){
+      GeometryInstance instance = instances.get(i);
+      if(frustum.intersects(instance.getBounds())){
+        out.add(instance);
+      }
+    }
+  }
+
+  /**
+ * Adds every Shape2D whose bounding box comes within a distance of the Camera
+ * to a List. This turns the spatial index on.
+ * @param  radius The distance from the Camera to search.
+ * @param  out The List the shapes are added to.
+ * @since 1.1
+ */
+  public void findShapesNearCamera(double radius, List<Shape2D> out){
+    findShapesNear(camera.getLocation(), radius, out);
+  }
+
+  /**
+ * Adds every Shape2D whose bounding box comes within a distance of a Point to
+ * a List. This turns the spatial index on.
+ * @param  point The Point to search around.
+ * @param  radius The distance from the Point to search.
+ * @param  out The List the shapes are added to.
+ * @since 1.1
+ */
+  public void findShapesNear(Point point, double radius, List<Shape2D> out){
+    getSpatialIndex().queryRadius(point.getX(), point.getY(), point.getZ(), radius, out);
+  }
+
+  /**
+ * Adds every Shape2D whose bounding box is hit by a ray to a List. This turns
+ * the spatial index on.
+ * @param  origin The Point the ray starts at.
+ * @param  dx The x part of the direction of the ray.
+ * @param  dy The y part of the direction of the ray.
+ * @param  dz The z part of the direction of the ray.
+ * @param  length How far along the ray to search, in multiples of the direction.
+ * @param  out The List the shapes are added to.
+ * @since 1.1
+ */
+  public void findShapesAlongRay(Point origin, double dx, double dy, double dz, double length, List<Shape2D> out){
+    getSpatialIndex().queryRay(origin.getX(), origin.getY(), origin.getZ(), dx, dy, dz, length, out);
+  }
+
 }
@@ -0,0 +1,234 @@
+package render;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A SceneFrame is what a renderer draws of a Scene: the Scene itself until it
+ * is first published, then a read-only copy of it as it was when it was last
+ * published. A copy holds a view of the VertexStore of the Scene, views of the
+ * shapes and meshes kept in it, copies of the instances and of the spatial
+ * index, and is never changed while a reader holds it. Copies are reused
+ * once no reader holds them and are brought up to date by copying only the
+ * shapes, pages of vertexes, instances and pages of spatial index nodes that
+ * have changed since they were last used. Finding what has changed still
+ * checks a stamp for each shape and instance.
+ *
+ * <p>Shapes and meshes kept in another VertexStore than that of the Scene,
+ * such as those of another Scene, are not copied and must not change while
+ * the Scene is drawn.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+final class SceneFrame{
+
+  /** The Scene a reader draws, the Scene itself or a copy of it.*/
+  private final Scene scene;
+  /** The view of the VertexStore of the Scene, null if this frame is the Scene itself.*/
+  private final VertexStore store;
+  /** The number of readers holding the frame.*/
+  private final AtomicInteger readers = new AtomicInteger();
+  /** The epoch of the VertexStore of the Scene the view is up to date with, 0 before it is first used.*/
+  private int epoch;
+  /** The number of changes to the lists of the Scene the copy is up to date with.*/
+  private int structure = -1;
+  /** The view of each shape in the VertexStore, by its index in the store.*/
+  private Shape2D[] shapeViews = new Shape2D[0];
+  /** The view of each mesh in the VertexStore, by its index in the store.*/
+  private IndexedMesh[] meshViews = new IndexedMesh[0];
+  /** The shape each view in shapeViews is of.*/
+  private Shape2D[] shapeSources = new Shape2D[0];
+  /** The mesh each view in meshViews is of.*/
+  private IndexedMesh[] meshSources = new IndexedMesh[0];
+  /** The spatial index the copy was made from, null if there was none.*/
+  private BoundingVolumeHierarchy<Shape2D> spatialIndexSource;
+  /** The number of changes to spatialIndexSource the copy is up to date with.*/
+  private int spatialIndexModifications;
+
+  /**
+ * Creates the frame that is a Scene itself, drawn before it is first published.
+ * @param  scene The Scene.
+ * @since 1.1
+ */
+  SceneFrame(Scene scene){
+    this.scene = scene;
+    this.store = null;
+  }
+
+  /**
+ * Creates a frame to hold a copy of a Scene, empty until update is called.
+ * @param  camera The Camera of the Scene.
+ * @since 1.1
+ */
+  SceneFrame(Camera camera){
+    this.store = VertexStore.newView();
+    this.scene = new Scene(camera, store);
+  }
+
+  /**
+ * Gets the Scene to draw.
+ * @return The Scene, or a copy of it that must not be changed.
+ * @since 1.1
+ */
+  Scene getScene(){
+    return scene;
+  }
+
+  /**
+ * Gets whether this frame is the Scene itself rather than a copy.
+ * @return True if the frame is the Scene.
+ * @since 1.1
+ */
+  boolean isLive(){
+    return store == null;
+  }
+
+  /**
+ * Counts a reader as holding the frame.
+ * @since 1.1
+ */
+  void acquire(){
+    readers.incrementAndGet();
+  }
+
+  /**
+ * Lets go of the frame after drawing it.
+ * @since 1.1
+ */
+  void release(){
+    readers.decrementAndGet();
+  }
+
+  /**
+ * Gets whether a reader is holding the frame.
+ * @return True if the frame is in use.
+ * @since 1.1
+ */
+  boolean isHeld(){
+    return readers.get() != 0;
+  }
+
+  /**
+ * Brings the copy up to date with a Scene. It must only be called while no
+ * reader holds the frame, by the thread publishing the Scene. The bounds of
+ * the views are worked out here rather than when first asked for, so the
+ * renderers sharing the frame only ever read them.
+ * @param  live The Scene to copy.
+ * @param  liveStructure The number of changes to the lists of the Scene.
+ * @since 1.1
+ */
+  void update(Scene live, int liveStructure){
+    VertexStore liveStore = live.getVertexStore();
+    int since = epoch;
+    boolean changed = liveStore.hasChangedSince(since);
+    epoch = liveStore.copyChangesTo(store, since);
+
+    // refresh the views of the shapes and meshes that have changed
+    if(changed && since != 0){
+      int count = Math.min(liveStore.getShapeCount(), shapeViews.length);
+      for(int i=0; i<count; i++){
+        if(liveStore.hasChangedSince(i, since)){
+          if(shapeViews[i] != null){
+            shapeViews[i].setColor(shapeSources[i].getColor());
+            shapeViews[i].invalidateBounds();
+            shapeViews[i].getBounds();
+          }else if(meshViews[i] != null){
+            meshViews[i].refreshView(meshSources[i]);
+            meshViews[i].getBounds();
+          }
+        }
+      }
+    }
+
+    ArrayList<Shape2D> shapes = live.getShapes2D();
+    ArrayList<IndexedMesh> meshes = live.getMeshes();
+    if(liveStructure != structure || shapes.size() != scene.getShapes2D().size()
+       || meshes.size() != scene.getMeshes().size()){
+      ensureViewCapacity(liveStore.getShapeCount());
+      ArrayList<Shape2D> shapeCopies = scene.getShapes2D();
+      shapeCopies.clear();
+      shapeCopies.ensureCapacity(shapes.size());
+      for(int i=0; i<shapes.size(); i++){
+        Shape2D copy = viewOf(shapes.get(i), liveStore);
+        copy.getBounds();
+        shapeCopies.add(copy);
+      }
+      ArrayList<IndexedMesh> meshCopies = scene.getMeshes();
+      meshCopies.clear();
+      for(int i=0; i<meshes.size(); i++){
+        IndexedMesh copy = viewOf(meshes.get(i), liveStore);
+        copy.getBounds();
+        meshCopies.add(copy);
+      }
+      structure = liveStructure;
+      spatialIndexSource = null;
+    }
+
+    // instances are copied when they move, there are few enough to check each one
+    ArrayList<GeometryInstance> instances = live.getInstances();
+    ArrayList<GeometryInstance> instanceCopies = scene.getInstances();
+    if(instanceCopies.size() != instances.size()){
+      instanceCopies.clear();
+      for(int i=0; i<instances.size(); i++){
+        instanceCopies.add(instances.get(i).publish());
+      }
+    }else{
+      for(int i=0; i<instances.size(); i++){
+        instanceCopies.set(i, instances.get(i).publish());
+      }
+    }
+
+    BoundingVolumeHierarchy<Shape2D> spatialIndex = live.isSpatialIndexEnabled() ? live.getSpatialIndex() : null;
+    if(spatialIndex == null){
+      scene.setSpatialIndexCopy(null);
+    }else if(spatialIndex != spatialIndexSource || spatialIndex.getModifications() != spatialIndexModifications
+             || !scene.isSpatialIndexEnabled()){
+      BoundingVolumeHierarchy<Shape2D> copy = scene.isSpatialIndexEnabled() ? scene.getSpatialIndex()
+                                                                          : new BoundingVolumeHierarchy<Shape2D>();
+      spatialIndex.copyTo(copy, scene.getShapes2D());
+      scene.setSpatialIndexCopy(copy);
+    }
+    spatialIndexSource = spatialIndex;
+    spatialIndexModifications = spatialIndex == null ? 0 : spatialIndex.getModifications();
+  }
+
+  private void ensureViewCapacity(int count){
+    if(shapeViews.length < count){
+      int capacity = Math.max(count, shapeViews.length*2);
+      shapeViews = Arrays.copyOf(shapeViews, capacity);
+      shapeSources = Arrays.copyOf(shapeSources, capacity);
+      meshViews = Arrays.copyOf(meshViews, capacity);
+      meshSources = Arrays.copyOf(meshSources, capacity);
+    }
+  }
+
+  /**
+ * Gets the view of a shape, making it if this is the first time the shape
+ * has been copied.
+ * @since 1.1
+ */
+  private Shape2D viewOf(Shape2D shape, VertexStore liveStore){
+    if(shape.getVertexStore() != liveStore){
+      return shape;
+    }
+    int index = shape.getShapeIndex();
+    if(shapeSources[index] != shape){
+      shapeViews[index] = new Shape2D(store, index, shape.getColor());
+      shapeSources[index] = shape;
+    }
+    return shapeViews[index];
+  }
+
+  private IndexedMesh viewOf(IndexedMesh mesh, VertexStore liveStore){
+    if(mesh.getVertexStore() != liveStore){
+      return mesh;
+    }
+    int index = mesh.getShapeIndex();
+    if(meshSources[index] != mesh){
+      meshViews[index] = mesh.view(store);
+      meshSources[index] = mesh;
+    }
+    return meshViews[index];
+  }
+}
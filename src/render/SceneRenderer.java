@@ -1,10 +1,23 @@
 package render;
 import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.swing.*;
-import matrix.*;
-import java.util.ArrayList;
 
-/** A SceneRenderer is a extention of a JFrame that renders a Scene.
+/** A SceneRenderer is a extention of a JFrame that renders a Scene. The
+ * drawing itself is done by an OffscreenRenderer. Once start() is called the
+ * SceneRenderer draws frames at a target frame rate in a pipeline of two
+ * threads. One applies the input collected by its CameraInput and projects
+ * each frame, and the other draws the latest projected frame through a
+ * BufferStrategy, so the next frame is projected while the last is drawn. If
+ * either thread fails the exception is reported and both are stopped. While
+ * it runs, the FrameStatistics of its renderer are registered as an MXBean,
+ * and they can also be shown over the Scene.
  * @author      Nathan Jones <nathanjones.ec@gmail.com>
  * @version     1.0
  * @since       1.0
@@ -12,14 +25,34 @@ import java.util.ArrayList;
 
 public class SceneRenderer extends JFrame{
 
+  /** Numbers the MXBeans of the SceneRenderers so their names differ.*/
+  private static final AtomicInteger instances = new AtomicInteger();
+
   /** The scene that is to be rendered*/
   private Scene scene;
-  /** The furthest object that is to be rendered.*/
-  private double renderDistance;
-  /** The distance from the camera/eye to the screen.*/
-  private double screenDistance;
-  /** The feild of view.*/
-  private double fov;
+  /** The renderer that draws the scene onto the frame.*/
+  private OffscreenRenderer renderer;
+  /** Collects input to apply to the camera once per frame.*/
+  private CameraInput input;
+  /** The number of frames to draw each second.*/
+  private volatile int targetFrameRate;
+  /** The thread drawing frames, null when it is not running.*/
+  private volatile Thread renderThread;
+  /** The thread projecting frames, null when it is not running.*/
+  private Thread geometryThread;
+  /** Whether the threads are running, from start() until stop() has waited
+   * for both to finish.*/
+  private volatile boolean running;
+  /** Passes projected frames to the thread drawing them, null when it is not running.*/
+  private FrameHandoff handoff;
+  /** The most frames that can be in flight at once between the two threads.*/
+  private volatile int maxFramesInFlight;
+  /** Whether the frame statistics are drawn over the Scene.*/
+  private volatile boolean overlayVisible;
+  /** The name the frame statistics are registered under, null when they are not.*/
+  private ObjectName statisticsName;
+  /** The exception that last stopped the threads, null if none has.*/
+  private volatile RuntimeException failure;
 
   /**
  * Creates a SceneRenderer.
@@ -29,57 +62,18 @@ public class SceneRenderer extends JFrame{
   public SceneRenderer(Scene scene){
     super();
     this.scene = scene;
-    renderDistance = 20;
-    screenDistance = 1;
-    fov= (1/2.0)*Math.PI;
+    renderer = new OffscreenRenderer();
+    input = new CameraInput();
+    targetFrameRate = 60;
+    maxFramesInFlight = 2;
   }
 
   @Override
   public void paint(Graphics g){
-    double sh = getSize().getHeight();
-    double sw = getSize().getWidth();
-    double ar = sh/sw;
-    double fovNormaliser = 1/Math.tan(fov/2);
-    double zNormaliser = (renderDistance/(renderDistance/screenDistance));
-    Graphics2D g2d = (Graphics2D) g;
-
-    // set background color to black
-    g2d.setColor(Color.BLACK);
-    g2d.fillRect(0, 0, getWidth(), getHeight());
-
-    // get camera getLocation
-    Point cameraLocation = scene.getCamera().getLocation();
-
-    // draw white lines to show outlines of shapes
-    g2d.setColor(Color.WHITE);
-    for(Shape2D shape : scene.getShapes2D()){
-      // work out relative coordinates
-      Shape2D relativeShape = shape.getTransformedShape(cameraLocation, scene.getCamera().getPitch(), -scene.getCamera().getYaw());
-
-      // work out normalised coordinates
-      int numberOfVertexes = relativeShape.getNumberOfVertexes();
-      ArrayList<Point> normalisedPoints = relativeShape.getTransformedVertexes(new Matrix(new double[][]{
-        {ar*fovNormaliser, 0.0, 0.0, 0.0},
-        {0.0, ar*fovNormaliser, 0.0, 0.0},
-        {0.0, 0.0, zNormaliser, -zNormaliser*screenDistance},
-        {0.0, 0.0, 1.0, 0.0}
-      }));
-      for(Point point : normalisedPoints){
-        point.setPoint(Matrix.scalarMult(point.getPointAsMatrix(), 1/point.getPointAsMatrix().get(3,0)));
-      }
-      for(int i=0; i<numberOfVertexes; i++){
-        if(i == numberOfVertexes-1){
-          if(relativeShape.getVertex(i).getZ()>0 && relativeShape.getVertex(0).getZ()>0){
-            g2d.drawLine((int)(sw/2+sw*normalisedPoints.get(i).getX()), (int)(sh/2-sh*normalisedPoints.get(i).getY()),
-                         (int)(sw/2+sw*normalisedPoints.get(0).getX()), (int)(sh/2-sh*normalisedPoints.get(0).getY()));
-          }
-        }else if(relativeShape.getVertex(i).getZ()>0 && relativeShape.getVertex(i+1).getZ()>0){
-          g2d.drawLine((int)(sw/2+sw*normalisedPoints.get(i).getX()), (int)(sh/2-sh*normalisedPoints.get(i).getY()),
-                       (int)(sw/2+sw*normalisedPoints.get(i+1).getX()), (int)(sh/2-sh*normalisedPoints.get(i+1).getY()));
-        }
-      }
+    // while the threads run they draw every frame themselves
+    if(!running){
+      renderFrame((Graphics2D) g);
     }
-    g2d.fillOval((int)(sw/2), (int)(sh/2), 5 ,5);
   }
 
 
@@ -88,13 +82,269 @@ public class SceneRenderer extends JFrame{
     paint(g);
   }
 
+  /**
+ * Starts projecting and drawing frames on threads of their own. The
+ * SceneRenderer must be visible first. Repaint requests are ignored while it
+ * runs.
+ * @since 1.1
+ */
+  public synchronized void start(){
+    if(renderThread != null){
+      return;
+    }
+    setIgnoreRepaint(true);
+    createBufferStrategy(2);
+    registerStatistics();
+    FrameHandoff frames = new FrameHandoff(maxFramesInFlight);
+    Thread thread = new Thread(() -> renderLoop(frames), "SceneRenderer");
+    thread.setDaemon(true);
+    Thread geometry = new Thread(() -> geometryLoop(frames), "SceneRenderer-geometry");
+    geometry.setDaemon(true);
+    handoff = frames;
+    running = true;
+    renderThread = thread;
+    geometryThread = geometry;
+    geometry.start();
+    thread.start();
+  }
+
+  /**
+ * Stops drawing frames and waits for the last one to finish. Repaints draw
+ * the Scene again once both threads have ended.
+ * @since 1.1
+ */
+  public void stop(){
+    Thread thread, geometry;
+    synchronized(this){
+      thread = renderThread;
+      geometry = geometryThread;
+      renderThread = null;
+      geometryThread = null;
+      if(handoff != null){
+        handoff.close();
+        handoff = null;
+      }
+    }
+    // the threads are waited for even if interrupted, so paint() never draws
+    // while one of them is still projecting or drawing
+    boolean interrupted = false;
+    for(Thread t : new Thread[]{geometry, thread}){
+      while(t != null && t != Thread.currentThread() && t.isAlive()){
+        try{
+          t.join();
+        }catch(InterruptedException e){
+          interrupted = true;
+        }
+      }
+    }
+    if(interrupted){
+      Thread.currentThread().interrupt();
+    }
+    synchronized(this){
+      // a start() while waiting has threads of its own
+      if(renderThread == null){
+        running = false;
+      }
+    }
+    unregisterStatistics();
+    setIgnoreRepaint(false);
+  }
+
+  /**
+ * Registers the FrameStatistics of the renderer with the platform MBeanServer
+ * under the name render:type=FrameStatistics,name=SceneRenderer-n.
+ * @throws IllegalStateException Throws IllegalStateException if they can not be registered.
+ * @since 1.1
+ */
+  private synchronized void registerStatistics(){
+    if(statisticsName != null){
+      return;
+    }
+    try{
+      ObjectName name = new ObjectName("render:type=FrameStatistics,name=SceneRenderer-"+instances.incrementAndGet());
+      ManagementFactory.getPlatformMBeanServer().registerMBean(renderer.getStatistics(), name);
+      statisticsName = name;
+    }catch(JMException e){
+      throw new IllegalStateException("Could not register frame statistics", e);
+    }
+  }
+
+  /**
+ * Unregisters the FrameStatistics of the renderer if they are registered.
+ * @since 1.1
+ */
+  private synchronized void unregisterStatistics(){
+    if(statisticsName == null){
+      return;
+    }
+    try{
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+    }catch(JMException e){
+      // already gone, nothing more to do
+    }
+    statisticsName = null;
+  }
+
+  /**
+ * Renders the Scene onto a Graphics2D, then the overlay if it is visible.
+ * @param  g2d The Graphics2D to draw onto.
+ * @since 1.1
+ */
+  private void renderFrame(Graphics2D g2d){
+    renderer.render(scene, scene.getCamera(), g2d, getWidth(), getHeight());
+    if(overlayVisible){
+      drawOverlay(g2d);
+    }
+  }
+
+  /**
+ * Draws the frame statistics in the top left corner.
+ * @param  g2d The Graphics2D to draw onto.
+ * @since 1.1
+ */
+  private void drawOverlay(Graphics2D g2d){
+    FrameStatistics statistics = renderer.getStatistics();
+    Map<String, Double> p99 = statistics.getStageTimeP99Millis();
+    long allocated = statistics.getAllocatedBytesP50();
+    String[] lines = {
+      String.format("frame p50 %.2f ms  p99 %.2f ms  max %.2f ms", statistics.getFrameTimeP50Millis(),
+                    statistics.getFrameTimeP99Millis(), statistics.getFrameTimeMaxMillis()),
+      String.format("p99 cull %.2f ms  project %.2f ms  draw %.2f ms", p99.get(RenderStage.CULL.name()),
+                    p99.get(RenderStage.PROJECT.name()), p99.get(RenderStage.DRAW.name())),
+      String.format("shapes %d drawn  %d culled  vertexes %d", statistics.getShapesDrawn(),
+                    statistics.getShapesCulled(), statistics.getVertexesProjected()),
+      String.format("edges %d drawn  %d culled  polygons %d drawn  %d culled", statistics.getEdgesDrawn(),
+                    statistics.getEdgesCulled(), statistics.getPolygonsDrawn(), statistics.getPolygonsCulled()),
+      allocated < 0 ? "allocated unknown" : String.format("allocated p50 %d bytes/frame", allocated)
+    };
+    Insets insets = getInsets();
+    FontMetrics metrics = g2d.getFontMetrics();
+    int lineHeight = metrics.getHeight();
+    g2d.setColor(new Color(0, 0, 0, 160));
+    g2d.fillRect(insets.left, insets.top, 420, lineHeight*lines.length+8);
+    g2d.setColor(Color.GREEN);
+    for(int i=0; i<lines.length; i++){
+      g2d.drawString(lines[i], insets.left+4, insets.top+4+metrics.getAscent()+i*lineHeight);
+    }
+  }
+
+  /**
+ * Applies the input to the camera and projects frames into the handoff until
+ * stop() is called, no faster than the target frame rate.
+ * @param  frames The handoff to pass the projected frames through.
+ * @since 1.1
+ */
+  private void geometryLoop(FrameHandoff frames){
+    long nextFrame = System.nanoTime();
+    try{
+      while(true){
+        ProjectedFrame frame = frames.acquire();
+        if(frame == null){
+          return;
+        }
+        input.applyTo(scene.getCamera());
+        renderer.project(scene, scene.getCamera(), getWidth(), getHeight(), frame);
+        frames.publish(frame);
+        nextFrame = waitForNextFrame(nextFrame);
+      }
+    }catch(InterruptedException e){
+      // stopped
+    }catch(RuntimeException e){
+      fail(frames, e);
+    }
+  }
+
+  /**
+ * Draws the latest projected frame from the handoff until stop() is called,
+ * sleeping between them to keep to the target frame rate.
+ * @param  frames The handoff the projected frames are passed through.
+ * @since 1.1
+ */
+  private void renderLoop(FrameHandoff frames){
+    BufferStrategy strategy = getBufferStrategy();
+    long nextFrame = System.nanoTime();
+    try{
+      while(renderThread == Thread.currentThread()){
+        ProjectedFrame frame = frames.take();
+        if(frame == null){
+          return;
+        }
+        try{
+          do{
+            do{
+              Graphics g = strategy.getDrawGraphics();
+              try{
+                renderer.draw(frame, (Graphics2D) g);
+                if(overlayVisible){
+                  drawOverlay((Graphics2D) g);
+                }
+              }finally{
+                g.dispose();
+              }
+            }while(strategy.contentsRestored());
+            strategy.show();
+          }while(strategy.contentsLost());
+        }finally{
+          frames.release(frame);
+        }
+        Toolkit.getDefaultToolkit().sync();
+        nextFrame = waitForNextFrame(nextFrame);
+      }
+    }catch(InterruptedException e){
+      // stopped
+    }catch(RuntimeException e){
+      fail(frames, e);
+    }
+  }
+
+  /**
+ * Reports an exception that ended the projecting or drawing thread to its
+ * uncaught exception handler and stops the other, which would otherwise wait
+ * for frames that never come.
+ * @param  frames The handoff of the threads.
+ * @param  e The exception.
+ * @since 1.1
+ */
+  private void fail(FrameHandoff frames, RuntimeException e){
+    failure = e;
+    frames.close();
+    Thread thread = Thread.currentThread();
+    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    boolean running;
+    synchronized(this){
+      // a later start() has threads of its own that are left alone
+      running = handoff == frames;
+    }
+    if(running){
+      stop();
+    }
+  }
+
+  /**
+ * Waits until it is time for the next frame, without trying to catch up on
+ * missed ones.
+ * @param  nextFrame When the frame just finished was due, in nanoseconds.
+ * @return When the next frame is due, in nanoseconds.
+ * @since 1.1
+ */
+  private long waitForNextFrame(long nextFrame){
+    nextFrame += 1000000000L/targetFrameRate;
+    long now = System.nanoTime();
+    if(nextFrame > now){
+      LockSupport.parkNanos(nextFrame-now);
+    }else{
+      nextFrame = now;
+    }
+    return nextFrame;
+  }
+
   /**
  * Sets the render distance.
  * @param  x The render distance.
  * @since 1.0
  */
   public void setRenderDistance(double x){
-    this.renderDistance = x;
+    renderer.setRenderDistance(x);
   }
 
   /**
@@ -103,7 +353,113 @@ public class SceneRenderer extends JFrame{
  * @since 1.0
  */
   public void setScreenDistance(double x){
-    this.screenDistance = x;
+    renderer.setScreenDistance(x);
+  }
+
+  /**
+ * Sets the detail threshold, the size on screen in pixels below which shapes,
+ * meshes and instances are drawn as a single point.
+ * @param  x The detail threshold in pixels, 0 to project everything.
+ * @since 1.1
+ */
+  public void setDetailThreshold(double x){
+    renderer.setDetailThreshold(x);
+  }
+
+  /**
+ * Sets the number of frames to draw each second once start() has been called.
+ * It starts as 60.
+ * @param  x The target frame rate.
+ * @since 1.1
+ */
+  public void setTargetFrameRate(int x){
+    if(x <= 0){
+      throw new IllegalArgumentException("Target frame rate must be positive: "+x);
+    }
+    this.targetFrameRate = x;
+  }
+
+  /**
+ * Sets the most frames that can be in flight at once between projecting and
+ * drawing, taking effect the next time start() is called. With 1 a frame is
+ * projected only once the last has been drawn, with 2, which it starts as,
+ * the next frame is projected while the last is drawn, and with more the
+ * projecting thread can run ahead and frames that are not drawn in time are
+ * replaced by later ones.
+ * @param  x The most frames in flight.
+ * @since 1.1
+ */
+  public void setMaxFramesInFlight(int x){
+    if(x < 1){
+      throw new IllegalArgumentException("Max frames in flight must be at least 1: "+x);
+    }
+    this.maxFramesInFlight = x;
+  }
+
+  /**
+ * Gets the most frames that can be in flight at once between projecting and drawing.
+ * @return The most frames in flight.
+ * @since 1.1
+ */
+  public int getMaxFramesInFlight(){
+    return maxFramesInFlight;
+  }
+
+  /**
+ * Gets the number of frames to draw each second.
+ * @return The target frame rate.
+ * @since 1.1
+ */
+  public int getTargetFrameRate(){
+    return targetFrameRate;
+  }
+
+  /**
+ * Sets whether the frame timings and counts are drawn over the Scene. They
+ * start hidden.
+ * @param  visible True to draw them.
+ * @since 1.1
+ */
+  public void setOverlayVisible(boolean visible){
+    this.overlayVisible = visible;
+    repaint();
+  }
+
+  /**
+ * Gets whether the frame timings and counts are drawn over the Scene.
+ * @return True if they are drawn.
+ * @since 1.1
+ */
+  public boolean isOverlayVisible(){
+    return overlayVisible;
+  }
+
+  /**
+ * Gets the CameraInput whose input is applied to the camera of the Scene at
+ * the start of every frame.
+ * @return The CameraInput of this SceneRenderer.
+ * @since 1.1
+ */
+  public CameraInput getInput(){
+    return input;
+  }
+
+  /**
+ * Gets the exception that last stopped the threads started by start().
+ * @return The exception, or null if they have not failed.
+ * @since 1.1
+ */
+  public RuntimeException getFailure(){
+    return failure;
+  }
+
+  /**
+ * Gets the OffscreenRenderer used to draw the Scene onto this frame.
+ * @return The OffscreenRenderer used by this SceneRenderer.
+ * @since 1.1
+ */
+  public OffscreenRenderer getRenderer(){
+    return renderer;
   }
 
 }
@@ -0,0 +1,366 @@
+package render;
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import matrix.Matrix4;
+
+/** A SceneSnapshot writes a whole Scene to a binary file and reads it back, so
+ * a large Scene can be started again without parsing or building it. The
+ * file holds the Camera pose, every VertexStore as flat arrays, the shapes,
+ * meshes, Geometries, LevelOfDetails and instances, and the nodes of the
+ * spatial index if it is on. It is read by memory-mapping the file and copying each array
+ * out in one go, with nothing made per vertex.
+ *
+ * <p>The file is little-endian. It starts with the magic number 0x52334453
+ * ("R3DS") and a version, and each double is aligned to 8 bytes from the
+ * start of the file. Version 1 files, from before LevelOfDetails were kept,
+ * can still be read. Files of other versions are rejected.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public final class SceneSnapshot{
+
+  /** The first int of every snapshot.*/
+  private static final int MAGIC = 0x52334453;
+  /** The version of the format written.*/
+  public static final int VERSION = 2;
+
+  private SceneSnapshot(){
+  }
+
+  /**
+ * Writes a Scene to a file. The snapshot is written next to the file then
+ * moved over it, so a reader never sees half a snapshot.
+ * @param  scene The Scene to write.
+ * @param  path The file to write to.
+ * @throws IOException Throws IOException if the file can not be written.
+ * @since 1.1
+ */
+  public static void write(Scene scene, Path path) throws IOException{
+    Path temporary = path.resolveSibling(path.getFileName()+".tmp");
+    try{
+      try(SnapshotOutput out = new SnapshotOutput(temporary)){
+        write(scene, out);
+      }
+      Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }finally{
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private static void write(Scene scene, SnapshotOutput out) throws IOException{
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+
+    Camera camera = scene.getCamera();
+    Point location = camera.getLocation();
+    out.writeDouble(location.getX());
+    out.writeDouble(location.getY());
+    out.writeDouble(location.getZ());
+    out.writeDouble(camera.getPitch());
+    out.writeDouble(camera.getYaw());
+
+    // every store the shapes and meshes are kept in, the Scene's first
+    IdentityHashMap<VertexStore, Integer> stores = new IdentityHashMap<VertexStore, Integer>();
+    ArrayList<VertexStore> storeList = new ArrayList<VertexStore>();
+    IdentityHashMap<Geometry, Integer> geometries = new IdentityHashMap<Geometry, Integer>();
+    ArrayList<Geometry> geometryList = new ArrayList<Geometry>();
+    IdentityHashMap<LevelOfDetail, Integer> levelsOfDetail = new IdentityHashMap<LevelOfDetail, Integer>();
+    ArrayList<LevelOfDetail> levelOfDetailList = new ArrayList<LevelOfDetail>();
+    addStore(scene.getVertexStore(), stores, storeList);
+    for(Shape2D shape : scene.getShapes2D()){
+      addStore(shape.getVertexStore(), stores, storeList);
+    }
+    for(IndexedMesh mesh : scene.getMeshes()){
+      addStore(mesh.getVertexStore(), stores, storeList);
+    }
+    for(GeometryInstance instance : scene.getInstances()){
+      addGeometry(instance.getGeometry(), geometries, geometryList, stores, storeList);
+      LevelOfDetail levelOfDetail = instance.getLevelOfDetail();
+      if(levelOfDetail != null && !levelsOfDetail.containsKey(levelOfDetail)){
+        levelsOfDetail.put(levelOfDetail, levelOfDetailList.size());
+        levelOfDetailList.add(levelOfDetail);
+        for(int i=0; i<levelOfDetail.getNumberOfLevels(); i++){
+          addGeometry(levelOfDetail.getLevel(i), geometries, geometryList, stores, storeList);
+        }
+      }
+    }
+    out.writeInt(storeList.size());
+    for(VertexStore store : storeList){
+      store.write(out);
+    }
+
+    writeShapes(scene.getShapes2D(), stores, out);
+    writeMeshes(scene.getMeshes(), stores, out);
+    out.writeInt(geometryList.size());
+    for(Geometry geometry : geometryList){
+      out.writeInt(stores.get(geometry.getVertexStore()));
+      writeShapes(geometry.getShapes(), stores, out);
+      writeMeshes(geometry.getMeshes(), stores, out);
+    }
+    out.writeInt(levelOfDetailList.size());
+    for(LevelOfDetail levelOfDetail : levelOfDetailList){
+      int levels = levelOfDetail.getNumberOfLevels();
+      out.writeInt(levels);
+      for(int i=0; i<levels; i++){
+        out.writeInt(geometries.get(levelOfDetail.getLevel(i)));
+      }
+      for(int i=0; i<levels-1; i++){
+        out.writeDouble(levelOfDetail.getSwitchSize(i));
+      }
+      out.writeDouble(levelOfDetail.getHysteresis());
+    }
+
+    ArrayList<GeometryInstance> instances = scene.getInstances();
+    out.writeInt(instances.size());
+    for(GeometryInstance instance : instances){
+      out.writeInt(geometries.get(instance.getGeometry()));
+      LevelOfDetail levelOfDetail = instance.getLevelOfDetail();
+      out.writeInt(levelOfDetail == null ? -1 : levelsOfDetail.get(levelOfDetail));
+      Matrix4 transform = instance.getTransform();
+      for(int i=0; i<16; i++){
+        out.writeDouble(transform.get(i/4, i%4));
+      }
+    }
+
+    out.writeInt(scene.isSpatialIndexEnabled() ? 1 : 0);
+    if(scene.isSpatialIndexEnabled()){
+      scene.getSpatialIndex().write(out);
+    }
+  }
+
+  private static void addGeometry(Geometry geometry, IdentityHashMap<Geometry, Integer> geometries, List<Geometry> geometryList,
+                                  IdentityHashMap<VertexStore, Integer> stores, List<VertexStore> storeList){
+    if(!geometries.containsKey(geometry)){
+      geometries.put(geometry, geometryList.size());
+      geometryList.add(geometry);
+      addStore(geometry.getVertexStore(), stores, storeList);
+    }
+  }
+
+  private static void addStore(VertexStore store, IdentityHashMap<VertexStore, Integer> stores, List<VertexStore> storeList){
+    if(!stores.containsKey(store)){
+      stores.put(store, storeList.size());
+      storeList.add(store);
+    }
+  }
+
+  /**
+ * Writes shapes as three arrays, the store, index in the store and color of
+ * each.
+ * @since 1.1
+ */
+  private static void writeShapes(List<Shape2D> shapes, IdentityHashMap<VertexStore, Integer> stores,
+                                  SnapshotOutput out) throws IOException{
+    int count = shapes.size();
+    int[] storeIndexes = new int[count];
+    int[] shapeIndexes = new int[count];
+    int[] colors = new int[count];
+    for(int i=0; i<count; i++){
+      Shape2D shape = shapes.get(i);
+      storeIndexes[i] = stores.get(shape.getVertexStore());
+      shapeIndexes[i] = shape.getShapeIndex();
+      colors[i] = shape.getColor().getRGB();
+    }
+    out.writeInt(count);
+    out.writeInts(storeIndexes, count);
+    out.writeInts(shapeIndexes, count);
+    out.writeInts(colors, count);
+  }
+
+  private static void writeMeshes(List<IndexedMesh> meshes, IdentityHashMap<VertexStore, Integer> stores,
+                                  SnapshotOutput out) throws IOException{
+    out.writeInt(meshes.size());
+    for(IndexedMesh mesh : meshes){
+      int faces = mesh.getNumberOfFaces();
+      int[] faceStarts = mesh.getFaceStarts();
+      int[] colors = new int[faces];
+      for(int f=0; f<faces; f++){
+        colors[f] = mesh.getFaceColor(f).getRGB();
+      }
+      out.writeInt(stores.get(mesh.getVertexStore()));
+      out.writeInt(mesh.getShapeIndex());
+      out.writeInt(faces);
+      out.writeInt(faceStarts[faces]);
+      out.writeInts(faceStarts, faces+1);
+      out.writeInts(mesh.getFaceIndexes(), faceStarts[faces]);
+      out.writeInts(colors, faces);
+    }
+  }
+
+  /**
+ * Reads a Scene from a file written by write.
+ * @param  path The file to read.
+ * @return A new Scene.
+ * @throws IOException Throws IOException if the file can not be read, is not a
+ *         snapshot or is of another version.
+ * @since 1.1
+ */
+  public static Scene read(Path path) throws IOException{
+    try(SnapshotInput in = new SnapshotInput(path)){
+      return read(in);
+    }
+  }
+
+  private static Scene read(SnapshotInput in) throws IOException{
+    if(in.readInt() != MAGIC){
+      throw new IOException("Not a scene snapshot");
+    }
+    int version = in.readInt();
+    if(version != 1 && version != VERSION){
+      throw new IOException("Scene snapshot version "+version+" is not supported, only 1 to "+VERSION);
+    }
+
+    Camera camera = new Camera();
+    double x = in.readDouble(), y = in.readDouble(), z = in.readDouble();
+    camera.setLocation(x, y, z);
+    camera.setPitch(in.readDouble());
+    camera.setYaw(in.readDouble());
+
+    int storeCount = readCount(in);
+    if(storeCount == 0){
+      throw new IOException("Scene snapshot has no VertexStore");
+    }
+    VertexStore[] stores = new VertexStore[storeCount];
+    for(int i=0; i<storeCount; i++){
+      stores[i] = new VertexStore(in);
+    }
+
+    Scene scene = new Scene(camera, stores[0]);
+    ArrayList<Shape2D> shapes = readShapes(in, stores);
+    scene.getShapes2D().ensureCapacity(shapes.size());
+    for(Shape2D shape : shapes){
+      scene.add(shape);
+    }
+    for(IndexedMesh mesh : readMeshes(in, stores)){
+      scene.add(mesh);
+    }
+    Geometry[] geometries = new Geometry[readCount(in)];
+    for(int i=0; i<geometries.length; i++){
+      VertexStore store = stores[checkIndex(in.readInt(), storeCount, "VertexStore")];
+      geometries[i] = new Geometry(store, readShapes(in, stores), readMeshes(in, stores));
+    }
+    LevelOfDetail[] levelsOfDetail = new LevelOfDetail[version == 1 ? 0 : readCount(in)];
+    for(int i=0; i<levelsOfDetail.length; i++){
+      levelsOfDetail[i] = readLevelOfDetail(in, geometries);
+    }
+
+    int instanceCount = readCount(in);
+    Matrix4 transform = new Matrix4();
+    double[] m = new double[16];
+    for(int i=0; i<instanceCount; i++){
+      Geometry geometry = geometries[checkIndex(in.readInt(), geometries.length, "Geometry")];
+      int levelOfDetail = version == 1 ? -1 : in.readInt();
+      if(levelOfDetail != -1){
+        checkIndex(levelOfDetail, levelsOfDetail.length, "LevelOfDetail");
+        if(levelsOfDetail[levelOfDetail].getLevel(0) != geometry){
+          throw new IOException("Instance "+i+" in scene snapshot is not of the first level of its LevelOfDetail");
+        }
+      }
+      for(int j=0; j<16; j++){
+        m[j] = in.readDouble();
+      }
+      transform.set(m[0], m[1], m[2], m[3], m[4], m[5], m[6], m[7],
+                    m[8], m[9], m[10], m[11], m[12], m[13], m[14], m[15]);
+      if(levelOfDetail == -1){
+        scene.add(geometry, transform);
+      }else{
+        scene.add(levelsOfDetail[levelOfDetail], transform);
+      }
+    }
+
+    if(in.readInt() != 0){
+      scene.setSpatialIndex(new BoundingVolumeHierarchy<Shape2D>(in, scene.getShapes2D()));
+    }
+    return scene;
+  }
+
+  private static LevelOfDetail readLevelOfDetail(SnapshotInput in, Geometry[] geometries) throws IOException{
+    int count = readCount(in);
+    if(count == 0 || count > geometries.length){
+      throw new IOException("Bad number of levels in scene snapshot: "+count);
+    }
+    Geometry[] levels = new Geometry[count];
+    for(int i=0; i<count; i++){
+      levels[i] = geometries[checkIndex(in.readInt(), geometries.length, "Geometry")];
+    }
+    double[] switchSizes = new double[count-1];
+    for(int i=0; i<count-1; i++){
+      switchSizes[i] = in.readDouble();
+    }
+    try{
+      return new LevelOfDetail(levels, switchSizes, in.readDouble());
+    }catch(IllegalArgumentException e){
+      throw new IOException("Bad LevelOfDetail in scene snapshot", e);
+    }
+  }
+
+  private static ArrayList<Shape2D> readShapes(SnapshotInput in, VertexStore[] stores) throws IOException{
+    int count = readCount(in);
+    int[] storeIndexes = in.readInts(count);
+    int[] shapeIndexes = in.readInts(count);
+    int[] rgb = in.readInts(count);
+    ArrayList<Shape2D> shapes = new ArrayList<Shape2D>(count);
+    Color color = null;
+    for(int i=0; i<count; i++){
+      VertexStore store = stores[checkIndex(storeIndexes[i], stores.length, "VertexStore")];
+      // shapes next to each other are often the same color, they can share it
+      if(color == null || rgb[i] != rgb[i-1]){
+        color = new Color(rgb[i], true);
+      }
+      shapes.add(new Shape2D(store, checkIndex(shapeIndexes[i], store.getShapeCount(), "shape"), color));
+    }
+    return shapes;
+  }
+
+  private static ArrayList<IndexedMesh> readMeshes(SnapshotInput in, VertexStore[] stores) throws IOException{
+    int count = readCount(in);
+    ArrayList<IndexedMesh> meshes = new ArrayList<IndexedMesh>();
+    for(int i=0; i<count; i++){
+      VertexStore store = stores[checkIndex(in.readInt(), stores.length, "VertexStore")];
+      int shapeIndex = checkIndex(in.readInt(), store.getShapeCount(), "mesh");
+      int faces = readCount(in);
+      int indexCount = readCount(in);
+      int[] faceStarts = in.readInts(faces+1);
+      int[] faceIndexes = in.readInts(indexCount);
+      int[] rgb = in.readInts(faces);
+      IndexedMesh mesh;
+      try{
+        mesh = new IndexedMesh(store, shapeIndex, faceIndexes, faceStarts, new Color(faces == 0 ? -1 : rgb[0], true));
+      }catch(IllegalArgumentException e){
+        throw new IOException("Bad mesh in scene snapshot", e);
+      }
+      for(int f=1; f<faces; f++){
+        if(rgb[f] != rgb[f-1]){
+          mesh.setFaceColor(f, new Color(rgb[f], true));
+        }else if(rgb[f] != rgb[0]){
+          mesh.setFaceColor(f, mesh.getFaceColor(f-1));
+        }
+      }
+      meshes.add(mesh);
+    }
+    return meshes;
+  }
+
+  private static int readCount(SnapshotInput in) throws IOException{
+    int count = in.readInt();
+    if(count < 0){
+      throw new IOException("Negative count in scene snapshot: "+count);
+    }
+    return count;
+  }
+
+  private static int checkIndex(int index, int length, String what) throws IOException{
+    if(index < 0 || index >= length){
+      throw new IOException("No "+what+" "+index+" of "+length+" in scene snapshot");
+    }
+    return index;
+  }
+}
@@ -2,10 +2,13 @@ package render;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.awt.Color;
 import matrix.*;
 
-/** A Shape2D represent a 2D shape made up of Points in 3D space.
+/** A Shape2D represent a 2D shape made up of Points in 3D space. The vertexes
+* are kept in a VertexStore, shared with other shapes once the shape is added
+* to a Scene.
 * @author      Nathan Jones <nathanjones.ec@gmail.com>
 * @version     1.0
 * @since       1.0
@@ -13,10 +16,20 @@ import matrix.*;
 
 public class Shape2D{
 
-  /** An Array List of each vertex of the shape.*/
-  private ArrayList<Point> vertexes;
+  /** The store the vertexes of the shape are kept in.*/
+  private VertexStore store;
+  /** The index of the shape within the store.*/
+  private int shapeIndex;
   /** The color of the shape.*/
   private Color color;
+  /** The box that contains every vertex of the shape.*/
+  private final BoundingBox bounds = new BoundingBox();
+  /** Whether bounds has been worked out since the vertexes last changed.*/
+  private boolean boundsValid;
+  /** The spatial index of the Scene the shape is in, null if it is in none.*/
+  private BoundingVolumeHierarchy<Shape2D> spatialIndex;
+  /** The index of the shape in spatialIndex.*/
+  private int spatialIndexItem;
 
   /**
  * Creates a Shape2D with a default color of Color.WHITE.
@@ -25,9 +38,7 @@ public class Shape2D{
  * @since 1.0
  */
   public Shape2D(ArrayList<Point> points){
-    vertexes = new ArrayList<Point>();
-    vertexes = points;
-    color = Color.WHITE;
+    this(points, Color.WHITE);
   }
 
   /**
@@ -37,9 +48,7 @@ public class Shape2D{
  * @since 1.0
  */
   public Shape2D(Point[] points){
-    vertexes = new ArrayList<Point>();
-    Collections.addAll(vertexes, points);
-    color = Color.WHITE;
+    this(Arrays.asList(points), Color.WHITE);
   }
 
   /**
@@ -50,9 +59,7 @@ public class Shape2D{
  * @since 1.0
  */
   public Shape2D(ArrayList<Point> points, Color color){
-    vertexes = new ArrayList<Point>();
-    vertexes = points;
-    this.color = color;
+    this((List<Point>) points, color);
   }
 
   /**
@@ -63,20 +70,113 @@ public class Shape2D{
  * @since 1.0
  */
   public Shape2D(Point[] points, Color color){
-    vertexes = new ArrayList<Point>();
-    Collections.addAll(vertexes, points);;
+    this(Arrays.asList(points), color);
+  }
+
+  /**
+ * Creates a Shape2D with a specific Color. The coordinates of the points are
+ * copied into a VertexStore of the shapes own.
+ * @param  points A List of points which represnet the points of the shape
+ * and the order determines where the lines are drawn.
+ * @param  color The color of the shape.
+ * @since 1.1
+ */
+  private Shape2D(List<Point> points, Color color){
+    store = new VertexStore(points.size(), 1);
+    shapeIndex = store.addShape(points.size());
+    for(int i=0; i<points.size(); i++){
+      Point point = points.get(i);
+      store.set(i, point.getX(), point.getY(), point.getZ());
+    }
+    this.color = color;
+  }
+
+  /**
+ * Creates a Shape2D with a specific Color whose vertexes are already in a
+ * VertexStore.
+ * @param  store The store the vertexes of the shape are kept in.
+ * @param  shapeIndex The index of the shape within the store.
+ * @param  color The color of the shape.
+ * @since 1.1
+ */
+  Shape2D(VertexStore store, int shapeIndex, Color color){
+    this.store = store;
+    this.shapeIndex = shapeIndex;
     this.color = color;
   }
 
+  /**
+  * Copies the vertexes of the shape into another VertexStore and keeps them
+  * there from then on.
+  * @param  target The store to move the vertexes to.
+  * @since 1.1
+  */
+  void moveTo(VertexStore target){
+    int count = getNumberOfVertexes();
+    int offset = getVertexOffset();
+    int newIndex = target.addShape(count);
+    int newOffset = target.getOffset(newIndex);
+    for(int i=0; i<count; i++){
+      target.set(newOffset+i, store.getX(offset+i), store.getY(offset+i), store.getZ(offset+i));
+    }
+    store = target;
+    shapeIndex = newIndex;
+  }
+
   /**
   * Transforms the shape by a transformation matrix.
   * @param  m The transformation matrix to be applied to the shape.
   * @since 1.0
   */
   public void transform(Matrix m){
-    for(Point vertex : vertexes){
-      vertex.transform(m);
+    int[] size = m.getSize();
+    if(size[0] == 4 && size[1] == 4){
+      transform(new Matrix4(m));
+      return;
+    }
+    int offset = getVertexOffset();
+    int count = getNumberOfVertexes();
+    for(int i=offset; i<offset+count; i++){
+      Matrix coord = Matrix.mult(m, new Matrix(new double[][]{{store.getX(i)}, {store.getY(i)}, {store.getZ(i)}, {1}}));
+      store.set(i, coord.get(0,0), coord.get(1,0), coord.get(2,0));
     }
+    invalidateBounds();
+  }
+
+  /**
+  * Transforms the shape by a Matrix4 in place, all the vertexes in one batch.
+  * @param  m The transformation Matrix4 to be applied to the shape.
+  * @since 1.1
+  */
+  public void transform(Matrix4 m){
+    double[] xs = store.getXs();
+    double[] ys = store.getYs();
+    double[] zs = store.getZs();
+    int offset = getVertexOffset();
+    m.transform(xs, ys, zs, offset, getNumberOfVertexes(), xs, ys, zs, null, offset);
+    invalidateBounds();
+  }
+
+  /**
+ * Works out the Matrix4 that offsets a shape by the negative of a Point then
+ * rotates it about the y and x axis.
+ * @param  offset The amount the shape should be offset by.
+ * @param  angleAboutX The angle to rotate about the x axis.
+ * @param  angleAboutY The angle to rotate about the y axis.
+ * @param  dest The Matrix4 the transformation is written to.
+ * @return dest.
+ * @since 1.1
+ */
+  static Matrix4 makeViewMatrix(Point offset, double angleAboutX, double angleAboutY, Matrix4 dest){
+    double sinX = Math.sin(angleAboutX);
+    double cosX = Math.cos(angleAboutX);
+    double sinY = Math.sin(angleAboutY);
+    double cosY = Math.cos(angleAboutY);
+    return dest.set(
+      cosY, 0, sinY, -offset.getX()*cosY-offset.getZ()*sinY,
+      sinX*sinY, cosX, -sinX*cosY, -offset.getX()*sinX*sinY-offset.getY()*cosX+offset.getZ()*sinX*cosY,
+      -cosX*sinY, sinX, cosX*cosY, offset.getX()*cosX*sinY-offset.getY()*sinX-offset.getZ()*cosX*cosY,
+      0, 0, 0, 1);
   }
 
   /**
@@ -90,24 +190,7 @@ public class Shape2D{
  * @since 1.0
  */
   public Shape2D getTransformedShape(Point offset, double angleAboutX, double angleAboutY){
-    double sinX = Math.sin(angleAboutX);
-    double cosX = Math.cos(angleAboutX);
-    double sinY = Math.sin(angleAboutY);
-    double cosY = Math.cos(angleAboutY);
-    Matrix transformationMatrix = new Matrix(new double[][]{
-      {cosY, 0, sinY, -offset.getX()*cosY-offset.getZ()*sinY},
-      {sinX*sinY, cosX, -sinX*cosY, -offset.getX()*sinX*sinY-offset.getY()*cosX+offset.getZ()*sinX*cosY},
-      {-cosX*sinY, sinX, cosX*cosY, offset.getX()*cosX*sinY-offset.getY()*sinX-offset.getZ()*cosX*cosY},
-      {0, 0, 0, 1}
-    });
-    ArrayList<Point> newVertexes = new ArrayList(vertexes);
-    for(int i=0; i<newVertexes.size(); i++){
-      newVertexes.set(i, newVertexes.get(i).clone()) ;
-    }
-
-    Shape2D newShape = new Shape2D(newVertexes, color);
-    newShape.transform(transformationMatrix);
-    return newShape;
+    return getTransformedShape(makeViewMatrix(offset, angleAboutX, angleAboutY, new Matrix4()));
   }
 
   /**
@@ -118,12 +201,20 @@ public class Shape2D{
  * @since 1.0
  */
   public Shape2D getTransformedShape(Matrix m){
-    ArrayList<Point> newVertexes = new ArrayList(vertexes);
-    for(int i=0; i<newVertexes.size(); i++){
-      newVertexes.set(i, newVertexes.get(i).clone()) ;
-    }
+    Shape2D newShape = copy();
+    newShape.transform(m);
+    return newShape;
+  }
 
-    Shape2D newShape = new Shape2D(newVertexes, color);
+  /**
+ * Returns the Shape2D after being translated by a Matrix4 but dose not alter
+ * the original Shape2D.
+ * @param  m The Matrix4 to transform the shape by.
+ * @return TShape2D after being translated.
+ * @since 1.1
+ */
+  public Shape2D getTransformedShape(Matrix4 m){
+    Shape2D newShape = copy();
     newShape.transform(m);
     return newShape;
   }
@@ -136,30 +227,65 @@ public class Shape2D{
   * @since 1.0
   */
   public ArrayList<Point> getTransformedVertexes(Matrix m){
+    int[] size = m.getSize();
+    if(size[0] == 4 && size[1] == 4){
+      return getTransformedVertexes(new Matrix4(m));
+    }
     ArrayList<Point> newVertexes = new ArrayList<Point>();
-    for(Point vertex : vertexes){
-      newVertexes.add(vertex.getTransformedPoint(m));
+    for(int i=0; i<getNumberOfVertexes(); i++){
+      newVertexes.add(getVertex(i).getTransformedPoint(m));
+    }
+    return newVertexes;
+  }
+
+  /**
+  * Returns an ArrayList of the shapes vertexes after being transformed by a
+  * Matrix4 but does not perminantly transform the shape.
+  * @param  m The transformation Matrix4 to be applied to the shape.
+  * @return The translated vertexes of the shape.
+  * @since 1.1
+  */
+  public ArrayList<Point> getTransformedVertexes(Matrix4 m){
+    int count = getNumberOfVertexes();
+    double[] xs = new double[count];
+    double[] ys = new double[count];
+    double[] zs = new double[count];
+    m.transform(store.getXs(), store.getYs(), store.getZs(), getVertexOffset(), count, xs, ys, zs, null, 0);
+    ArrayList<Point> newVertexes = new ArrayList<Point>(count);
+    for(int i=0; i<count; i++){
+      newVertexes.add(new Point(xs[i], ys[i], zs[i]));
     }
     return newVertexes;
   }
 
   /**
-  * Gets a specific vertex by index.
+  * Gets a specific vertex by index. The Point returned is a view of the vertex
+  * so changing it changes the shape.
   * @param  i The index of the vertex.
   * @return The vertex as a Point.
   * @since 1.0
   */
   public Point getVertex(int i){
-    return vertexes.get(i);
+    if(i < 0 || i >= getNumberOfVertexes()){
+      throw new IndexOutOfBoundsException("Index: "+i+", Size: "+getNumberOfVertexes());
+    }
+    return new VertexPoint(this, i);
   }
 
   /**
-  * Gets all vertexes of the Shape2D.
-  * @return The vertexes of the Shape2D as an ArrayList.
+  * Gets all vertexes of the Shape2D. The Points returned are views of the
+  * vertexes so changing their coordinates changes the shape, but the list
+  * itself can not be changed, so vertexes can not be added or removed
+  * through it.
+  * @return The vertexes of the Shape2D as an unmodifiable List.
   * @since 1.0
   */
-  public ArrayList<Point> getVertexes(){
-    return vertexes;
+  public List<Point> getVertexes(){
+    ArrayList<Point> vertexes = new ArrayList<Point>(getNumberOfVertexes());
+    for(int i=0; i<getNumberOfVertexes(); i++){
+      vertexes.add(new VertexPoint(this, i));
+    }
+    return Collections.unmodifiableList(vertexes);
   }
 
   /**
@@ -168,6 +294,130 @@ public class Shape2D{
   * @since 1.0
   */
   public int getNumberOfVertexes(){
-    return vertexes.size();
+    return store.getCount(shapeIndex);
+  }
+
+  /**
+  * Gets the VertexStore the vertexes of the shape are kept in.
+  * @return The VertexStore the vertexes of the shape are kept in.
+  * @since 1.1
+  */
+  public VertexStore getVertexStore(){
+    return store;
+  }
+
+  /**
+  * Gets the index of the shape within its VertexStore.
+  * @return The index of the shape in the store.
+  * @since 1.1
+  */
+  int getShapeIndex(){
+    return shapeIndex;
+  }
+
+  /**
+  * Gets the index in the VertexStore of the first vertex of the shape. The
+  * vertexes of the shape follow on from it.
+  * @return The index of the first vertex of the shape.
+  * @since 1.1
+  */
+  public int getVertexOffset(){
+    return store.getOffset(shapeIndex);
+  }
+
+  /**
+  * Gets the color of the shape.
+  * @return The color of the shape.
+  * @since 1.1
+  */
+  public Color getColor(){
+    return color;
+  }
+
+  /**
+  * Sets the color of the shape.
+  * @param  color The color of the shape.
+  * @since 1.1
+  */
+  public void setColor(Color color){
+    this.color = color;
+    store.markChanged(shapeIndex);
+  }
+
+  /**
+  * Gets the box that contains every vertex of the shape. It is only worked out
+  * again after the shape has changed. The BoundingBox is owned by the shape so
+  * it must not be modified.
+  * @return The bounding box of the shape.
+  * @since 1.1
+  */
+  public BoundingBox getBounds(){
+    if(!boundsValid){
+      double[] xs = store.getXs();
+      double[] ys = store.getYs();
+      double[] zs = store.getZs();
+      int offset = getVertexOffset();
+      int end = offset+getNumberOfVertexes();
+      bounds.setEmpty();
+      for(int i=offset; i<end; i++){
+        bounds.include(xs[i], ys[i], zs[i]);
+      }
+      boundsValid = true;
+    }
+    return bounds;
+  }
+
+  /**
+  * Marks the bounding box as needing to be worked out again, and the shape as
+  * moved in the spatial index of its Scene. This is done by every method of
+  * the shape and its vertexes that moves a vertex but must be called after
+  * changing the vertexes through the VertexStore directly.
+  * @since 1.1
+  */
+  public void invalidateBounds(){
+    boundsValid = false;
+    store.markChanged(shapeIndex);
+    if(spatialIndex != null){
+      spatialIndex.markMoved(spatialIndexItem);
+    }
+  }
+
+  /**
+  * Sets the spatial index the shape marks itself as moved in. A shape in more
+  * than one Scene only marks itself in the last one to index it.
+  * @param  spatialIndex The spatial index, or null to stop marking.
+  * @param  item The index of the shape in the spatial index.
+  * @since 1.1
+  */
+  void setSpatialIndex(BoundingVolumeHierarchy<Shape2D> spatialIndex, int item){
+    this.spatialIndex = spatialIndex;
+    this.spatialIndexItem = item;
+  }
+
+  /**
+  * Stops the shape marking itself as moved in a spatial index that is no
+  * longer used, unless it has since been indexed by another.
+  * @param  spatialIndex The spatial index no longer used.
+  * @since 1.1
+  */
+  void removeSpatialIndex(BoundingVolumeHierarchy<Shape2D> spatialIndex){
+    if(this.spatialIndex == spatialIndex){
+      this.spatialIndex = null;
+    }
+  }
+
+  /**
+  * Creates a new Shape2D with its own copy of the vertexes.
+  * @return A copy of the shape.
+  * @since 1.1
+  */
+  public Shape2D copy(){
+    int count = getNumberOfVertexes();
+    VertexStore newStore = new VertexStore(count, 1);
+    Shape2D newShape = new Shape2D(newStore, newStore.addShape(count), color);
+    System.arraycopy(store.getXs(), getVertexOffset(), newStore.getXs(), 0, count);
+    System.arraycopy(store.getYs(), getVertexOffset(), newStore.getYs(), 0, count);
+    System.arraycopy(store.getZs(), getVertexOffset(), newStore.getZs(), 0, count);
+    return newShape;
   }
 }
@@ -0,0 +1,457 @@
+package render;
+import matrix.*;
+import java.util.Arrays;
+import java.util.List;
+
+/** A ShapeProjector transforms shapes, a mesh or instances of a Geometry by a
+ * view-projection matrix, clips their edges or polygons at the near plane and
+ * adds what is left to a DrawBatch. The vertexes of all the shapes it is given are transformed and
+ * divided by w in one pass with Matrix4.project, a run of neighbouring
+ * vertexes in a VertexStore at a time. Each ShapeProjector has its own working storage so
+ * several can run at once on different shapes.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+class ShapeProjector{
+
+  /** Holds the vertex being transformed.*/
+  private final Vec4 coord = new Vec4();
+  /** Holds the model matrix of an instance multiplied by the view-projection.*/
+  private final Matrix4 modelViewProjection = new Matrix4();
+  /** Holds the x coordinate of each vertex being projected after the perspective divide.*/
+  private double[] projectedX = new double[0];
+  /** Holds the y coordinate of each vertex being projected after the perspective divide.*/
+  private double[] projectedY = new double[0];
+  /** Holds the depth of each vertex being projected, z after the perspective divide.*/
+  private double[] projectedZ = new double[0];
+  /** Holds the z coordinate relative to the camera of each vertex being projected.*/
+  private double[] projectedW = new double[0];
+  /** Holds the projected x coordinate of each vertex of a shape before the perspective divide.*/
+  private double[] clipX = new double[0];
+  /** Holds the projected y coordinate of each vertex of a shape before the perspective divide.*/
+  private double[] clipY = new double[0];
+  /** Holds the projected z coordinate of each vertex of a shape before the perspective divide.*/
+  private double[] clipZ = new double[0];
+  /** Holds the z coordinate relative to the camera of each vertex of a shape.*/
+  private double[] clipW = new double[0];
+  /** Holds the vertexes of a polygon after clipping, packed as x, y, z, w.*/
+  private double[] clipped = new double[0];
+  /** Holds the vertexes of a polygon on screen, packed as x, y, depth.*/
+  private float[] polygon = new float[0];
+  /** The batch the primitives are added to.*/
+  private final DrawBatch batch = new DrawBatch();
+  /** The number of vertexes projected by the last call to project.*/
+  private int vertexCount;
+  /** The number of edges left out by the last call to project for being behind the near plane.*/
+  private int culledEdgeCount;
+  /** The number of polygons left out by the last call to project for being behind the near plane.*/
+  private int culledPolygonCount;
+
+  /**
+ * Clears the batch then projects a range of shapes into it.
+ * @param  shapes The shapes to take the range from.
+ * @param  from The index of the first shape to project.
+ * @param  to The index after the last shape to project.
+ * @param  viewProjection The view-projection matrix of the camera.
+ * @param  near The distance in front of the camera of the near plane.
+ * @param  sw The width of the screen.
+ * @param  sh The height of the screen.
+ * @param  mode How the shapes are to be drawn.
+ * @since 1.1
+ */
+  void project(List<Shape2D> shapes, int from, int to, Matrix4 viewProjection, double near, double sw, double sh, RenderMode mode){
+    clear();
+    appendShapes(shapes, from, to, viewProjection, near, sw, sh, mode);
+  }
+
+  /**
+ * Clears the batch then projects an IndexedMesh into it. Each vertex is
+ * projected once, then in wireframe each unique edge is added once, otherwise
+ * each face is added as a polygon.
+ * @param  mesh The mesh to project.
+ * @param  viewProjection The view-projection matrix of the camera.
+ * @param  near The distance in front of the camera of the near plane.
+ * @param  sw The width of the screen.
+ * @param  sh The height of the screen.
+ * @param  mode How the mesh is to be drawn.
+ * @since 1.1
+ */
+  void project(IndexedMesh mesh, Matrix4 viewProjection, double near, double sw, double sh, RenderMode mode){
+    clear();
+    appendMesh(mesh, viewProjection, near, sw, sh, mode);
+  }
+
+  /**
+ * Clears the batch then projects a range of GeometryInstances into it. The
+ * model matrix of each instance is multiplied by the view-projection once, and
+ * the vertexes of its Geometry are projected by the product.
+ * @param  instances The instances to take the range from.
+ * @param  levels The level of detail to draw each instance at, by its index in instances.
+ * @param  from The index of the first instance to project.
+ * @param  to The index after the last instance to project.
+ * @param  viewProjection The view-projection matrix of the camera.
+ * @param  near The distance in front of the camera of the near plane.
+ * @param  sw The width of the screen.
+ * @param  sh The height of the screen.
+ * @param  mode How the instances are to be drawn.
+ * @since 1.1
+ */
+  void projectInstances(List<GeometryInstance> instances, int[] levels, int from, int to, Matrix4 viewProjection,
+                        double near, double sw, double sh, RenderMode mode){
+    clear();
+    int total = 0;
+    for(int i=from; i<to; i++){
+      total += instances.get(i).getGeometry(levels[i]).getNumberOfVertexes();
+    }
+    ensureProjectedCapacity(total);
+    for(int i=from; i<to; i++){
+      GeometryInstance instance = instances.get(i);
+      Matrix4.mult(viewProjection, instance.getTransform(), modelViewProjection);
+      Geometry geometry = instance.getGeometry(levels[i]);
+      List<Shape2D> shapes = geometry.getShapes();
+      appendShapes(shapes, 0, shapes.size(), modelViewProjection, near, sw, sh, mode);
+      List<IndexedMesh> meshes = geometry.getMeshes();
+      for(int j=0; j<meshes.size(); j++){
+        appendMesh(meshes.get(j), modelViewProjection, near, sw, sh, mode);
+      }
+    }
+  }
+
+  /**
+ * Clears the batch and the counts.
+ * @since 1.1
+ */
+  private void clear(){
+    batch.clear();
+    vertexCount = 0;
+    culledEdgeCount = 0;
+    culledPolygonCount = 0;
+  }
+
+  /**
+ * Projects a range of shapes and adds them to what is already in the batch.
+ * @since 1.1
+ */
+  private void appendShapes(List<Shape2D> shapes, int from, int to, Matrix4 viewProjection,
+                            double near, double sw, double sh, RenderMode mode){
+    int base = vertexCount;
+    vertexCount += projectVertexes(shapes, from, to, viewProjection, base);
+
+    for(int s=from; s<to; s++){
+      Shape2D shape = shapes.get(s);
+      VertexStore store = shape.getVertexStore();
+      int offset = shape.getVertexOffset();
+      int numberOfVertexes = shape.getNumberOfVertexes();
+      if(mode == RenderMode.WIREFRAME){
+        for(int i=0; i<numberOfVertexes; i++){
+          addEdge(store, offset, base, i, i == numberOfVertexes-1 ? 0 : i+1, viewProjection, near, sw, sh, 0xFFFFFF);
+        }
+      }else if(numberOfVertexes < 3){
+        int color = shape.getColor().getRGB() & 0xFFFFFF;
+        for(int i=0; i<numberOfVertexes; i++){
+          addEdge(store, offset, base, i, i == numberOfVertexes-1 ? 0 : i+1, viewProjection, near, sw, sh, color);
+        }
+      }else{
+        addPolygon(store, offset, base, null, 0, numberOfVertexes, viewProjection, near, sw, sh, shape.getColor().getRGB() & 0xFFFFFF);
+      }
+      base += numberOfVertexes;
+    }
+  }
+
+  /**
+ * Projects an IndexedMesh and adds it to what is already in the batch.
+ * @since 1.1
+ */
+  private void appendMesh(IndexedMesh mesh, Matrix4 viewProjection, double near, double sw, double sh, RenderMode mode){
+    VertexStore store = mesh.getVertexStore();
+    int offset = mesh.getVertexOffset();
+    int base = vertexCount;
+    int numberOfVertexes = mesh.getNumberOfVertexes();
+    ensureProjectedCapacity(base+numberOfVertexes);
+    viewProjection.project(store.getXs(), store.getYs(), store.getZs(), offset, numberOfVertexes,
+                           projectedX, projectedY, projectedZ, projectedW, base);
+    vertexCount += numberOfVertexes;
+
+    if(mode == RenderMode.WIREFRAME){
+      int[] edges = mesh.getEdges();
+      for(int e=0; e<edges.length; e+=2){
+        addEdge(store, offset, base, edges[e], edges[e+1], viewProjection, near, sw, sh, 0xFFFFFF);
+      }
+    }else{
+      int[] faceIndexes = mesh.getFaceIndexes();
+      int[] faceStarts = mesh.getFaceStarts();
+      for(int f=0; f<mesh.getNumberOfFaces(); f++){
+        addPolygon(store, offset, base, faceIndexes, faceStarts[f], faceStarts[f+1]-faceStarts[f],
+                   viewProjection, near, sw, sh, mesh.getFaceColor(f).getRGB() & 0xFFFFFF);
+      }
+    }
+  }
+
+  /**
+ * Transforms and divides the vertexes of a range of shapes into the projected
+ * arrays, in the order of the shapes. Shapes whose vertexes follow on from
+ * each other in the same VertexStore, as they do for shapes added to a Scene
+ * one after another, are done in a single call.
+ * @param  dest The index in the projected arrays to write the first vertex to.
+ * @return The number of vertexes projected.
+ * @since 1.1
+ */
+  private int projectVertexes(List<Shape2D> shapes, int from, int to, Matrix4 viewProjection, int dest){
+    int total = 0;
+    for(int s=from; s<to; s++){
+      total += shapes.get(s).getNumberOfVertexes();
+    }
+    ensureProjectedCapacity(dest+total);
+    int s = from;
+    while(s < to){
+      Shape2D shape = shapes.get(s++);
+      VertexStore store = shape.getVertexStore();
+      int runStart = shape.getVertexOffset();
+      int runEnd = runStart+shape.getNumberOfVertexes();
+      while(s < to && shapes.get(s).getVertexStore() == store && shapes.get(s).getVertexOffset() == runEnd){
+        runEnd += shapes.get(s++).getNumberOfVertexes();
+      }
+      viewProjection.project(store.getXs(), store.getYs(), store.getZs(), runStart, runEnd-runStart,
+                             projectedX, projectedY, projectedZ, projectedW, dest);
+      dest += runEnd-runStart;
+    }
+    return total;
+  }
+
+  /**
+ * Transforms a vertex by the view-projection, without dividing, into the clip
+ * arrays for clipping at the near plane. Only primitives that cross the near
+ * plane need this so it is only worked out for them.
+ * @param  store The store the vertex is kept in.
+ * @param  index The index of the vertex in the store.
+ * @param  slot The index in the clip arrays to write to.
+ * @since 1.1
+ */
+  private void loadClipCoordinates(VertexStore store, int index, int slot, Matrix4 viewProjection){
+    viewProjection.transform(store.getX(index), store.getY(index), store.getZ(index), coord);
+    clipX[slot] = coord.getX();
+    clipY[slot] = coord.getY();
+    clipZ[slot] = coord.getZ();
+    clipW[slot] = coord.getW();
+  }
+
+  /**
+ * Adds a polygon to the batch. If it is wholly in front of the near plane its
+ * projected vertexes are used as they are, otherwise it is clipped first.
+ * @param  store The store the vertexes are kept in.
+ * @param  offset The index in the store of the first vertex of the shape or mesh.
+ * @param  base The index in the projected arrays of the first vertex of the shape or mesh.
+ * @param  indexes The indexes of the vertexes of the polygon within the shape or
+ *         mesh, null if they are its vertexes in order.
+ * @param  indexStart The index in indexes of the first vertex of the polygon.
+ * @param  n The number of vertexes of the polygon.
+ * @param  viewProjection The view-projection matrix of the camera.
+ * @param  near The distance in front of the camera of the near plane.
+ * @param  sw The width of the screen.
+ * @param  sh The height of the screen.
+ * @param  color The packed RGB color of the polygon.
+ * @since 1.1
+ */
+  private void addPolygon(VertexStore store, int offset, int base, int[] indexes, int indexStart, int n,
+                          Matrix4 viewProjection, double near, double sw, double sh, int color){
+    ensureCapacity(n);
+    boolean inFront = true;
+    for(int i=0; i<n && inFront; i++){
+      inFront = projectedW[base+vertexOf(indexes, indexStart, i)] >= near;
+    }
+    if(!inFront){
+      for(int i=0; i<n; i++){
+        loadClipCoordinates(store, offset+vertexOf(indexes, indexStart, i), i, viewProjection);
+      }
+      addClippedPolygon(n, near, sw, sh, color);
+      return;
+    }
+    for(int i=0; i<n; i++){
+      int v = base+vertexOf(indexes, indexStart, i);
+      polygon[i*3] = (float)(sw/2+sw*projectedX[v]);
+      polygon[i*3+1] = (float)(sh/2-sh*projectedY[v]);
+      polygon[i*3+2] = (float)projectedZ[v];
+    }
+    batch.addPolygon(polygon, n, color);
+  }
+
+  private static int vertexOf(int[] indexes, int indexStart, int i){
+    return indexes == null ? i : indexes[indexStart+i];
+  }
+
+  /**
+ * Clips the projected polygon in the clip arrays at the near plane, then adds
+ * what is left to the batch.
+ * @param  n The number of vertexes of the polygon.
+ * @param  near The distance in front of the camera of the near plane.
+ * @param  sw The width of the screen.
+ * @param  sh The height of the screen.
+ * @param  color The packed RGB color of the polygon.
+ * @since 1.1
+ */
+  private void addClippedPolygon(int n, double near, double sw, double sh, int color){
+    // keep the vertexes in front of the near plane and add a vertex where each
+    // edge crosses it
+    int count = 0;
+    for(int i=0; i<n; i++){
+      int j = i == n-1 ? 0 : i+1;
+      boolean iInside = clipW[i] >= near;
+      boolean jInside = clipW[j] >= near;
+      if(iInside){
+        count = addClipped(count, clipX[i], clipY[i], clipZ[i], clipW[i]);
+      }
+      if(iInside != jInside){
+        double t = (near-clipW[i])/(clipW[j]-clipW[i]);
+        count = addClipped(count, clipX[i]+t*(clipX[j]-clipX[i]), clipY[i]+t*(clipY[j]-clipY[i]),
+                           clipZ[i]+t*(clipZ[j]-clipZ[i]), near);
+      }
+    }
+    if(count < 3){
+      culledPolygonCount++;
+      return;
+    }
+    for(int i=0; i<count; i++){
+      double inverseW = 1/clipped[i*4+3];
+      polygon[i*3] = (float)(sw/2+sw*(clipped[i*4]*inverseW));
+      polygon[i*3+1] = (float)(sh/2-sh*(clipped[i*4+1]*inverseW));
+      polygon[i*3+2] = (float)(clipped[i*4+2]*inverseW);
+    }
+    batch.addPolygon(polygon, count, color);
+  }
+
+  /**
+ * Adds a vertex to the clipped polygon.
+ * @param  count The number of vertexes already in the clipped polygon.
+ * @return The number of vertexes now in the clipped polygon.
+ * @since 1.1
+ */
+  private int addClipped(int count, double x, double y, double z, double w){
+    clipped[count*4] = x;
+    clipped[count*4+1] = y;
+    clipped[count*4+2] = z;
+    clipped[count*4+3] = w;
+    return count+1;
+  }
+
+  /**
+ * Adds the edge between two vertexes of a shape or mesh to the batch. The part
+ * of the edge closer to the camera than the near plane is clipped off.
+ * @param  store The store the vertexes are kept in.
+ * @param  offset The index in the store of the first vertex of the shape or mesh.
+ * @param  base The index in the projected arrays of the first vertex of the shape or mesh.
+ * @param  i The index in the shape or mesh of the first vertex.
+ * @param  j The index in the shape or mesh of the second vertex.
+ * @param  viewProjection The view-projection matrix of the camera.
+ * @param  near The distance in front of the camera of the near plane.
+ * @param  sw The width of the screen.
+ * @param  sh The height of the screen.
+ * @param  color The packed RGB color of the edge.
+ * @since 1.1
+ */
+  private void addEdge(VertexStore store, int offset, int base, int i, int j, Matrix4 viewProjection, double near, double sw, double sh, int color){
+    int a = base+i, b = base+j;
+    if(projectedW[a] >= near && projectedW[b] >= near){
+      batch.addLine((float)(sw/2+sw*projectedX[a]), (float)(sh/2-sh*projectedY[a]), (float)projectedZ[a],
+                    (float)(sw/2+sw*projectedX[b]), (float)(sh/2-sh*projectedY[b]), (float)projectedZ[b], color);
+      return;
+    }
+    if(projectedW[a] < near && projectedW[b] < near){
+      culledEdgeCount++;
+      return;
+    }
+    ensureCapacity(2);
+    loadClipCoordinates(store, offset+i, 0, viewProjection);
+    loadClipCoordinates(store, offset+j, 1, viewProjection);
+    double xi = clipX[0], yi = clipY[0], zi = clipZ[0], wi = clipW[0];
+    double xj = clipX[1], yj = clipY[1], zj = clipZ[1], wj = clipW[1];
+    // move the end behind the near plane along the edge until it is on it
+    if(wi < near){
+      double t = (near-wi)/(wj-wi);
+      xi += t*(xj-xi);
+      yi += t*(yj-yi);
+      zi += t*(zj-zi);
+      wi = near;
+    }else if(wj < near){
+      double t = (near-wj)/(wi-wj);
+      xj += t*(xi-xj);
+      yj += t*(yi-yj);
+      zj += t*(zi-zj);
+      wj = near;
+    }
+    batch.addLine((float)(sw/2+sw*(xi/wi)), (float)(sh/2-sh*(yi/wi)), (float)(zi/wi),
+                  (float)(sw/2+sw*(xj/wj)), (float)(sh/2-sh*(yj/wj)), (float)(zj/wj), color);
+  }
+
+  /**
+ * Makes sure the clip arrays can hold a number of vertexes.
+ * @param  n The number of vertexes.
+ * @since 1.1
+ */
+  private void ensureCapacity(int n){
+    if(clipX.length < n){
+      clipX = new double[n];
+      clipY = new double[n];
+      clipZ = new double[n];
+      clipW = new double[n];
+      // clipping at one plane can add at most one vertex for every edge
+      clipped = new double[n*8];
+      polygon = new float[n*6];
+    }
+  }
+
+  /**
+ * Makes sure the projected arrays can hold a number of vertexes.
+ * @param  n The number of vertexes.
+ * @since 1.1
+ */
+  private void ensureProjectedCapacity(int n){
+    if(projectedX.length < n){
+      // keeps what is there, more can be added to a batch after the first shapes
+      n = Math.max(n, projectedX.length*2);
+      projectedX = Arrays.copyOf(projectedX, n);
+      projectedY = Arrays.copyOf(projectedY, n);
+      projectedZ = Arrays.copyOf(projectedZ, n);
+      projectedW = Arrays.copyOf(projectedW, n);
+    }
+  }
+
+  /**
+ * Gets the batch the last call to project filled.
+ * @return The batch of projected primitives.
+ * @since 1.1
+ */
+  DrawBatch getBatch(){
+    return batch;
+  }
+
+  /**
+ * Gets the number of vertexes the last call to project transformed.
+ * @return The number of vertexes.
+ * @since 1.1
+ */
+  int getVertexCount(){
+    return vertexCount;
+  }
+
+  /**
+ * Gets the number of edges the last call to project left out for being
+ * behind the near plane.
+ * @return The number of edges.
+ * @since 1.1
+ */
+  int getCulledEdgeCount(){
+    return culledEdgeCount;
+  }
+
+  /**
+ * Gets the number of polygons the last call to project left out for being
+ * behind the near plane.
+ * @return The number of polygons.
+ * @since 1.1
+ */
+  int getCulledPolygonCount(){
+    return culledPolygonCount;
+  }
+}
@@ -0,0 +1,151 @@
+package render;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** A SnapshotInput reads the numbers written by a SnapshotOutput by
+ * memory-mapping the file, a window of up to 1GB at a time. Arrays are copied
+ * out of the mapped file in bulk, which for little-endian machines is a plain
+ * memory copy.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+final class SnapshotInput implements Closeable{
+
+  /** The number of bytes of the file mapped at once, a multiple of 8 so no number is split.*/
+  private static final long WINDOW_SIZE = 1L << 30;
+
+  /** The file being read.*/
+  private final FileChannel channel;
+  /** The size of the file in bytes.*/
+  private final long size;
+  /** The position in the file of the start of the window.*/
+  private long windowStart;
+  /** The part of the file mapped at the moment.*/
+  private MappedByteBuffer window;
+
+  /**
+ * Opens a file and maps the start of it.
+ * @param  path The file to read.
+ * @throws IOException Throws IOException if the file can not be opened or mapped.
+ * @since 1.1
+ */
+  SnapshotInput(Path path) throws IOException{
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+    try{
+      size = channel.size();
+      map(0);
+    }catch(IOException e){
+      channel.close();
+      throw e;
+    }
+  }
+
+  private void map(long start) throws IOException{
+    windowStart = start;
+    window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size-start));
+    window.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+ * Makes sure there are bytes left in the window, mapping the next window of
+ * the file if there are not.
+ * @param  n The number of bytes needed, at most 8.
+ * @throws EOFException Throws EOFException if the file ends first.
+ * @since 1.1
+ */
+  private void ensure(int n) throws IOException{
+    if(window.remaining() >= n){
+      return;
+    }
+    long next = windowStart+window.position();
+    if(next+n > size){
+      throw new EOFException("Snapshot ends at byte "+size);
+    }
+    map(next);
+  }
+
+  int readInt() throws IOException{
+    ensure(4);
+    return window.getInt();
+  }
+
+  double readDouble() throws IOException{
+    align();
+    ensure(8);
+    return window.getDouble();
+  }
+
+  /**
+ * Reads an array of a length written before it, as written by writeInts.
+ * @param  count The number of elements.
+ * @return The elements.
+ * @since 1.1
+ */
+  int[] readInts(int count) throws IOException{
+    checkLength(count, 4);
+    int[] a = new int[count];
+    int offset = 0;
+    while(offset < count){
+      ensure(4);
+      int n = Math.min(count-offset, window.remaining()/4);
+      window.asIntBuffer().get(a, offset, n);
+      window.position(window.position()+n*4);
+      offset += n;
+    }
+    return a;
+  }
+
+  /**
+ * Reads an array of a length written before it, as written by writeDoubles.
+ * @param  count The number of elements.
+ * @param  capacity The length of the array to return, at least count.
+ * @return The elements, followed by zeros up to the capacity.
+ * @since 1.1
+ */
+  double[] readDoubles(int count, int capacity) throws IOException{
+    checkLength(count, 8);
+    align();
+    double[] a = new double[capacity];
+    int offset = 0;
+    while(offset < count){
+      ensure(8);
+      int n = Math.min(count-offset, window.remaining()/8);
+      window.asDoubleBuffer().get(a, offset, n);
+      window.position(window.position()+n*8);
+      offset += n;
+    }
+    return a;
+  }
+
+  /**
+ * Checks that an array read from the file fits in what is left of it, so a
+ * damaged length does not allocate a huge array.
+ * @since 1.1
+ */
+  private void checkLength(int count, int elementSize) throws IOException{
+    if(count < 0 || (long)count*elementSize > size-(windowStart+window.position())){
+      throw new IOException("Bad array length "+count+" at byte "+(windowStart+window.position()));
+    }
+  }
+
+  private void align() throws IOException{
+    int misaligned = (int)((windowStart+window.position())%8);
+    if(misaligned != 0){
+      ensure(8-misaligned);
+      window.position(window.position()+8-misaligned);
+    }
+  }
+
+  @Override
+  public void close() throws IOException{
+    channel.close();
+  }
+}
@@ -0,0 +1,120 @@
+package render;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** A SnapshotOutput writes the numbers of a SceneSnapshot to a file through a
+ * FileChannel, little-endian and each aligned to its own size so that a
+ * SnapshotInput can copy whole arrays straight out of the mapped file.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+final class SnapshotOutput implements Closeable{
+
+  /** The file being written.*/
+  private final FileChannel channel;
+  /** Holds what has been written but not yet passed to the channel.*/
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+  /** The number of bytes passed to the channel.*/
+  private long flushed;
+
+  /**
+ * Creates or replaces a file to write to.
+ * @param  path The file to write.
+ * @throws IOException Throws IOException if the file can not be opened.
+ * @since 1.1
+ */
+  SnapshotOutput(Path path) throws IOException{
+    channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                               StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  void writeInt(int x) throws IOException{
+    ensure(4);
+    buffer.putInt(x);
+  }
+
+  void writeDouble(double x) throws IOException{
+    align();
+    ensure(8);
+    buffer.putDouble(x);
+  }
+
+  /**
+ * Writes the first count elements of an array.
+ * @since 1.1
+ */
+  void writeInts(int[] a, int count) throws IOException{
+    int offset = 0;
+    while(offset < count){
+      ensure(4);
+      int n = Math.min(count-offset, buffer.remaining()/4);
+      buffer.asIntBuffer().put(a, offset, n);
+      buffer.position(buffer.position()+n*4);
+      offset += n;
+    }
+  }
+
+  /**
+ * Writes the first count elements of an array.
+ * @since 1.1
+ */
+  void writeDoubles(double[] a, int count) throws IOException{
+    align();
+    int offset = 0;
+    while(offset < count){
+      ensure(8);
+      int n = Math.min(count-offset, buffer.remaining()/8);
+      buffer.asDoubleBuffer().put(a, offset, n);
+      buffer.position(buffer.position()+n*8);
+      offset += n;
+    }
+  }
+
+  /**
+ * Pads to a multiple of 8 bytes from the start of the file.
+ * @since 1.1
+ */
+  private void align() throws IOException{
+    while((flushed+buffer.position())%8 != 0){
+      ensure(1);
+      buffer.put((byte)0);
+    }
+  }
+
+  /**
+ * Makes sure there is room in the buffer, passing what is in it to the
+ * channel if there is not.
+ * @param  n The number of bytes to make room for.
+ * @since 1.1
+ */
+  private void ensure(int n) throws IOException{
+    if(buffer.remaining() < n){
+      flush();
+    }
+  }
+
+  private void flush() throws IOException{
+    buffer.flip();
+    while(buffer.hasRemaining()){
+      flushed += channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException{
+    try{
+      flush();
+      channel.force(false);
+    }finally{
+      channel.close();
+    }
+  }
+}
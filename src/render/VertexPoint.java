@@ -0,0 +1,88 @@
+package render;
+import matrix.*;
+
+/** A VertexPoint is a view of one vertex of a Shape2D. It has no coordinates
+ * of its own, reading and writing goes straight to the VertexStore the shape
+ * is kept in.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+class VertexPoint extends Point{
+
+  /** The shape the vertex belongs to.*/
+  private final Shape2D shape;
+  /** The index of the vertex within the shape.*/
+  private final int index;
+
+  /**
+ * Creates a view of one vertex of a shape.
+ * @param  shape The shape the vertex belongs to.
+ * @param  index The index of the vertex within the shape.
+ * @since 1.1
+ */
+  VertexPoint(Shape2D shape, int index){
+    super(0, 0, 0);
+    this.shape = shape;
+    this.index = index;
+  }
+
+  @Override
+  public Matrix getPointAsMatrix(){
+    return new Matrix(new double[][]{{getX()}, {getY()}, {getZ()}, {1}});
+  }
+
+  @Override
+  public double getX(){
+    return shape.getVertexStore().getX(shape.getVertexOffset()+index);
+  }
+
+  @Override
+  public double getY(){
+    return shape.getVertexStore().getY(shape.getVertexOffset()+index);
+  }
+
+  @Override
+  public double getZ(){
+    return shape.getVertexStore().getZ(shape.getVertexOffset()+index);
+  }
+
+  @Override
+  public void setPoint(Matrix coord){
+    shape.getVertexStore().set(shape.getVertexOffset()+index, coord.get(0,0), coord.get(1,0), coord.get(2,0));
+    shape.invalidateBounds();
+  }
+
+  @Override
+  public void setX(double x){
+    shape.getVertexStore().setX(shape.getVertexOffset()+index, x);
+    shape.invalidateBounds();
+  }
+
+  @Override
+  public void setY(double y){
+    shape.getVertexStore().setY(shape.getVertexOffset()+index, y);
+    shape.invalidateBounds();
+  }
+
+  @Override
+  public void setZ(double z){
+    shape.getVertexStore().setZ(shape.getVertexOffset()+index, z);
+    shape.invalidateBounds();
+  }
+
+  @Override
+  public void transform(Matrix m){
+    setPoint(Matrix.mult(m, getPointAsMatrix()));
+  }
+
+  @Override
+  public void transform(Matrix4 m){
+    int i = shape.getVertexOffset()+index;
+    VertexStore store = shape.getVertexStore();
+    double x = store.getX(i), y = store.getY(i), z = store.getZ(i);
+    store.set(i, m.transformX(x, y, z), m.transformY(x, y, z), m.transformZ(x, y, z));
+    shape.invalidateBounds();
+  }
+}
@@ -0,0 +1,416 @@
+package render;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** A VertexStore holds the vertexes of many shapes packed into contiguous
+ * arrays of x, y and z coordinates. The vertexes of each shape are stored next
+ * to each other and a table of offsets and counts records where each shape
+ * starts and how many vertexes it has.
+ *
+ * <p>A VertexStore also records when each shape and each page of vertexes was
+ * last changed, counted in epochs, so that a Scene can bring the copy of the
+ * store in a published SceneFrame up to date by copying only what changed.
+ * A copy made that way is a view, which records nothing.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class VertexStore{
+
+  /** The number of vertexes in a page, as a power of two, changes are copied to views in.*/
+  private static final int PAGE_SHIFT = 8;
+
+  /** The x coordinates of every vertex.*/
+  private double[] xs;
+  /** The y coordinates of every vertex.*/
+  private double[] ys;
+  /** The z coordinates of every vertex.*/
+  private double[] zs;
+  /** The number of vertexes in use.*/
+  private int vertexCount;
+  /** The index of the first vertex of each shape.*/
+  private int[] shapeOffsets;
+  /** The number of vertexes each shape has.*/
+  private int[] shapeCounts;
+  /** The number of shapes in use.*/
+  private int shapeCount;
+  /** Whether the store is shared between the shapes of a Scene.*/
+  private boolean shared;
+  /** The epoch changes are being made in, which goes up each time a view is brought up to date.*/
+  private int epoch = 1;
+  /** The epoch anything in the store last changed in.*/
+  private int changedEpoch;
+  /** The epoch each page of vertexes last changed in, null for a view.*/
+  private int[] pageEpochs;
+  /** The epoch each shape last changed in, null for a view.*/
+  private int[] shapeEpochs;
+
+  /**
+ * Creates an empty VertexStore.
+ * @since 1.1
+ */
+  public VertexStore(){
+    this(16, 4);
+  }
+
+  /**
+ * Creates an empty VertexStore with room for a number of vertexes and shapes
+ * before it has to grow.
+ * @param  vertexCapacity The number of vertexes to make room for.
+ * @param  shapeCapacity The number of shapes to make room for.
+ * @since 1.1
+ */
+  public VertexStore(int vertexCapacity, int shapeCapacity){
+    xs = new double[Math.max(vertexCapacity, 1)];
+    ys = new double[xs.length];
+    zs = new double[xs.length];
+    shapeOffsets = new int[Math.max(shapeCapacity, 1)];
+    shapeCounts = new int[shapeOffsets.length];
+    pageEpochs = new int[pageOf(xs.length-1)+1];
+    shapeEpochs = new int[shapeOffsets.length];
+  }
+
+  /**
+ * Reads a VertexStore written by write, marked as shared.
+ * @param  in The snapshot being read.
+ * @throws IOException Throws IOException if the snapshot can not be read.
+ * @since 1.1
+ */
+  VertexStore(SnapshotInput in) throws IOException{
+    vertexCount = in.readInt();
+    shapeCount = in.readInt();
+    xs = in.readDoubles(vertexCount, Math.max(vertexCount, 1));
+    ys = in.readDoubles(vertexCount, xs.length);
+    zs = in.readDoubles(vertexCount, xs.length);
+    shapeOffsets = Arrays.copyOf(in.readInts(shapeCount), Math.max(shapeCount, 1));
+    shapeCounts = Arrays.copyOf(in.readInts(shapeCount), shapeOffsets.length);
+    for(int i=0; i<shapeCount; i++){
+      if(shapeOffsets[i] < 0 || shapeCounts[i] < 0 || (long)shapeOffsets[i]+shapeCounts[i] > vertexCount){
+        throw new IOException("Shape "+i+" is outside the "+vertexCount+" vertexes of the store");
+      }
+    }
+    pageEpochs = new int[pageOf(xs.length-1)+1];
+    shapeEpochs = new int[shapeOffsets.length];
+    shared = true;
+  }
+
+  /**
+ * Creates an empty view, a copy of another store kept up to date by
+ * copyChangesTo.
+ * @return A new view with nothing in it.
+ * @since 1.1
+ */
+  static VertexStore newView(){
+    VertexStore view = new VertexStore(1, 1);
+    view.pageEpochs = null;
+    view.shapeEpochs = null;
+    view.shared = true;
+    return view;
+  }
+
+  /**
+ * Writes the vertexes and shapes of the store to a snapshot.
+ * @param  out The snapshot being written.
+ * @throws IOException Throws IOException if the snapshot can not be written.
+ * @since 1.1
+ */
+  void write(SnapshotOutput out) throws IOException{
+    out.writeInt(vertexCount);
+    out.writeInt(shapeCount);
+    out.writeDoubles(xs, vertexCount);
+    out.writeDoubles(ys, vertexCount);
+    out.writeDoubles(zs, vertexCount);
+    out.writeInts(shapeOffsets, shapeCount);
+    out.writeInts(shapeCounts, shapeCount);
+  }
+
+  /**
+ * Adds a shape to the store. The vertexes of the new shape are all (0, 0, 0).
+ * @param  count The number of vertexes the shape has.
+ * @return The index of the new shape.
+ * @since 1.1
+ */
+  public int addShape(int count){
+    if(vertexCount+count > xs.length){
+      int capacity = Math.max(xs.length*2, vertexCount+count);
+      xs = Arrays.copyOf(xs, capacity);
+      ys = Arrays.copyOf(ys, capacity);
+      zs = Arrays.copyOf(zs, capacity);
+      if(pageEpochs != null){
+        pageEpochs = Arrays.copyOf(pageEpochs, pageOf(capacity-1)+1);
+      }
+    }
+    if(shapeCount == shapeOffsets.length){
+      shapeOffsets = Arrays.copyOf(shapeOffsets, shapeCount*2);
+      shapeCounts = Arrays.copyOf(shapeCounts, shapeCount*2);
+      if(shapeEpochs != null){
+        shapeEpochs = Arrays.copyOf(shapeEpochs, shapeCount*2);
+      }
+    }
+    shapeOffsets[shapeCount] = vertexCount;
+    shapeCounts[shapeCount] = count;
+    vertexCount += count;
+    markChanged(shapeCount);
+    return shapeCount++;
+  }
+
+  private static int pageOf(int vertex){
+    return vertex >>> PAGE_SHIFT;
+  }
+
+  /**
+ * Records that the vertexes or color of a shape have changed, so they are
+ * copied to views again. It does nothing for a view.
+ * @param  shape The index of the shape.
+ * @since 1.1
+ */
+  void markChanged(int shape){
+    if(shapeEpochs == null){
+      return;
+    }
+    shapeEpochs[shape] = epoch;
+    int count = shapeCounts[shape];
+    if(count > 0){
+      int last = pageOf(shapeOffsets[shape]+count-1);
+      for(int page=pageOf(shapeOffsets[shape]); page<=last; page++){
+        pageEpochs[page] = epoch;
+      }
+    }
+    changedEpoch = epoch;
+  }
+
+  private void markVertexChanged(int i){
+    if(pageEpochs != null){
+      pageEpochs[pageOf(i)] = epoch;
+      changedEpoch = epoch;
+    }
+  }
+
+  /**
+ * Brings a view up to date by copying to it the pages of vertexes that have
+ * changed since an epoch, then starts a new epoch. The view shares the tables
+ * of shapes, which are only ever added to.
+ * @param  view The view to bring up to date.
+ * @param  since The epoch returned when the view was last brought up to date,
+ *         0 if it never has been.
+ * @return The epoch the view is now up to date with.
+ * @since 1.1
+ */
+  int copyChangesTo(VertexStore view, int since){
+    if(view.xs.length < vertexCount){
+      view.xs = Arrays.copyOf(view.xs, xs.length);
+      view.ys = Arrays.copyOf(view.ys, xs.length);
+      view.zs = Arrays.copyOf(view.zs, xs.length);
+    }
+    if(since == 0){
+      System.arraycopy(xs, 0, view.xs, 0, vertexCount);
+      System.arraycopy(ys, 0, view.ys, 0, vertexCount);
+      System.arraycopy(zs, 0, view.zs, 0, vertexCount);
+    }else if(changedEpoch > since && vertexCount > 0){
+      int pages = pageOf(vertexCount-1)+1;
+      for(int page=0; page<pages; page++){
+        if(pageEpochs[page] > since){
+          int start = page << PAGE_SHIFT;
+          int length = Math.min(1 << PAGE_SHIFT, vertexCount-start);
+          System.arraycopy(xs, start, view.xs, start, length);
+          System.arraycopy(ys, start, view.ys, start, length);
+          System.arraycopy(zs, start, view.zs, start, length);
+        }
+      }
+    }
+    view.vertexCount = vertexCount;
+    view.shapeOffsets = shapeOffsets;
+    view.shapeCounts = shapeCounts;
+    view.shapeCount = shapeCount;
+    return epoch++;
+  }
+
+  /**
+ * Gets whether anything in the store has changed since an epoch.
+ * @param  since The epoch.
+ * @return True if a shape or vertex has changed since then.
+ * @since 1.1
+ */
+  boolean hasChangedSince(int since){
+    return changedEpoch > since;
+  }
+
+  /**
+ * Gets whether a shape has changed since an epoch.
+ * @param  shape The index of the shape.
+ * @param  since The epoch.
+ * @return True if the vertexes or color of the shape have changed since then.
+ * @since 1.1
+ */
+  boolean hasChangedSince(int shape, int since){
+    return shapeEpochs[shape] > since;
+  }
+
+  /**
+ * Gets the index of the first vertex of a shape.
+ * @param  shape The index of the shape.
+ * @return The index of the first vertex of the shape.
+ * @since 1.1
+ */
+  public int getOffset(int shape){
+    return shapeOffsets[shape];
+  }
+
+  /**
+ * Gets the number of vertexes a shape has.
+ * @param  shape The index of the shape.
+ * @return The number of vertexes the shape has.
+ * @since 1.1
+ */
+  public int getCount(int shape){
+    return shapeCounts[shape];
+  }
+
+  /**
+ * Gets the x coordinate of a vertex.
+ * @param  i The index of the vertex.
+ * @return The x coordinate of the vertex.
+ * @since 1.1
+ */
+  public double getX(int i){
+    return xs[i];
+  }
+
+  /**
+ * Gets the y coordinate of a vertex.
+ * @param  i The index of the vertex.
+ * @return The y coordinate of the vertex.
+ * @since 1.1
+ */
+  public double getY(int i){
+    return ys[i];
+  }
+
+  /**
+ * Gets the z coordinate of a vertex.
+ * @param  i The index of the vertex.
+ * @return The z coordinate of the vertex.
+ * @since 1.1
+ */
+  public double getZ(int i){
+    return zs[i];
+  }
+
+  /**
+ * Sets the coordinates of a vertex.
+ * @param  i The index of the vertex.
+ * @param  x The x coordinate.
+ * @param  y The y coordinate.
+ * @param  z The z coordinate.
+ * @since 1.1
+ */
+  public void set(int i, double x, double y, double z){
+    xs[i] = x;
+    ys[i] = y;
+    zs[i] = z;
+    markVertexChanged(i);
+  }
+
+  /**
+ * Sets the x coordinate of a vertex.
+ * @param  i The index of the vertex.
+ * @param  x The x coordinate.
+ * @since 1.1
+ */
+  public void setX(int i, double x){
+    xs[i] = x;
+    markVertexChanged(i);
+  }
+
+  /**
+ * Sets the y coordinate of a vertex.
+ * @param  i The index of the vertex.
+ * @param  y The y coordinate.
+ * @since 1.1
+ */
+  public void setY(int i, double y){
+    ys[i] = y;
+    markVertexChanged(i);
+  }
+
+  /**
+ * Sets the z coordinate of a vertex.
+ * @param  i The index of the vertex.
+ * @param  z The z coordinate.
+ * @since 1.1
+ */
+  public void setZ(int i, double z){
+    zs[i] = z;
+    markVertexChanged(i);
+  }
+
+  /**
+ * Gets the array backing the x coordinates. Only the first getVertexCount()
+ * elements are in use and the array is replaced when the store grows. After
+ * changing a shape through it, invalidateBounds must be called on the shape.
+ * @return The array of x coordinates.
+ * @since 1.1
+ */
+  public double[] getXs(){
+    return xs;
+  }
+
+  /**
+ * Gets the array backing the y coordinates. Only the first getVertexCount()
+ * elements are in use and the array is replaced when the store grows. After
+ * changing a shape through it, invalidateBounds must be called on the shape.
+ * @return The array of y coordinates.
+ * @since 1.1
+ */
+  public double[] getYs(){
+    return ys;
+  }
+
+  /**
+ * Gets the array backing the z coordinates. Only the first getVertexCount()
+ * elements are in use and the array is replaced when the store grows. After
+ * changing a shape through it, invalidateBounds must be called on the shape.
+ * @return The array of z coordinates.
+ * @since 1.1
+ */
+  public double[] getZs(){
+    return zs;
+  }
+
+  /**
+ * Gets the number of vertexes in the store.
+ * @return The number of vertexes in the store.
+ * @since 1.1
+ */
+  public int getVertexCount(){
+    return vertexCount;
+  }
+
+  /**
+ * Gets the number of shapes in the store.
+ * @return The number of shapes in the store.
+ * @since 1.1
+ */
+  public int getShapeCount(){
+    return shapeCount;
+  }
+
+  /**
+ * Marks the store as shared between the shapes of a Scene so that shapes kept
+ * in it are not moved into another Scene.
+ * @since 1.1
+ */
+  void markShared(){
+    shared = true;
+  }
+
+  /**
+ * Gets whether the store is shared between the shapes of a Scene.
+ * @return True if the store belongs to a Scene.
+ * @since 1.1
+ */
+  boolean isShared(){
+    return shared;
+  }
+}
@@ -0,0 +1,453 @@
+package render.io;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** A MappedInput reads a file through a memory-mapped FileChannel, a window of
+ * the file at a time so that files larger than 2GB can be read. Text is read
+ * a token at a time into a reused byte array and numbers are parsed from
+ * there, so no String is made for each line or number.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+final class MappedInput implements Closeable{
+
+  /** The number of bytes of the file mapped at once.*/
+  private static final long WINDOW_SIZE = 1L << 28;
+  /** The powers of ten that a double holds exactly.*/
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /** The file being read.*/
+  private final FileChannel channel;
+  /** The size of the file in bytes.*/
+  private final long size;
+  /** The position in the file of the start of the window.*/
+  private long windowStart;
+  /** The part of the file mapped at the moment.*/
+  private MappedByteBuffer window;
+  /** The byte order binary numbers are read in.*/
+  private ByteOrder order = ByteOrder.BIG_ENDIAN;
+  /** Holds the token being read.*/
+  private byte[] token = new byte[64];
+  /** The number of bytes in token.*/
+  private int tokenLength;
+
+  /**
+ * Opens a file and maps the start of it.
+ * @param  path The file to read.
+ * @throws IOException Throws IOException if the file can not be opened or mapped.
+ * @since 1.1
+ */
+  MappedInput(Path path) throws IOException{
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+    try{
+      size = channel.size();
+      map(0);
+    }catch(IOException e){
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+ * Maps the window of the file starting at a position.
+ * @param  start The position in the file of the start of the window.
+ * @since 1.1
+ */
+  private void map(long start) throws IOException{
+    windowStart = start;
+    window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size-start));
+    window.order(order);
+  }
+
+  /**
+ * Makes sure there is a byte left in the window, mapping the next window of
+ * the file if there is not.
+ * @return False if the end of the file has been reached.
+ * @since 1.1
+ */
+  private boolean fill() throws IOException{
+    if(window.hasRemaining()){
+      return true;
+    }
+    long next = windowStart+window.capacity();
+    if(next >= size){
+      return false;
+    }
+    map(next);
+    return true;
+  }
+
+  /**
+ * Gets the position in the file of the next byte to be read.
+ * @return The position in bytes.
+ * @since 1.1
+ */
+  long position(){
+    return windowStart+window.position();
+  }
+
+  /**
+ * Gets the next byte without reading it.
+ * @return The next byte from 0 to 255, -1 at the end of the file.
+ * @since 1.1
+ */
+  int peek() throws IOException{
+    return fill() ? window.get(window.position()) & 0xFF : -1;
+  }
+
+  /**
+ * Reads the next byte.
+ * @return The byte from 0 to 255, -1 at the end of the file.
+ * @since 1.1
+ */
+  int read() throws IOException{
+    return fill() ? window.get() & 0xFF : -1;
+  }
+
+  /**
+ * Reads up to the end of the line, as a String. This is meant for the few
+ * lines of a header, not for the body of a file.
+ * @return The line without its line ending, null at the end of the file.
+ * @since 1.1
+ */
+  String readLine() throws IOException{
+    if(peek() == -1){
+      return null;
+    }
+    tokenLength = 0;
+    int c;
+    while((c = read()) != -1 && c != '\n'){
+      if(c != '\r'){
+        append(c);
+      }
+    }
+    return new String(token, 0, tokenLength, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+ * Skips spaces and tabs, but not line endings.
+ * @since 1.1
+ */
+  void skipBlanks() throws IOException{
+    int c;
+    while((c = peek()) == ' ' || c == '\t' || c == '\r'){
+      window.get();
+    }
+  }
+
+  /**
+ * Skips spaces, tabs and line endings.
+ * @since 1.1
+ */
+  void skipWhitespace() throws IOException{
+    int c;
+    while((c = peek()) == ' ' || c == '\t' || c == '\r' || c == '\n'){
+      window.get();
+    }
+  }
+
+  /**
+ * Skips the rest of the line, including its line ending.
+ * @since 1.1
+ */
+  void skipLine() throws IOException{
+    while(fill()){
+      int position = window.position();
+      int limit = window.limit();
+      while(position < limit){
+        if(window.get(position++) == '\n'){
+          window.position(position);
+          return;
+        }
+      }
+      window.position(limit);
+    }
+  }
+
+  /**
+ * Gets whether the next byte ends a line.
+ * @return True at a line ending or the end of the file.
+ * @since 1.1
+ */
+  boolean atLineEnd() throws IOException{
+    int c = peek();
+    return c == '\n' || c == '\r' || c == -1;
+  }
+
+  /**
+ * Skips bytes up to the next space, tab, line ending or end of the file.
+ * @since 1.1
+ */
+  void skipToken() throws IOException{
+    while(fill()){
+      int position = window.position();
+      int limit = window.limit();
+      while(position < limit && !isDelimiter(window.get(position))){
+        position++;
+      }
+      window.position(position);
+      if(position < limit){
+        return;
+      }
+    }
+  }
+
+  /**
+ * Reads bytes into the token up to the next space, tab, line ending, '/' or
+ * end of the file. The bytes are scanned in the window directly then copied
+ * in one go, a token can only be split when it runs over into the next window.
+ * @since 1.1
+ */
+  private void readToken() throws IOException{
+    tokenLength = 0;
+    while(fill()){
+      int start = window.position();
+      int limit = window.limit();
+      int end = start;
+      int c;
+      while(end < limit && !isDelimiter(c = window.get(end)) && c != '/'){
+        end++;
+      }
+      int n = end-start;
+      if(tokenLength+n > token.length){
+        token = Arrays.copyOf(token, Math.max(token.length*2, tokenLength+n));
+      }
+      window.get(start, token, tokenLength, n);
+      tokenLength += n;
+      window.position(end);
+      if(end < limit){
+        return;
+      }
+    }
+  }
+
+  private static boolean isDelimiter(int c){
+    return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+  }
+
+  private void append(int c){
+    if(tokenLength == token.length){
+      token = Arrays.copyOf(token, tokenLength*2);
+    }
+    token[tokenLength++] = (byte)c;
+  }
+
+  /**
+ * Reads a decimal number written as text, after any spaces or tabs. Numbers
+ * with up to 15 significant digits and a small exponent, as nearly all
+ * coordinates are, are worked out from the digits directly. Any other number
+ * is handed to Double.parseDouble, so every number is correctly rounded.
+ * @return The number.
+ * @throws IOException Throws IOException if there is not a number next.
+ * @since 1.1
+ */
+  double readDouble() throws IOException{
+    skipBlanks();
+    long start = position();
+    readToken();
+    int i = 0;
+    boolean negative = false;
+    if(i < tokenLength && (token[i] == '-' || token[i] == '+')){
+      negative = token[i++] == '-';
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean anyDigits = false;
+    boolean point = false;
+    for(; i<tokenLength; i++){
+      int c = token[i];
+      if(c >= '0' && c <= '9'){
+        anyDigits = true;
+        if(digits < 18){
+          mantissa = mantissa*10+(c-'0');
+          if(mantissa != 0){
+            digits++;
+          }
+          if(point){
+            exponent--;
+          }
+        }else if(!point){
+          exponent++;
+        }
+      }else if(c == '.' && !point){
+        point = true;
+      }else{
+        break;
+      }
+    }
+    if(anyDigits && i < tokenLength && (token[i] == 'e' || token[i] == 'E')){
+      i++;
+      boolean negativeExponent = false;
+      if(i < tokenLength && (token[i] == '-' || token[i] == '+')){
+        negativeExponent = token[i++] == '-';
+      }
+      int e = 0;
+      int exponentStart = i;
+      for(; i<tokenLength && token[i] >= '0' && token[i] <= '9'; i++){
+        if(e < 100000){
+          e = e*10+(token[i]-'0');
+        }
+      }
+      if(i == exponentStart){
+        anyDigits = false;
+      }
+      exponent += negativeExponent ? -e : e;
+    }
+    if(anyDigits && i == tokenLength && digits <= 15 && exponent >= -22 && exponent <= 22){
+      // both the digits and the power of ten are exact so one operation rounds correctly
+      double value = exponent < 0 ? mantissa/POWERS_OF_TEN[-exponent] : mantissa*POWERS_OF_TEN[exponent];
+      return negative ? -value : value;
+    }
+    try{
+      return Double.parseDouble(new String(token, 0, tokenLength, StandardCharsets.ISO_8859_1));
+    }catch(NumberFormatException e){
+      throw new IOException("Expected a number at byte "+start, e);
+    }
+  }
+
+  /**
+ * Reads a whole number written as text, after any spaces or tabs.
+ * @return The number.
+ * @throws IOException Throws IOException if there is not a whole number next.
+ * @since 1.1
+ */
+  long readLong() throws IOException{
+    skipBlanks();
+    long start = position();
+    readToken();
+    int i = 0;
+    boolean negative = false;
+    if(i < tokenLength && (token[i] == '-' || token[i] == '+')){
+      negative = token[i++] == '-';
+    }
+    if(i == tokenLength || tokenLength-i > 18){
+      throw new IOException("Expected a whole number at byte "+start);
+    }
+    long value = 0;
+    for(; i<tokenLength; i++){
+      int c = token[i];
+      if(c < '0' || c > '9'){
+        throw new IOException("Expected a whole number at byte "+start);
+      }
+      value = value*10+(c-'0');
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+ * Sets the byte order binary numbers are read in. It starts as big-endian.
+ * @param  order The byte order.
+ * @since 1.1
+ */
+  void order(ByteOrder order){
+    this.order = order;
+    window.order(order);
+  }
+
+  /**
+ * Reads a binary byte.
+ * @return The byte.
+ * @throws EOFException Throws EOFException at the end of the file.
+ * @since 1.1
+ */
+  byte readByte() throws IOException{
+    int c = read();
+    if(c == -1){
+      throw new EOFException("Unexpected end of file at byte "+position());
+    }
+    return (byte)c;
+  }
+
+  /**
+ * Reads a binary short in the byte order.
+ * @return The short.
+ * @throws EOFException Throws EOFException at the end of the file.
+ * @since 1.1
+ */
+  short readShort() throws IOException{
+    return window.remaining() >= 2 ? window.getShort() : (short)readAcrossWindows(2);
+  }
+
+  /**
+ * Reads a binary int in the byte order.
+ * @return The int.
+ * @throws EOFException Throws EOFException at the end of the file.
+ * @since 1.1
+ */
+  int readInt() throws IOException{
+    return window.remaining() >= 4 ? window.getInt() : (int)readAcrossWindows(4);
+  }
+
+  /**
+ * Reads a binary float in the byte order.
+ * @return The float.
+ * @throws EOFException Throws EOFException at the end of the file.
+ * @since 1.1
+ */
+  float readFloat() throws IOException{
+    return window.remaining() >= 4 ? window.getFloat() : Float.intBitsToFloat((int)readAcrossWindows(4));
+  }
+
+  /**
+ * Reads a binary double in the byte order.
+ * @return The double.
+ * @throws EOFException Throws EOFException at the end of the file.
+ * @since 1.1
+ */
+  double readDouble64() throws IOException{
+    return window.remaining() >= 8 ? window.getDouble() : Double.longBitsToDouble(readAcrossWindows(8));
+  }
+
+  /**
+ * Skips a number of bytes.
+ * @param  n The number of bytes to skip.
+ * @throws EOFException Throws EOFException if the file ends first.
+ * @since 1.1
+ */
+  void skip(long n) throws IOException{
+    long target = position()+n;
+    if(target > size){
+      throw new EOFException("Unexpected end of file at byte "+size);
+    }
+    if(target <= windowStart+window.limit()){
+      window.position((int)(target-windowStart));
+    }else{
+      map(target);
+    }
+  }
+
+  /**
+ * Reads a binary number a byte at a time, for one that is split between two
+ * windows.
+ * @param  n The number of bytes.
+ * @return The bytes in the byte order.
+ * @since 1.1
+ */
+  private long readAcrossWindows(int n) throws IOException{
+    long value = 0;
+    for(int i=0; i<n; i++){
+      long b = readByte() & 0xFF;
+      value = order == ByteOrder.BIG_ENDIAN ? value << 8 | b : value | b << (8*i);
+    }
+    return value;
+  }
+
+  @Override
+  public void close() throws IOException{
+    channel.close();
+  }
+}
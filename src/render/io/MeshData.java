@@ -0,0 +1,161 @@
+package render.io;
+import java.awt.Color;
+import java.io.IOException;
+import java.util.Arrays;
+import render.IndexedMesh;
+import render.VertexStore;
+
+/** A MeshData collects the vertexes and faces of a mesh as a file is read.
+ * When the number of vertexes is known before they are read, as it is for a
+ * PLY file, they are written straight into the VertexStore the mesh is for.
+ * Otherwise they are gathered in arrays that double in size as needed and
+ * copied into the store once at the end.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+final class MeshData{
+
+  /** The store the mesh is being made in.*/
+  private final VertexStore store;
+  /** The index in the store of the vertexes, -1 until room has been made for them.*/
+  private int shapeIndex = -1;
+  /** The number of vertexes there is room for in the store.*/
+  private int reserved;
+  /** The index in xs, ys and zs of the first vertex.*/
+  private int base;
+  /** Holds the x coordinate of each vertex.*/
+  private double[] xs = new double[1024];
+  /** Holds the y coordinate of each vertex.*/
+  private double[] ys = new double[1024];
+  /** Holds the z coordinate of each vertex.*/
+  private double[] zs = new double[1024];
+  /** The number of vertexes read.*/
+  private int vertexCount;
+  /** Holds the indexes of the vertexes of every face, one face after another.*/
+  private int[] faceIndexes = new int[4096];
+  /** The number of face indexes read.*/
+  private int indexCount;
+  /** Where each face starts in faceIndexes, with one more entry for the end of the last face.*/
+  private int[] faceStarts = new int[1024];
+  /** The number of faces read.*/
+  private int faceCount;
+
+  /**
+ * Creates an empty MeshData.
+ * @param  store The store the mesh is to be made in.
+ * @since 1.1
+ */
+  MeshData(VertexStore store){
+    this.store = store;
+  }
+
+  /**
+ * Makes room in the store for every vertex, so they are written straight into
+ * it. It can only be called before any vertex is added.
+ * @param  count The number of vertexes that will be added.
+ * @since 1.1
+ */
+  void reserveVertexes(int count){
+    if(shapeIndex >= 0 || vertexCount > 0){
+      throw new IllegalStateException("Vertexes have already been added");
+    }
+    shapeIndex = store.addShape(count);
+    reserved = count;
+    base = store.getOffset(shapeIndex);
+    xs = store.getXs();
+    ys = store.getYs();
+    zs = store.getZs();
+  }
+
+  /**
+ * Adds a vertex.
+ * @param  x The x coordinate of the vertex.
+ * @param  y The y coordinate of the vertex.
+ * @param  z The z coordinate of the vertex.
+ * @since 1.1
+ */
+  void addVertex(double x, double y, double z) throws IOException{
+    if(shapeIndex >= 0){
+      if(vertexCount == reserved){
+        throw new IOException("More than the "+reserved+" vertexes expected");
+      }
+    }else if(vertexCount == xs.length){
+      xs = Arrays.copyOf(xs, vertexCount*2);
+      ys = Arrays.copyOf(ys, vertexCount*2);
+      zs = Arrays.copyOf(zs, vertexCount*2);
+    }
+    xs[base+vertexCount] = x;
+    ys[base+vertexCount] = y;
+    zs[base+vertexCount] = z;
+    vertexCount++;
+  }
+
+  /**
+ * Gets the number of vertexes added so far.
+ * @return The number of vertexes.
+ * @since 1.1
+ */
+  int getVertexCount(){
+    return vertexCount;
+  }
+
+  /**
+ * Adds the index of a vertex to the face being read.
+ * @param  index The index of the vertex, counting from 0.
+ * @since 1.1
+ */
+  void addIndex(int index){
+    if(indexCount == faceIndexes.length){
+      faceIndexes = Arrays.copyOf(faceIndexes, indexCount*2);
+    }
+    faceIndexes[indexCount++] = index;
+  }
+
+  /**
+ * Ends the face being read, which is made of the indexes added since the last
+ * face ended.
+ * @throws IOException Throws IOException if the face has fewer than 3 vertexes.
+ * @since 1.1
+ */
+  void endFace() throws IOException{
+    if(indexCount-faceStarts[faceCount] < 3){
+      throw new IOException("Face "+faceCount+" has fewer than 3 vertexes");
+    }
+    if(faceCount+2 > faceStarts.length){
+      faceStarts = Arrays.copyOf(faceStarts, faceStarts.length*2);
+    }
+    faceStarts[++faceCount] = indexCount;
+  }
+
+  /**
+ * Makes an IndexedMesh from what has been read, in the store.
+ * @param  color The color of the faces.
+ * @return The new IndexedMesh.
+ * @throws IOException Throws IOException if a face uses a vertex that was not
+ *         read, or fewer vertexes were read than room was made for.
+ * @since 1.1
+ */
+  IndexedMesh toMesh(Color color) throws IOException{
+    if(indexCount != faceStarts[faceCount]){
+      throw new IOException("The last face was not ended");
+    }
+    for(int i=0; i<indexCount; i++){
+      if(faceIndexes[i] < 0 || faceIndexes[i] >= vertexCount){
+        throw new IOException("A face uses vertex "+faceIndexes[i]+" of "+vertexCount);
+      }
+    }
+    if(shapeIndex < 0){
+      shapeIndex = store.addShape(vertexCount);
+      int offset = store.getOffset(shapeIndex);
+      System.arraycopy(xs, 0, store.getXs(), offset, vertexCount);
+      System.arraycopy(ys, 0, store.getYs(), offset, vertexCount);
+      System.arraycopy(zs, 0, store.getZs(), offset, vertexCount);
+    }else if(vertexCount != reserved){
+      throw new IOException("Expected "+reserved+" vertexes but read "+vertexCount);
+    }
+    return new IndexedMesh(store, shapeIndex, Arrays.copyOf(faceIndexes, indexCount),
+                           Arrays.copyOf(faceStarts, faceCount+1), color);
+  }
+}
@@ -0,0 +1,114 @@
+package render.io;
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import render.IndexedMesh;
+import render.Scene;
+import render.VertexStore;
+
+/** A MeshLoader reads an IndexedMesh from a file. Files are memory-mapped and
+ * parsed without making a String for each line or number, and the vertexes
+ * and faces go straight into flat arrays, so loading a large scan is limited
+ * by how fast the file can be read rather than by the garbage collector.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public abstract class MeshLoader{
+
+  /** The color given to every face of a loaded mesh.*/
+  private Color color = Color.WHITE;
+
+  MeshLoader(){
+  }
+
+  /**
+ * Gets a loader for a file by its extension, .obj or .ply.
+ * @param  path The file to be loaded.
+ * @return An ObjLoader or PlyLoader.
+ * @throws IllegalArgumentException Throws IllegalArgumentException if the extension is not known.
+ * @since 1.1
+ */
+  public static MeshLoader forFile(Path path){
+    String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+    if(name.endsWith(".obj")){
+      return new ObjLoader();
+    }
+    if(name.endsWith(".ply")){
+      return new PlyLoader();
+    }
+    throw new IllegalArgumentException("No loader for "+path);
+  }
+
+  /**
+ * Loads a mesh into a VertexStore of its own.
+ * @param  path The file to load.
+ * @return The mesh.
+ * @throws IOException Throws IOException if the file can not be read or is not valid.
+ * @since 1.1
+ */
+  public IndexedMesh load(Path path) throws IOException{
+    return load(path, new VertexStore());
+  }
+
+  /**
+ * Loads a mesh into a VertexStore.
+ * @param  path The file to load.
+ * @param  store The store the vertexes are to be kept in.
+ * @return The mesh.
+ * @throws IOException Throws IOException if the file can not be read or is not valid.
+ * @since 1.1
+ */
+  public IndexedMesh load(Path path, VertexStore store) throws IOException{
+    try(MappedInput in = new MappedInput(path)){
+      MeshData data = new MeshData(store);
+      read(in, data);
+      return data.toMesh(color);
+    }
+  }
+
+  /**
+ * Loads a mesh straight into the VertexStore of a Scene and adds it to the
+ * Scene.
+ * @param  path The file to load.
+ * @param  scene The Scene to add the mesh to.
+ * @return The mesh.
+ * @throws IOException Throws IOException if the file can not be read or is not valid.
+ * @since 1.1
+ */
+  public IndexedMesh load(Path path, Scene scene) throws IOException{
+    IndexedMesh mesh = load(path, scene.getVertexStore());
+    scene.add(mesh);
+    return mesh;
+  }
+
+  /**
+ * Reads the vertexes and faces of a file.
+ * @param  in The file.
+ * @param  data What the vertexes and faces are added to.
+ * @throws IOException Throws IOException if the file can not be read or is not valid.
+ * @since 1.1
+ */
+  abstract void read(MappedInput in, MeshData data) throws IOException;
+
+  /**
+ * Sets the color given to every face of the meshes loaded. It starts as
+ * Color.WHITE.
+ * @param  color The color of the faces.
+ * @since 1.1
+ */
+  public void setColor(Color color){
+    this.color = color;
+  }
+
+  /**
+ * Gets the color given to every face of the meshes loaded.
+ * @return The color of the faces.
+ * @since 1.1
+ */
+  public Color getColor(){
+    return color;
+  }
+}
@@ -0,0 +1,64 @@
+package render.io;
+import java.io.IOException;
+
+/** An ObjLoader reads the geometry of a Wavefront OBJ file. The vertexes ("v")
+ * and faces ("f") are read, with faces given as v, v/vt, v/vt/vn or v//vn and
+ * indexes counted from 1 or, when negative, back from the last vertex. Texture
+ * coordinates, normals, groups and materials are skipped.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class ObjLoader extends MeshLoader{
+
+  /**
+ * Creates an ObjLoader.
+ * @since 1.1
+ */
+  public ObjLoader(){
+  }
+
+  @Override
+  void read(MappedInput in, MeshData data) throws IOException{
+    while(in.peek() != -1){
+      in.skipBlanks();
+      int c = in.read();
+      if((c == 'v' || c == 'f') && (in.peek() == ' ' || in.peek() == '\t')){
+        if(c == 'v'){
+          // a fourth, w, coordinate is left out with the rest of the line
+          data.addVertex(in.readDouble(), in.readDouble(), in.readDouble());
+        }else{
+          readFace(in, data);
+        }
+      }
+      if(c != '\n'){
+        in.skipLine();
+      }
+    }
+  }
+
+  /**
+ * Reads the vertexes of a face up to the end of the line.
+ * @since 1.1
+ */
+  private void readFace(MappedInput in, MeshData data) throws IOException{
+    in.skipBlanks();
+    while(!in.atLineEnd() && in.peek() != '#'){
+      long position = in.position();
+      long index = in.readLong();
+      if(index > 0){
+        index--;
+      }else if(index < 0){
+        index += data.getVertexCount();
+      }else{
+        throw new IOException("Vertex index 0 at byte "+position);
+      }
+      data.addIndex((int)Math.max(-1, Math.min(index, Integer.MAX_VALUE)));
+      // leave out the texture coordinate and normal
+      in.skipToken();
+      in.skipBlanks();
+    }
+    data.endFace();
+  }
+}
@@ -0,0 +1,308 @@
+package render.io;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+/** A PlyLoader reads the geometry of a PLY file, in ascii, binary
+ * little-endian or binary big-endian format. The x, y and z properties of the
+ * "vertex" element and the "vertex_indices" list of the "face" element are
+ * read, anything else is skipped. The header gives the number of vertexes so
+ * they are written straight into the VertexStore as they are read. A
+ * PlyLoader should only load one file at a time.
+ * @author      Nathan Jones <nathanjones.ec@gmail.com>
+ * @version     1.1
+ * @since       1.1
+ */
+
+public class PlyLoader extends MeshLoader{
+
+  /** The types a property can have, with their sizes in bytes.*/
+  private enum Type{
+    INT8(1), UINT8(1), INT16(2), UINT16(2), INT32(4), UINT32(4), FLOAT32(4), FLOAT64(8);
+
+    /** The size of the type in bytes.*/
+    final int size;
+
+    Type(int size){
+      this.size = size;
+    }
+
+    /**
+   * Gets a type by the name used for it in a header.
+   * @param  name The name, old or new style.
+   * @return The type.
+   * @throws IOException Throws IOException if the name is not of a type.
+   * @since 1.1
+   */
+    static Type forName(String name) throws IOException{
+      switch(name){
+        case "char": case "int8": return INT8;
+        case "uchar": case "uint8": return UINT8;
+        case "short": case "int16": return INT16;
+        case "ushort": case "uint16": return UINT16;
+        case "int": case "int32": return INT32;
+        case "uint": case "uint32": return UINT32;
+        case "float": case "float32": return FLOAT32;
+        case "double": case "float64": return FLOAT64;
+        default: throw new IOException("Unknown PLY type "+name);
+      }
+    }
+  }
+
+  /** A property of an element, a single value or a list of values.*/
+  private static final class Property{
+    final String name;
+    final Type type;
+    /** The type of the number of values, null unless this is a list.*/
+    final Type countType;
+
+    Property(String name, Type type, Type countType){
+      this.name = name;
+      this.type = type;
+      this.countType = countType;
+    }
+  }
+
+  /** An element declared in the header, such as "vertex" or "face".*/
+  private static final class Element{
+    final String name;
+    final long count;
+    final ArrayList<Property> properties = new ArrayList<Property>();
+
+    Element(String name, long count){
+      this.name = name;
+      this.count = count;
+    }
+  }
+
+  /** Whether the body of the file being read is ascii.*/
+  private boolean ascii;
+
+  /**
+ * Creates a PlyLoader.
+ * @since 1.1
+ */
+  public PlyLoader(){
+  }
+
+  @Override
+  void read(MappedInput in, MeshData data) throws IOException{
+    ArrayList<Element> elements = readHeader(in);
+    boolean vertexesRead = false;
+    for(Element element : elements){
+      if(element.name.equals("vertex") && !vertexesRead){
+        readVertexes(in, data, element);
+        vertexesRead = true;
+      }else if(element.name.equals("face")){
+        readFaces(in, data, element);
+      }else{
+        for(long i=0; i<element.count; i++){
+          for(Property property : element.properties){
+            skipProperty(in, property);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+ * Reads the header up to and including "end_header", and sets the byte order.
+ * @return The elements in the order they are in the body.
+ * @since 1.1
+ */
+  private ArrayList<Element> readHeader(MappedInput in) throws IOException{
+    if(!"ply".equals(in.readLine())){
+      throw new IOException("Not a PLY file");
+    }
+    ArrayList<Element> elements = new ArrayList<Element>();
+    String format = null;
+    String line;
+    while((line = in.readLine()) != null){
+      String[] words = line.trim().split("\\s+");
+      switch(words[0]){
+        case "format":
+          format = words.length > 1 ? words[1] : "";
+          break;
+        case "element":
+          if(words.length < 3){
+            throw new IOException("Bad PLY element: "+line);
+          }
+          elements.add(new Element(words[1], parseCount(words[2])));
+          break;
+        case "property":
+          if(elements.isEmpty()){
+            throw new IOException("PLY property before any element: "+line);
+          }
+          Property property;
+          if(words.length == 5 && words[1].equals("list")){
+            property = new Property(words[4], Type.forName(words[3]), Type.forName(words[2]));
+          }else if(words.length == 3){
+            property = new Property(words[2], Type.forName(words[1]), null);
+          }else{
+            throw new IOException("Bad PLY property: "+line);
+          }
+          elements.get(elements.size()-1).properties.add(property);
+          break;
+        case "end_header":
+          if(format == null){
+            throw new IOException("PLY header has no format");
+          }
+          switch(format){
+            case "ascii": ascii = true; break;
+            case "binary_little_endian": ascii = false; in.order(ByteOrder.LITTLE_ENDIAN); break;
+            case "binary_big_endian": ascii = false; in.order(ByteOrder.BIG_ENDIAN); break;
+            default: throw new IOException("Unknown PLY format "+format);
+          }
+          return elements;
+        default:
+          // comments, obj_info and blank lines
+          break;
+      }
+    }
+    throw new IOException("PLY header has no end_header");
+  }
+
+  private static long parseCount(String word) throws IOException{
+    try{
+      long count = Long.parseLong(word);
+      if(count < 0){
+        throw new IOException("Negative PLY element count "+word);
+      }
+      return count;
+    }catch(NumberFormatException e){
+      throw new IOException("Bad PLY element count "+word, e);
+    }
+  }
+
+  /**
+ * Reads the vertex element, keeping x, y and z.
+ * @since 1.1
+ */
+  private void readVertexes(MappedInput in, MeshData data, Element element) throws IOException{
+    if(element.count > Integer.MAX_VALUE-8){
+      throw new IOException("Too many vertexes: "+element.count);
+    }
+    int size = element.properties.size();
+    // which coordinate each property is, -1 for those left out
+    int[] coordinate = new int[size];
+    boolean[] found = new boolean[3];
+    for(int p=0; p<size; p++){
+      Property property = element.properties.get(p);
+      int c = property.name.equals("x") ? 0 : property.name.equals("y") ? 1 : property.name.equals("z") ? 2 : -1;
+      coordinate[p] = property.countType == null ? c : -1;
+      if(coordinate[p] >= 0){
+        found[c] = true;
+      }
+    }
+    if(!found[0] || !found[1] || !found[2]){
+      throw new IOException("PLY vertex element needs x, y and z properties");
+    }
+    data.reserveVertexes((int)element.count);
+    double[] xyz = new double[3];
+    for(long v=0; v<element.count; v++){
+      for(int p=0; p<size; p++){
+        if(coordinate[p] >= 0){
+          xyz[coordinate[p]] = readValue(in, element.properties.get(p).type);
+        }else{
+          skipProperty(in, element.properties.get(p));
+        }
+      }
+      data.addVertex(xyz[0], xyz[1], xyz[2]);
+    }
+  }
+
+  /**
+ * Reads the face element, keeping the vertex indexes of each face.
+ * @since 1.1
+ */
+  private void readFaces(MappedInput in, MeshData data, Element element) throws IOException{
+    int indexesProperty = -1;
+    for(int p=0; p<element.properties.size(); p++){
+      Property property = element.properties.get(p);
+      if(property.countType != null && (property.name.equals("vertex_indices") || property.name.equals("vertex_index"))){
+        indexesProperty = p;
+      }
+    }
+    if(indexesProperty < 0){
+      throw new IOException("PLY face element needs a vertex_indices list");
+    }
+    for(long f=0; f<element.count; f++){
+      for(int p=0; p<element.properties.size(); p++){
+        Property property = element.properties.get(p);
+        if(p != indexesProperty){
+          skipProperty(in, property);
+          continue;
+        }
+        long count = readInteger(in, property.countType);
+        for(long i=0; i<count; i++){
+          long index = readInteger(in, property.type);
+          data.addIndex((int)Math.max(-1, Math.min(index, Integer.MAX_VALUE)));
+        }
+        data.endFace();
+      }
+    }
+  }
+
+  /**
+ * Reads past a property that is not wanted.
+ * @since 1.1
+ */
+  private void skipProperty(MappedInput in, Property property) throws IOException{
+    long count = 1;
+    if(property.countType != null){
+      count = readInteger(in, property.countType);
+    }
+    if(ascii){
+      for(long i=0; i<count; i++){
+        in.skipWhitespace();
+        in.skipToken();
+      }
+    }else{
+      in.skip(count*property.type.size);
+    }
+  }
+
+  /**
+ * Reads a value of any type as a double.
+ * @since 1.1
+ */
+  private double readValue(MappedInput in, Type type) throws IOException{
+    if(ascii){
+      in.skipWhitespace();
+      return in.readDouble();
+    }
+    switch(type){
+      case FLOAT32: return in.readFloat();
+      case FLOAT64: return in.readDouble64();
+      default: return readBinaryInteger(in, type);
+    }
+  }
+
+  /**
+ * Reads a whole number, such as a vertex index or the length of a list.
+ * @since 1.1
+ */
+  private long readInteger(MappedInput in, Type type) throws IOException{
+    if(ascii){
+      in.skipWhitespace();
+      return in.readLong();
+    }
+    switch(type){
+      case FLOAT32: return (long)in.readFloat();
+      case FLOAT64: return (long)in.readDouble64();
+      default: return readBinaryInteger(in, type);
+    }
+  }
+
+  private static long readBinaryInteger(MappedInput in, Type type) throws IOException{
+    switch(type){
+      case INT8: return in.readByte();
+      case UINT8: return in.readByte() & 0xFF;
+      case INT16: return in.readShort();
+      case UINT16: return in.readShort() & 0xFFFF;
+      case INT32: return in.readInt();
+      case UINT32: return in.readInt() & 0xFFFFFFFFL;
+      default: throw new IOException("Not an integer type: "+type);
+    }
+  }
+}